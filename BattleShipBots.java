@@ -0,0 +1,674 @@
+/**
+* BattleShipBots is a headless load generator for a BattleShipServer. It simulates many players at once, each
+* speaking the BattleShippable protocol over its own connection as a BattleShipClient would: it places a
+* random fleet, confirms it, fires at random spaces after a think time and answers the opponent's shots.
+* When a game ends the player connects again to play another, until the run is over. If the server sends
+* RULES the player plays by those, with a Board of their size. The players are
+* multiplexed over a few event loops, in the same way as BattleShipNioServer, so tens of thousands of them
+* can be simulated from one JVM.
+* <p>
+* At the end of the run it reports the games and turns played per second, and the percentiles of two
+* latencies: from sending FIRE until its MARK arrives, and the turn handoff, from the opponent's FIRE
+* arriving until the TURN which hands the turn over arrives.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+public class BattleShipBots implements BattleShippable  {
+   //How often progress is printed while the bots play
+   private static final long PROGRESS_MILLIS = 5000;
+   //How long a player waits before trying to connect again after failing to
+   private static final long RETRY_MILLIS = 250;
+   //Percentiles reported for each latency
+   private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+   //Settings of the run
+   private BotOptions options;
+   private InetSocketAddress server;
+   private BotLoop[] loops;
+   private volatile boolean running;
+   //What has been measured
+   private LongAdder games;
+   private LongAdder turns;
+   private LongAdder errors;
+   private AtomicInteger connected;
+   private LatencyHistogram fireToMark;
+   private LatencyHistogram turnHandoff;
+
+   /**
+       * Simulates players against a server with the settings given by the line arguments, prints
+       * what was measured and exits. See BotOptions for every argument.
+       * @param args line arguments
+       */
+   public static void main(String[] args)   {
+      BattleShipBots bots = new BattleShipBots(BotOptions.parse(args));
+      try   {
+         bots.run();
+         bots.printSummary();
+      }
+      catch (IOException | InterruptedException e)   {
+         System.err.println("problems running the bots " + e.toString());
+      }
+      System.exit(0);
+   }
+
+   /**
+       * Creates BattleShipBots with the given settings.
+       * @param options the settings of the run
+       */
+   public BattleShipBots(BotOptions options)   {
+      this.options = options;
+      server = new InetSocketAddress(options.getHost(), PORT);
+      loops = new BotLoop[options.getEventLoops()];
+      games = new LongAdder();
+      turns = new LongAdder();
+      errors = new LongAdder();
+      connected = new AtomicInteger();
+      fireToMark = new LatencyHistogram();
+      turnHandoff = new LatencyHistogram();
+   }
+
+   /**
+       * Starts every player, spread over the event loops and ramped up at the given rate, lets them
+       * play for the length of the run, printing progress as they go, and then stops them.
+       * @throws IOException if an event loop cannot be opened
+       * @throws InterruptedException if the thread is interrupted while waiting
+       */
+   public void run() throws IOException, InterruptedException  {
+      running = true;
+      for (int i = 0; i < loops.length; i++) {
+         loops[i] = new BotLoop("bot-loop-" + i);
+         Thread loopThread = new Thread(loops[i], loops[i].getName());
+         loopThread.setDaemon(true);
+         loopThread.start();
+      }
+      long start = System.nanoTime();
+      for (int i = 0; i < options.getBots(); i++)  {
+         BotLoop loop = loops[i % loops.length];
+         long delayMillis = i * 1000L / options.getRampPerSecond();
+         loop.execute(() -> loop.schedule(new Bot(loop), delayMillis));
+      }
+      long end = start + TimeUnit.SECONDS.toNanos(options.getSeconds());
+      while (System.nanoTime() < end)  {
+         Thread.sleep(Math.min(PROGRESS_MILLIS, Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+         System.out.printf("%5.1fs  connected %d  games %d  turns %d  errors %d%n",
+            (System.nanoTime() - start) / 1e9, connected.get(), games.sum(), turns.sum(), errors.sum());
+      }
+      running = false;
+   }
+
+   /**
+       * Prints the throughput and the latency percentiles of the run.
+       */
+   public void printSummary() {
+      double seconds = options.getSeconds();
+      System.out.printf("%d players, think time %d ms, %s messages, %d event loops, %d seconds%n",
+         options.getBots(), options.getThinkMillis(), options.isFramed() ? "framed" : "bare",
+         loops.length, options.getSeconds());
+      System.out.printf("games/sec %.1f  turns/sec %.1f  errors %d%n", games.sum() / seconds,
+         turns.sum() / seconds, errors.sum());
+      printLatency("FIRE -> MARK", fireToMark);
+      printLatency("TURN handoff", turnHandoff);
+   }
+
+   /**
+       * Prints the count, mean, percentiles and maximum of a latency, in milliseconds.
+       * @param name what the latency measures
+       * @param histogram the latencies recorded, in microseconds
+       */
+   private void printLatency(String name, LatencyHistogram histogram)  {
+      StringBuilder line = new StringBuilder(String.format("%s  n=%d  mean %.3f ms", name,
+         histogram.getCount(), histogram.getMean() / 1000));
+      for (double percentile : PERCENTILES)
+         line.append(String.format("  p%s %.3f", percentile == (int)percentile ? "" + (int)percentile :
+            "" + percentile, histogram.getValueAtPercentile(percentile) / 1000.0));
+      line.append(String.format("  max %.3f ms", histogram.getMax() / 1000.0));
+      System.out.println(line);
+   }
+
+   /**
+       * @return the time in microseconds, for measuring latencies.
+       */
+   private static long nowMicros()  {
+      return System.nanoTime() / 1000;
+   }
+
+   /**
+       * A BotLoop owns a Selector and the players registered with it, along with the timers that wake
+       * them up to connect or to fire. All of the work of its players is done on its own thread; other
+       * threads hand it work through execute.
+       */
+   private class BotLoop implements Runnable  {
+      private final Selector selector;
+      private final Queue<Runnable> tasks;
+      private final PriorityQueue<Wakeup> timers;
+      private final String name;
+
+      /**
+          * Creates a BotLoop with its own Selector.
+          * @param name the name of the thread running this loop
+          * @throws IOException if the Selector cannot be opened
+          */
+      BotLoop(String name) throws IOException   {
+         selector = Selector.open();
+         tasks = new ConcurrentLinkedQueue<Runnable>();
+         timers = new PriorityQueue<Wakeup>((a, b) -> Long.compare(a.at, b.at));
+         this.name = name;
+      }
+
+      /**
+          * @return the name of the thread running this loop.
+          */
+      String getName()  {
+         return name;
+      }
+
+      /**
+          * Queues a task to be run on this loop's thread and wakes the loop up.
+          * @param task the task to run
+          */
+      void execute(Runnable task)   {
+         tasks.add(task);
+         selector.wakeup();
+      }
+
+      /**
+          * Wakes a player up after the given delay. Must be called on this loop's thread.
+          * @param bot the player to wake up
+          * @param delayMillis how long to wait, in milliseconds
+          */
+      void schedule(Bot bot, long delayMillis)  {
+         timers.add(new Wakeup(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis), bot));
+      }
+
+      /**
+          * Selects ready channels, runs queued tasks and wakes the players whose timers are due,
+          * until the thread is stopped.
+          */
+      @Override
+      public void run() {
+         while (true)   {
+            try   {
+               Wakeup next = timers.peek();
+               if (next == null)
+                  selector.select();
+               else  {
+                  long waitMillis = TimeUnit.NANOSECONDS.toMillis(next.at - System.nanoTime());
+                  if (waitMillis > 0)
+                     selector.select(waitMillis);
+                  else
+                     selector.selectNow();
+               }
+               Runnable task;
+               while ((task = tasks.poll()) != null)
+                  task.run();
+               long now = System.nanoTime();
+               while (!timers.isEmpty() && timers.peek().at <= now)
+                  timers.poll().bot.onTimer();
+               Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+               while (keys.hasNext())   {
+                  SelectionKey key = keys.next();
+                  keys.remove();
+                  Bot bot = (Bot)key.attachment();
+                  if (key.isValid() && key.isConnectable())
+                     bot.onConnectable();
+                  if (key.isValid() && key.isWritable())
+                     bot.onWritable();
+                  if (key.isValid() && key.isReadable())
+                     bot.onReadable();
+               }
+            }
+            catch (IOException e)   {
+               errors.increment();
+            }
+         }
+      }
+   }
+
+   /**
+       * A Wakeup is a player's timer, due at a given System.nanoTime.
+       */
+   private static class Wakeup   {
+      private final long at;
+      private final Bot bot;
+
+      /**
+          * Creates a Wakeup.
+          * @param at when the timer is due
+          * @param bot the player to wake up
+          */
+      Wakeup(long at, Bot bot)   {
+         this.at = at;
+         this.bot = bot;
+      }
+   }
+
+   /**
+       * A Bot is one simulated player. It connects, plays one game and connects again, for as long as
+       * the run lasts. It decodes the server's commands from its read buffer, bare or framed, and encodes
+       * its own into its write buffer.
+       */
+   private class Bot  {
+      private final BotLoop loop;
+      private SocketChannel channel;
+      private SelectionKey key;
+      private ByteBuffer in;
+      private ByteBuffer out;
+      private boolean framedIn;
+      //The frame version the server agreed in HELLO
+      private int versionIn;
+      private boolean framedOut;
+      private int frameStart;
+      //The game being played
+      private int player;
+      private boolean authoritative;
+      private boolean myTurn;
+      private GameRules rules;
+      private Board board;
+      private int[] ends;
+      private int[] targets;
+      private int shots;
+      private int sunk;
+      private long fireSentAt;
+      private long fireReceivedAt;
+
+      /**
+          * Creates a Bot which is not yet connected.
+          * @param loop the loop this player belongs to
+          */
+      Bot(BotLoop loop) {
+         this.loop = loop;
+         in = ByteBuffer.allocate(FrameCodec.MAX_FRAME_BYTES);
+         out = ByteBuffer.allocate(FrameCodec.MAX_FRAME_BYTES);
+         setRules(GameRules.STANDARD);
+      }
+
+      /**
+          * Makes the Board, fleet and targets of the player for games of the given GameRules, unless
+          * they are already those.
+          * @param rules the size of the Grid and the fleet
+          */
+      private void setRules(GameRules rules) {
+         if (rules.equals(this.rules))
+            return;
+         this.rules = rules;
+         board = new Board(rules);
+         ends = new int[2 * rules.getNumShips()];
+         targets = new int[rules.getSpaces()];
+         for (int i = 0; i < targets.length; i++)
+            targets[i] = i;
+      }
+
+      /**
+          * Connects if the player is not connected, or fires if it is.
+          */
+      void onTimer() {
+         if (channel == null)
+            connect();
+         else
+            fire();
+      }
+
+      /**
+          * Starts connecting to the server for a new game, unless the run is over.
+          */
+      private void connect()  {
+         if (!running)
+            return;
+         try   {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.connect(server);
+            key = channel.register(loop.selector, SelectionKey.OP_CONNECT, this);
+         }
+         catch (IOException e)   {
+            fail();
+         }
+      }
+
+      /**
+          * Finishes connecting and starts reading.
+          */
+      void onConnectable() {
+         try   {
+            if (channel.finishConnect())  {
+               key.interestOps(SelectionKey.OP_READ);
+               connected.incrementAndGet();
+               newGame();
+            }
+         }
+         catch (IOException e)   {
+            fail();
+         }
+      }
+
+      /**
+          * Resets the state of the game before playing.
+          */
+      private void newGame()  {
+         in.clear();
+         out.clear();
+         framedIn = false;
+         framedOut = false;
+         authoritative = false;
+         myTurn = false;
+         setRules(GameRules.STANDARD);
+         board.clear();
+         shots = 0;
+         sunk = 0;
+         fireSentAt = 0;
+         fireReceivedAt = 0;
+      }
+
+      /**
+          * Counts an error, drops the connection and tries again a little later.
+          */
+      private void fail()  {
+         errors.increment();
+         boolean wasConnected = key != null && channel.isConnected();
+         disconnect(wasConnected);
+         loop.schedule(this, RETRY_MILLIS);
+      }
+
+      /**
+          * Closes the connection.
+          * @param wasConnected whether the connection had been made
+          */
+      private void disconnect(boolean wasConnected)   {
+         if (wasConnected)
+            connected.decrementAndGet();
+         try   {
+            if (key != null)
+               key.cancel();
+            if (channel != null)
+               channel.close();
+         }
+         catch (IOException e)   {
+            errors.increment();
+         }
+         key = null;
+         channel = null;
+      }
+
+      /**
+          * Ends the game by disconnecting, and connects again for the next one.
+          */
+      private void finishGame()  {
+         disconnect(true);
+         connect();
+      }
+
+      /**
+          * Writes whatever is pending once the channel can take more.
+          */
+      void onWritable() {
+         try   {
+            flush();
+         }
+         catch (IOException e)   {
+            fail();
+         }
+      }
+
+      /**
+          * Reads what is available and handles every complete command.
+          */
+      void onReadable() {
+         try   {
+            if (channel.read(in) < 0)  {
+               fail();
+               return;
+            }
+            in.flip();
+            boolean playing = true;
+            while (playing)   {
+               if (framedIn)  {
+                  int length = FrameCodec.completeFrame(in);
+                  if (length < 0)
+                     break;
+                  FrameCodec.checkVersion(in.get(in.position() + 4), versionIn);
+                  int limit = in.limit();
+                  int end = in.position() + 4 + length;
+                  in.limit(end);
+                  in.position(in.position() + 5);
+                  int cmd = in.getInt();
+                  playing = handle(cmd);
+                  if (!playing)
+                     break;
+                  in.limit(limit);
+                  in.position(end);
+               }
+               else  {
+                  if (in.remaining() < 4)
+                     break;
+                  int cmd = in.getInt(in.position());
+                  int length = serverArgumentBytes(cmd, rules);
+                  if (length < 0)
+                     throw new IOException("unknown command " + cmd);
+                  if (in.remaining() < 4 + length)
+                     break;
+                  in.position(in.position() + 4);
+                  playing = handle(cmd);
+               }
+            }
+            if (playing)   {
+               in.compact();
+               flush();
+            }
+            else
+               finishGame();
+         }
+         catch (IOException e)   {
+            fail();
+         }
+      }
+
+      /**
+          * Handles a command from the server as a BattleShipClient would, with its arguments next
+          * in the read buffer.
+          * @param cmd the protocol constant value sent by the server
+          * @return false if the game has ended, true otherwise
+          * @throws IOException if there is a communication error between server/client
+          */
+      private boolean handle(int cmd) throws IOException  {
+         switch (cmd)   {
+            case RULES:
+               byte[] bytes = new byte[GameRules.RULES_BYTES];
+               in.get(bytes);
+               try   {
+                  setRules(GameRules.fromBytes(bytes));
+               }
+               catch (IllegalArgumentException e)  {
+                  throw new IOException("bad rules", e);
+               }
+               break;
+            case NAME:
+               player = in.getInt();
+               placeFleet();
+               break;
+            case AUTHORITATIVE:
+               authoritative = true;
+               break;
+            case FRAMING:
+               //The server sends FRAMING after NAME and AUTHORITATIVE, so every setting is known
+               if (options.isFramed())  {
+                  begin(HELLO);
+                  out.put((byte)FrameCodec.VERSION);
+                  end();
+                  framedOut = true;
+               }
+               confirm();
+               break;
+            case HELLO:
+               versionIn = in.get();
+               framedIn = true;
+               break;
+            case PING:
+               in.getInt();
+               begin(PONG);
+               end();
+               break;
+            case TURN:
+               if (in.get() != 0)   {
+                  if (fireReceivedAt != 0)
+                     turnHandoff.record(nowMicros() - fireReceivedAt);
+                  fireReceivedAt = 0;
+                  myTurn = true;
+                  loop.schedule(this, options.getThinkMillis());
+               }
+               break;
+            case FIRE:
+               fireReceivedAt = nowMicros();
+               answerFire(in.getInt());
+               break;
+            case MARK:
+               in.getInt();
+               in.get();
+               markReceived(in.get() != 0);
+               break;
+            case GAME_OVER:
+               if (in.getInt() == player)
+                  games.increment();
+               return false;
+            case DONE:
+            case QUIT_SHIP:
+               errors.increment();
+               return false;
+            default:
+               in.position(in.position() + serverArgumentBytes(cmd, rules));
+         }
+         return true;
+      }
+
+      /**
+          * Places every Ship at random, remembering the ends of each.
+          */
+      private void placeFleet()  {
+         Random random = ThreadLocalRandom.current();
+         board.clear();
+         PlacementTable.placeRandomFleet(board, ends, random);
+         for (int i = targets.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = targets[i];
+            targets[i] = targets[j];
+            targets[j] = swap;
+         }
+      }
+
+      /**
+          * Confirms the fleet, uploading it if the server resolves shots.
+          */
+      private void confirm()  {
+         if (authoritative)   {
+            begin(CONFIRM_FLEET);
+            for (int i = 0; i < ends.length; i++)
+               out.putInt(ends[i]);
+         }
+         else  {
+            begin(CONFIRM_SHIPS);
+            out.put((byte)1);
+         }
+         end();
+      }
+
+      /**
+          * Fires at the next space which has not been fired at yet, if it is the player's turn.
+          */
+      private void fire()  {
+         if (!myTurn || shots >= targets.length)
+            return;
+         myTurn = false;
+         begin(FIRE);
+         out.putInt(1 - player);
+         out.putInt(targets[shots++]);
+         end();
+         fireSentAt = nowMicros();
+         try   {
+            flush();
+         }
+         catch (IOException e)   {
+            fail();
+         }
+      }
+
+      /**
+          * Takes a shot from the opponent on the player's Board, and sends back whether it hit
+          * unless the server resolves shots.
+          * @param space the single digit index of the space fired at
+          */
+      private void answerFire(int space)  {
+         int result = board.fire(space);
+         if (!authoritative)  {
+            begin(SUCCESS);
+            out.putInt(player);
+            out.putInt(space);
+            out.put((byte)(result != Board.MISS ? 1 : 0));
+            out.put((byte)(result == Board.SUNK ? 1 : 0));
+            end();
+         }
+      }
+
+      /**
+          * Records the latency of the player's shot, and hands the turn over or claims the win
+          * unless the server resolves shots.
+          * @param sinks whether the shot sank a Ship
+          */
+      private void markReceived(boolean sinks) {
+         turns.increment();
+         if (fireSentAt != 0)
+            fireToMark.record(nowMicros() - fireSentAt);
+         fireSentAt = 0;
+         if (sinks)
+            sunk++;
+         if (!authoritative)  {
+            begin(sunk == rules.getNumShips() ? WIN : TURN);
+            out.putInt(player);
+            end();
+         }
+      }
+
+      /**
+          * Starts encoding a command, as a frame once the player has sent HELLO.
+          * @param cmd the protocol constant value
+          */
+      private void begin(int cmd)   {
+         if (framedOut)
+            frameStart = FrameCodec.beginFrame(out, cmd, FrameCodec.VERSION);
+         else
+            out.putInt(cmd);
+      }
+
+      /**
+          * Finishes encoding the command started by begin.
+          */
+      private void end()   {
+         if (framedOut)
+            FrameCodec.endFrame(out, frameStart);
+      }
+
+      /**
+          * Writes as much of the write buffer as the channel takes, and asks to be told when the
+          * channel is writable again if anything is left over.
+          * @throws IOException if there is a communication error between server/client
+          */
+      private void flush() throws IOException   {
+         if (out.position() > 0) {
+            out.flip();
+            channel.write(out);
+            out.compact();
+         }
+         if (key != null && key.isValid())
+            key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE :
+               SelectionKey.OP_READ);
+      }
+   }
+}
\ No newline at end of file
@@ -3,6 +3,22 @@
 * BattleShipServer. If a successful connection made to the server by two clients then a game is started,
 * and a GUI is created for the player to place their Ships. Once both players have placed their Ships the
 * GUI for the main phase of the game is created and players take turns firing at each others Ships.
+* If the connection to the server is lost during a game which the server holds open, the client connects
+* again and sends RESUME with the token it was given, carrying on from the SNAPSHOT the server sends back.
+* A server playing other GameRules sends RULES before NAME, and the Grids and Ships are made again for them.
+* Several addresses may be given to search with; they are all tried at once by a ServerConnector, off the
+* event thread, and the first to answer is played on. The search can be cancelled while it is made.
+* <p>
+* Once a game has ended the connection is kept while the server keeps it. The player may ask for a rematch,
+* which starts when the opponent asks too, or go back to the lobby with LOBBY to be paired again, on the
+* same connection and the same thread reading the server. Only if the server has closed the connection
+* does the lobby search again.
+* </p>
+* <p>
+* The thread reading the server keeps the state of the game, such as whose turn it is and how many Ships
+* each player has left, and answers the server from it. It never touches a Swing component: each change to
+* the display is posted to a ClientUpdateQueue, holding the values it shows, and applied on the event thread.
+* </p>
 *
 * @author Alex Perrino
 * @version November 29, 2017
@@ -14,46 +30,103 @@ import java.util.*;
 import java.awt.event.*;
 import javax.swing.*;
 public class BattleShipClient extends JFrame implements Runnable, BattleShippable  {
+   //How many times a lost connection is retried, and the wait before the first retry, doubled each time
+   private static final int RESUME_ATTEMPTS = 5;
+   private static final long RESUME_DELAY_MILLIS = 500;
+
    //Server Variables
+   private ClientOptions options;
+   private String serverHost;
    private Socket socket;
    private DataOutputStream toServer;
    private DataInputStream fromServer;
+   //Where the arguments of the current command are read from: fromServer, or the current frame
+   private DataInputStream args;
+   //Framed messages: the frame being read, the body of the frame being written and the version in use
+   private FrameCodec.FrameInput frameIn;
+   private ByteArrayOutputStream frameOut;
+   private DataOutputStream frameBody;
+   private boolean framedIn;
+   private int versionIn;
+   private boolean framedOut;
+   //Held while a message is written, and framedOut changed, so the messages of the thread reading the
+   //server, such as PONG, and of the event thread never interleave
+   private final Object sending = new Object();
+   //The token which lets the client rejoin its game, or 0 if it was given none, and whether the player
+   //is leaving the game, so a lost connection is not retried
+   private long resumeToken;
+   private boolean leaving;
+   //Whether the game has ended, so the client waits to play again on the same connection, and whether
+   //that connection is still open, as the event thread last heard
+   private volatile boolean gameOver;
+   private boolean connected;
    Thread gameClient;
-   //Game Specific Variables
-   private int player;
-   private boolean isTurn;
+   //Changes to the display made by the thread reading the server
+   private ClientUpdateQueue display;
+   //Game Specific Variables, volatile where both the thread reading the server and the event thread use them
+   private volatile int player;
+   private volatile boolean isTurn;
+   private volatile boolean serverResolves;
+   private volatile boolean shipsConfirmed;
+   //The ends of each of the player's Ships and the Board they make, from when the ships are confirmed. The
+   //event thread makes them and never changes them after; the Board is then only used by the thread reading
+   //the server, which answers each FIRE from it, as the Grids belong to the event thread
+   private volatile int[] fleetEnds;
+   private volatile Board fleet;
+   private volatile GameRules rules;
+   //The Ships each player has left, kept by the thread reading the server; the labels only show them
+   private int playerShipsLeft;
+   private int opponentShipsLeft;
    private JComboBox<String> shipList;   
-   private Grid playerGrid;
-   private Grid opponentGrid;
+   private volatile Grid playerGrid;
+   private volatile Grid opponentGrid;
    private Ship[] playerShips;
    //Game Lobby Specific Varaibles
    private JTextField ipField;
    private JButton searchButton;
    private JLabel searchStatus;
    //GUI specific Variables
+   //The frames of a game are made for the first game and shown again for each game after it
    private JFrame shipGUI;
    private JFrame playerGUI;
+   private JPanel playerPanel;
+   private JPanel endPanel;
    private JButton returnButton;
+   private JButton rematchButton;
    private JButton quitButton;
+   private JButton quitShipButton;
    private JButton confirmButton;
    private JButton clearButton;
+   private JButton autoPlaceButton;
    private JLabel shipStatus;
    private JLabel gameStatus;
+   //Where the state of the game is shown once it has ended, gameStatus or shipStatus
+   private JLabel endStatus;
    private JLabel numPlayerShips;
    private JLabel numOpponentShips;
    
    /**
        * Sets up the GUI and connects to the server..
-       * @param args the line commands
+       * @param args the line commands, read as ClientOptions
        */
    public static void main(String[] args)   {
-      new BattleShipClient();
+      new BattleShipClient(ClientOptions.parse(args));
    }
 
    /**
-       * Sets up the GUI as well as the I/O streams from the socket.
+       * Sets up the GUI with the default ClientOptions.
        */   
    public BattleShipClient()   {
+      this(new ClientOptions());
+   }
+
+   /**
+       * Sets up the GUI.
+       * @param options how to connect to the server
+       */   
+   public BattleShipClient(ClientOptions options)   {
+      this.options = options;
+      display = new ClientUpdateQueue();
       shipList = new JComboBox<String>(ships);
       shipList.addActionListener(e -> updateActiveShip());
       shipStatus = new JLabel("Select a Ship from the list and then select two spaces.",
@@ -66,18 +139,84 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
        * Initializes the game's data, such as the Grids and Ships as well as the other instance variables.
        */ 
    public void initializeGameData()   {
-      playerGrid = new Grid(shipStatus);
-      opponentGrid = new Grid();
-      playerShips = new Ship[NUM_SHIPS];
-      createShips(playerShips);
-      shipStatus.setText("Select a Ship from the list and then select two spaces.");
-      gameStatus = new JLabel("WAITING FOR OTHER PLAYER", JLabel.CENTER);
-      numPlayerShips = new JLabel("" + NUM_SHIPS);
-      numOpponentShips = new JLabel("" + NUM_SHIPS);
+      resetLabels();
+      applyRules(GameRules.STANDARD);
+      playerShipsLeft = rules.getNumShips();
+      opponentShipsLeft = rules.getNumShips();
       isTurn = false;
+      serverResolves = false;
+      shipsConfirmed = false;
+      fleetEnds = null;
+      fleet = null;
+      resumeToken = 0;
+      leaving = false;
+      gameOver = false;
       gameClient = new Thread(this);
+   }
+
+   /**
+       * Resets the labels showing the state of the game, for a game about to start. They are made
+       * the first time, and kept in the frames of the game after that.
+       */ 
+   private void resetLabels()  {
+      if (gameStatus == null) {
+         gameStatus = new JLabel("", JLabel.CENTER);
+         numPlayerShips = new JLabel();
+         numOpponentShips = new JLabel();
+      }
+      gameStatus.setText("WAITING FOR OTHER PLAYER");
+      shipStatus.setText("Select a Ship from the list and then select two spaces.");
+   }
+
+   /**
+       * Readies the game's data for the next game on the same connection, a rematch or a game the player
+       * was paired into after going back to the lobby, when the server starts it. Called by the thread
+       * reading the server, which owns the state of the game; the display is reset on the event thread,
+       * which hides the frames of the last game and shows them again once the next one starts.
+       * @param rules the GameRules of the next game
+       */ 
+   private void startNextGame(GameRules rules)  {
+      gameOver = false;
+      isTurn = false;
+      serverResolves = false;
+      shipsConfirmed = false;
+      fleetEnds = null;
+      fleet = null;
+      resumeToken = 0;
+      leaving = false;
+      playerShipsLeft = rules.getNumShips();
+      opponentShipsLeft = rules.getNumShips();
+      display.post(() -> {
+         hideGameGUI();
+         resetLabels();
+         applyRules(rules);
+      });
+   }
+   
+   /**
+       * Readies the Grids, the Ships and the list of Ships for a game of the given GameRules, with
+       * no Ship placed and no shot fired. The Grids are made for the first game and reset after it.
+       * @param rules the size of the Grids and the fleet
+       */ 
+   public void applyRules(GameRules rules)   {
+      this.rules = rules;
+      if (playerGrid == null) {
+         playerGrid = new Grid(rules, shipStatus);
+         opponentGrid = new Grid(rules);
+      }
+      else  {
+         playerGrid.reset(rules);
+         opponentGrid.reset(rules);
+      }
+      playerShips = new Ship[rules.getNumShips()];
+      createShips(playerShips);
+      String[] labels = new String[rules.getNumShips()];
+      for (int i = 0; i < labels.length; i++)
+         labels[i] = rules.getShipLabel(i);
+      shipList.setModel(new DefaultComboBoxModel<String>(labels));
+      numPlayerShips.setText("" + rules.getNumShips());
+      numOpponentShips.setText("" + rules.getNumShips());
       updateActiveShip();
-      //~ addDefaultShips();
    }
    
    /**
@@ -85,62 +224,58 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
        * @param playerShips the specificed player's array
        */ 
    public void createShips(Ship[] playerShips)  {
-      playerShips[0] = new Ship(5);
-      playerShips[1] = new Ship(4);
-      playerShips[2] = new Ship(3);
-      playerShips[3] = new Ship(3);
-      playerShips[4] = new Ship(2);
+      for (int i = 0; i < playerShips.length; i++)
+         playerShips[i] = new Ship(rules.getShipLength(i));
    }
    
    /**
-       * Tester function used to reduce the hassle of testing by placing Ships in a default pattern.
+       * Removes every Ship from the player's Grid and places the whole fleet again at random, using
+       * the PlacementTables so that no placement has to be tried more than once.
        */ 
-   private void addDefaultShips() {
-      playerGrid.setCurrentShip(playerShips[0]);
-      playerGrid.setSpace(playerGrid.getSpace(0));
-      playerGrid.setSpace(playerGrid.getSpace(4));
-      playerGrid.setCurrentShip(playerShips[1]);
-      playerGrid.setSpace(playerGrid.getSpace(10));
-      playerGrid.setSpace(playerGrid.getSpace(13));
-      playerGrid.setCurrentShip(playerShips[2]);
-      playerGrid.setSpace(playerGrid.getSpace(20));
-      playerGrid.setSpace(playerGrid.getSpace(22));
-      playerGrid.setCurrentShip(playerShips[3]);
-      playerGrid.setSpace(playerGrid.getSpace(30));
-      playerGrid.setSpace(playerGrid.getSpace(32));
-      playerGrid.setCurrentShip(playerShips[4]);
-      playerGrid.setSpace(playerGrid.getSpace(40));
-      playerGrid.setSpace(playerGrid.getSpace(41));
+   public void autoPlaceShips() {
+      Board fleet = new Board(rules);
+      int[] ends = new int[2 * rules.getNumShips()];
+      if (!PlacementTable.placeRandomFleet(fleet, ends, new Random()))  {
+         shipStatus.setText("The Ships could not be placed, try again!");
+         return;
+      }
+      for (int i = 0; i < playerShips.length; i++) {
+         if (playerShips[i].isSet())   {
+            playerShips[i].clearSpaces();
+            playerGrid.removeShip(i);
+            playerShips[i] = new Ship(rules.getShipLength(i));
+         }
+      }
+      for (int i = 0; i < playerShips.length; i++)
+         playerGrid.placeShip(playerShips[i], i, ends[2 * i], ends[2 * i + 1]);
+      playerGrid.updateGridDisplay('O');
+      shipStatus.setText("Ships placed at random!");
+      updateActiveShip();
    }
    
    /** 
-       * Continues to send and receive data from the server as long as the server does not send
-       * a DONE command.
+       * Continues to send and receive data from the server until the connection is closed, resuming the
+       * game on a new connection if the old one is lost during a game.
        */  
    @Override
    public void run()   {
       System.out.println("WAITING TO RECEIVE COMMANDS FROM SERVER");
       try   {
-         while (true)  {
-            int cmd = fromServer.readInt();
-            System.out.println("THE SERVER'S CURRENT COMMAND IS: " + cmdToString(cmd));
-            if (cmd == GAME_OVER)   {
-               endOfGame();
-               return;
-            }
-            else if (cmd == QUIT_SHIP)   {
-               disableShipGUI();
-               shipStatus.setText("Game Over - Opponent quit!");
+         while (true)   {
+            try   {
+               receiveCommands();
                return;
             }
-            else if (cmd == DONE)  {
-               endGame();
-               return;
+            catch (IOException e)   {
+               System.out.println("LOST CONNECTION TO THE SERVER");
+               if (!resumeGame())
+                  throw e;
             }
-            else
-               executeCommand(cmd);
          }
       }
+      catch (SocketTimeoutException e)   {
+         System.out.println("THE SERVER STOPPED ANSWERING, THREAD CLOSING");
+      }
       catch (IOException e)   {
          System.out.println("THREAD CLOSING");
       }
@@ -153,63 +288,376 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
             System.out.println("FAILED TO CLOSE SOCKET/STREAMS");
             System.out.println(e.getMessage());
          }
+         display.post(this::connectionClosed);
       }
    }
    
+   /**
+       * Receives and executes the commands of the server, game after game, until the server closes the
+       * connection between games. Once a game has ended the server sends no PING, so the client waits
+       * without a time limit; DONE then means the opponent has left, REMATCH that they want a rematch,
+       * and LOBBY that the server's messages are bare again, as the player is back in the lobby.
+       * @throws IOException if there is a communication error between server/client during a game
+       */
+   private void receiveCommands() throws IOException   {
+      while (true)  {
+         int cmd;
+         try   {
+            cmd = readCommand();
+         }
+         catch (SocketTimeoutException e)  {
+            if (!gameOver)
+               throw e;
+            socket.setSoTimeout(0);
+            continue;
+         }
+         catch (IOException e)   {
+            if (!gameOver)
+               throw e;
+            System.out.println("THE SERVER CLOSED THE CONNECTION AFTER THE GAME");
+            return;
+         }
+         System.out.println("THE SERVER'S CURRENT COMMAND IS: " + cmdToString(cmd));
+         if (cmd == GAME_OVER)
+            endOfGame();
+         else if (cmd == QUIT_SHIP)   {
+            betweenGames();
+            display.post(() -> {
+               disableShipGUI();
+               shipStatus.setText("Game Over - Opponent quit!");
+               addReturnToLobbyFromShip();
+            });
+         }
+         else if (cmd == DONE && gameOver)   {
+            display.post(() -> {
+               endStatus.setText("Your opponent has left the game.");
+               rematchButton.setEnabled(false);
+            });
+         }
+         else if (cmd == DONE)
+            endGame();
+         else if (cmd == REMATCH)
+            display.post(() -> endStatus.setText("Your opponent wants a rematch!"));
+         else if (cmd == LOBBY)
+            framedIn = false;
+         else
+            executeCommand(cmd);
+      }
+   }
+
+   /**
+       * Leaves the game which has ended waiting on the same connection, with no time limit, to play
+       * again or be paired again.
+       * @throws IOException if the time limit cannot be taken off
+       */
+   private void betweenGames() throws IOException  {
+      gameOver = true;
+      isTurn = false;
+      socket.setSoTimeout(0);
+   }
+
+   /**
+       * Connects to the server again after the connection was lost and sends RESUME, waiting longer
+       * after each failed attempt. Only a client which was given a resume token, and whose player is
+       * not leaving the game, tries.
+       * @return true if RESUME was sent on a new connection, false otherwise
+       */
+   private boolean resumeGame()  {
+      if (resumeToken == 0 || leaving)
+         return false;
+      try   {
+         closeStreams();
+      }
+      catch (IOException e)   {
+         System.out.println("FAILED TO CLOSE SOCKET/STREAMS");
+      }
+      ServerConnector reconnect = new ServerConnector(new String[] { serverHost }, PORT,
+         options.getConnectTimeoutMillis());
+      long delay = RESUME_DELAY_MILLIS;
+      for (int attempt = 1; attempt <= RESUME_ATTEMPTS; attempt++)   {
+         String status = "Connection lost - reconnecting (" + attempt + " of " + RESUME_ATTEMPTS + ")";
+         display.post(() -> gameStatus.setText(status));
+         try   {
+            Thread.sleep(delay);
+         }
+         catch (InterruptedException e)   {
+            Thread.currentThread().interrupt();
+            return false;
+         }
+         delay *= 2;
+         try   {
+            openConnection(reconnect.connect());
+            send(RESUME, out -> out.writeLong(resumeToken));
+            System.out.println("RESUMING THE GAME");
+            return true;
+         }
+         catch (IOException e)   {
+            System.out.println("FAILED TO RESUME: " + e.getMessage());
+         }
+      }
+      return false;
+   }
+
+   /**
+       * Reads the next command from the server, bare or as a frame, leaving its arguments to be
+       * read from args.
+       * @return the protocol constant value sent by the server
+       * @throws IOException if there is a communication error between server/client
+       */
+   private int readCommand() throws IOException  {
+      if (!framedIn) {
+         args = fromServer;
+         return fromServer.readInt();
+      }
+      int cmd = frameIn.load(fromServer, versionIn);
+      args = frameIn.getData();
+      return cmd;
+   }
+
+   /**
+       * A MessageBody writes the arguments of a message to the server.
+       */
+   private interface MessageBody {
+      /**
+          * @param out the stream to write the arguments to
+          * @throws IOException if there is a communication error between server/client
+          */
+      void write(DataOutputStream out) throws IOException;
+   }
+
+   /**
+       * Sends a message without arguments to the server. May be called from any thread.
+       * @param cmd the protocol constant value of the message
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void send(int cmd) throws IOException   {
+      send(cmd, out -> {});
+   }
+
+   /**
+       * Sends a message to the server with a single write, bare or as a frame. May be called from any
+       * thread: the message is written whole before any other is started.
+       * @param cmd the protocol constant value of the message
+       * @param body writes the message's arguments
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void send(int cmd, MessageBody body) throws IOException   {
+      synchronized (sending)  {
+         body.write(begin(cmd));
+         end();
+      }
+   }
+
+   /**
+       * Starts a message to the server. Its arguments are written to the stream returned and the
+       * message is sent by end. Only called by send, holding the lock.
+       * @param cmd the protocol constant value of the message
+       * @return the stream to write the message's arguments to
+       * @throws IOException if there is a communication error between server/client
+       */
+   private DataOutputStream begin(int cmd) throws IOException  {
+      if (!framedOut)   {
+         toServer.writeInt(cmd);
+         return toServer;
+      }
+      frameOut.reset();
+      frameBody.writeByte(FrameCodec.VERSION);
+      frameBody.writeInt(cmd);
+      return frameBody;
+   }
+
+   /**
+       * Sends the message started by begin with a single write.
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void end() throws IOException {
+      if (framedOut) {
+         toServer.writeInt(frameOut.size());
+         frameOut.writeTo(toServer);
+      }
+      toServer.flush();
+   }
+
    /**
        * Given a protocol constant value which has been sent by the server, execute a specific command.
-       * The command may or may not send additional protocols back to the server.
+       * The command may or may not send additional protocols back to the server. Once the server has
+       * sent AUTHORITATIVE it resolves every shot, so FIRE and MARK only update the display. FRAMING is
+       * answered with HELLO, after which messages to the server are sent as frames; the server's own
+       * HELLO means the messages from the server are frames from then on. PING is answered with PONG,
+       * and from then on a server that stays silent for too long ends the game. TOKEN is kept for
+       * resuming the game, and SNAPSHOT brings the display up to date once it has resumed. RULES, sent
+       * before NAME, makes the Grids and Ships again for the game's GameRules. Either of them, once a
+       * game has ended, starts the next one on the same connection. Every change to the display is
+       * posted to the ClientUpdateQueue with the values it shows.
        * @param cmd a protocol constant value sent by the server
        * @throws IOException if there is a communication error between server/client
        */ 
    public void executeCommand(int cmd) throws IOException  {
-      if (cmd == NAME) {
-         player = fromServer.readInt();
+      if (cmd == RULES) {
+         byte[] bytes = new byte[GameRules.RULES_BYTES];
+         args.readFully(bytes);
+         GameRules newRules;
+         try   {
+            newRules = GameRules.fromBytes(bytes);
+         }
+         catch (IllegalArgumentException e)  {
+            throw new IOException("the server sent rules which cannot be played", e);
+         }
+         rules = newRules;
+         playerShipsLeft = newRules.getNumShips();
+         opponentShipsLeft = newRules.getNumShips();
+         //Between games the rules are applied as the next game is readied
+         if (gameOver)
+            startNextGame(newRules);
+         else
+            display.post(() -> applyRules(newRules));
+      }
+      else if (cmd == NAME) {
+         if (gameOver)
+            startNextGame(rules);
+         player = args.readInt();
          System.out.println("I AM " + player);
-         setVisible(false);
-         searchStatus.setText(" ");
-         setShipGUI();
+         display.post(() -> {
+            setVisible(false);
+            searchStatus.setText(" ");
+            setShipGUI();
+         });
+      }
+      else if (cmd == AUTHORITATIVE)   {
+         serverResolves = true;
+      }
+      else if (cmd == FRAMING)   {
+         synchronized (sending)  {
+            if (!framedOut)   {
+               send(HELLO, out -> out.writeByte(FrameCodec.VERSION));
+               framedOut = true;
+            }
+         }
+      }
+      else if (cmd == HELLO)  {
+         versionIn = args.readByte();
+         framedIn = true;
+      }
+      else if (cmd == PING)  {
+         //A server which sends PING and then stays silent for three intervals is gone
+         socket.setSoTimeout(3 * args.readInt());
+         send(PONG);
       }
       else if (cmd == FIRE)  {
-         int index = fromServer.readInt();
-         GridSpace space = playerGrid.getSpace(index);
-         space.setOutOfPlay();
-         boolean hit = space.isOccupied();
-         boolean sunk = checkShipStatus(space);
-         toServer.writeInt(SUCCESS);
-         toServer.writeInt(player);
-         toServer.writeInt(index);
-         toServer.writeBoolean(hit);
-         toServer.writeBoolean(sunk);
-         toServer.flush();
-         playerGrid.updateSpace(space, hit);
+         int index = args.readInt();
+         Board board = fleet;
+         if (board == null || index < 0 || index >= rules.getSpaces())  {
+            System.out.println("IGNORED FIRE AT " + index);
+            return;
+         }
+         boolean hit = board.isOccupied(index);
+         boolean sunk = board.fire(index) == Board.SUNK;
+         Grid grid = playerGrid;
+         if (!serverResolves) {
+            send(SUCCESS, out -> {
+               out.writeInt(player);
+               out.writeInt(index);
+               out.writeBoolean(hit);
+               out.writeBoolean(sunk);
+            });
+         }
          if (sunk)
-            updateShipCount(numPlayerShips);
+            playerShipsLeft--;
+         int left = playerShipsLeft;
+         display.post(() -> {
+            GridSpace space = grid.getSpace(index);
+            space.setOutOfPlay();
+            grid.updateSpace(space, hit);
+            numPlayerShips.setText("" + left);
+         });
       }
       else if (cmd == MARK)  {
-         int index = fromServer.readInt();
-         GridSpace space = opponentGrid.getSpace(index);
-         boolean success = fromServer.readBoolean();
-         boolean sunk = fromServer.readBoolean();
-         opponentGrid.updateSpace(space, success);
+         int index = args.readInt();
+         boolean success = args.readBoolean();
+         boolean sunk = args.readBoolean();
          if (sunk)
-            updateShipCount(numOpponentShips);
-         if (Integer.parseInt(numOpponentShips.getText()) == 0) {
-            toServer.writeInt(WIN);
-            toServer.writeInt(player);
-            toServer.flush();
-         }
-         else  {
-            toServer.writeInt(TURN);
-            toServer.writeInt(player);
-            toServer.flush();
-         }
+            opponentShipsLeft--;
+         int left = opponentShipsLeft;
+         Grid grid = opponentGrid;
+         display.post(() -> {
+            grid.updateSpace(grid.getSpace(index), success);
+            numOpponentShips.setText("" + left);
+         });
+         if (serverResolves)
+            return;
+         send(left == 0 ? WIN : TURN, out -> out.writeInt(player));
       }
       else if (cmd == TURN)   {
-         isTurn = fromServer.readBoolean();
-         setTurn();
+         boolean turn = args.readBoolean();
+         isTurn = turn;
+         display.post(() -> showTurn(turn));
+      }
+      else if (cmd == TOKEN)  {
+         resumeToken = args.readLong();
+      }
+      else if (cmd == SNAPSHOT)  {
+         applySnapshot();
       }
    }
+
+   /**
+       * Brings the game up to date with the SNAPSHOT sent by the server after RESUME: marks every
+       * shot on both Grids, sets the number of Ships each player has left and whose turn it is. If
+       * the server never received the player's confirmation of their ships it is sent again. The
+       * shots at the player are marked on the fleet at once, as the next FIRE is answered from it;
+       * the Grids are marked in a single update of the display.
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void applySnapshot() throws IOException  {
+      boolean playing = args.readBoolean();
+      boolean confirmed = args.readBoolean();
+      boolean turn = args.readBoolean();
+      isTurn = turn;
+      playerShipsLeft = rules.getNumShips() - args.readByte();
+      opponentShipsLeft = rules.getNumShips() - args.readByte();
+      int playerLeft = playerShipsLeft;
+      int opponentLeft = opponentShipsLeft;
+      BitSet shotsAtYou = readMask();
+      BitSet hitsOnYou = readMask();
+      BitSet yourShots = readMask();
+      BitSet yourHits = readMask();
+      Grid ownGrid = playerGrid;
+      Grid targetGrid = opponentGrid;
+      Board board = fleet;
+      if (board != null)   {
+         for (int i = shotsAtYou.nextSetBit(0); i >= 0; i = shotsAtYou.nextSetBit(i + 1))
+            board.markShot(i);
+      }
+      display.post(() -> {
+         numPlayerShips.setText("" + playerLeft);
+         numOpponentShips.setText("" + opponentLeft);
+         for (int i = shotsAtYou.nextSetBit(0); i >= 0; i = shotsAtYou.nextSetBit(i + 1))   {
+            GridSpace space = ownGrid.getSpace(i);
+            space.setOutOfPlay();
+            ownGrid.updateSpace(space, hitsOnYou.get(i));
+         }
+         for (int i = yourShots.nextSetBit(0); i >= 0; i = yourShots.nextSetBit(i + 1))   {
+            GridSpace space = targetGrid.getSpace(i);
+            targetGrid.updateSpace(space, yourHits.get(i));
+            space.setOutOfPlay();
+         }
+         if (playing)
+            showTurn(turn);
+      });
+      if (!playing && shipsConfirmed && !confirmed)
+         sendFleet(fleetEnds);
+   }
+
+   /**
+       * Reads one of the masks of a SNAPSHOT.
+       * @return the spaces in the mask
+       * @throws IOException if there is a communication error between server/client
+       */
+   private BitSet readMask() throws IOException  {
+      byte[] mask = new byte[rules.getMaskBytes()];
+      args.readFully(mask);
+      return BitSet.valueOf(mask);
+   }
    
    /**
        * Called when the GAME_OVER command is sent by the server, preventing the player from
@@ -217,15 +665,17 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
        * @throws IOException if there is a communication error between server/client
        */ 
    public void endOfGame() throws IOException   {
-      isTurn = false;
-      int winner = fromServer.readInt();
-      addReturnToLobby();
-      if (player == winner)   {
-         gameStatus.setText("GAME OVER - You won!");
-      }
-      else  {
-         gameStatus.setText("GAME OVER - You lost!");
-      }
+      boolean won = player == args.readInt();
+      betweenGames();
+      display.post(() -> {
+         addReturnToLobby();
+         if (won)  {
+            gameStatus.setText("GAME OVER - You won!");
+         }
+         else  {
+            gameStatus.setText("GAME OVER - You lost!");
+         }
+      });
    }
    
    /**
@@ -234,9 +684,17 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
        * @throws IOException if there is a communication error between server/client
        */ 
    public void endGame() throws IOException  {
-      isTurn = false;
-      gameStatus.setText("GAME HAS ENDED - Opponent quit!");
-      addReturnToLobby();
+      betweenGames();
+      display.post(() -> {
+         if (shipGUI.isVisible())   {
+            disableShipGUI();
+            shipStatus.setText("GAME HAS ENDED - Opponent quit!");
+            addReturnToLobbyFromShip();
+            return;
+         }
+         gameStatus.setText("GAME HAS ENDED - Opponent quit!");
+         addReturnToLobby();
+      });
    }
    
    /**
@@ -252,7 +710,7 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
       JLabel gameLabel = new JLabel("The game will begin after another player has been found.", JLabel.CENTER);
       searchButton = new JButton("Search for Game");
       JLabel ipLabel = new JLabel("IP Address: ");
-      ipField = new JTextField(IP_WIDTH);
+      ipField = new JTextField(options.getHost(), IP_WIDTH);
       ipField.addActionListener(e -> searchForGame());
       searchStatus = new JLabel(" ", JLabel.CENTER);
       searchButton.addActionListener(e -> searchForGame());
@@ -297,38 +755,43 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
    }
    
    /**
-       * Creates a GUI for the Ship placement phase of the game.
+       * Shows the GUI for the Ship placement phase of the game, creating it for the first game. The
+       * player's Grid is moved back into it from the frame of the last game.
        */ 
    public void setShipGUI()   {
       final int FRAME_WIDTH = 700;
       final int FRAME_HEIGHT = 900;
       isTurn = true;
-      shipGUI = new JFrame();
-      JPanel upperPanel = new JPanel();
-      JPanel infoPanel = new JPanel(new BorderLayout());
-      upperPanel.add(new JLabel("Selected Ship: "));
-      upperPanel.add(shipList);
-      confirmButton = new JButton("Confirm Ships");
-      confirmButton.addActionListener(e -> validateShips());
-      quitButton = new JButton("Quit Game");
-      quitButton.addActionListener(e -> quitShipScreen());
-      clearButton = new JButton("Clear Ship");
-      clearButton.addActionListener(e -> resetShip());
-      upperPanel.add(clearButton);
-      upperPanel.add(confirmButton);
-      infoPanel.add(upperPanel, BorderLayout.NORTH);
-      infoPanel.add(shipStatus, BorderLayout.SOUTH);
-      shipGUI.add(infoPanel, BorderLayout.NORTH);
+      if (shipGUI == null) {
+         shipGUI = new JFrame();
+         JPanel upperPanel = new JPanel();
+         JPanel infoPanel = new JPanel(new BorderLayout());
+         upperPanel.add(new JLabel("Selected Ship: "));
+         upperPanel.add(shipList);
+         confirmButton = new JButton("Confirm Ships");
+         quitShipButton = new JButton("Quit Game");
+         quitShipButton.addActionListener(e -> quitShipScreen());
+         clearButton = new JButton("Clear Ship");
+         autoPlaceButton = new JButton("Auto Place");
+         upperPanel.add(clearButton);
+         upperPanel.add(autoPlaceButton);
+         upperPanel.add(confirmButton);
+         infoPanel.add(upperPanel, BorderLayout.NORTH);
+         infoPanel.add(shipStatus, BorderLayout.SOUTH);
+         shipGUI.add(infoPanel, BorderLayout.NORTH);
+         shipGUI.setTitle("BattleShip - Set Ships");
+         shipGUI.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+         shipGUI.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+      }
+      enableShipGUI();
       shipGUI.add(playerGrid);
-      shipGUI.add(quitButton, BorderLayout.SOUTH);
-      shipGUI.setTitle("BattleShip - Set Ships");
-      shipGUI.setSize(FRAME_WIDTH, FRAME_HEIGHT);
-      shipGUI.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+      showQuitButton(shipGUI, quitShipButton);
       shipGUI.setVisible(true);
    }
    
    /**
-       * Creates a GUI for a specified player with a specified opponent for the main phase of the game.
+       * Shows the GUI for a specified player with a specified opponent for the main phase of the game,
+       * creating it for the first game.
        * @param playerGrid the player
        * @param opponentGrid the opponent of player
        */ 
@@ -336,84 +799,238 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
       final int FRAME_WIDTH = 1050;
       final int FRAME_HEIGHT = 500;
       isTurn = false;
-      playerGUI = new JFrame();
-      JPanel p1 = new JPanel(new BorderLayout());
-      JPanel p2 = new JPanel(new BorderLayout());
-      JPanel p1info = new JPanel();
-      JPanel p2info = new JPanel();
-      p1info.add(new JLabel("Your Remaining Ships: "));
-      p1info.add(numPlayerShips);
-      p1.add(p1info, BorderLayout.NORTH);
-      p1.add(playerGrid);
-      p2info.add(new JLabel("Opponent's Remaining Ships: "));
-      p2info.add(numOpponentShips);
-      p2.add(p2info, BorderLayout.NORTH);
-      p2.add(opponentGrid);
+      if (playerGUI == null)  {
+         playerGUI = new JFrame();
+         playerPanel = new JPanel(new BorderLayout());
+         JPanel p2 = new JPanel(new BorderLayout());
+         JPanel p1info = new JPanel();
+         JPanel p2info = new JPanel();
+         p1info.add(new JLabel("Your Remaining Ships: "));
+         p1info.add(numPlayerShips);
+         playerPanel.add(p1info, BorderLayout.NORTH);
+         p2info.add(new JLabel("Opponent's Remaining Ships: "));
+         p2info.add(numOpponentShips);
+         p2.add(p2info, BorderLayout.NORTH);
+         p2.add(opponentGrid);
+         opponentGrid.setClickListener(space -> sendFireCommand(space));
+         quitButton = new JButton("Quit Game");
+         quitButton.addActionListener(e -> quitGame()); 
+         playerGUI.add(gameStatus, BorderLayout.NORTH);
+         playerGUI.add(playerPanel, BorderLayout.WEST);
+         playerGUI.add(p2, BorderLayout.EAST);
+         playerGUI.setFocusable(true);
+         playerGUI.setSize(FRAME_WIDTH, FRAME_HEIGHT);
+         playerGUI.setTitle("BattleShip - Game");
+         playerGUI.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+      }
+      playerPanel.add(playerGrid);
       opponentGrid.shipsAreSet();
-      addActionListeners();
-      quitButton = new JButton("Quit Game");
-      quitButton.addActionListener(e -> quitGame()); 
-      playerGUI.add(gameStatus, BorderLayout.NORTH);
-      playerGUI.add(p1, BorderLayout.WEST);
-      playerGUI.add(p2, BorderLayout.EAST);
-      playerGUI.add(quitButton, BorderLayout.SOUTH);   
-      playerGUI.setFocusable(true);
-      playerGUI.setSize(FRAME_WIDTH, FRAME_HEIGHT);
-      playerGUI.setTitle("BattleShip - Game");
-      playerGUI.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+      showQuitButton(playerGUI, quitButton);
       playerGUI.setVisible(true);
    }
+
+   /**
+       * Puts a frame's quit button back at its foot, where the buttons shown once the last game
+       * ended were.
+       * @param frame the frame of the game
+       * @param quit the frame's quit button
+       */ 
+   private void showQuitButton(JFrame frame, JButton quit)   {
+      if (endPanel != null && endPanel.getParent() == frame.getContentPane())
+         frame.remove(endPanel);
+      frame.add(quit, BorderLayout.SOUTH);
+      quit.setVisible(true);
+      frame.revalidate();
+      frame.repaint();
+   }
    
    /**
-       * Adds a return to lobby button to the game in order to play additional games.
+       * Adds a return to lobby button, and a rematch button, to the game in order to play additional games.
        * To be used if a player quits or the game has been won.
        */ 
    public void addReturnToLobby()   {
-      returnButton = new JButton("Return to Lobby");
-      returnButton.addActionListener(e -> returnToLobby());
-      playerGUI.add(returnButton, BorderLayout.SOUTH);
+      playerGUI.add(createEndPanel(gameStatus), BorderLayout.SOUTH);
       quitButton.setVisible(false);
-      returnButton.setVisible(true);
    }
    
    /**
-       * Adds a return to lobby button to the game in the ship placement GUI in order to play additional games.
-       * To be used if a player quits during the ship placement phase.
+       * Adds a return to lobby button, and a rematch button, to the game in the ship placement GUI in order
+       * to play additional games. To be used if a player quits during the ship placement phase.
        */ 
    public void addReturnToLobbyFromShip()   {
+      shipGUI.add(createEndPanel(shipStatus), BorderLayout.SOUTH);
+      quitShipButton.setVisible(false);
+   }
+
+   /**
+       * Creates the buttons shown once a game has ended: Rematch, which asks the opponent to play again,
+       * and Return to Lobby.
+       * @param status the label showing the state of the game, where the answer to a rematch is shown
+       * @return the panel holding both buttons
+       */ 
+   private JPanel createEndPanel(JLabel status)   {
+      endStatus = status;
       returnButton = new JButton("Return to Lobby");
       returnButton.addActionListener(e -> returnToLobby());
-      shipGUI.add(returnButton, BorderLayout.SOUTH);
-      quitButton.setVisible(false);
-      returnButton.setVisible(true);
+      rematchButton = new JButton("Rematch");
+      rematchButton.addActionListener(e -> requestRematch());
+      rematchButton.setEnabled(connected);
+      endPanel = new JPanel();
+      endPanel.add(rematchButton);
+      endPanel.add(returnButton);
+      return endPanel;
+   }
+
+   /**
+       * Sends a REMATCH message to the server, asking the opponent to play again.
+       */ 
+   public void requestRematch()  {
+      rematchButton.setEnabled(false);
+      try   {
+         send(REMATCH);
+         endStatus.setText("Waiting for your opponent to accept the rematch.");
+      }
+      catch (IOException e)   {
+         System.out.println("ERROR SENDING REMATCH MESSAGE");
+      }
    }
    
    /**
-       * Disposes of the current game's GUIs and reinitializes the game's data in order to play again.
+       * Hides the current game's GUIs and shows the lobby. While the connection is open a LOBBY
+       * message asks the server to pair the player again on it; otherwise the game's data is
+       * reinitialized in order to search again.
        */ 
    public void returnToLobby()   {
-      shipGUI.dispose();
-      playerGUI.dispose();
+      hideGameGUI();
       setVisible(true);
-      initializeGameData();
-      searchButton.addActionListener(e -> searchForGame());
-      ipField.addActionListener(e -> searchForGame());
+      if (!connected)   {
+         initializeGameData();
+         enableSearch();
+         return;
+      }
+      removeButtonListeners(searchButton);
+      removeTextFieldListeners(ipField);
+      try   {
+         synchronized (sending)  {
+            send(LOBBY);
+            framedOut = false;
+         }
+         searchStatus.setText("Back in the lobby: waiting for other player.");
+      }
+      catch (IOException e)   {
+         //The thread reading the server sees the connection close and lets the player search again
+         System.out.println("ERROR SENDING LOBBY MESSAGE");
+         try   {
+            socket.close();
+         }
+         catch (IOException closing)   {
+            System.out.println("FAILED TO CLOSE SOCKET");
+         }
+      }
+   }
+
+   /**
+       * Hides the current game's GUIs, those which have been made, to be shown again in the next game.
+       */ 
+   private void hideGameGUI()   {
+      if (shipGUI != null)
+         shipGUI.setVisible(false);
+      if (playerGUI != null)
+         playerGUI.setVisible(false);
+   }
+
+   /**
+       * Called on the event thread once the thread reading the server has closed the connection. In the
+       * lobby the player may search again; after a game there can be no rematch, and returning to the
+       * lobby lets them search again.
+       */ 
+   private void connectionClosed()  {
+      connected = false;
+      if (isVisible())  {
+         initializeGameData();
+         enableSearch();
+         searchStatus.setText("The connection to the server closed: search again.");
+      }
+      else if (rematchButton != null)
+         rematchButton.setEnabled(false);
    }
    
    /**
-       * Attempts to create a connection to the IP Address given in the JTextField in the GUI.
-       * If it succeeds it then starts a thread, and disables the searchButton from searching again.
+       * Searches for a game at the addresses given in the JTextField in the GUI, separated by commas or
+       * spaces. The connection is made on its own thread, so the lobby stays responsive, and while it is
+       * made the searchButton cancels it instead.
        */ 
    public void searchForGame()  {
-      String hostName = ipField.getText();
-      if (openConnection(hostName)) {
-         searchStatus.setText("Connection successful: waiting for other player.");
-         removeButtonListeners(searchButton);
-         removeTextFieldListeners(ipField);
-         gameClient.start();
+      String[] hosts = ServerConnector.parseHosts(ipField.getText());
+      if (hosts.length == 0)  {
+         searchStatus.setText("Enter the address of a server.");
+         return;
       }
-      else
-         searchStatus.setText("Connection failed: try again.");
+      ServerConnector search = new ServerConnector(hosts, PORT, options.getConnectTimeoutMillis());
+      removeButtonListeners(searchButton);
+      removeTextFieldListeners(ipField);
+      searchButton.setText("Cancel");
+      searchButton.addActionListener(e -> search.cancel());
+      Thread searching = new Thread(() -> {
+         int attempts = options.getConnectAttempts();
+         try   {
+            Socket found = search.connect(attempts, options.getBackoffMillis(), attempt -> display.post(() ->
+               searchStatus.setText("Connecting (attempt " + attempt + " of " + attempts + ")...")));
+            display.post(() -> startGame(search, found));
+         }
+         catch (IOException e)   {
+            System.err.println("Cannot connect to the server: " + e.getMessage());
+            String status = search.isCancelled() ? "Search cancelled." : "Connection failed: try again.";
+            display.post(() -> {
+               searchStatus.setText(status);
+               enableSearch();
+            });
+         }
+      }, "Search for Game");
+      searching.setDaemon(true);
+      searching.start();
+   }
+
+   /**
+       * Plays on the connection found by a search, unless the search was cancelled before it was
+       * found, and starts the thread which receives the commands of the server.
+       * @param search the ServerConnector which made the connection
+       * @param found the connected socket
+       */
+   private void startGame(ServerConnector search, Socket found)   {
+      try   {
+         if (search.isCancelled())
+            throw new InterruptedIOException("the search was cancelled");
+         openConnection(found);
+      }
+      catch (IOException e)   {
+         try   {
+            found.close();
+         }
+         catch (IOException closing)   {
+            System.out.println("FAILED TO CLOSE SOCKET");
+         }
+         searchStatus.setText(search.isCancelled() ? "Search cancelled." : "Connection failed: try again.");
+         enableSearch();
+         return;
+      }
+      serverHost = found.getInetAddress().getHostAddress();
+      connected = true;
+      removeButtonListeners(searchButton);
+      searchButton.setText("Search for Game");
+      searchStatus.setText("Connection successful: waiting for other player.");
+      gameClient.start();
+   }
+
+   /**
+       * Lets the player search for a game with the searchButton or the JTextField.
+       */
+   private void enableSearch()   {
+      removeButtonListeners(searchButton);
+      removeTextFieldListeners(ipField);
+      searchButton.setText("Search for Game");
+      searchButton.addActionListener(e -> searchForGame());
+      ipField.addActionListener(e -> searchForGame());
    }
    
    /**
@@ -434,45 +1051,55 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
       if (currentShip.isSet())   {
          int shipLength = currentShip.getLength();      
          currentShip.clearSpaces();
+         playerGrid.removeShip(shipIndex);
          playerShips[shipIndex] = new Ship(shipLength);
          playerGrid.updateGridDisplay('O');
-         shipStatus.setText("Removed " + getShipString(shipIndex) + "!");
+         shipStatus.setText("Removed " + rules.getShipName(shipIndex) + "!");
       }
       else  {
-         shipStatus.setText(getShipString(shipIndex) + " has not been " +
+         shipStatus.setText(rules.getShipName(shipIndex) + " has not been " +
             "set yet!");
       }
       updateActiveShip();
    }
    
    /**
-       * Checks the status of a Ship at a given GridSpace. If it finds a Ship at the given GridSpace
-       * and the Ship has been sunk it returns true. If it finds a Ship which has not been sunk, or
-       * does not find a Ship at all it will return false.
-       * @param space the GridSpace which was fired at
-       * @return true if a Ship at the space has been sunk, false otherwise
-       */    
-   public boolean checkShipStatus(GridSpace space) {
+       * Confirms the player's ships: keeps their ends, and the Board they make for answering the
+       * server's FIRE commands, and sends them to the server. Called on the event thread.
+       */
+   public void sendConfirmMessage() {
+      int[] ends = new int[2 * playerShips.length];
       for (int i = 0; i < playerShips.length; i++) {
-         if (playerShips[i].atSpace(space))
-            return playerShips[i].isSunk();
+         ends[2 * i] = playerShips[i].getFirstSpace().getSingleIndex(rules.getDimension());
+         ends[2 * i + 1] = playerShips[i].getLastSpace().getSingleIndex(rules.getDimension());
       }
-      return false;
+      Board board = new Board(rules);
+      PlacementTable.placeFleet(board, ends);
+      fleetEnds = ends;
+      fleet = board;
+      shipsConfirmed = true;
+      sendFleet(ends);
    }
-   
+
    /**
-       * Sends a CONFIRM_SHIPS message to the server.
+       * Sends a CONFIRM_SHIPS message to the server, or a CONFIRM_FLEET message with the ends of
+       * every Ship if the server resolves shots. May be called from any thread.
+       * @param ends the two ends of each of the player's Ships
        */
-   public void sendConfirmMessage() {
-         try   {
-            toServer.writeInt(CONFIRM_SHIPS);
-            toServer.writeBoolean(true);
-            toServer.flush();
-         }
-         catch (IOException e)   {
-            System.out.println("ERROR SENDING CONFIRM MESSAGE");
-            e.printStackTrace();
-         }
+   private void sendFleet(int[] ends)  {
+      try   {
+         if (serverResolves)
+            send(CONFIRM_FLEET, out -> {
+               for (int end : ends)
+                  out.writeInt(end);
+            });
+         else
+            send(CONFIRM_SHIPS, out -> out.writeBoolean(true));
+      }
+      catch (IOException e)   {
+         System.out.println("ERROR SENDING CONFIRM MESSAGE");
+         e.printStackTrace();
+      }
    }
    
    /**
@@ -480,13 +1107,13 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
        */
    public void quitGame()  {
       if (isTurn) {
+         leaving = true;
          try   {
-            toServer.writeInt(QUIT);
-            toServer.writeInt(player);
-            toServer.flush();
+            send(QUIT, out -> out.writeInt(player));
             isTurn = false;
             gameStatus.setText("Game Over - You quit!");
             addReturnToLobby();
+            gameOver = true;
          }
          catch (IOException e)   {
             System.out.println("ERROR SENDING QUIT MESSAGE");
@@ -500,14 +1127,14 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
        * JButton to return to lobby.
        */
    public void quitShipScreen()  {
+      leaving = true;
       try   {
-         toServer.writeInt(QUIT_SHIP);
-         toServer.writeInt(player);
-         toServer.flush();
+         send(QUIT_SHIP, out -> out.writeInt(player));
          isTurn = false;
          shipStatus.setText("Game Over - You quit!");
          disableShipGUI();
          addReturnToLobbyFromShip();
+         gameOver = true;
       }
       catch (IOException e)   {
          System.out.println("ERROR SENDING QUIT_SHIP MESSAGE");
@@ -521,6 +1148,17 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
    public void disableShipGUI()  {
       removeButtonListeners(confirmButton);
       removeButtonListeners(clearButton);
+      removeButtonListeners(autoPlaceButton);
+   }
+
+   /**
+       * Adds the ActionListeners to the Ship placement GUI, which a game that ended may have removed.
+       */
+   private void enableShipGUI()  {
+      disableShipGUI();
+      confirmButton.addActionListener(e -> validateShips());
+      clearButton.addActionListener(e -> resetShip());
+      autoPlaceButton.addActionListener(e -> autoPlaceShips());
    }
    
    /**
@@ -551,26 +1189,13 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
        * @return true if all of the Ships have been placed, false otherwise
        */ 
    public boolean areShipsPlaced()  {
-      for (int i = 0; i < NUM_SHIPS; i++) {
+      for (int i = 0; i < playerShips.length; i++) {
          if (!playerShips[i].isSet())
             return false;
       }
       return true;
    }
    
-   /**
-       * Adds an ActionListener to every GridSpace in the opponent's Grid. The ActionListener
-       * is for the FIRE command which communicates with the server.
-       */   
-   public void addActionListeners() {
-      for (int i = 0; i < GRID_DIMENSION; i++)  {
-         for (int j = 0; j < GRID_DIMENSION; j++)  {
-            GridSpace tmp = opponentGrid.getSpace(i, j);
-            tmp.addActionListener(e -> sendFireCommand(tmp));
-         }
-      }
-   }
-   
    /**
        * Removes the ActionListeners for a given JButton.
        * @param button the JButton which should have its listeners removed
@@ -592,34 +1217,22 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
    }
    
    /**
-       * Removes the ActionListeners for a given space and replaces them with a new listener.
-       * The new listener warns that this space has already been fired at.
-       * @param space the GridSpace which should have its listeners removed
-       */
-   public void removeActionListeners(GridSpace space) {
-      ActionListener[] listeners = space.getActionListeners();
-      for (int i = 0; i < listeners.length; i++)
-         space.removeActionListener(listeners[i]);
-      space.addActionListener(e -> invalidSpaceMessage());
-   }
-   
-   /**
-       * Fires a shot at the opponent's grid if it is the player's turn.
+       * Fires a shot at the opponent's grid if it is the player's turn, unless the space has already
+       * been fired at, which is warned of instead. The space is marked out of play once fired at.
        * @param space the GridSpace being fired at
        */
    public void sendFireCommand(GridSpace space) {
-      if (isTurn) {
+      if (isTurn && space.isOutOfPlay())
+         invalidSpaceMessage();
+      else if (isTurn) {
          try   {
-            toServer.writeInt(FIRE);
-            if (player == 0)
-               toServer.writeInt(1);
-            if (player == 1)
-               toServer.writeInt(0);
-            int location = space.getSingleIndex(GRID_DIMENSION);
-            toServer.writeInt(location);
+            int location = space.getSingleIndex(rules.getDimension());
+            send(FIRE, out -> {
+               out.writeInt(1 - player);
+               out.writeInt(location);
+            });
             System.out.println("Client" + player + " FIRING AT " + location + ".");
-            toServer.flush();
-            removeActionListeners(space);
+            space.setOutOfPlay();
          }
          catch (IOException e)   {
             System.out.println("ERROR FIRING");
@@ -636,47 +1249,33 @@ public class BattleShipClient extends JFrame implements Runnable, BattleShippabl
    }
    
    /**
-       * Sets the turn of the player based on the current value of isTurn, updating the GUI label value.
+       * Shows whose turn it is on the GUI label.
+       * @param turn true if it is the player's turn, false otherwise
        */ 
-   public void setTurn()  {
-      if (isTurn)
+   public void showTurn(boolean turn)  {
+      if (turn)
          gameStatus.setText("Your Turn");
       else
          gameStatus.setText("Opponent's Turn");
    }
    
    /**
-       * Decrements the given label's text value by one.
-       * @param label the label to be decremented
-       */ 
-   public void updateShipCount(JLabel label) {
-      int newCount = Integer.parseInt(label.getText()) - 1;
-      label.setText("" + newCount);
-   }
-   
-   /**
-       * Creates a socket with the PORT and opens its input 
-       * and output streams, fromServer and toServer. 
+       * Opens the input and output streams of a socket connected by a ServerConnector, fromServer
+       * and toServer. Both are buffered, so each message is sent with a single write when it is
+       * flushed. Messages start out bare until the server offers frames.
+       * @param socket the connected socket
+       * @throws IOException if the streams cannot be opened
        */
-   private boolean openConnection(String serverHost)    {
-      try   {
-         this.socket = new Socket(serverHost, PORT);
-         this.fromServer = new DataInputStream(socket.getInputStream());
-         this.toServer = new DataOutputStream(socket.getOutputStream());
-         return true;
-      }
-      catch (SecurityException e)      {
-         System.err.print("a security manager exists: ");
-         System.err.println("its checkConnect doesn't allow the connection");
-         return false;
-      }
-      catch (UnknownHostException e)       {
-         System.err.println("The IP address of the host could not be found");
-         return false;
-      }
-      catch (IOException e)       {
-         System.err.println("Cannot connect to the server \"" + serverHost + "\"");
-         return false;
+   private void openConnection(Socket socket) throws IOException    {
+      this.socket = socket;
+      this.fromServer = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      frameIn = new FrameCodec.FrameInput();
+      framedIn = false;
+      synchronized (sending)  {
+         this.toServer = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+         frameOut = new ByteArrayOutputStream(FrameCodec.MAX_FRAME_BYTES);
+         frameBody = new DataOutputStream(frameOut);
+         framedOut = false;
       }
    }
 }
\ No newline at end of file
@@ -1,249 +1,451 @@
-/** 
-* Defines the thread class for running a new game. It processes commands sent by both
-* of the clients, and appropriately sends commands in response to them. It starts off by
-* by sending a NAME to each client.
-* 
+/**
+* Defines the thread class for running a new game. Each client's commands are read by a reader
+* task of their own as soon as they arrive, and are handed to the game thread which alone applies
+* them to the game's GameSession, so a client that is slow to answer never holds up the commands
+* of the other. The session's deadlines run on the shared HashedWheelTimer and are handed to the game
+* thread in the same way, so a client that vanishes without closing its connection still ends the game
+* and both sockets are closed. It starts off by sending a NAME to each client.
+* <p>
+* Given a ResumeRegistry each player is issued a resume token. A player whose connection is lost may come
+* back on a new socket while the session holds the game for them: the new socket replaces the old one and
+* gets a reader task of its own.
+* </p>
+* <p>
+* A game started without a second socket is played against a ComputerPlayer, which takes the place of
+* player 1 and answers the session on the game thread.
+* </p>
+* <p>
+* Given a Matchmaker the game thread outlives the first game. Once it has ended, a player who goes back to
+* the lobby has their connection handed to the Matchmaker as soon as they are sent LOBBY, with anything they
+* sent after it which their reader task had already read, and when both players ask for a rematch the next
+* game is played on the same sockets, reader tasks and thread. A reader task which reads LOBBY waits for the
+* game thread to apply it, and carries on reading if the player was not handed back.
+* </p>
+*
 * @author Alex Perrino
 * @version November 29, 2017
 */
 import java.io.*;
 import java.net.*;
-import java.awt.*;
-import javax.swing.*;
-import javax.swing.text.DefaultCaret;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
 public class BattleShipGame implements Runnable, BattleShippable  {
-   //Already opened sockets
-   private Socket socket0; 
-   private Socket socket1; 
+   //Already opened sockets of each player, replaced when a player resumes; player 1's is null
+   //when they are a ComputerPlayer, and a player's is null once they have gone back to the lobby
+   private Socket[] sockets;
    //Place where the messages of the log are reported
-   private JTextArea textAreaLog;
+   private ServerLog serverLog;
    //The server numbers each game: report this number when outputting
    private int gameNumber;
-   //Client DataStreams
-   private DataInputStream fromClient0;
-   private DataOutputStream toClient0; 
-   private DataInputStream fromClient1;
-   private DataOutputStream toClient1;
-   
+   //Starts the reader task of each client
+   private GameThreads gameThreads;
+   //Settings of the server
+   private ServerOptions options;
+   //Updated with the result of the game, if set
+   private PlayerRatings ratings;
+   //Records the events of the game, if set
+   private GameJournal journal;
+   //Issues the resume tokens of the players, if set
+   private ResumeRegistry resumes;
+   //Pairs the players who go back to the lobby again, and numbers the rematches, if set
+   private Matchmaker matchmaker;
+   //Whether the game has ended, after which no player may resume
+   private boolean closed;
+   //The stream each reader task reads, only touched by the game thread
+   private DataInputStream[] fromClients;
+   //The LOBBY commands whose reader tasks wait to hear if their player was handed back to the Matchmaker,
+   //and whether the game thread has ended, after which none will be; guarded by this
+   private List<CompletableFuture<Boolean>> lobbyRequests;
+   private boolean ended;
+   //Links to each client, replaced when a player resumes; player 1's is the ComputerPlayer, if any
+   private PlayerLink[] links;
+   //State of the game, only touched by the game thread but replaced by a rematch
+   private volatile GameSession session;
+   //Work handed to the game thread by the reader tasks
+   private BlockingQueue<GameEvent> events;
+
+   /**
+       * Something for the game thread to apply to the session.
+       */
+   private interface GameEvent   {
+      void apply() throws IOException;
+   }
+
    /**
        * Receives the open socket so that input/output streams can be attached
-       * and it receives the JTextArea where the messages will be logged.
+       * and it receives the ServerLog where the messages will be logged.
        * It keeps track of which client it's interacting with.
        * @param s0 a socket that is opened already
-       * @param s1 a socket that is opened already
-       * @param tA a JTextArea that receives messages
+       * @param s1 a socket that is opened already, or null to play against a ComputerPlayer
+       * @param log the ServerLog that receives messages
        * @param gN the game number (used for reporting purposes)
+       * @param gT starts the reader task of each client
+       * @param opts the settings of the server
        */
-   public BattleShipGame(Socket s0, Socket s1, JTextArea tA, int gN)   {
-      socket0 = s0;
-      socket1 = s1;
-      textAreaLog = tA;
+   public BattleShipGame(Socket s0, Socket s1, ServerLog log, int gN, GameThreads gT, ServerOptions opts)   {
+      sockets = new Socket[] { s0, s1 };
+      serverLog = log;
       gameNumber = gN;
+      gameThreads = gT;
+      options = opts;
+      events = new LinkedBlockingQueue<GameEvent>();
+      fromClients = new DataInputStream[2];
+      lobbyRequests = new ArrayList<CompletableFuture<Boolean>>();
+   }
+
+   /**
+       * Sets the PlayerRatings updated with the result of the game. Must be called before the
+       * game is started.
+       * @param ratings the ratings of the players
+       */
+   public void setRatings(PlayerRatings ratings)   {
+      this.ratings = ratings;
    }
-   
+
    /**
-       * Helper function to report messages to the textAreaLog which is an instance variable. 
-       * It keeps the last appended line showing at the bottom.
+       * Sets the GameJournal which records the events of the game. Must be called before the game
+       * is started.
+       * @param journal where the events are recorded, or null for nowhere
+       */
+   public void setJournal(GameJournal journal)   {
+      this.journal = journal;
+   }
+
+   /**
+       * Sets the ResumeRegistry which issues the resume tokens of the players. Must be called before
+       * the game is started.
+       * @param resumes issues the tokens, or null for none
+       */
+   public void setResumeRegistry(ResumeRegistry resumes)   {
+      this.resumes = resumes;
+   }
+
+   /**
+       * Sets the Matchmaker which pairs the players who go back to the lobby once the game has ended,
+       * letting them do so, or ask for a rematch, over the same connection. Must be called before the
+       * game is started.
+       * @param matchmaker pairs waiting clients, or null to close the connections with the game
+       */
+   public void setMatchmaker(Matchmaker matchmaker)   {
+      this.matchmaker = matchmaker;
+   }
+
+   /**
+       * Helper function to report messages to the serverLog which is an instance variable.
        */
    private void report(String msg)   {
-      textAreaLog.append("GAME NUMBER: " + gameNumber + " " + msg + "\n");
-      textAreaLog.setCaretPosition(textAreaLog.getDocument().getLength());
+      serverLog.report("GAME NUMBER: " + gameNumber + " " + msg);
    }
-   
+
    /**
        * Runs a thread:
-       * Sets up the DataInputStreams and DataOutputStreams and waits to receive commands from
-       * both of the clients in turn.
+       * Sets up the PlayerLinks, starts a reader task for each client and applies their commands
+       * as they arrive. Closing the sockets at the end also stops the reader tasks.
        */
    public void run()   {
       try   {
          try   {
-            fromClient0 = new DataInputStream(socket0.getInputStream());
-            toClient0 = new DataOutputStream(socket0.getOutputStream());
-            fromClient1 = new DataInputStream(socket1.getInputStream());
-            toClient1 = new DataOutputStream(socket1.getOutputStream());
+            links = new PlayerLink[2];
+            links[0] = new StreamPlayerLink(sockets[0]);
+            ComputerPlayer computer = null;
+            if (sockets[1] != null)
+               links[1] = new StreamPlayerLink(sockets[1]);
+            else  {
+               computer = new ComputerPlayer(options.getComputerLevel());
+               links[1] = computer;
+            }
+            session = new GameSession(links[0], links[1], serverLog, gameNumber);
+            if (computer != null)
+               computer.setSession(session);
+            session.setRules(options.getRules());
+            session.setServerResolvesShots(options.isServerResolvesShots());
+            session.setTimeouts((task, delay) -> HashedWheelTimer.SHARED.schedule(() -> events.add(task::run),
+               delay, TimeUnit.MILLISECONDS), options.getIdleMillis(), options.getPlacementMillis(),
+               options.getTurnMillis());
+            session.setRematchWait(matchmaker != null ? options.getRematchMillis() : 0);
+            if (journal != null)
+               session.setJournal(journal, addressOf(0), addressOf(1));
+            issueTokens();
             executeCmds();
          }
          finally  {
-            socket0.close();
-            socket1.close();
-            fromClient0.close();
-            fromClient1.close();
-            toClient0.close();
-            toClient1.close();
+            synchronized (this)  {
+               ended = true;
+               for (CompletableFuture<Boolean> request : lobbyRequests)
+                  request.complete(false);
+            }
+            for (Socket socket : sockets) {
+               if (socket != null)
+                  socket.close();
+            }
          }
       }
       catch (Exception e)  {
          report("GAME THREAD CLOSING");
       }
    }
-   
-   /**
-       * Execute all commands until the QUIT or QUIT_SHIP command is received from 
-       * either client. If there is an unknown command it then stops, and does not continue.
-       */
-   private void executeCmds() throws IOException   {
-      report("SENDING NAME COMMAND TO PLAYER 0");
-      report("SENDING NAME COMMAND TO PLAYER 1");
-      //Name each client
-      toClient0.writeInt(NAME);
-      toClient0.writeInt(0);
-      toClient0.flush();      
-      toClient1.writeInt(NAME);
-      toClient1.writeInt(1);
-      toClient1.flush();
-      //Wait for both players to send the CONFIRM_SHIPS or QUIT_SHIP command 
-      boolean done = false;
-      boolean shipsReady = false;
-      while (!shipsReady)       {
-         int cmd0 = fromClient0.readInt();
-         int cmd1 = fromClient1.readInt();
-         if (cmd0 == CONFIRM_SHIPS && cmd1 == CONFIRM_SHIPS)   {
-            boolean c0Ready = fromClient0.readBoolean();
-            boolean c1Ready = fromClient1.readBoolean();
-            shipsReady = true;
+
+   /**
+       * @param playerNumber a player of the game
+       * @return the address the player connected from, or ComputerPlayer.ADDRESS for a ComputerPlayer
+       */
+   private String addressOf(int playerNumber)   {
+      Socket socket = sockets[playerNumber];
+      return socket == null ? ComputerPlayer.ADDRESS : socket.getInetAddress().getHostAddress();
+   }
+
+   /**
+       * Issues the players' resume tokens for the current session, if there is a ResumeRegistry.
+       */
+   private void issueTokens() {
+      if (resumes != null)
+         session.setResumeTokens(resumes.issue((channel, token) -> resume(0, channel, token)),
+            sockets[1] != null ? resumes.issue((channel, token) -> resume(1, channel, token)) : 0,
+            options.getGraceMillis());
+   }
+
+   /**
+       * Names each client and then applies the commands of both clients in the order they arrive
+       * until the game is finished, and then until the players have decided what to do next, playing
+       * every rematch they agree to.
+       * @throws IOException if there is a communication error between server/client
+       * @throws InterruptedException if the game thread is interrupted while waiting for a command
+       */
+   private void executeCmds() throws IOException, InterruptedException   {
+      session.start();
+      for (int player = 0; player < 2; player++)   {
+         if (sockets[player] != null)
+            startReader(player, sockets[player], links[player]);
+      }
+      while (true)   {
+         while (!session.isFinished())
+            events.take().apply();
+         report("GAME FINISHED");
+         closeResumes();
+         int winner = session.getWinner();
+         if (ratings != null && winner >= 0 && sockets[1] != null)
+            ratings.recordWin(addressOf(winner), addressOf(1 - winner));
+         while (!session.isSettled())
+            events.take().apply();
+         if (!session.isRematch())
+            return;
+         session = session.rematch(matchmaker.nextGameNumber());
+         gameNumber = session.getGameNumber();
+         synchronized (this)  {
+            closed = false;
          }
-         if (cmd0 == QUIT_SHIP)  {
-            report("EARLY QUIT FROM PLAYER 0");
-            sendDoneMessage(0);
+         issueTokens();
+         session.start();
+      }
+   }
+
+   /**
+       * Starts the reader task of a player's socket.
+       * @param playerNumber the player
+       * @param socket the player's socket
+       * @param link the link to the same socket
+       * @throws IOException if the socket's stream cannot be opened
+       */
+   private void startReader(int playerNumber, Socket socket, PlayerLink link) throws IOException   {
+      DataInputStream fromClient = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      fromClients[playerNumber] = fromClient;
+      gameThreads.start(() -> readCommands(fromClient, playerNumber, link));
+   }
+
+   /**
+       * Hands the connection of a player who has been sent LOBBY to the Matchmaker, to be paired again,
+       * once the LOBBY they sent has been applied. Their reader task waits meanwhile, so what it had
+       * already read past LOBBY is taken from its stream and handed over too, and the socket is no
+       * longer closed with the game.
+       * @param player the player who sent LOBBY
+       * @param request told whether the player was handed back
+       */
+   private void handOverToLobby(int player, CompletableFuture<Boolean> request)   {
+      synchronized (this)  {
+         lobbyRequests.remove(request);
+      }
+      if (sockets[player] == null || !session.hasLeftForLobby(player))   {
+         request.complete(false);
+         return;
+      }
+      SocketChannel channel = sockets[player].getChannel();
+      ByteBuffer received = null;
+      try   {
+         DataInputStream fromClient = fromClients[player];
+         received = ByteBuffer.wrap(fromClient.readNBytes(fromClient.available()));
+      }
+      catch (IOException e)   {
+         report("PROBLEMS READING WHAT PLAYER " + player + " SENT AFTER LOBBY " + e.toString());
+      }
+      sockets[player] = null;
+      ((StreamPlayerLink)links[player]).detach();
+      report("HANDING PLAYER " + player + " BACK TO THE LOBBY");
+      matchmaker.offer(channel, received);
+      request.complete(true);
+   }
+
+   /**
+       * Hands a player's new channel to the game thread, unless the game has ended.
+       * @param playerNumber the player resuming
+       * @param channel the player's new channel
+       * @param token the player's new resume token
+       * @return true if the game thread will take the player back, false if the game has ended
+       */
+   private synchronized boolean resume(int playerNumber, SocketChannel channel, long token)   {
+      if (closed)
+         return false;
+      events.add(() -> reattach(playerNumber, channel, token));
+      return true;
+   }
+
+   /**
+       * Revokes the players' tokens once the game has ended, and turns away anyone who resumed
+       * too late to rejoin.
+       */
+   private void closeResumes()   {
+      if (resumes == null)
+         return;
+      resumes.revoke(session.getResumeToken(0));
+      resumes.revoke(session.getResumeToken(1));
+      synchronized (this)  {
+         closed = true;
+      }
+      GameEvent event;
+      while ((event = events.poll()) != null)   {
+         try   {
+            event.apply();
          }
-         if (cmd1 == QUIT_SHIP)  {
-            report("EARLY QUIT FROM PLAYER 1");
-            sendDoneMessage(1);
+         catch (IOException e)   {
+            report("PROBLEMS TURNING AWAY A RESUMING PLAYER " + e.toString());
          }
       }
-      //Start main phase of the game
-      updateTurn(0);
-      while (!done)  {
-         if (runCommand(fromClient0, 0))
-            done = true;
-         if (!done && runCommand(fromClient1, 1))
-            done = true;
+   }
+
+   /**
+       * Replaces a player's socket with the new one they resumed on, if the session takes them back,
+       * and starts a reader task for it. Otherwise the new token is revoked.
+       * @param playerNumber the player resuming
+       * @param channel the player's new channel
+       * @param token the player's new resume token
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void reattach(int playerNumber, SocketChannel channel, long token) throws IOException   {
+      Socket socket = channel.socket();
+      PlayerLink link;
+      try   {
+         channel.configureBlocking(true);
+         link = new StreamPlayerLink(socket);
       }
-      report("GAME FINISHED");
+      catch (IOException e)   {
+         resumes.revoke(token);
+         throw e;
+      }
+      if (!session.resume(playerNumber, link, token))  {
+         resumes.revoke(token);
+         ResumeRegistry.reject(channel);
+         return;
+      }
+      sockets[playerNumber].close();
+      sockets[playerNumber] = socket;
+      links[playerNumber] = link;
+      startReader(playerNumber, socket, link);
    }
-   
+
    /**
-       * Execute all commands until the QUIT command is received from either client, 
-       * If there is an unknown command it then stops, and does not continue.
+       * Reads the commands of one client, with their arguments, and hands each to the game
+       * thread, until the connection is lost, an unknown command is received or the client is
+       * handed back to the lobby, after which its connection is read by the Matchmaker. Once the client
+       * has sent HELLO its commands are read as frames, and a frame with an unknown command is
+       * skipped instead. The arguments of each command are read into a buffer from the pool,
+       * which the game thread gives back once the command has been applied.
        * @param client the DataInputStream for a given client
-       * @param playerNumber the player who is sending the command, for reporting purposes
-       * @return true if the client has given a QUIT, WIN, or invalid command, false otherwise
-       * @throws IOException if there is a communication error between server/client
+       * @param playerNumber the player who is sending the commands
+       * @param link the link to the same connection, which the session is told has been lost
        */
-   public boolean runCommand(DataInputStream client, int playerNumber) throws IOException   {
-      int cmd = client.readInt();
-      report("RECEIVED " + cmdToString(cmd) + " COMMAND FROM " +
-         "PLAYER " + playerNumber);
-      switch (cmd)   {
-         case QUIT:
-            int player = client.readInt();
-            sendDoneMessage(player);
-            return true;
-         case FIRE:
-            player = client.readInt();
-            int space = client.readInt();
-            if (player == 0)  {
-               toClient0.writeInt(FIRE);
-               toClient0.writeInt(space);
-               toClient0.flush();
-               report("SENDING FIRE COMMAND TO PLAYER 0");
-            }
-            if (player == 1)  {
-               toClient1.writeInt(FIRE);
-               toClient1.writeInt(space);
-               toClient1.flush();
-               report("SENDING FIRE COMMAND TO PLAYER 1");
+   private void readCommands(DataInputStream client, int playerNumber, PlayerLink link)   {
+      try   {
+         //The frame version agreed in HELLO, or 0 while the commands are bare
+         int version = 0;
+         while (true)   {
+            ByteBuffer args = BufferPool.SHARED.acquire();
+            int cmd;
+            int length;
+            if (version > 0) {
+               cmd = FrameCodec.readFrame(client, args, version);
+               ServerMetrics.SHARED.bytesIn(4 + args.limit());
+               length = session.argumentBytes(cmd);
+               if (length < 0 || args.remaining() < length) {
+                  report("SKIPPED FRAME WITH " + cmdToString(cmd) + " COMMAND FROM PLAYER " + playerNumber);
+                  BufferPool.SHARED.release(args);
+                  continue;
+               }
             }
-            return false;
-         case SUCCESS:
-            player = client.readInt();
-            int index = client.readInt();
-            boolean success = client.readBoolean();
-            boolean sunk = client.readBoolean();
-            if (player == 0)  {
-               toClient1.writeInt(MARK);
-               toClient1.writeInt(index);
-               toClient1.writeBoolean(success);
-               toClient1.writeBoolean(sunk);
-               toClient1.flush();
-               report("SENDING MARK COMMAND TO PLAYER 1");
+            else  {
+               cmd = client.readInt();
+               length = session.argumentBytes(cmd);
+               client.readFully(args.array(), args.arrayOffset(), Math.max(0, length));
+               args.limit(Math.max(0, length));
+               ServerMetrics.SHARED.bytesIn(4 + args.limit());
+               version = cmd == HELLO ? FrameCodec.negotiate(args.get(0)) : 0;
             }
-            if (player == 1)  {
-               toClient0.writeInt(MARK);
-               toClient0.writeInt(index);
-               toClient0.writeBoolean(success);
-               toClient0.writeBoolean(sunk);
-               toClient0.flush();
-               report("SENDING MARK COMMAND TO PLAYER 0");
+            if (cmd == LOBBY && matchmaker != null)   {
+               if (readLobby(playerNumber, args))
+                  return;
+               continue;
             }
-            return false;
-         case CONFIRM_SHIPS:
-            boolean dummyValue = client.readBoolean();
-            return false;
-         case TURN:
-            player = client.readInt();
-            if (player == 0)
-               updateTurn(1);
-            else if (player == 1)
-               updateTurn(0);
-            report("SENDING TURN COMMAND TO BOTH PLAYERS");
-            return false;
-         case WIN:
-            player = client.readInt();
-            toClient0.writeInt(GAME_OVER);
-            toClient0.writeInt(player);
-            toClient0.flush();
-            toClient1.writeInt(GAME_OVER);
-            toClient1.writeInt(player);
-            toClient1.flush();
-            report("SENDING GAME_OVER COMMAND TO BOTH PLAYERS");
-            return true;
-         default:
-            return true;
+            events.put(() -> {
+               try   {
+                  session.receive(playerNumber, cmd, args);
+               }
+               finally  {
+                  BufferPool.SHARED.release(args);
+               }
+            });
+            if (length < 0)
+               return;
+         }
       }
-   }
-   
-   /**
-       * Sends a DONE command to the player who did not send the QUIT command.
-       * @param player the player who sent the QUIT command
-       * @throws IOException if there is a communication error between server/client
-       */
-   public void sendDoneMessage(int player) throws IOException   {
-      if (player == 0)  {
-         toClient1.writeInt(DONE);
-         toClient1.flush();
-         report("SENDING DONE COMMAND TO PLAYER 1");
+      catch (IOException e)   {
+         events.add(() -> session.connectionLost(playerNumber, link));
       }
-      else if (player == 1)   {
-         toClient0.writeInt(DONE);
-         toClient0.flush();
-         report("SENDING DONE COMMAND TO PLAYER 0");
+      catch (InterruptedException e)   {
+         Thread.currentThread().interrupt();
       }
    }
-   
+
    /**
-       * Updates the turns of both players, setting the given player to have their turn,
-       * and the other to be waiting.
-       * @param player the player whose turn it now is
-       * @throws IOException if there is a communication error between server/client
+       * Hands a LOBBY to the game thread and waits for it to be applied, as a player handed back to
+       * the Matchmaker must not have their stream read any further.
+       * @param playerNumber the player who sent LOBBY
+       * @param args the (empty) arguments of the command, given back to the pool once applied
+       * @return true if the player was handed back, false if the reader task carries on
+       * @throws InterruptedException if the reader task is interrupted while waiting
        */
-   public void updateTurn(int player) throws IOException   {
-      if (player == 0)  {
-         toClient0.writeInt(TURN);
-         toClient0.writeBoolean(true);
-         toClient0.flush();
-         toClient1.writeInt(TURN);
-         toClient1.writeBoolean(false);
-         toClient1.flush();
-      }
-      else if (player == 1)   {
-         toClient0.writeInt(TURN);
-         toClient0.writeBoolean(false);
-         toClient0.flush();
-         toClient1.writeInt(TURN);
-         toClient1.writeBoolean(true);
-         toClient1.flush();
+   private boolean readLobby(int playerNumber, ByteBuffer args) throws InterruptedException   {
+      CompletableFuture<Boolean> request = new CompletableFuture<Boolean>();
+      synchronized (this)  {
+         if (ended)  {
+            BufferPool.SHARED.release(args);
+            return true;
+         }
+         lobbyRequests.add(request);
+      }
+      events.put(() -> {
+         try   {
+            session.receive(playerNumber, LOBBY, args);
+         }
+         finally  {
+            BufferPool.SHARED.release(args);
+            handOverToLobby(playerNumber, request);
+         }
+      });
+      try   {
+         return request.get();
+      }
+      catch (ExecutionException e)   {
+         return false;
       }
    }
 }
\ No newline at end of file
@@ -0,0 +1,678 @@
+/**
+* A BattleShipNioServer is the selector based mode of the server. Rather than starting a thread per game
+* which blocks while reading from each client, it accepts clients on a non-blocking ServerSocketChannel
+* and queues them with a Matchmaker, which hands each pair of players to one of a small number of event
+* loops. Each event loop multiplexes the
+* SocketChannels of all of its games, decodes the BattleShippable commands from ByteBuffers and gives
+* them to the game's GameSession. The bytes sent and received are the same as those of a BattleShipGame,
+* bare or framed, so the BattleShipClient works with either mode. A player who resumes after losing their
+* connection is registered with the event loop of their game, on a new Connection replacing the old one.
+* A player given a computer opponent has a ComputerPlayer in place of the second Connection, which answers
+* on the event loop of the game. Once a game has ended its Connections stay registered while the players
+* decide what to do next: a rematch is played on the same Connections, and the channel of a player who
+* goes back to the lobby is handed to the Matchmaker once LOBBY has been written.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.time.LocalDateTime;
+import java.time.format.*;
+import java.util.*;
+import java.util.concurrent.*;
+public class BattleShipNioServer implements Runnable, BattleShippable  {
+   //To format the date 12-Nov-2016 10:15 PM
+   private static DateTimeFormatter FORMATTER =
+      DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT);
+
+   //Place where the messages of the log are reported
+   private ServerLog serverLog;
+   //Event loops the games are spread across
+   private EventLoop[] loops;
+   //Settings of the server
+   private ServerOptions options;
+   //Rating of each player, updated with the result of each game
+   private PlayerRatings ratings;
+   //Records the events of every game, or null
+   private GameJournal journal;
+   //Issues the resume tokens of every game, or null if games are not held for players who lose their connection
+   private ResumeRegistry resumes;
+   //Pairs waiting clients, including those back from a game which has ended
+   private Matchmaker matchmaker;
+   //Looks up the host names of the clients accepted off the accepting thread
+   private HostNameCache hostNames;
+
+   /**
+       * Creates a BattleShipNioServer which reports to the given log and runs its games on
+       * the given number of event loops.
+       * @param log the ServerLog that receives messages
+       * @param numLoops the number of event loop threads, at least one
+       * @param opts the settings of the server
+       * @param ratings the rating of each player
+       */
+   public BattleShipNioServer(ServerLog log, int numLoops, ServerOptions opts, PlayerRatings ratings)   {
+      serverLog = log;
+      options = opts;
+      this.ratings = ratings;
+      loops = new EventLoop[Math.max(1, numLoops)];
+   }
+
+   /**
+       * Sets the GameJournal which records the events of every game. Must be called before the
+       * server is run.
+       * @param journal where the events are recorded, or null for nowhere
+       */
+   public void setJournal(GameJournal journal)   {
+      this.journal = journal;
+   }
+
+   /**
+       * Sets the HostNameCache which looks up the host names of the clients. Must be called before the
+       * server is run; without one the server makes its own when it is run.
+       * @param hostNames finds the name of each client's address
+       */
+   public void setHostNames(HostNameCache hostNames)   {
+      this.hostNames = hostNames;
+   }
+
+   /**
+       * Publishes a given message to the serverLog.
+       * @param msg the message to display.
+       */
+   private void report(String msg)   {
+      serverLog.report(msg);
+   }
+
+   /**
+       * Starts the event loops and the Matchmaker, and then accepts clients on the calling thread,
+       * queueing each with the Matchmaker, until an error occurs.
+       */
+   @Override
+   public void run()   {
+      if (hostNames == null)
+         hostNames = new HostNameCache(options.getHostNameMillis());
+      try (ServerSocketChannel serverChannel = ServerSocketChannel.open();
+           Selector acceptSelector = Selector.open())  {
+         serverChannel.bind(new InetSocketAddress(PORT), BattleShipServer.ACCEPT_BACKLOG);
+         serverChannel.configureBlocking(false);
+         serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+         for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop("event-loop-" + i);
+            Thread loopThread = new Thread(loops[i], loops[i].getName());
+            loopThread.setDaemon(true);
+            loopThread.start();
+         }
+         report("The server, port " + PORT + ", started " + loops.length +
+            " event loops on " + LocalDateTime.now().format(FORMATTER));
+         if (options.getGraceMillis() > 0)
+            resumes = new ResumeRegistry(serverLog);
+         matchmaker = new Matchmaker(serverLog, Matchmaker.policyNamed(options.getMatchPolicy()),
+            ratings, (channel0, channel1, gameNumber) -> {
+               EventLoop loop = loops[gameNumber % loops.length];
+               loop.execute(() -> loop.startGame(channel0, channel1, gameNumber));
+               report("starting game " + gameNumber + " on " + loop.getName() + " at " +
+                  LocalDateTime.now().format(FORMATTER));
+            });
+         matchmaker.setResumeHandler(resumes);
+         matchmaker.setComputerWait(options.getComputerWaitMillis());
+         matchmaker.start();
+         ServerMetrics.SHARED.watch(matchmaker);
+         ServerMetrics.SHARED.export(serverLog, options.getMetricsPort());
+         report("waiting clients are paired by " + options.getMatchPolicy());
+         if (options.getComputerWaitMillis() > 0)
+            report("clients waiting " + options.getComputerWaitMillis() / 1000 + " s play a " +
+               HuntTargetStrategy.levelToString(options.getComputerLevel()) + " computer opponent");
+         int clientNumber = 0;
+         while (true)   {
+            acceptSelector.select();
+            acceptSelector.selectedKeys().clear();
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null)   {
+               channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+               ServerMetrics.SHARED.accepted();
+               clientNumber++;
+               reportStatsOnClient(channel, clientNumber);
+               matchmaker.offer(channel);
+            }
+         }
+      }
+      catch (IOException e)  {
+         report("problems in server " + e.toString());
+         e.printStackTrace(System.err);
+      }
+   }
+
+   /**
+       * Reports the clients's IP address, and its domain name once the HostNameCache has found it, so
+       * the accepting thread never waits for a lookup.
+       * @param channel an open channel
+       * @param n the client's number (starting with 1)
+       */
+   private void reportStatsOnClient(SocketChannel channel, int n)   {
+      InetAddress addr = channel.socket().getInetAddress();
+      report("client " + n + "'s IP Address is " + addr.getHostAddress());
+      hostNames.resolve(addr, name -> report("client " + n + "'s host name is " + name));
+   }
+
+   /**
+       * An EventLoop owns a Selector and every connection registered with it. All of the work of its
+       * games is done on its own thread; other threads hand it work through execute.
+       */
+   private class EventLoop implements Runnable  {
+      private final Selector selector;
+      private final Queue<Runnable> tasks;
+      private final String name;
+
+      /**
+          * Creates an EventLoop with its own Selector.
+          * @param name the name of the thread running this loop
+          * @throws IOException if the Selector cannot be opened
+          */
+      EventLoop(String name) throws IOException   {
+         selector = Selector.open();
+         tasks = new ConcurrentLinkedQueue<Runnable>();
+         this.name = name;
+      }
+
+      /**
+          * @return the name of the thread running this loop.
+          */
+      String getName()  {
+         return name;
+      }
+
+      /**
+          * Queues a task to be run on this loop's thread and wakes the loop up.
+          * @param task the task to run
+          */
+      void execute(Runnable task)   {
+         tasks.add(task);
+         selector.wakeup();
+      }
+
+      /**
+          * Registers both players' channels with this loop and starts their game.
+          * @param channel0 the channel of player 0
+          * @param channel1 the channel of player 1, or null to play against a ComputerPlayer
+          * @param gameNumber the game number (used for reporting purposes)
+          */
+      void startGame(SocketChannel channel0, SocketChannel channel1, int gameNumber)  {
+         Connection[] players = new Connection[2];
+         Connection c0 = new Connection(channel0, 0, players);
+         Connection c1 = channel1 == null ? null : new Connection(channel1, 1, players);
+         players[0] = c0;
+         players[1] = c1;
+         ComputerPlayer computer = c1 == null ? new ComputerPlayer(options.getComputerLevel()) : null;
+         GameSession session = new GameSession(c0, c1 != null ? c1 : computer, serverLog, gameNumber);
+         if (computer != null)
+            computer.setSession(session);
+         session.setRules(options.getRules());
+         session.setServerResolvesShots(options.isServerResolvesShots());
+         session.setTimeouts((task, delay) -> HashedWheelTimer.SHARED.schedule(() -> execute(() -> {
+               task.run();
+               players[0].closeIfFinished();
+            }), delay, TimeUnit.MILLISECONDS), options.getIdleMillis(), options.getPlacementMillis(),
+            options.getTurnMillis());
+         session.setRematchWait(options.getRematchMillis());
+         if (journal != null)
+            session.setJournal(journal, c0.address, c1 != null ? c1.address : ComputerPlayer.ADDRESS);
+         issueTokens(session, players);
+         try   {
+            c0.register(session);
+            if (c1 != null)
+               c1.register(session);
+            session.start();
+         }
+         catch (IOException e)   {
+            session.disconnected(failedPlayer(players));
+         }
+         c0.closeIfFinished();
+      }
+
+      /**
+          * Finds the player whose channel failed while their game was being started, rather than
+          * blaming player 0 for a failure of either channel. A ComputerPlayer cannot fail.
+          * @param players the connections of the game
+          * @return the number of the player whose Connection failed, 0 if player 1's did not
+          */
+      private int failedPlayer(Connection[] players)  {
+         return players[1] != null && players[1].failed ? 1 : 0;
+      }
+
+      /**
+          * Issues the players' resume tokens for a session, if there is a ResumeRegistry.
+          * @param session the game
+          * @param players the connections of the game
+          */
+      private void issueTokens(GameSession session, Connection[] players)  {
+         if (resumes != null)
+            session.setResumeTokens(resumes.issue((channel, token) -> resumeOnLoop(session, players, 0,
+               channel, token)), players[1] == null ? 0 : resumes.issue((channel, token) -> resumeOnLoop(session,
+               players, 1, channel, token)),
+               options.getGraceMillis());
+      }
+
+      /**
+          * Starts the rematch both players of a game have asked for, on the same Connections.
+          * @param session the game which has ended
+          * @param players the connections of the game
+          */
+      private void startRematch(GameSession session, Connection[] players)   {
+         GameSession rematch = session.rematch(matchmaker.nextGameNumber());
+         issueTokens(rematch, players);
+         for (Connection connection : players)  {
+            if (connection != null)
+               connection.session = rematch;
+         }
+         players[0].recorded = false;
+         try   {
+            rematch.start();
+         }
+         catch (IOException e)   {
+            rematch.disconnected(failedPlayer(players));
+         }
+      }
+
+      /**
+          * Hands a player who resumed to this loop's thread.
+          * @param session the player's game
+          * @param players the connections of the game
+          * @param playerNumber the player resuming
+          * @param channel the player's new channel
+          * @param token the player's new resume token
+          * @return true, as the game is checked on this loop's thread
+          */
+      private boolean resumeOnLoop(GameSession session, Connection[] players, int playerNumber,
+         SocketChannel channel, long token)  {
+         execute(() -> resumeGame(session, players, playerNumber, channel, token));
+         return true;
+      }
+
+      /**
+          * Registers the new channel of a player who resumed and, if the session takes them back,
+          * replaces their old Connection with it and closes the old one. Otherwise the new token is
+          * revoked.
+          * @param session the player's game
+          * @param players the connections of the game
+          * @param playerNumber the player resuming
+          * @param channel the player's new channel
+          * @param token the player's new resume token
+          */
+      private void resumeGame(GameSession session, Connection[] players, int playerNumber,
+         SocketChannel channel, long token)  {
+         Connection connection = new Connection(channel, playerNumber, players);
+         try   {
+            connection.register(session);
+            if (!session.resume(playerNumber, connection, token))   {
+               resumes.revoke(token);
+               ResumeRegistry.reject(channel);
+               connection.releaseIfClosed();
+               return;
+            }
+         }
+         catch (IOException e)   {
+            resumes.revoke(token);
+            connection.closeQuietly();
+            connection.releaseIfClosed();
+            return;
+         }
+         Connection old = players[playerNumber];
+         players[playerNumber] = connection;
+         old.getOutput().clear();
+         old.closeQuietly();
+         old.releaseIfClosed();
+         connection.closeIfFinished();
+      }
+
+      /**
+          * Updates the players' ratings once their game has been won, unless it was against a ComputerPlayer.
+          * @param c0 the connection of player 0
+          * @param c1 the connection of player 1, or null for a ComputerPlayer
+          * @param winner the player who won, or -1 if the game was not won
+          */
+      private void recordResult(Connection c0, Connection c1, int winner)  {
+         if (winner >= 0 && c1 != null)
+            ratings.recordWin(winner == 0 ? c0.address : c1.address, winner == 0 ? c1.address : c0.address);
+      }
+
+      /**
+          * Selects ready channels and runs queued tasks until the thread is stopped. A task which
+          * fails is reported and dropped, and a game whose Connection fails is abandoned, so one
+          * bad game never stops the loop the other games share.
+          */
+      @Override
+      public void run() {
+         while (true)   {
+            try   {
+               selector.select();
+               Runnable task;
+               while ((task = tasks.poll()) != null)  {
+                  try   {
+                     task.run();
+                  }
+                  catch (RuntimeException e)   {
+                     report("problems running a task in " + name + " " + e.toString());
+                  }
+               }
+               Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+               while (keys.hasNext())   {
+                  SelectionKey key = keys.next();
+                  keys.remove();
+                  Connection connection = (Connection)key.attachment();
+                  try   {
+                     if (key.isValid() && key.isWritable())
+                        connection.onWritable();
+                     if (key.isValid() && key.isReadable())
+                        connection.onReadable();
+                     connection.closeIfFinished();
+                  }
+                  catch (RuntimeException e)   {
+                     connection.abandon(e);
+                  }
+               }
+            }
+            catch (IOException e)   {
+               report("problems in " + name + " " + e.toString());
+            }
+         }
+      }
+
+      /**
+          * A Connection is one player's channel. It decodes the commands the player sends, bare or
+          * framed, and encodes the commands sent to the player into its write buffer, which is written
+          * when the session flushes, keeping whatever the channel could not yet take. The Connections
+          * of a game share an array holding the current Connection of each player.
+          */
+      private class Connection extends BufferedPlayerLink   {
+         private final SocketChannel channel;
+         private final int playerNumber;
+         //Where the player connected from, kept for the ratings once the channel is closed
+         private final String address;
+         private SelectionKey key;
+         private GameSession session;
+         private Connection[] players;
+         private ByteBuffer in;
+         //The frame version agreed in the player's HELLO, after which it sends frames, or 0 before
+         private int version;
+         //Whether the result of the game has been given to the ratings
+         private boolean recorded;
+         //Whether the channel has been handed back to the Matchmaker
+         private boolean lobby;
+         //Whether registering or writing the channel has failed
+         private boolean failed;
+
+         /**
+             * Creates a Connection for the given player.
+             * @param channel the player's non-blocking channel
+             * @param playerNumber the player's number in its game
+             * @param players the current Connection of each player of the game
+             */
+         Connection(SocketChannel channel, int playerNumber, Connection[] players)   {
+            this.channel = channel;
+            this.playerNumber = playerNumber;
+            this.players = players;
+            address = Matchmaker.addressOf(channel);
+            in = BufferPool.SHARED.acquire();
+         }
+
+         /**
+             * Registers the channel with the loop's Selector for reading.
+             * @param session the game this player is in
+             * @throws IOException if the channel has been closed
+             */
+         void register(GameSession session) throws IOException   {
+            this.session = session;
+            try   {
+               key = channel.register(selector, SelectionKey.OP_READ, this);
+            }
+            catch (IOException e)   {
+               failed = true;
+               throw e;
+            }
+         }
+
+         /**
+             * Reads what is available and gives every complete command to the session.
+             */
+         void onReadable()   {
+            try   {
+               int read = channel.read(in);
+               if (read < 0)  {
+                  lost();
+                  return;
+               }
+               ServerMetrics.SHARED.bytesIn(read);
+               in.flip();
+               while (!session.isSettled() && !session.hasLeftForLobby(playerNumber) &&
+                  (version > 0 ? receiveFrame() : receiveCommand()))
+                  ;
+               in.compact();
+            }
+            catch (IOException e)   {
+               lost();
+            }
+         }
+
+         /**
+             * Gives the session the bare command at the start of the read buffer, if all of it
+             * has arrived. A HELLO switches the player to frames.
+             * @return true if a command was received, false if more bytes are needed
+             * @throws IOException if there is a communication error between server/client
+             */
+         private boolean receiveCommand() throws IOException   {
+            if (in.remaining() < 4)
+               return false;
+            int cmd = in.getInt(in.position());
+            int length = session.argumentBytes(cmd);
+            if (length >= 0 && in.remaining() < 4 + length)
+               return false;
+            in.position(in.position() + 4);
+            int hello = cmd == HELLO ? FrameCodec.negotiate(in.get(in.position())) : 0;
+            session.receive(playerNumber, cmd, in);
+            version = hello;
+            return true;
+         }
+
+         /**
+             * Gives the session the command of the frame at the start of the read buffer, if all
+             * of it has arrived. A frame with an unknown command, or too few arguments, is skipped.
+             * @return true if a frame was taken, false if more bytes are needed
+             * @throws IOException if there is a communication error or the frame is invalid or of another version
+             */
+         private boolean receiveFrame() throws IOException   {
+            int length = FrameCodec.completeFrame(in);
+            if (length < 0)
+               return false;
+            FrameCodec.checkVersion(in.get(in.position() + 4), version);
+            int limit = in.limit();
+            int end = in.position() + 4 + length;
+            in.limit(end);
+            in.position(in.position() + 5);
+            int cmd = in.getInt();
+            int expected = session.argumentBytes(cmd);
+            if (expected < 0 || in.remaining() < expected)
+               report("GAME NUMBER: " + session.getGameNumber() + " SKIPPED FRAME WITH " +
+                  cmdToString(cmd) + " COMMAND FROM PLAYER " + playerNumber);
+            else
+               session.receive(playerNumber, cmd, in);
+            in.limit(limit);
+            in.position(end);
+            return true;
+         }
+
+         /**
+             * Writes whatever is pending once the channel can take more.
+             */
+         void onWritable() {
+            try   {
+               flush();
+            }
+            catch (IOException e)   {
+               lost();
+            }
+         }
+
+         /**
+             * Drops anything still waiting to be written, tells the session, as the player can no
+             * longer be reached, and closes the channel.
+             */
+         private void lost()  {
+            getOutput().clear();
+            session.connectionLost(playerNumber, this);
+            closeQuietly();
+            releaseIfClosed();
+         }
+
+         /**
+             * Ends the game after an unexpected error handling this Connection: the session is told
+             * the player was lost, the resume tokens are revoked, and the channel of every player of
+             * the game not already handed to the lobby is closed without writing what is still pending.
+             * @param e the error
+             */
+         void abandon(RuntimeException e)  {
+            report("GAME NUMBER: " + session.getGameNumber() + " ABANDONED AFTER AN ERROR WITH PLAYER " +
+               playerNumber + " " + e.toString());
+            try   {
+               session.disconnected(playerNumber);
+            }
+            catch (RuntimeException again)   {
+               report("problems ending game " + session.getGameNumber() + " " + again.toString());
+            }
+            if (resumes != null)  {
+               resumes.revoke(session.getResumeToken(0));
+               resumes.revoke(session.getResumeToken(1));
+            }
+            for (Connection connection : players)  {
+               if (connection != null && !connection.lobby)  {
+                  connection.getOutput().clear();
+                  connection.closeQuietly();
+                  connection.releaseIfClosed();
+               }
+            }
+         }
+
+         /**
+             * Once the game has finished, records its result and revokes the players' resume tokens,
+             * and hands the channel of each player who has been sent LOBBY to the Matchmaker. Once the
+             * session is settled the rematch is started, or the channels still open are closed, giving
+             * the buffers of each closed channel back to their pools. A ComputerPlayer has no Connection
+             * to close, and a Connection which has been replaced does nothing.
+             */
+         void closeIfFinished()  {
+            if (!session.isFinished() || players[playerNumber] != this)
+               return;
+            Connection c0 = players[0];
+            Connection c1 = players[1];
+            if (!c0.recorded)  {
+               c0.recorded = true;
+               recordResult(c0, c1, session.getWinner());
+               if (resumes != null)  {
+                  resumes.revoke(session.getResumeToken(0));
+                  resumes.revoke(session.getResumeToken(1));
+               }
+            }
+            for (Connection connection : players)  {
+               if (connection != null && session.hasLeftForLobby(connection.playerNumber))
+                  connection.handOverToLobby();
+            }
+            if (!session.isSettled())
+               return;
+            if (session.isRematch())   {
+               startRematch(session, players);
+               return;
+            }
+            for (Connection connection : players)  {
+               if (connection != null && !connection.lobby)  {
+                  connection.closeQuietly();
+                  connection.releaseIfClosed();
+               }
+            }
+         }
+
+         /**
+             * Hands the channel to the Matchmaker, to be paired again, once everything sent to it has
+             * been written, with whatever was read past LOBBY, giving the buffers back to their pools
+             * without closing it.
+             */
+         private void handOverToLobby()   {
+            if (lobby || getOutput().position() > 0 || !channel.isOpen())
+               return;
+            lobby = true;
+            key.cancel();
+            report("GAME NUMBER: " + session.getGameNumber() + " HANDING PLAYER " + playerNumber +
+               " BACK TO THE LOBBY");
+            in.flip();
+            matchmaker.offer(channel, in);
+            BufferPool.SHARED.release(in);
+            in = null;
+            releaseOutput();
+         }
+
+         /**
+             * Gives the read and write buffers back to their pools once the channel is closed.
+             */
+         private void releaseIfClosed()   {
+            if (in != null && !channel.isOpen())   {
+               BufferPool.SHARED.release(in);
+               in = null;
+               releaseOutput();
+            }
+         }
+
+         /**
+             * Closes the channel, waiting for pending writes if there are any and the channel
+             * is still usable.
+             */
+         private void closeQuietly()   {
+            try   {
+               close();
+            }
+            catch (IOException e)   {
+               report("problems closing connection " + e.toString());
+            }
+         }
+
+         @Override
+         public void close() throws IOException   {
+            if (getOutput().position() == 0 || !channel.isOpen()) {
+               if (key != null)
+                  key.cancel();
+               channel.close();
+            }
+         }
+
+         /**
+             * Writes as much of the write buffer as the channel takes with a single write, and asks
+             * to be told when the channel is writable again if anything is left over.
+             * @throws IOException if there is a communication error between server/client
+             */
+         @Override
+         public void flush() throws IOException   {
+            ByteBuffer out = getOutput();
+            if (out.position() > 0) {
+               out.flip();
+               try   {
+                  ServerMetrics.SHARED.bytesOut(channel.write(out));
+               }
+               catch (IOException e)   {
+                  failed = true;
+                  throw e;
+               }
+               out.compact();
+            }
+            if (key == null || !key.isValid())
+               return;
+            if (out.position() > 0)
+               key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            else  {
+               key.interestOps(SelectionKey.OP_READ);
+               if (session.isSettled() && !session.isRematch() && !session.hasLeftForLobby(playerNumber))
+                  close();
+            }
+         }
+      }
+   }
+}
\ No newline at end of file
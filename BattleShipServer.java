@@ -1,115 +1,224 @@
 /**
 * A BattleShipServer opens a server on the designated port and awaits connections from numerous clients.
-* It also creates a graphical log for reporting server messages sent between server/client as well as error
-* messages. Once two clients have connection the server starts a game thread for the two players to play,
-* and then continues to do so unless an error occurs.
+* Messages sent between server/client as well as error messages are reported to a ServerLog, which writes
+* them to the console and a log file, and to a graphical log window unless the server is headless. Each
+* client accepted joins the queue of a Matchmaker, which pairs the waiting clients on a thread of its own
+* and starts a game thread for each two players to play, while the server continues to accept clients
+* unless an error occurs.
 *
 * @author G. Monagan modified by Alex Perrino
 * @version November 29, 2017
 */
 import java.io.*;
 import java.net.*;
+import java.nio.channels.*;
+import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.time.format.*;
-import java.awt.*;
-import javax.swing.*;
-import javax.swing.text.DefaultCaret;
-public class BattleShipServer extends JFrame implements BattleShippable {
-   //Dimensions of frame
-   public static final int FRAME_WIDTH = 1380;
-   public static final int FRAME_HEIGHT = 720;
-
-   //Font used for the server log messages
-   public static final Font LOG_FONT = new Font("SansSerif", Font.BOLD, 16);
+public class BattleShipServer implements BattleShippable {
+   //Where the log is written
+   public static final String LOG_FILE = "BattleShipServer.log";
+   public static final long LOG_FILE_BYTES = 10 * 1024 * 1024;
+   public static final int LOG_FILES_KEPT = 5;
+   //Connections the operating system holds until they are accepted
+   public static final int ACCEPT_BACKLOG = 1024;
    
    //To format the date 12-Nov-2016 10:15 PM
    private static DateTimeFormatter FORMATTER = 
       DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM, FormatStyle.SHORT);
 
-   private JTextArea textAreaLog;
+   private ServerLog serverLog;
+   private ServerOptions options;
+   //Rating of each player, by the address they connect from
+   private PlayerRatings ratings;
+   //Records the events of every game, or null
+   private GameJournal journal;
+   //Pairs waiting clients, including those back from a game which has ended
+   private Matchmaker matchmaker;
+   //Looks up the host names of the clients accepted off the accepting thread
+   private HostNameCache hostNames;
    
    /**
        * Starts the server which creates a log window, opens one socket per client
        * and starts games between two clients. The Server begins by giving a client a name.
+       * Given the argument "nio" the server instead multiplexes every game over a small number
+       * of event loops, optionally followed by how many (by default one per processor).
+       * Given the argument "virtual" each game runs on a virtual thread rather than a platform
+       * thread when Java is 21 or later ("platform", the default, can be given to compare the two).
+       * Given the argument "headless", or when Java runs headless, no log window is built and
+       * the log only goes to the console and the log file.
+       * Given the argument "authoritative" the server resolves every shot itself for the clients
+       * which upload their fleet. Given "match rating" waiting clients are paired by rating rather than
+       * in order of arrival. See ServerOptions for every argument.
        * @param args line arguments
        */
    public static void main(String[] args)   {
-      new BattleShipServer();
+      ServerOptions options = ServerOptions.parse(args);
+      ServerLog serverLog = createServerLog();
+      if (!options.isHeadless())
+         new ServerLogFrame(serverLog);
+      serverLog.start();
+      BattleShipServer server = new BattleShipServer(serverLog, options);
+      if (options.isNio())
+         server.serveNio(options.getEventLoops());
+      else
+         server.serve(new GameThreads(options.isVirtualThreads()));
+   }
+
+   /**
+       * Creates a ServerLog which writes to the console and a rolling log file.
+       * @return the ServerLog, not yet started
+       */
+   public static ServerLog createServerLog()   {
+      ServerLog serverLog = new ServerLog();
+      serverLog.addSink(new ServerLog.ConsoleSink());
+      try   {
+         serverLog.addSink(new ServerLog.RollingFileSink(Paths.get(LOG_FILE),
+            LOG_FILE_BYTES, LOG_FILES_KEPT));
+      }
+      catch (IOException e)   {
+         System.err.println("Cannot write the log file " + LOG_FILE + ": " + e.getMessage());
+      }
+      return serverLog;
+   }
+
+   /**
+       * Creates a BattleShipServer which reports to the given log.
+       * @param serverLog the ServerLog that receives messages
+       * @param options the settings of the server
+       */
+   public BattleShipServer(ServerLog serverLog, ServerOptions options)   {
+      this.serverLog = serverLog;
+      this.options = options;
+      ratings = new PlayerRatings();
+      hostNames = new HostNameCache(options.getHostNameMillis());
    }
    
    /**
-       * Appends a given message onto the textAreaLog and adds a carriage return.
-       * Additionally it scrolls down so that the bottom of the textArea is always shown.
+       * Publishes a given message to the serverLog.
        * @param msg the message to display.
        */
    private void report(String msg)   {
-      textAreaLog.append(msg + '\n');
-      textAreaLog.setCaretPosition(textAreaLog.getDocument().getLength());
+      serverLog.report(msg);
    }
 
    /**
-       * Builds an extended frame that has a text area to display the server log messages 
+       * Reports the server's IP address and name on a thread of its own, as looking up the
+       * computer's name can be slow and should not hold up the server starting.
        */
-   public void buildLogFrame()   { 
-      textAreaLog = new JTextArea();
-      textAreaLog.setFont(LOG_FONT);
-      //Always show last line
-      DefaultCaret caret = (DefaultCaret)textAreaLog.getCaret();
-      caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
-      setSize(FRAME_WIDTH, FRAME_HEIGHT);
-      setTitle("Server Activity Log");
-      add(new JScrollPane(textAreaLog), BorderLayout.CENTER);
-      setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-      setVisible(true);
+   private void reportStatsOnServer()   {
+      Thread stats = new Thread(() -> {
+         try   {
+            report("This server's computer name is " + 
+               InetAddress.getLocalHost().getHostName());
+            report("This server's IP address is " + 
+               InetAddress.getLocalHost().getHostAddress() + "\n");
+         }
+         catch (UnknownHostException e)   {
+            report("problems in server " + e.toString());
+         }
+      }, "server-stats");
+      stats.setDaemon(true);
+      stats.start();
    }
 
    /**
-       * Reports the server's IP address and name, and gives the current time.
-       * @return gives the date and time nicely formatted
-       * @throws UnknownHostException due to not an improper server
+       * Opens the game journal in the directory given by the options, if any, and closes it when
+       * the server stops. A journal that cannot be opened is reported and the server runs without.
        */
-   private String reportStatsOnServer() throws UnknownHostException   {
-      report("This server's computer name is " + 
-         InetAddress.getLocalHost().getHostName());
-      report("This server's IP address is " + 
-         InetAddress.getLocalHost().getHostAddress() + "\n");
-      return LocalDateTime.now().format(FORMATTER);
+   private void openJournal() {
+      if (options.getJournalDirectory() == null)
+         return;
+      try   {
+         journal = new GameJournal(Paths.get(options.getJournalDirectory()));
+         report("games are journaled in " + options.getJournalDirectory());
+         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try   {
+               journal.close();
+            }
+            catch (IOException e)   {
+               System.err.println("Cannot close the journal: " + e.getMessage());
+            }
+         }, "journal-close"));
+      }
+      catch (IOException e)   {
+         report("problems opening the journal " + e.toString());
+      }
    }
 
    /**
-       * Reports the clients's domain name and IP address.
+       * Reports how long clients wait before they are given a computer opponent, if they ever are.
+       */
+   private void reportComputerWait()  {
+      if (options.getComputerWaitMillis() > 0)
+         report("clients waiting " + options.getComputerWaitMillis() / 1000 + " s play a " +
+            HuntTargetStrategy.levelToString(options.getComputerLevel()) + " computer opponent");
+   }
+
+   /**
+       * Reports the clients's IP address, and its domain name once the HostNameCache has found it, so
+       * accepting clients never waits for a lookup.
        * @param socket an open socket
        * @param n the client's number (starting with 1)
        */
    private void reportStatsOnClient(Socket socket, int n)   {
       InetAddress  addr = socket.getInetAddress();
-      report("client " + n + "'s host name is " + addr.getHostName());
       report("client " + n + "'s IP Address is " + addr.getHostAddress());
+      hostNames.resolve(addr, name -> report("client " + n + "'s host name is " + name));
    }
 
    /**
-       * Builds a reporting window, as well as opens the server socket. It connects clients through
-       * the server socket, and runs a thread for every two players, continuing unless an error occurs.
+       * Opens the server socket. It accepts clients through the server socket and queues them with
+       * a Matchmaker, which runs a thread of the given kind for every two players it pairs,
+       * continuing unless an error occurs.
+       * @param gameThreads starts the thread of each game
        */
-   public BattleShipServer()    {
-      buildLogFrame();
-      try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-         String nowStr = reportStatsOnServer();        
-         report("The server, port " + serverSocket.getLocalPort() 
-            + ", started on " + nowStr);
-         int gameNumber = 0;  
+   public void serve(GameThreads gameThreads)    {
+      try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+         serverChannel.bind(new InetSocketAddress(PORT), ACCEPT_BACKLOG);
+         report("The server, port " + PORT
+            + ", started on " + LocalDateTime.now().format(FORMATTER));
+         report("games run on " + (gameThreads.isVirtual() ? "virtual" : "platform") + " threads");
+         if (gameThreads.isFallback())
+            report("virtual threads were asked for but need Java 21 or later, this is Java " +
+               Runtime.version().feature() + ", so games run on platform threads instead");
+         if (options.isServerResolvesShots())
+            report("the server resolves every shot");
+         reportStatsOnServer();
+         openJournal();
+         ResumeRegistry resumes = options.getGraceMillis() > 0 ? new ResumeRegistry(serverLog) : null;
+         matchmaker = new Matchmaker(serverLog, Matchmaker.policyNamed(options.getMatchPolicy()),
+            ratings, (channel0, channel1, gameNumber) -> {
+               //The game reads and writes the sockets' streams, which need blocking channels
+               channel0.configureBlocking(true);
+               if (channel1 != null)
+                  channel1.configureBlocking(true);
+               BattleShipGame service = new BattleShipGame(channel0.socket(),
+                  channel1 == null ? null : channel1.socket(), serverLog, gameNumber, gameThreads, options);
+               service.setRatings(ratings);
+               service.setJournal(journal);
+               service.setResumeRegistry(resumes);
+               service.setMatchmaker(matchmaker);
+               gameThreads.startGame(service);
+               report("starting thread for game " + gameNumber + " at " + 
+                  LocalDateTime.now().format(FORMATTER));
+               report(gameThreads.reportUsage());
+            });
+         matchmaker.setResumeHandler(resumes);
+         matchmaker.setComputerWait(options.getComputerWaitMillis());
+         matchmaker.start();
+         ServerMetrics.SHARED.watch(matchmaker);
+         ServerMetrics.SHARED.export(serverLog, options.getMetricsPort());
+         report("waiting clients are paired by " + options.getMatchPolicy());
+         reportComputerWait();
+         int clientNumber = 0;
          while (true)   {
-            gameNumber++;
             //listen for new connection requests
-            Socket socket0 = serverSocket.accept();
-            reportStatsOnClient(socket0, gameNumber);
-            Socket socket1 = serverSocket.accept();
-            reportStatsOnClient(socket1, gameNumber);
-            //create game thread
-            Runnable service = new BattleShipGame(socket0, socket1, textAreaLog, gameNumber);
-            new Thread(service).start();
-            report("starting thread for game " + gameNumber + " at " + 
-               LocalDateTime.now().format(FORMATTER));
+            SocketChannel channel = serverChannel.accept();
+            ServerMetrics.SHARED.accepted();
+            clientNumber++;
+            reportStatsOnClient(channel.socket(), clientNumber);
+            matchmaker.offer(channel);
          }
       }
       catch(IOException e) {
@@ -117,4 +226,18 @@ public class BattleShipServer extends JFrame implements BattleShippable {
          e.printStackTrace(System.err);
       }
    }
+
+   /**
+       * Runs a BattleShipNioServer which multiplexes the games over the given number of
+       * event loops, continuing unless an error occurs.
+       * @param eventLoops the number of event loop threads
+       */
+   public void serveNio(int eventLoops)   {
+      reportStatsOnServer();
+      openJournal();
+      BattleShipNioServer server = new BattleShipNioServer(serverLog, eventLoops, options, ratings);
+      server.setJournal(journal);
+      server.setHostNames(hostNames);
+      server.run();
+   }
 }
\ No newline at end of file
@@ -0,0 +1,348 @@
+/**
+* A BattleShipSimulation plays games between two ShotStrategies in process, with no sockets or Swing, to
+* compare strategies and fleet layouts over many games. The games are played on Boards, the model behind
+* every Grid, and fleets are placed through the PlacementTables, so a Ship is placed and sunk by the same
+* rules as in a real game. As in a GameSession the players take turns firing one shot each, and the first
+* to sink every Ship of the other wins; which strategy fires first alternates from game to game.
+* <p>
+* The games are split into chunks which are played in parallel, on a ForkJoinPool of the given number of
+* threads. Each chunk has its own strategies, Boards and Results, so the threads share nothing until the
+* Results of the chunks are merged, and the games played per second grow with the number of cores.
+* </p>
+* <p>
+* The Results are the win rate of each strategy, the mean and median shots each takes to win, the games
+* drawn because a strategy ran out of shots, and how often each space was hit.
+* </p>
+* <p>
+* Games are the standard one unless other GameRules are set, in which case every Board, fleet and strategy
+* follows those.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+public class BattleShipSimulation implements BattleShippable  {
+   //Games played by each task before its Results are merged
+   private static final int CHUNK = 4096;
+
+   /**
+       * A fleet layout made of random placements from the PlacementTables.
+       */
+   public static final FleetLayout RANDOM_FLEET = (board, random) ->
+      PlacementTable.placeRandomFleet(board, null, random);
+
+   //Creates the strategy of each player for each chunk, and places each player's fleet
+   private Function<Random, ShotStrategy> strategyA;
+   private Function<Random, ShotStrategy> strategyB;
+   private FleetLayout layoutA;
+   private FleetLayout layoutB;
+   private GameRules rules;
+
+   /**
+       * A FleetLayout places a player's fleet at the start of each game.
+       */
+   public interface FleetLayout  {
+      /**
+          * Places every Ship of the fleet.
+          * @param board an empty Board
+          * @param random the source of randomness
+          * @return true if every Ship was placed, false otherwise
+          */
+      boolean place(Board board, Random random);
+   }
+
+   /**
+       * Results are what was measured over a number of games, for strategy A (0) and strategy B (1).
+       */
+   public static class Results   {
+      private final GameRules rules;
+      //Shots a strategy may fire in a game before the game is given up as drawn
+      private final int maxShots;
+      private long games;
+      private long draws;
+      private final long[] wins;
+      //For each strategy, the number of wins taking each number of shots
+      private final long[][] shotsToWin;
+      //The number of hits on each space, over every Board fired at
+      private final long[] hits;
+
+      /**
+          * Creates empty Results for games of the given GameRules.
+          * @param rules the size of the Grid and the fleet
+          */
+      public Results(GameRules rules)  {
+         this.rules = rules;
+         maxShots = 4 * rules.getSpaces();
+         wins = new long[2];
+         shotsToWin = new long[2][maxShots + 1];
+         hits = new long[rules.getSpaces()];
+      }
+
+      /**
+          * Adds what was measured in other Results to these.
+          * @param other the Results to add
+          */
+      public void add(Results other)   {
+         games += other.games;
+         draws += other.draws;
+         for (int p = 0; p < 2; p++)   {
+            wins[p] += other.wins[p];
+            for (int shots = 0; shots <= maxShots; shots++)
+               shotsToWin[p][shots] += other.shotsToWin[p][shots];
+         }
+         for (int i = 0; i < hits.length; i++)
+            hits[i] += other.hits[i];
+      }
+
+      /**
+          * @return the number of games played.
+          */
+      public long getGames()  {
+         return games;
+      }
+
+      /**
+          * @return the number of games given up because a strategy ran out of shots.
+          */
+      public long getDraws()  {
+         return draws;
+      }
+
+      /**
+          * @param strategy 0 for strategy A, 1 for strategy B
+          * @return the share of the games the strategy won, from 0 to 1
+          */
+      public double getWinRate(int strategy)  {
+         return games == 0 ? 0 : (double)wins[strategy] / games;
+      }
+
+      /**
+          * @param strategy 0 for strategy A, 1 for strategy B
+          * @return the mean number of shots the strategy fired in the games it won
+          */
+      public double getMeanShotsToWin(int strategy)   {
+         long total = 0;
+         for (int shots = 0; shots <= maxShots; shots++)
+            total += shots * shotsToWin[strategy][shots];
+         return wins[strategy] == 0 ? 0 : (double)total / wins[strategy];
+      }
+
+      /**
+          * @param strategy 0 for strategy A, 1 for strategy B
+          * @return the median number of shots the strategy fired in the games it won, or 0 if it won none
+          */
+      public int getMedianShotsToWin(int strategy)  {
+         long seen = 0;
+         for (int shots = 0; shots <= maxShots; shots++)   {
+            seen += shotsToWin[strategy][shots];
+            if (2 * seen >= wins[strategy] && wins[strategy] > 0)
+               return shots;
+         }
+         return 0;
+      }
+
+      /**
+          * @param space the single digit index of a space
+          * @return the share of the Boards fired at on which the space was hit, from 0 to 1
+          */
+      public double getHitFrequency(int space)   {
+         return games == 0 ? 0 : (double)hits[space] / (2 * games);
+      }
+
+      /**
+          * Prints the Results.
+          * @param out where to print
+          * @param nameA the name of strategy A
+          * @param nameB the name of strategy B
+          */
+      public void print(PrintStream out, String nameA, String nameB)  {
+         String[] names = { nameA, nameB };
+         int width = Math.max(nameA.length(), nameB.length());
+         for (int p = 0; p < 2; p++)
+            out.printf("%-" + width + "s  wins %6.2f%%  shots to win: mean %.2f  median %d%n", names[p],
+               100 * getWinRate(p), getMeanShotsToWin(p), getMedianShotsToWin(p));
+         out.println("drawn " + draws);
+         out.println("hits on each space, % of boards:");
+         int dimension = rules.getDimension();
+         for (int row = 0; row < dimension; row++)  {
+            StringBuilder line = new StringBuilder();
+            for (int col = 0; col < dimension; col++)
+               line.append(String.format("%6.1f", 100 * getHitFrequency(row * dimension + col)));
+            out.println(line);
+         }
+      }
+   }
+
+   /**
+       * Plays a simulation given by the line arguments and prints its Results. See SimulationOptions
+       * for every argument.
+       * @param args line arguments
+       */
+   public static void main(String[] args)   {
+      SimulationOptions options = SimulationOptions.parse(args);
+      try   {
+         BattleShipSimulation simulation = new BattleShipSimulation(strategyNamed(options.getStrategyA()),
+            strategyNamed(options.getStrategyB()));
+         simulation.setRules(options.getRules());
+         long start = System.nanoTime();
+         Results results = simulation.run(options.getGames(), options.getThreads());
+         double seconds = (System.nanoTime() - start) / 1e9;
+         System.out.printf("%d games of %s against %s on %d threads in %.2f s, %.0f games/sec%n",
+            results.getGames(), options.getStrategyA(), options.getStrategyB(), options.getThreads(), seconds,
+            results.getGames() / seconds);
+         results.print(System.out, options.getStrategyA(), options.getStrategyB());
+      }
+      catch (IllegalArgumentException | InterruptedException e)   {
+         System.err.println("problems running the simulation " + e.toString());
+      }
+   }
+
+   /**
+       * Creates a BattleShipSimulation in which both players place random fleets.
+       * @param strategyA creates the strategy of player A from a source of randomness
+       * @param strategyB creates the strategy of player B from a source of randomness
+       */
+   public BattleShipSimulation(Function<Random, ShotStrategy> strategyA, Function<Random, ShotStrategy> strategyB)   {
+      this.strategyA = strategyA;
+      this.strategyB = strategyB;
+      layoutA = RANDOM_FLEET;
+      layoutB = RANDOM_FLEET;
+      rules = GameRules.STANDARD;
+   }
+
+   /**
+       * Sets the size of the Grid and the fleet of every game. Must be called before the simulation is run.
+       * @param rules the GameRules of every game
+       */
+   public void setRules(GameRules rules)  {
+      this.rules = rules;
+   }
+
+   /**
+       * Sets how each player places their fleet. Must be called before the simulation is run.
+       * @param layoutA places the fleet of player A
+       * @param layoutB places the fleet of player B
+       */
+   public void setFleetLayouts(FleetLayout layoutA, FleetLayout layoutB)   {
+      this.layoutA = layoutA;
+      this.layoutB = layoutB;
+   }
+
+   /**
+       * Finds a strategy by name.
+       * @param name easy, normal or hard for a HuntTargetStrategy of that level, or the name of a class
+       * implementing ShotStrategy with a public constructor taking a java.util.Random
+       * @return creates the strategy from a source of randomness
+       * @throws IllegalArgumentException if there is no such strategy
+       */
+   public static Function<Random, ShotStrategy> strategyNamed(String name)   {
+      int level = HuntTargetStrategy.levelNamed(name);
+      if (level >= 0)
+         return random -> new HuntTargetStrategy(level, random);
+      try   {
+         Class<? extends ShotStrategy> strategy = Class.forName(name).asSubclass(ShotStrategy.class);
+         strategy.getConstructor(Random.class);
+         return random -> {
+            try   {
+               return strategy.getConstructor(Random.class).newInstance(random);
+            }
+            catch (ReflectiveOperationException e) {
+               throw new IllegalStateException("cannot create " + name, e);
+            }
+         };
+      }
+      catch (ClassNotFoundException | ClassCastException | NoSuchMethodException e) {
+         throw new IllegalArgumentException("no strategy named " + name, e);
+      }
+   }
+
+   /**
+       * Plays the given number of games, spread across the given number of threads.
+       * @param games the number of games to play
+       * @param threads the number of threads to play them on
+       * @return what was measured over every game
+       * @throws InterruptedException if the calling thread is interrupted while the games are played
+       */
+   public Results run(long games, int threads) throws InterruptedException   {
+      long chunks = (games + CHUNK - 1) / CHUNK;
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try   {
+         return pool.submit(() -> LongStream.range(0, chunks).parallel()
+            .mapToObj(chunk -> playChunk(chunk * CHUNK, (int)Math.min(CHUNK, games - chunk * CHUNK)))
+            .collect(() -> new Results(rules), Results::add, Results::add)).get();
+      }
+      catch (ExecutionException e)  {
+         throw new IllegalStateException("a game could not be played", e.getCause());
+      }
+      finally  {
+         pool.shutdown();
+      }
+   }
+
+   /**
+       * Plays a chunk of games on the calling thread, with strategies and Boards of its own.
+       * @param first the number of the first game, which decides who fires first in each game
+       * @param count the number of games to play
+       * @return what was measured over the games
+       */
+   private Results playChunk(long first, int count)   {
+      Random random = ThreadLocalRandom.current();
+      ShotStrategy[] strategies = { strategyA.apply(random), strategyB.apply(random) };
+      FleetLayout[] layouts = { layoutA, layoutB };
+      Board[] boards = { new Board(rules), new Board(rules) };
+      int[] shots = new int[2];
+      Results results = new Results(rules);
+      for (int i = 0; i < count; i++)
+         play(strategies, layouts, boards, shots, (int)((first + i) % 2), random, results);
+      return results;
+   }
+
+   /**
+       * Plays one game. Each player's Board holds their own fleet and is fired at by the other player.
+       * @param strategies the strategy of each player
+       * @param layouts places the fleet of each player
+       * @param boards the Board of each player
+       * @param shots scratch space for the shots fired by each player
+       * @param turn the player who fires first
+       * @param random the source of randomness
+       * @param results where the result of the game is added
+       */
+   private static void play(ShotStrategy[] strategies, FleetLayout[] layouts, Board[] boards, int[] shots, int turn,
+      Random random, Results results)   {
+      for (int p = 0; p < 2; p++)   {
+         boards[p].clear();
+         if (!layouts[p].place(boards[p], random))
+            throw new IllegalStateException("a fleet could not be placed");
+         strategies[p].newGame(results.rules);
+         shots[p] = 0;
+      }
+      results.games++;
+      while (true)   {
+         int defender = 1 - turn;
+         int space = strategies[turn].nextShot();
+         shots[turn]++;
+         boolean valid = space >= 0 && space < results.hits.length;
+         int result = valid ? boards[defender].fire(space) : Board.REPEAT;
+         boolean hit = result == Board.HIT || result == Board.SUNK;
+         if (hit)
+            results.hits[space]++;
+         if (valid)
+            strategies[turn].shotResult(space, hit, result == Board.SUNK);
+         if (hit && boards[defender].allSunk())  {
+            results.wins[turn]++;
+            results.shotsToWin[turn][shots[turn]]++;
+            return;
+         }
+         if (shots[turn] >= results.maxShots) {
+            results.draws++;
+            return;
+         }
+         turn = defender;
+      }
+   }
+}
\ No newline at end of file
@@ -1,16 +1,21 @@
 public interface BattleShippable {
    /**
-       * Names of each ship.
+       * Names of each ship of the standard fleet.
        */
    String[] ships = { "Aircraft Carrier - 5", "Battleship - 4", 
       "Submarine - 3", "Cruiser - 3", "Destroyer - 2"};
    /**
-       * Number of ships each player has.
+       * Number of ships each player has in the standard game.
        */
    int NUM_SHIPS = 5;
+
+   /**
+       * Length of each ship of the standard fleet, in the same order as their names.
+       */
+   int[] SHIP_LENGTHS = { 5, 4, 3, 3, 2 };
    
    /**
-       * Size of the Grid.
+       * Size of the Grid in the standard game. See GameRules for games of other sizes.
        */
    int GRID_DIMENSION = 10;
    
@@ -152,6 +157,163 @@ public interface BattleShippable {
        * server that a client has quit the game during the main phase.
        */
    int QUIT = 110;
+
+   /**
+       * Message sent by the server to the client <br>
+       * AUTHORITATIVE does not have arguments <br>
+       * <p>
+       *    AUTHORITATIVE
+       * </p>
+       * Sent after NAME when the server resolves every shot itself. A client which understands it
+       * places its ships with CONFIRM_FLEET instead of CONFIRM_SHIPS, does not answer FIRE with SUCCESS
+       * and does not answer MARK with TURN or WIN, as the server sends TURN or GAME_OVER itself.
+       * Clients which ignore it play as before.
+       */
+   int AUTHORITATIVE = 111;
+
+   /**
+       * Message sent by the client to the server <br>
+       * CONFIRM_FLEET takes two integer arguments for each Ship of the game's fleet <br>
+       * <p>
+       * CONFIRM_FLEET <em>start</em> <em>end</em> ...
+       * </p>
+       * where each <em>start</em> and <em>end</em> are the single digit indexes of the two ends of
+       * a Ship, in the order of the ships. Sent instead of CONFIRM_SHIPS to a server which sent
+       * AUTHORITATIVE, which checks that the fleet is valid.
+       */
+   int CONFIRM_FLEET = 112;
+
+   /**
+       * Message sent by the server to the client <br>
+       * FRAMING does not have arguments <br>
+       * <p>
+       *    FRAMING
+       * </p>
+       * Sent after NAME to offer framed messages. Clients which ignore it keep using the bare
+       * encoding, while a client which supports frames answers with HELLO.
+       */
+   int FRAMING = 113;
+
+   /**
+       * Message sent by the client to the server or vice-versa <br>
+       * HELLO takes one byte argument <br>
+       * <p>
+       * HELLO <em>version</em>
+       * </p>
+       * where <em>version</em> is the highest frame version the client supports when sent by the
+       * client, and the version both sides use when sent back by the server. Both are sent with the
+       * bare encoding; every message after its HELLO is sent as a frame of the version agreed, see
+       * FrameCodec.
+       */
+   int HELLO = 114;
+
+   /**
+       * Message sent by the server to the client <br>
+       * PING takes one int argument <br>
+       * <p>
+       * PING <em>interval</em>
+       * </p>
+       * where <em>interval</em> is the number of milliseconds until the next PING. Only sent to clients
+       * which answered FRAMING, which reply with PONG and may treat a server that stays silent for
+       * several intervals as gone.
+       */
+   int PING = 115;
+
+   /**
+       * Message sent by the client to the server <br>
+       * PONG does not have arguments <br>
+       * <p>
+       *    PONG
+       * </p>
+       * The answer to PING, which tells the server the client is still there.
+       */
+   int PONG = 116;
+
+   /**
+       * Message sent by the server to the client <br>
+       * TOKEN takes one long argument <br>
+       * <p>
+       * TOKEN <em>token</em>
+       * </p>
+       * where <em>token</em> is the secret which lets the client rejoin its game. Sent after the HELLO
+       * of a client which answered FRAMING, when the server holds games open for players who lose
+       * their connection. A token can be used once, so a client which resumes is sent a new one.
+       */
+   int TOKEN = 117;
+
+   /**
+       * Message sent by the client to the server <br>
+       * RESUME takes one long argument <br>
+       * <p>
+       * RESUME <em>token</em>
+       * </p>
+       * where <em>token</em> is the one sent with TOKEN. Sent bare, as the first message on a new
+       * connection, by a client whose connection was lost during a game. The server answers with
+       * SNAPSHOT and carries on the game, or with DONE if the game is over.
+       */
+   int RESUME = 118;
+
+   /**
+       * Message sent by the server to the client <br>
+       * SNAPSHOT takes five boolean or byte arguments followed by four masks of SNAPSHOT_MASK_BYTES bytes <br>
+       * <p>
+       * SNAPSHOT <em>playing</em> <em>confirmed</em> <em>turn</em> <em>yourSunk</em> <em>theirSunk</em>
+       * <em>shotsAtYou</em> <em>hitsOnYou</em> <em>yourShots</em> <em>yourHits</em>
+       * </p>
+       * where <em>playing</em> is whether the ships of both players have been placed, <em>confirmed</em>
+       * whether the client's have, <em>turn</em> whether it is the client's turn, and <em>yourSunk</em>
+       * and <em>theirSunk</em> how many of the client's and the opponent's Ships have been sunk. Each
+       * mask has bit <em>i</em> % 8 of byte <em>i</em> / 8 set for every space <em>i</em> in it: the
+       * spaces fired at on the client's Grid, those of them which hit, the spaces the client has fired
+       * at and those of them which hit. Sent in answer to RESUME, followed by FRAMING.
+       */
+   int SNAPSHOT = 119;
+
+   /**
+       * Number of bytes of each mask of a SNAPSHOT in the standard game, one bit per GridSpace.
+       */
+   int SNAPSHOT_MASK_BYTES = (GRID_DIMENSION * GRID_DIMENSION + 7) / 8;
+
+   /**
+       * Message sent by the server to the client <br>
+       * RULES takes GameRules.RULES_BYTES byte arguments <br>
+       * <p>
+       * RULES <em>dimension</em> <em>count</em> ...
+       * </p>
+       * where <em>dimension</em> is the number of rows and columns of each Grid and each <em>count</em>
+       * is the number of Ships of one length, for every length from 1 to GameRules.MAX_DIMENSION. Sent
+       * before NAME when the game is not the standard one. The single digit index of a space is then its
+       * row times the dimension plus its column, the Ships are numbered from the longest to the shortest,
+       * CONFIRM_FLEET carries the ends of each of them and the masks of SNAPSHOT have a bit for every
+       * space. Only clients which understand RULES can play such a game.
+       */
+   int RULES = 120;
+
+   /**
+       * Message sent by the client to the server or vice-versa <br>
+       * LOBBY does not have arguments <br>
+       * <p>
+       *    LOBBY
+       * </p>
+       * Sent by a client, once its game is over, to wait for another opponent on the same connection
+       * rather than connecting again. The server answers with LOBBY and queues the client to be paired.
+       * After its own LOBBY the client sends bare messages, and after the server's LOBBY the server
+       * does too, as on a new connection.
+       */
+   int LOBBY = 121;
+
+   /**
+       * Message sent by the client to the server or vice-versa <br>
+       * REMATCH does not have arguments <br>
+       * <p>
+       *    REMATCH
+       * </p>
+       * Sent by a client, once its game is over, to play the same opponent again on the same connection.
+       * The server sends REMATCH to the opponent, if they have not yet decided, to tell them they were
+       * asked. Once both players have sent it a new game starts, with RULES and NAME as usual, keeping the
+       * frames already agreed; if the opponent goes back to the lobby or leaves the client is sent DONE.
+       */
+   int REMATCH = 122;
    
    /**
       * Converts an integer command cmd to its string representation. 
@@ -167,6 +329,18 @@ public interface BattleShippable {
       *    DONE   server  &rarr; client, no arguments <br>
       *    QUIT_SHIP      client  &larr;&rarr; server, one int <br>
       *    QUIT      client  &rarr; server, one int <br>
+      *    AUTHORITATIVE   server  &rarr; client, no arguments <br>
+      *    CONFIRM_FLEET   client  &rarr; server, 2 * NUM_SHIPS ints <br>
+      *    FRAMING   server  &rarr; client, no arguments <br>
+      *    HELLO   client  &larr;&rarr; server, one byte <br>
+      *    PING   server  &rarr; client, one int <br>
+      *    PONG   client  &rarr; server, no arguments <br>
+      *    TOKEN   server  &rarr; client, one long <br>
+      *    RESUME   client  &rarr; server, one long <br>
+      *    SNAPSHOT   server  &rarr; client, five bytes followed by four masks <br>
+      *    RULES   server  &rarr; client, GameRules.RULES_BYTES bytes <br>
+      *    LOBBY   client  &larr;&rarr; server, no arguments <br>
+      *    REMATCH   client  &larr;&rarr; server, no arguments <br>
       * </p>
       * A command that is not supported returns the string
       * "UNRECOGNIZABLE COMMAND".
@@ -209,12 +383,140 @@ public interface BattleShippable {
          case QUIT:
             cmdString = "QUIT";
             break;
+         case AUTHORITATIVE:
+            cmdString = "AUTHORITATIVE";
+            break;
+         case CONFIRM_FLEET:
+            cmdString = "CONFIRM_FLEET";
+            break;
+         case FRAMING:
+            cmdString = "FRAMING";
+            break;
+         case HELLO:
+            cmdString = "HELLO";
+            break;
+         case PING:
+            cmdString = "PING";
+            break;
+         case PONG:
+            cmdString = "PONG";
+            break;
+         case TOKEN:
+            cmdString = "TOKEN";
+            break;
+         case RESUME:
+            cmdString = "RESUME";
+            break;
+         case SNAPSHOT:
+            cmdString = "SNAPSHOT";
+            break;
+         case RULES:
+            cmdString = "RULES";
+            break;
+         case LOBBY:
+            cmdString = "LOBBY";
+            break;
+         case REMATCH:
+            cmdString = "REMATCH";
+            break;
          default:
             cmdString = "UNRECOGNIZABLE COMMAND";
       }
       return cmdString;
    }
    
+   /**
+      * Gives the number of argument bytes that follow a command sent by a client to the server
+      * in the standard game. See clientArgumentBytes(int, GameRules).
+      * @param cmd an integer corresponding to a command sent by a client
+      * @return the number of bytes of arguments following cmd, or -1 if cmd is not supported
+      */ 
+   default int clientArgumentBytes(int cmd)   {
+      return clientArgumentBytes(cmd, GameRules.STANDARD);
+   }
+
+   /**
+      * Gives the number of argument bytes that follow a command sent by a client to the server,
+      * as written by a DataOutputStream (four bytes per integer, one byte per boolean).
+      * A command that is not supported returns -1.
+      * @param cmd an integer corresponding to a command sent by a client
+      * @param rules the GameRules of the game
+      * @return the number of bytes of arguments following cmd, or -1 if cmd is not supported
+      */ 
+   default int clientArgumentBytes(int cmd, GameRules rules)   {
+      switch (cmd)   {
+         case PONG:
+         case LOBBY:
+         case REMATCH:
+            return 0;
+         case CONFIRM_SHIPS:
+         case HELLO:
+            return 1;
+         case FIRE:
+         case RESUME:
+            return 8;
+         case SUCCESS:
+            return 10;
+         case TURN:
+         case WIN:
+         case QUIT_SHIP:
+         case QUIT:
+            return 4;
+         case CONFIRM_FLEET:
+            return 8 * rules.getNumShips();
+         default:
+            return -1;
+      }
+   }
+   
+   /**
+      * Gives the number of argument bytes that follow a command sent by the server to a client
+      * in the standard game. See serverArgumentBytes(int, GameRules).
+      * @param cmd an integer corresponding to a command sent by the server
+      * @return the number of bytes of arguments following cmd, or -1 if cmd is not supported
+      */ 
+   default int serverArgumentBytes(int cmd)   {
+      return serverArgumentBytes(cmd, GameRules.STANDARD);
+   }
+
+   /**
+      * Gives the number of argument bytes that follow a command sent by the server to a client,
+      * as written by a DataOutputStream (four bytes per integer, one byte per boolean).
+      * A command that is not supported returns -1.
+      * @param cmd an integer corresponding to a command sent by the server
+      * @param rules the GameRules of the game
+      * @return the number of bytes of arguments following cmd, or -1 if cmd is not supported
+      */ 
+   default int serverArgumentBytes(int cmd, GameRules rules)   {
+      switch (cmd)   {
+         case DONE:
+         case AUTHORITATIVE:
+         case FRAMING:
+         case LOBBY:
+         case REMATCH:
+            return 0;
+         case TURN:
+         case HELLO:
+            return 1;
+         case NAME:
+         case FIRE:
+         case GAME_OVER:
+         case QUIT_SHIP:
+         case PING:
+            return 4;
+         case MARK:
+            return 6;
+         case TOKEN:
+            return 8;
+         case SNAPSHOT:
+            return 5 + 4 * rules.getMaskBytes();
+         case RULES:
+            return GameRules.RULES_BYTES;
+         default:
+            return -1;
+      }
+   }
+   
    /**
       * Converts an integer index shipNo to its Ship string representation. 
       * A command that is not supported returns the string "Unknown Ship".
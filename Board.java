@@ -0,0 +1,284 @@
+/**
+* A Board is the state of one player's side of the game, kept in word-packed bitsets rather than Swing
+* components. Each space of the Grid is one bit, at the same single digit index as its GridSpace, in the
+* set of occupied spaces and the set of spaces fired at. The Board also keeps the Ship on each space and
+* how many hits each Ship has taken, along with how many occupied spaces have not been fired at, so a hit,
+* a sunk Ship or a win is found in constant time whatever the size of the Grid, with no allocation. It has
+* no Swing dependency so it can be used by the server and in simulations as well as behind a Grid.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.*;
+public class Board implements BattleShippable  {
+   /**
+       * Result of firing at a space that holds no Ship.
+       */
+   public static final int MISS = 0;
+   /**
+       * Result of firing at a space that holds a Ship which is still afloat.
+       */
+   public static final int HIT = 1;
+   /**
+       * Result of firing at the last space of a Ship that was still afloat.
+       */
+   public static final int SUNK = 2;
+   /**
+       * Result of firing at a space that was already fired at.
+       */
+   public static final int REPEAT = 3;
+
+   /**
+       * Number of spaces on a board of the standard game.
+       */
+   public static final int SPACES = GRID_DIMENSION * GRID_DIMENSION;
+
+   //Instance Variables
+   private final GameRules rules;
+   private final BitSet occupied;
+   private final BitSet shot;
+   //The Ship on each space plus one, or 0 if there is none
+   private final byte[] shipOn;
+   //The first space of each Ship, the step to its next space (0 while it is not placed), its length
+   //and the number of its spaces fired at
+   private final int[] shipStart;
+   private final int[] shipStep;
+   private final int[] shipLength;
+   private final int[] shipHits;
+   //Occupied spaces which have not been fired at
+   private int unshot;
+
+   /**
+       * Creates an empty Board for the standard game.
+       */
+   public Board()   {
+      this(GameRules.STANDARD);
+   }
+
+   /**
+       * Creates an empty Board with room for every Ship of the given GameRules.
+       * @param rules the size of the Grid and the fleet
+       */
+   public Board(GameRules rules)   {
+      this.rules = rules;
+      occupied = new BitSet(rules.getSpaces());
+      shot = new BitSet(rules.getSpaces());
+      shipOn = new byte[rules.getSpaces()];
+      shipStart = new int[rules.getNumShips()];
+      shipStep = new int[rules.getNumShips()];
+      shipLength = new int[rules.getNumShips()];
+      shipHits = new int[rules.getNumShips()];
+   }
+
+   /**
+       * @return the GameRules the Board was made for.
+       */
+   public GameRules getRules()   {
+      return rules;
+   }
+
+   /**
+       * Empties the Board of Ships and shots.
+       */
+   public void clear()  {
+      for (int i = 0; i < shipStep.length; i++)   {
+         if (shipStep[i] != 0)
+            removeShip(i);
+      }
+      occupied.clear();
+      shot.clear();
+      unshot = 0;
+   }
+
+   /**
+       * @param index the single digit index of a space
+       * @return true if the space is occupied, false otherwise.
+       */
+   public boolean isOccupied(int index)   {
+      return occupied.get(index);
+   }
+
+   /**
+       * @param index the single digit index of a space
+       * @return true if the space has been fired at, false otherwise.
+       */
+   public boolean isShot(int index)   {
+      return shot.get(index);
+   }
+
+   /**
+       * Sets whether a space is occupied, without it belonging to any Ship.
+       * @param index the single digit index of the space
+       * @param taken whether the space is occupied or not
+       */
+   public void setOccupied(int index, boolean taken)  {
+      if (taken == occupied.get(index))
+         return;
+      occupied.set(index, taken);
+      if (!shot.get(index))
+         unshot += taken ? 1 : -1;
+   }
+
+   /**
+       * Marks a space as having been fired at, counting a hit on the Ship on it if there is one.
+       * @param index the single digit index of the space
+       */
+   public void markShot(int index)  {
+      if (shot.get(index))
+         return;
+      shot.set(index);
+      if (occupied.get(index))
+         unshot--;
+      if (shipOn[index] != 0)
+         shipHits[shipOn[index] - 1]++;
+   }
+
+   /**
+       * @param start the single digit index of the first space of a line
+       * @param step 1 for a line along a row, the dimension for a line down a column
+       * @param length the number of spaces of the line
+       * @return true if none of the spaces of the line are occupied, false otherwise.
+       */
+   public boolean isFree(int start, int step, int length)   {
+      if (step == 1) {
+         int next = occupied.nextSetBit(start);
+         return next < 0 || next >= start + length;
+      }
+      for (int k = 0, i = start; k < length; k++, i += step)   {
+         if (occupied.get(i))
+            return false;
+      }
+      return true;
+   }
+
+   /**
+       * Checks a placement of a PlacementTable against the occupied spaces, with a single AND of its
+       * mask if the table keeps one, or one line at a time otherwise.
+       * @param table the table of the Ship's length
+       * @param placement the number of the placement in the table
+       * @return true if none of the spaces of the placement are occupied, false otherwise.
+       */
+   public boolean isFree(PlacementTable table, int placement)  {
+      BitSet mask = table.getMask(placement);
+      if (mask != null)
+         return !occupied.intersects(mask);
+      return isFree(table.getStart(placement), table.getStep(placement), table.getLength());
+   }
+
+   /**
+       * Places a Ship on a placement of a PlacementTable if none of its spaces are occupied.
+       * @param ship the index of the Ship
+       * @param table the table of the Ship's length
+       * @param placement the number of the placement in the table
+       * @return true if the Ship was placed, false if a space was already occupied
+       */
+   public boolean placeShip(int ship, PlacementTable table, int placement)  {
+      if (!isFree(table, placement))
+         return false;
+      int start = table.getStart(placement);
+      int step = table.getStep(placement);
+      int length = table.getLength();
+      shipStart[ship] = start;
+      shipStep[ship] = step;
+      shipLength[ship] = length;
+      shipHits[ship] = 0;
+      for (int k = 0, i = start; k < length; k++, i += step)   {
+         occupied.set(i);
+         shipOn[i] = (byte)(ship + 1);
+         if (shot.get(i))
+            shipHits[ship]++;
+         else
+            unshot++;
+      }
+      return true;
+   }
+
+   /**
+       * Places a Ship of the given length between two spaces if they form a line and none of
+       * its spaces are occupied. The line is looked up in the PlacementTable of the length.
+       * @param ship the index of the Ship
+       * @param start the single digit index of one end
+       * @param end the single digit index of the other end
+       * @param length the length of the Ship
+       * @return true if the Ship was placed, false otherwise
+       */
+   public boolean placeShip(int ship, int start, int end, int length)   {
+      PlacementTable table = rules.getTable(length);
+      int placement = table == null ? -1 : table.indexOf(start, end);
+      return placement >= 0 && placeShip(ship, table, placement);
+   }
+
+   /**
+       * Removes a Ship from the Board, freeing its spaces.
+       * @param ship the index of the Ship
+       */
+   public void removeShip(int ship)   {
+      for (int k = 0, i = shipStart[ship]; k < shipLength[ship]; k++, i += shipStep[ship])   {
+         occupied.clear(i);
+         shipOn[i] = 0;
+         if (!shot.get(i))
+            unshot--;
+      }
+      shipStep[ship] = 0;
+      shipLength[ship] = 0;
+      shipHits[ship] = 0;
+   }
+
+   /**
+       * @param ship the index of a Ship
+       * @return true if the Ship has been placed, false otherwise.
+       */
+   public boolean isPlaced(int ship)   {
+      return shipStep[ship] != 0;
+   }
+
+   /**
+       * @param ship the index of a Ship
+       * @return true if the Ship has been placed and every one of its spaces has been fired at.
+       */
+   public boolean isSunk(int ship)   {
+      return isPlaced(ship) && shipHits[ship] == shipLength[ship];
+   }
+
+   /**
+       * @param index the single digit index of a space
+       * @return the index of the Ship on the space, or -1 if there is none.
+       */
+   public int shipAt(int index)   {
+      return shipOn[index] - 1;
+   }
+
+   /**
+       * Fires at a space, marking it as shot.
+       * @param index the single digit index of the space
+       * @return MISS, HIT, SUNK, or REPEAT if the space was already fired at
+       */
+   public int fire(int index)   {
+      if (isShot(index))
+         return REPEAT;
+      markShot(index);
+      if (!isOccupied(index))
+         return MISS;
+      int ship = shipAt(index);
+      return ship >= 0 && isSunk(ship) ? SUNK : HIT;
+   }
+
+   /**
+       * @return the number of placed Ships which have not been sunk.
+       */
+   public int shipsRemaining()   {
+      int remaining = 0;
+      for (int i = 0; i < shipStep.length; i++)   {
+         if (isPlaced(i) && !isSunk(i))
+            remaining++;
+      }
+      return remaining;
+   }
+
+   /**
+       * @return true if there are occupied spaces and every one of them has been fired at.
+       */
+   public boolean allSunk()   {
+      return unshot == 0 && !occupied.isEmpty();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+/**
+* BotOptions are the settings BattleShipBots is started with, read from its line arguments.
+* <p>
+*    host <em>name</em> &mdash; the server to connect to (by default localhost) <br>
+*    bots <em>n</em> &mdash; the number of players simulated at once (by default 100) <br>
+*    think <em>ms</em> &mdash; how long each player waits before firing (by default 0) <br>
+*    seconds <em>n</em> &mdash; how long to play for before reporting (by default 30) <br>
+*    loops <em>n</em> &mdash; the number of event loops the players are spread across (by default one per processor) <br>
+*    ramp <em>n</em> &mdash; the most players connected per second while starting (by default 1000) <br>
+*    bare &mdash; do not accept framed messages, as older clients <br>
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+public class BotOptions  {
+   private String host;
+   private int bots;
+   private long thinkMillis;
+   private int seconds;
+   private int eventLoops;
+   private int rampPerSecond;
+   private boolean framed;
+
+   /**
+       * Creates BotOptions with the default settings.
+       */
+   public BotOptions()   {
+      host = "localhost";
+      bots = 100;
+      thinkMillis = 0;
+      seconds = 30;
+      eventLoops = Runtime.getRuntime().availableProcessors();
+      rampPerSecond = 1000;
+      framed = true;
+   }
+
+   /**
+       * Reads BotOptions from the line arguments. Unknown arguments, and settings missing their value,
+       * are ignored.
+       * @param args line arguments
+       * @return the options given by args
+       */
+   public static BotOptions parse(String[] args)   {
+      BotOptions options = new BotOptions();
+      for (int i = 0; i < args.length; i++)   {
+         String arg = args[i].toLowerCase();
+         boolean hasNumber = i + 1 < args.length && args[i + 1].matches("\\d+");
+         if (arg.equals("bare"))
+            options.framed = false;
+         else if (arg.equals("host") && i + 1 < args.length)
+            options.host = args[++i];
+         else if (arg.equals("bots") && hasNumber)
+            options.bots = Integer.parseInt(args[++i]);
+         else if (arg.equals("think") && hasNumber)
+            options.thinkMillis = Long.parseLong(args[++i]);
+         else if (arg.equals("seconds") && hasNumber)
+            options.seconds = Integer.parseInt(args[++i]);
+         else if (arg.equals("loops") && hasNumber)
+            options.eventLoops = Math.max(1, Integer.parseInt(args[++i]));
+         else if (arg.equals("ramp") && hasNumber)
+            options.rampPerSecond = Math.max(1, Integer.parseInt(args[++i]));
+      }
+      return options;
+   }
+
+   /**
+       * @return the host name of the server.
+       */
+   public String getHost() {
+      return host;
+   }
+
+   /**
+       * @return the number of players simulated at once.
+       */
+   public int getBots() {
+      return bots;
+   }
+
+   /**
+       * @return how long each player waits before firing, in milliseconds.
+       */
+   public long getThinkMillis()  {
+      return thinkMillis;
+   }
+
+   /**
+       * @return how long to play for, in seconds.
+       */
+   public int getSeconds() {
+      return seconds;
+   }
+
+   /**
+       * @return the number of event loops.
+       */
+   public int getEventLoops() {
+      return eventLoops;
+   }
+
+   /**
+       * @return the most players connected per second while starting.
+       */
+   public int getRampPerSecond() {
+      return rampPerSecond;
+   }
+
+   /**
+       * @return true if the players accept framed messages when the server offers them.
+       */
+   public boolean isFramed()  {
+      return framed;
+   }
+}
\ No newline at end of file
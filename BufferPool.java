@@ -0,0 +1,67 @@
+/**
+* A BufferPool hands out heap ByteBuffers of a fixed size and takes them back once they are finished
+* with, so that encoding and decoding messages does not allocate a buffer per message. Any thread may
+* acquire or release a buffer. At most a given number of buffers are kept; extra ones are left to the
+* garbage collector.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+public class BufferPool  {
+   /**
+       * A pool shared by the whole server, of buffers large enough for any frame.
+       */
+   public static final BufferPool SHARED = new BufferPool(FrameCodec.MAX_FRAME_BYTES, 1024);
+
+   private final int bufferSize;
+   private final int maxPooled;
+   private final Queue<ByteBuffer> buffers;
+   private final AtomicInteger pooled;
+
+   /**
+       * Creates an empty BufferPool.
+       * @param bufferSize the capacity of each buffer
+       * @param maxPooled the most buffers kept for reuse
+       */
+   public BufferPool(int bufferSize, int maxPooled)   {
+      this.bufferSize = bufferSize;
+      this.maxPooled = maxPooled;
+      buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+      pooled = new AtomicInteger();
+   }
+
+   /**
+       * @return the capacity of each buffer.
+       */
+   public int getBufferSize() {
+      return bufferSize;
+   }
+
+   /**
+       * Takes a cleared buffer from the pool, allocating one if the pool is empty.
+       * @return a buffer of bufferSize bytes
+       */
+   public ByteBuffer acquire()   {
+      ByteBuffer buffer = buffers.poll();
+      if (buffer == null)
+         return ByteBuffer.allocate(bufferSize);
+      pooled.decrementAndGet();
+      return buffer;
+   }
+
+   /**
+       * Gives a buffer back to the pool. The buffer must not be used afterwards.
+       * @param buffer a buffer taken from this pool
+       */
+   public void release(ByteBuffer buffer)   {
+      if (buffer.capacity() != bufferSize || pooled.get() >= maxPooled)
+         return;
+      buffer.clear();
+      pooled.incrementAndGet();
+      buffers.offer(buffer);
+   }
+}
\ No newline at end of file
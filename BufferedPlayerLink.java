@@ -0,0 +1,207 @@
+/**
+* A BufferedPlayerLink encodes the server's commands into a ByteBuffer taken from a BufferPool, leaving it
+* to the transport to write the buffer out when flush is called. Commands are encoded as bare protocol
+* constants followed by their arguments until the client answers FRAMING with HELLO; from the HELLO sent
+* back onwards every command is encoded as a FrameCodec frame.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+public abstract class BufferedPlayerLink implements PlayerLink, BattleShippable  {
+   //Size of the buffers taken from the pool, large enough for any batch of commands sent at once
+   private static final int OUTPUT_BUFFER_SIZE = 256;
+   private static final BufferPool OUTPUT_POOL = new BufferPool(OUTPUT_BUFFER_SIZE, 4096);
+
+   private ByteBuffer out;
+   //Frame version in use, or 0 while commands are not framed
+   private int frameVersion;
+   private int frameStart;
+
+   /**
+       * Creates a BufferedPlayerLink with an empty buffer from the pool.
+       */
+   protected BufferedPlayerLink()   {
+      out = OUTPUT_POOL.acquire();
+   }
+
+   /**
+       * @return the buffer holding the encoded commands, from position 0 up to its position.
+       */
+   protected ByteBuffer getOutput()   {
+      return out;
+   }
+
+   /**
+       * Gives the buffer back to the pool once the link is closed. Anything sent afterwards is
+       * encoded into a new buffer which is never written.
+       */
+   protected void releaseOutput()   {
+      ByteBuffer released = out;
+      out = ByteBuffer.allocate(0);
+      OUTPUT_POOL.release(released);
+   }
+
+   @Override
+   public boolean isFramed()  {
+      return frameVersion > 0;
+   }
+
+   /**
+       * Makes room in the buffer for the given number of bytes.
+       * @param bytes the number of bytes about to be written
+       */
+   private void ensureCapacity(int bytes) {
+      if (out.remaining() < bytes)  {
+         ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+         out.flip();
+         larger.put(out);
+         out = larger;
+      }
+   }
+
+   /**
+       * Starts encoding a command.
+       * @param cmd the protocol constant value
+       * @param argumentBytes the number of bytes of the command's arguments
+       */
+   private void begin(int cmd, int argumentBytes)  {
+      ServerMetrics.SHARED.sent(cmd);
+      ensureCapacity(FrameCodec.HEADER_BYTES + argumentBytes);
+      if (isFramed())
+         frameStart = FrameCodec.beginFrame(out, cmd, frameVersion);
+      else
+         out.putInt(cmd);
+   }
+
+   /**
+       * Finishes encoding the command started by begin.
+       */
+   private void end()   {
+      if (isFramed())
+         FrameCodec.endFrame(out, frameStart);
+   }
+
+   @Override
+   public void sendName(int player) throws IOException   {
+      begin(NAME, 4);
+      out.putInt(player);
+      end();
+   }
+
+   @Override
+   public void sendFire(int space) throws IOException   {
+      begin(FIRE, 4);
+      out.putInt(space);
+      end();
+   }
+
+   @Override
+   public void sendMark(int index, boolean success, boolean sunk) throws IOException   {
+      begin(MARK, 6);
+      out.putInt(index).put((byte)(success ? 1 : 0)).put((byte)(sunk ? 1 : 0));
+      end();
+   }
+
+   @Override
+   public void sendTurn(boolean isTurn) throws IOException   {
+      begin(TURN, 1);
+      out.put((byte)(isTurn ? 1 : 0));
+      end();
+   }
+
+   @Override
+   public void sendGameOver(int winner) throws IOException   {
+      begin(GAME_OVER, 4);
+      out.putInt(winner);
+      end();
+   }
+
+   @Override
+   public void sendDone() throws IOException   {
+      begin(DONE, 0);
+      end();
+   }
+
+   @Override
+   public void sendQuitShip(int player) throws IOException   {
+      begin(QUIT_SHIP, 4);
+      out.putInt(player);
+      end();
+   }
+
+   @Override
+   public void sendAuthoritative() throws IOException   {
+      begin(AUTHORITATIVE, 0);
+      end();
+   }
+
+   @Override
+   public void sendFraming() throws IOException   {
+      if (!isFramed())  {
+         begin(FRAMING, 0);
+         end();
+      }
+   }
+
+   @Override
+   public void sendHello(int version) throws IOException   {
+      if (isFramed())
+         return;
+      begin(HELLO, 1);
+      out.put((byte)version);
+      end();
+      frameVersion = version;
+   }
+
+   @Override
+   public void sendPing(int interval) throws IOException   {
+      begin(PING, 4);
+      out.putInt(interval);
+      end();
+   }
+
+   @Override
+   public void sendToken(long token) throws IOException   {
+      begin(TOKEN, 8);
+      out.putLong(token);
+      end();
+   }
+
+   @Override
+   public void sendRules(GameRules rules) throws IOException   {
+      begin(RULES, GameRules.RULES_BYTES);
+      out.put(rules.toBytes());
+      end();
+   }
+
+   @Override
+   public void sendLobby() throws IOException   {
+      begin(LOBBY, 0);
+      end();
+   }
+
+   @Override
+   public void sendRematch() throws IOException   {
+      begin(REMATCH, 0);
+      end();
+   }
+
+   @Override
+   public void sendSnapshot(GameRules rules, boolean playing, boolean confirmed, boolean isTurn, int yourSunk,
+      int theirSunk, BitSet shotsAtYou, BitSet hitsOnYou, BitSet yourShots, BitSet yourHits) throws IOException   {
+      int maskBytes = rules.getMaskBytes();
+      begin(SNAPSHOT, serverArgumentBytes(SNAPSHOT, rules));
+      out.put((byte)(playing ? 1 : 0)).put((byte)(confirmed ? 1 : 0)).put((byte)(isTurn ? 1 : 0));
+      out.put((byte)yourSunk).put((byte)theirSunk);
+      for (BitSet mask : new BitSet[] { shotsAtYou, hitsOnYou, yourShots, yourHits })  {
+         byte[] bytes = mask.toByteArray();
+         out.put(bytes, 0, Math.min(bytes.length, maskBytes));
+         for (int i = bytes.length; i < maskBytes; i++)
+            out.put((byte)0);
+      }
+      end();
+   }
+}
\ No newline at end of file
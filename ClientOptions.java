@@ -0,0 +1,79 @@
+/**
+* ClientOptions are the settings BattleShipClient is started with, read from its line arguments.
+* <p>
+*    host <em>names</em> &mdash; the addresses filled in to search with, separated by commas (by default none) <br>
+*    timeout <em>ms</em> &mdash; how long each attempt to connect may take (by default 3000) <br>
+*    attempts <em>n</em> &mdash; how many times to try before giving up a search (by default 3) <br>
+*    backoff <em>ms</em> &mdash; the wait before trying again, doubled each time (by default 250) <br>
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+public class ClientOptions  {
+   private String host;
+   private int connectTimeoutMillis;
+   private int connectAttempts;
+   private long backoffMillis;
+
+   /**
+       * Creates ClientOptions with the default settings.
+       */
+   public ClientOptions()   {
+      host = "";
+      connectTimeoutMillis = 3000;
+      connectAttempts = 3;
+      backoffMillis = 250;
+   }
+
+   /**
+       * Reads ClientOptions from the line arguments. Unknown arguments, and settings missing their value,
+       * are ignored.
+       * @param args line arguments
+       * @return the options given by args
+       */
+   public static ClientOptions parse(String[] args)   {
+      ClientOptions options = new ClientOptions();
+      for (int i = 0; i < args.length; i++)   {
+         String arg = args[i].toLowerCase();
+         boolean hasNumber = i + 1 < args.length && args[i + 1].matches("\\d+");
+         if (arg.equals("host") && i + 1 < args.length)
+            options.host = args[++i];
+         else if (arg.equals("timeout") && hasNumber)
+            options.connectTimeoutMillis = Math.max(1, Integer.parseInt(args[++i]));
+         else if (arg.equals("attempts") && hasNumber)
+            options.connectAttempts = Math.max(1, Integer.parseInt(args[++i]));
+         else if (arg.equals("backoff") && hasNumber)
+            options.backoffMillis = Long.parseLong(args[++i]);
+      }
+      return options;
+   }
+
+   /**
+       * @return the addresses filled in to search with.
+       */
+   public String getHost() {
+      return host;
+   }
+
+   /**
+       * @return how long each attempt to connect may take, in milliseconds.
+       */
+   public int getConnectTimeoutMillis()   {
+      return connectTimeoutMillis;
+   }
+
+   /**
+       * @return how many times to try to connect before giving up a search.
+       */
+   public int getConnectAttempts()  {
+      return connectAttempts;
+   }
+
+   /**
+       * @return the wait before the second attempt to connect, in milliseconds.
+       */
+   public long getBackoffMillis()   {
+      return backoffMillis;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+/**
+* A ClientUpdateQueue carries changes to a client's display from the thread reading the server to the Swing
+* event thread, the only thread which may touch Swing components. The reading thread decodes each command
+* into an update holding the values it needs, never the client's own fields, and posts it without waiting.
+* Updates are applied on the event thread in the order they were posted. Only the first update posted while
+* none are pending asks the event thread to run, so a burst of commands, such as the shots of a fast
+* computer opponent or a SNAPSHOT, is applied in one pass and painted once.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import javax.swing.*;
+public class ClientUpdateQueue  {
+   private final ConcurrentLinkedQueue<Runnable> updates;
+   //Whether the event thread has been asked to apply the pending updates and has not yet started
+   private final AtomicBoolean scheduled;
+   //applyPending as a Runnable, made once rather than for every burst
+   private final Runnable drain;
+
+   /**
+       * Creates an empty ClientUpdateQueue.
+       */
+   public ClientUpdateQueue()  {
+      updates = new ConcurrentLinkedQueue<Runnable>();
+      scheduled = new AtomicBoolean();
+      drain = this::applyPending;
+   }
+
+   /**
+       * Posts an update to be applied on the event thread. It may be called from any thread; on the event
+       * thread the update is still only applied after those already pending.
+       * @param update the change to the display
+       */
+   public void post(Runnable update)   {
+      updates.add(update);
+      if (scheduled.compareAndSet(false, true))
+         SwingUtilities.invokeLater(drain);
+   }
+
+   /**
+       * Applies every pending update, including those posted while it runs. The flag is cleared first so
+       * an update posted after the last one is taken asks the event thread to run again, and none are
+       * left behind. An update which fails is reported and the rest are still applied.
+       */
+   private void applyPending()   {
+      scheduled.set(false);
+      Runnable update;
+      while ((update = updates.poll()) != null)   {
+         try   {
+            update.run();
+         }
+         catch (RuntimeException e)   {
+            System.out.println("FAILED TO UPDATE THE DISPLAY");
+            e.printStackTrace();
+         }
+      }
+   }
+}
\ No newline at end of file
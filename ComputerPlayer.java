@@ -0,0 +1,203 @@
+/**
+* A ComputerPlayer is a seat in a game played by the server itself, so that a client need not wait for a
+* second person. It is the PlayerLink of its seat: what the session sends it is the game as a client would
+* see it, and it answers with the commands a client would send, through the same GameSession. It uploads
+* its fleet with CONFIRM_FLEET, so shots at it are resolved by the session, and it answers each TURN with
+* a FIRE chosen by its ShotStrategy. Its answer is held until the session flushes, and given to the session
+* then, so the session is never given a command while it is still applying another. Nothing is allocated
+* from one move to the next; the fleet is only made again when the session sends other GameRules. Once a
+* game has ended it agrees to any rematch it is asked for, and goes back to the lobby if its opponent leaves.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+public class ComputerPlayer implements PlayerLink, BattleShippable  {
+   /**
+       * The address a ComputerPlayer is journaled under.
+       */
+   public static final String ADDRESS = "computer";
+
+   //The command the player has to send, or NONE
+   private static final int NONE = -1;
+
+   private final ShotStrategy strategy;
+   private final Random random;
+   private GameSession session;
+   private int playerNumber;
+   private GameRules rules;
+   //The player's own fleet, and the ends of each Ship for CONFIRM_FLEET
+   private Board fleet;
+   private int[] ends;
+   //The command waiting to be given to the session, and its arguments
+   private int pending;
+   private ByteBuffer args;
+   //Whether the pending command is being given to the session, and whether the game has ended
+   private boolean replying;
+   private boolean over;
+
+   /**
+       * Creates a ComputerPlayer which plays with a HuntTargetStrategy.
+       * @param level the level of the HuntTargetStrategy, EASY, NORMAL or HARD
+       */
+   public ComputerPlayer(int level)  {
+      this(new Random(), level);
+   }
+
+   /**
+       * Creates a ComputerPlayer which plays with a HuntTargetStrategy sharing its source of randomness.
+       * @param random the source of randomness
+       * @param level the level of the HuntTargetStrategy
+       */
+   private ComputerPlayer(Random random, int level)   {
+      this(new HuntTargetStrategy(level, random), random);
+   }
+
+   /**
+       * Creates a ComputerPlayer.
+       * @param strategy chooses where the player fires
+       * @param random the source of randomness for placing the player's fleet
+       */
+   public ComputerPlayer(ShotStrategy strategy, Random random)   {
+      this.strategy = strategy;
+      this.random = random;
+      pending = NONE;
+      sendRules(GameRules.STANDARD);
+   }
+
+   /**
+       * Sets the session the player answers. Must be called before the game is started.
+       * @param session the game the player is in
+       */
+   public void setSession(GameSession session)  {
+      this.session = session;
+   }
+
+   @Override
+   public void sendRules(GameRules rules) {
+      if (rules.equals(this.rules))
+         return;
+      this.rules = rules;
+      fleet = new Board(rules);
+      ends = new int[2 * rules.getNumShips()];
+      args = ByteBuffer.allocate(Math.max(8, clientArgumentBytes(CONFIRM_FLEET, rules)));
+   }
+
+   @Override
+   public void sendName(int player) {
+      playerNumber = player;
+      over = false;
+      strategy.newGame(rules);
+      fleet.clear();
+      PlacementTable.placeRandomFleet(fleet, ends, random);
+      args.clear();
+      for (int end : ends)
+         args.putInt(end);
+      reply(CONFIRM_FLEET);
+   }
+
+   @Override
+   public void sendTurn(boolean isTurn)  {
+      if (!isTurn)
+         return;
+      int space = strategy.nextShot();
+      args.clear();
+      args.putInt(1 - playerNumber).putInt(space);
+      reply(FIRE);
+   }
+
+   @Override
+   public void sendMark(int index, boolean success, boolean sunk) {
+      strategy.shotResult(index, success, sunk);
+   }
+
+   @Override
+   public void sendFire(int space)  {}
+
+   @Override
+   public void sendGameOver(int winner)  {
+      pending = NONE;
+      over = true;
+   }
+
+   /**
+       * Ends the game, or once it has ended leaves the session, as the opponent has left it.
+       */
+   @Override
+   public void sendDone()  {
+      pending = NONE;
+      if (over)
+         reply(LOBBY);
+      over = true;
+   }
+
+   @Override
+   public void sendQuitShip(int player)  {
+      pending = NONE;
+      over = true;
+   }
+
+   @Override
+   public void sendLobby()  {}
+
+   @Override
+   public void sendRematch()  {
+      reply(REMATCH);
+   }
+
+   @Override
+   public void sendAuthoritative()  {}
+
+   @Override
+   public void sendFraming()  {}
+
+   @Override
+   public void sendHello(int version)  {}
+
+   @Override
+   public void sendPing(int interval)  {}
+
+   @Override
+   public void sendToken(long token)  {}
+
+   @Override
+   public void sendSnapshot(GameRules rules, boolean playing, boolean confirmed, boolean isTurn, int yourSunk,
+      int theirSunk, BitSet shotsAtYou, BitSet hitsOnYou, BitSet yourShots, BitSet yourHits)  {}
+
+   /**
+       * Gives the session the command waiting to be sent, and any command that one leads to, once the
+       * session has finished applying the event it is flushing.
+       * @throws IOException if there is a communication error with the other player
+       */
+   @Override
+   public void flush() throws IOException  {
+      if (replying)
+         return;
+      replying = true;
+      try   {
+         while (pending != NONE)   {
+            int cmd = pending;
+            pending = NONE;
+            args.flip();
+            session.receive(playerNumber, cmd, args);
+         }
+      }
+      finally  {
+         replying = false;
+      }
+   }
+
+   @Override
+   public void close()  {}
+
+   /**
+       * Holds a command to be given to the session when it next flushes. Its arguments must already be
+       * in args.
+       * @param cmd the protocol constant value to send
+       */
+   private void reply(int cmd)   {
+      pending = cmd;
+   }
+}
\ No newline at end of file
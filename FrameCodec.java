@@ -0,0 +1,166 @@
+/**
+* FrameCodec encodes and decodes the framed form of the BattleShippable protocol which a client and the
+* server switch to once they have exchanged HELLO. Each frame is
+* <p>
+*    <em>length</em> <em>version</em> <em>cmd</em> <em>arguments</em>
+* </p>
+* where <em>length</em> is an int giving the number of bytes which follow it, <em>version</em> is a byte
+* giving the version of the frame, <em>cmd</em> is the int protocol constant value and the arguments are
+* encoded as they are without frames. As every frame gives its own length, a message whose command is not
+* understood can be skipped without losing track of the stream. A frame whose version is not the one agreed
+* in HELLO is a protocol error, so a stream gone out of step is closed rather than misread. Frames are encoded into and decoded from
+* ByteBuffers, which are usually taken from a BufferPool so that no message needs an allocation.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.nio.*;
+public class FrameCodec  {
+   /**
+       * The highest frame version understood.
+       */
+   public static final int VERSION = 1;
+
+   /**
+       * Number of bytes before the arguments of a frame: its length, version and command.
+       */
+   public static final int HEADER_BYTES = 9;
+
+   /**
+       * Largest frame accepted, counting its length: enough for a SNAPSHOT of the largest Grid, or a
+       * CONFIRM_FLEET of the largest fleet, of GameRules.
+       */
+   public static final int MAX_FRAME_BYTES = 4096;
+
+   //Bytes of the length at the start of each frame
+   private static final int LENGTH_BYTES = 4;
+
+   /**
+       * Gives the frame version both sides use when a client offers the given version in HELLO.
+       * @param offered the highest version the client understands
+       * @return the version to use, or 0 if the client cannot use frames
+       */
+   public static int negotiate(int offered)   {
+      return offered < 1 ? 0 : Math.min(offered, VERSION);
+   }
+
+   /**
+       * Starts a frame for the given command at the position of out, leaving room for its length.
+       * @param out the buffer being encoded into
+       * @param cmd the protocol constant value of the message
+       * @param version the version of the frame
+       * @return the position of the frame, to be given to endFrame
+       */
+   public static int beginFrame(ByteBuffer out, int cmd, int version)   {
+      int start = out.position();
+      out.putInt(0);
+      out.put((byte)version);
+      out.putInt(cmd);
+      return start;
+   }
+
+   /**
+       * Ends the frame started at start by filling in its length.
+       * @param out the buffer being encoded into
+       * @param start the position returned by beginFrame
+       */
+   public static void endFrame(ByteBuffer out, int start)   {
+      out.putInt(start, out.position() - start - LENGTH_BYTES);
+   }
+
+   /**
+       * Checks whether in holds a whole frame from its position.
+       * @param in the buffer being decoded from
+       * @return the number of bytes of the frame after its length, or -1 if the frame is not complete
+       * @throws IOException if the frame is too short or too long to be valid
+       */
+   public static int completeFrame(ByteBuffer in) throws IOException   {
+      if (in.remaining() < LENGTH_BYTES)
+         return -1;
+      int length = checkLength(in.getInt(in.position()));
+      return in.remaining() < LENGTH_BYTES + length ? -1 : length;
+   }
+
+   /**
+       * Checks the length at the start of a frame.
+       * @param length the number of bytes following the length
+       * @return length
+       * @throws IOException if the frame is too short to hold a command or longer than MAX_FRAME_BYTES
+       */
+   private static int checkLength(int length) throws IOException   {
+      if (length < HEADER_BYTES - LENGTH_BYTES || length > MAX_FRAME_BYTES - LENGTH_BYTES)
+         throw new IOException("invalid frame length " + length);
+      return length;
+   }
+
+   /**
+       * Checks the version of a frame against the version agreed in HELLO.
+       * @param found the version byte of the frame
+       * @param version the version agreed
+       * @throws IOException if the frame has any other version
+       */
+   public static void checkVersion(int found, int version) throws IOException   {
+      if (found != version)
+         throw new IOException("frame version " + found + " where version " + version + " was agreed");
+   }
+
+   /**
+       * Reads a whole frame from a stream into a buffer, leaving the buffer positioned at the arguments
+       * and limited to the end of the frame.
+       * @param in the stream to read from
+       * @param frame the buffer to read into, with room for MAX_FRAME_BYTES bytes
+       * @param version the version agreed in HELLO
+       * @return the command of the frame
+       * @throws IOException if there is a communication error or the frame is invalid or of another version
+       */
+   public static int readFrame(DataInputStream in, ByteBuffer frame, int version) throws IOException   {
+      int length = checkLength(in.readInt());
+      frame.clear();
+      in.readFully(frame.array(), frame.arrayOffset(), length);
+      frame.limit(length);
+      checkVersion(frame.get(), version);
+      return frame.getInt();
+   }
+
+   /**
+       * A FrameInput lets the arguments of a frame be read with the methods of a DataInputStream. One
+       * FrameInput is reused for every frame, each being loaded into the same array.
+       */
+   public static class FrameInput extends ByteArrayInputStream   {
+      private DataInputStream data;
+
+      /**
+          * Creates a FrameInput with room for the largest frame.
+          */
+      public FrameInput()  {
+         super(new byte[MAX_FRAME_BYTES]);
+         data = new DataInputStream(this);
+      }
+
+      /**
+          * Reads a whole frame from a stream, leaving its arguments to be read.
+          * @param in the stream to read from
+          * @param version the version agreed in HELLO
+          * @return the command of the frame
+          * @throws IOException if there is a communication error or the frame is invalid or of another
+          *    version
+          */
+      public int load(DataInputStream in, int version) throws IOException   {
+         int length = checkLength(in.readInt());
+         in.readFully(buf, 0, length);
+         pos = 0;
+         count = length;
+         mark = 0;
+         checkVersion(data.readByte(), version);
+         return data.readInt();
+      }
+
+      /**
+          * @return a DataInputStream over the arguments of the frame last loaded.
+          */
+      public DataInputStream getData()   {
+         return data;
+      }
+   }
+}
\ No newline at end of file
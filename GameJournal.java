@@ -0,0 +1,413 @@
+/**
+* A GameJournal records the events of every game in a compact binary form: the pairing, each player's
+* placement, every FIRE, SUCCESS, MARK and TURN, and the result. It is written through memory-mapped
+* segment files of a fixed size in a directory, so appending an event is a few stores into memory with
+* no system call; the operating system writes the pages out, even if the server stops without closing
+* the journal. When a segment is full the next one is created, numbered one higher, and each time the
+* server starts it begins a new segment after the last one found.
+* <p>
+* Any number of games may append at once: each record reserves its space in the segment with a single
+* atomic add and is then written through its own view of the mapped buffer, its length last, so a record
+* cut short by a crash reads as the end of its segment. A segment starts with MAGIC,
+* the format version and the time it was created; each record is its length (of what follows), its type,
+* the game number, the time in milliseconds and the event's own fields. A length of 0 ends the segment.
+* Spaces are recorded as shorts, so that games on any size of Grid fit; segments of version 1, which
+* recorded them as bytes, are still read.
+* Running GameJournal with a directory prints every record in it.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+public class GameJournal implements Closeable  {
+   /**
+       * Types of record.
+       */
+   public static final int PAIRED = 1;
+   public static final int PLACEMENT = 2;
+   public static final int FIRE = 3;
+   public static final int SUCCESS = 4;
+   public static final int MARK = 5;
+   public static final int TURN = 6;
+   public static final int RESULT = 7;
+
+   /**
+       * Reasons a game ends, recorded with its RESULT.
+       */
+   public static final int WON = 0;
+   public static final int QUIT = 1;
+   public static final int DISCONNECTED = 2;
+   public static final int TIMED_OUT = 3;
+   public static final int PROTOCOL_ERROR = 4;
+
+   /**
+       * The first int of every segment, "BSJ1".
+       */
+   public static final int MAGIC = 0x42534A31;
+   /**
+       * The version of the record format.
+       */
+   public static final int FORMAT_VERSION = 2;
+   /**
+       * The size of each segment file, by default.
+       */
+   public static final int SEGMENT_BYTES = 64 * 1024 * 1024;
+
+   private static final int SEGMENT_HEADER_BYTES = 16;
+   //Length, type, game number and time
+   private static final int RECORD_HEADER_BYTES = 4 + 1 + 4 + 8;
+   private static final String SEGMENT_PREFIX = "journal-";
+   private static final String SEGMENT_SUFFIX = ".dat";
+
+   private final Path directory;
+   private final int segmentBytes;
+   private volatile Segment current;
+
+   /**
+       * A Segment is one mapped file and the position up to which it has been reserved.
+       */
+   private static final class Segment  {
+      private final int index;
+      private final FileChannel channel;
+      private final MappedByteBuffer buffer;
+      private final AtomicInteger reserved;
+
+      /**
+          * Creates and maps a new segment file, writing its header.
+          * @param file the file, which must not exist
+          * @param index the number of the segment
+          * @param bytes the size of the file
+          * @throws IOException if the file cannot be created or mapped
+          */
+      private Segment(Path file, int index, int bytes) throws IOException   {
+         this.index = index;
+         channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+         buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+         buffer.putInt(0, MAGIC);
+         buffer.putInt(4, FORMAT_VERSION);
+         buffer.putLong(8, System.currentTimeMillis());
+         reserved = new AtomicInteger(SEGMENT_HEADER_BYTES);
+      }
+   }
+
+   /**
+       * Opens a GameJournal in the given directory with segments of the default size, creating the
+       * directory if need be.
+       * @param directory where the segment files are kept
+       * @throws IOException if the first segment cannot be created
+       */
+   public GameJournal(Path directory) throws IOException   {
+      this(directory, SEGMENT_BYTES);
+   }
+
+   /**
+       * Opens a GameJournal in the given directory, creating the directory if need be.
+       * @param directory where the segment files are kept
+       * @param segmentBytes the size of each segment file
+       * @throws IOException if the first segment cannot be created
+       */
+   public GameJournal(Path directory, int segmentBytes) throws IOException   {
+      this.directory = directory;
+      this.segmentBytes = segmentBytes;
+      Files.createDirectories(directory);
+      int last = -1;
+      for (Path file : segments(directory))
+         last = Math.max(last, indexOf(file));
+      current = openSegment(last + 1);
+   }
+
+   /**
+       * @param directory a journal directory
+       * @return the segment files in the directory, in order
+       * @throws IOException if the directory cannot be listed
+       */
+   private static List<Path> segments(Path directory) throws IOException  {
+      try (Stream<Path> files = Files.list(directory))   {
+         return files.filter(f -> f.getFileName().toString().matches(SEGMENT_PREFIX + "\\d+\\" + SEGMENT_SUFFIX))
+            .sorted().collect(Collectors.toList());
+      }
+   }
+
+   /**
+       * @param file a segment file
+       * @return the number of the segment
+       */
+   private static int indexOf(Path file)   {
+      String name = file.getFileName().toString();
+      return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+   }
+
+   /**
+       * Creates the segment with the given number.
+       * @param index the number of the segment
+       * @return the Segment
+       * @throws IOException if the file cannot be created or mapped
+       */
+   private Segment openSegment(int index) throws IOException {
+      String name = String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+      return new Segment(directory.resolve(name), index, segmentBytes);
+   }
+
+   /**
+       * Reserves space for a record and writes its header. The record's fields are put into the
+       * buffer returned, and end is called once they have all been written.
+       * @param type the type of record
+       * @param game the game number
+       * @param fieldBytes the number of bytes of the record's fields
+       * @return a view of the segment positioned at the record's fields, or null if the journal is closed
+       *    or cannot create another segment
+       */
+   private ByteBuffer begin(int type, int game, int fieldBytes)   {
+      int length = RECORD_HEADER_BYTES + fieldBytes;
+      while (true)   {
+         Segment segment = current;
+         if (segment == null)
+            return null;
+         int start = segment.reserved.getAndAdd(length);
+         if (start <= segmentBytes - length)  {
+            ByteBuffer record = segment.buffer.duplicate();
+            record.limit(start + length);
+            record.position(start);
+            record.mark();
+            record.position(start + 4);
+            record.put((byte)type);
+            record.putInt(game);
+            record.putLong(System.currentTimeMillis());
+            return record;
+         }
+         roll(segment);
+      }
+   }
+
+   /**
+       * Finishes a record started by begin by writing its length, which makes it visible to readers.
+       * @param record the view returned by begin, with every field written
+       */
+   private static void end(ByteBuffer record)  {
+      int end = record.position();
+      record.reset();
+      record.putInt(record.position(), end - record.position() - 4);
+   }
+
+   /**
+       * Moves on to the next segment once the given one is full, unless another thread already has.
+       * If the next segment cannot be created the journal stops recording.
+       * @param full the segment which had no room
+       */
+   private synchronized void roll(Segment full)   {
+      if (current != full)
+         return;
+      try   {
+         current = openSegment(full.index + 1);
+      }
+      catch (IOException e)   {
+         current = null;
+         System.err.println("The journal stopped recording: " + e.getMessage());
+      }
+      try   {
+         full.channel.close();
+      }
+      catch (IOException e)   {
+         System.err.println("Cannot close a journal segment: " + e.getMessage());
+      }
+   }
+
+   /**
+       * Records two players being paired into a game.
+       * @param game the game number
+       * @param player0 the address of player 0
+       * @param player1 the address of player 1
+       * @param rules the GameRules of the game
+       */
+   public void paired(int game, String player0, String player1, GameRules rules)  {
+      byte[] address0 = player0.getBytes(StandardCharsets.UTF_8);
+      byte[] address1 = player1.getBytes(StandardCharsets.UTF_8);
+      byte[] text = rules.toString().getBytes(StandardCharsets.UTF_8);
+      ByteBuffer record = begin(PAIRED, game, 4 + address0.length + 4 + address1.length + 4 + text.length);
+      if (record != null)  {
+         record.putInt(address0.length).put(address0).putInt(address1.length).put(address1);
+         record.putInt(text.length).put(text);
+         end(record);
+      }
+   }
+
+   /**
+       * Records a player confirming their ships.
+       * @param game the game number
+       * @param player the player
+       * @param ends the two ends of each Ship if the player uploaded their fleet, or null
+       */
+   public void placement(int game, int player, int[] ends) {
+      int count = ends == null ? 0 : ends.length;
+      ByteBuffer record = begin(PLACEMENT, game, 1 + 2 + 2 * count);
+      if (record != null)  {
+         record.put((byte)player).putShort((short)count);
+         for (int i = 0; i < count; i++)
+            record.putShort((short)ends[i]);
+         end(record);
+      }
+   }
+
+   /**
+       * Records a shot, or the result of one.
+       * @param type FIRE when a player fires, SUCCESS when the player fired at answers, or MARK when
+       *    the result is sent to the player who fired
+       * @param game the game number
+       * @param player the player who fired
+       * @param space the single digit index of the GridSpace fired at
+       * @param hit whether the shot hit a Ship, false for FIRE
+       * @param sunk whether the shot sank a Ship, false for FIRE
+       */
+   public void shot(int type, int game, int player, int space, boolean hit, boolean sunk)   {
+      ByteBuffer record = begin(type, game, 4);
+      if (record != null)  {
+         record.put((byte)player).putShort((short)space).put((byte)((hit ? 1 : 0) | (sunk ? 2 : 0)));
+         end(record);
+      }
+   }
+
+   /**
+       * Records the turn passing to a player.
+       * @param game the game number
+       * @param player the player whose turn it now is
+       */
+   public void turn(int game, int player)   {
+      ByteBuffer record = begin(TURN, game, 1);
+      if (record != null)  {
+         record.put((byte)player);
+         end(record);
+      }
+   }
+
+   /**
+       * Records the end of a game.
+       * @param game the game number
+       * @param winner the player who won, or -1 if the game was not won
+       * @param reason why the game ended: WON, QUIT, DISCONNECTED, TIMED_OUT or PROTOCOL_ERROR
+       */
+   public void result(int game, int winner, int reason)  {
+      ByteBuffer record = begin(RESULT, game, 2);
+      if (record != null)  {
+         record.put((byte)winner).put((byte)reason);
+         end(record);
+      }
+   }
+
+   /**
+       * Writes the current segment out and stops recording.
+       */
+   @Override
+   public synchronized void close() throws IOException   {
+      Segment segment = current;
+      current = null;
+      if (segment != null) {
+         segment.buffer.force();
+         segment.channel.close();
+      }
+   }
+
+   /**
+       * Prints every record of the journal in the given directory, oldest segment first.
+       * @param args the journal directory, by default "journal"
+       * @throws IOException if the journal cannot be read
+       */
+   public static void main(String[] args) throws IOException   {
+      Path directory = Paths.get(args.length > 0 ? args[0] : "journal");
+      for (Path file : segments(directory))  {
+         try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))   {
+            ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (segment.remaining() < SEGMENT_HEADER_BYTES || segment.getInt(0) != MAGIC) {
+               System.err.println(file + " is not a journal segment");
+               continue;
+            }
+            System.out.println("# " + file.getFileName() + ", version " + segment.getInt(4) + ", created " +
+               Instant.ofEpochMilli(segment.getLong(8)));
+            int version = segment.getInt(4);
+            segment.position(SEGMENT_HEADER_BYTES);
+            int length;
+            while (segment.remaining() >= 4 && (length = segment.getInt()) > 0 &&
+               length <= segment.remaining())
+               System.out.println(describe(segment, segment.position() + length, version));
+         }
+      }
+   }
+
+   /**
+       * Reads a record as a line of text.
+       * @param record the segment, positioned after the record's length
+       * @param end the position at which the record ends, where the segment is left
+       * @param version the format version of the segment
+       * @return the record as text
+       */
+   private static String describe(ByteBuffer record, int end, int version)  {
+      int type = record.get();
+      int game = record.getInt();
+      StringBuilder text = new StringBuilder(Instant.ofEpochMilli(record.getLong()) + " game " + game + " ");
+      switch (type)  {
+         case PAIRED:
+            byte[] address = new byte[record.getInt()];
+            record.get(address);
+            text.append("PAIRED ").append(new String(address, StandardCharsets.UTF_8));
+            address = new byte[record.getInt()];
+            record.get(address);
+            text.append(" and ").append(new String(address, StandardCharsets.UTF_8));
+            if (record.position() < end)   {
+               address = new byte[record.getInt()];
+               record.get(address);
+               text.append(" rules ").append(new String(address, StandardCharsets.UTF_8));
+            }
+            break;
+         case PLACEMENT:
+            text.append("PLACEMENT player ").append(record.get());
+            int count = version < 2 ? record.get() : record.getShort();
+            for (int i = 0; i < count; i += 2)
+               text.append(i == 0 ? " fleet " : ", ").append(space(record, version)).append('-')
+                  .append(space(record, version));
+            break;
+         case FIRE:
+         case SUCCESS:
+         case MARK:
+            text.append(type == FIRE ? "FIRE" : type == SUCCESS ? "SUCCESS" : "MARK");
+            text.append(" player ").append(record.get()).append(" space ").append(space(record, version));
+            int flags = record.get();
+            if (type != FIRE)
+               text.append((flags & 1) != 0 ? " hit" : " miss").append((flags & 2) != 0 ? " sunk" : "");
+            break;
+         case TURN:
+            text.append("TURN player ").append(record.get());
+            break;
+         case RESULT:
+            int winner = record.get();
+            int reason = record.get();
+            String[] reasons = { "won", "quit", "disconnected", "timed out", "protocol error" };
+            text.append("RESULT ").append(reason >= 0 && reason < reasons.length ? reasons[reason] : "unknown");
+            if (winner >= 0)
+               text.append(" by player ").append(winner);
+            break;
+         default:
+            text.append("unknown record ").append(type);
+      }
+      record.position(end);
+      return text.toString();
+   }
+
+   /**
+       * Reads a space of a record.
+       * @param record the segment, positioned at the space
+       * @param version the format version of the segment
+       * @return the single digit index of the space
+       */
+   private static int space(ByteBuffer record, int version) {
+      return version < 2 ? record.get() : record.getShort();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,221 @@
+/**
+* GameRules are the size of the Grids and the fleet of one game. Every game is the standard one, a
+* GRID_DIMENSION Grid with the Ships of SHIP_LENGTHS, unless the server is given other rules, which it sends
+* to both players with RULES before NAME. The Grid may then have any dimension up to MAX_DIMENSION and the
+* fleet any number of Ships up to MAX_SHIPS, each no longer than the dimension, as long as the Ships cover
+* at most half the spaces. The Ships are numbered from the longest to the shortest.
+* <p>
+* GameRules are written as the dimension, alone for the standard fleet or followed by a colon and the
+* length of every Ship: "10:5,4,3,3,2" is the standard game and "32:6,5,5,4,4,3,3,3,2,2" a larger one.
+* They hold the PlacementTable of every length which fits on their Grid.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.*;
+public class GameRules implements BattleShippable  {
+   /**
+       * The largest dimension of a Grid.
+       */
+   public static final int MAX_DIMENSION = 64;
+
+   /**
+       * The largest number of Ships in a fleet.
+       */
+   public static final int MAX_SHIPS = 127;
+
+   /**
+       * Number of bytes of the arguments of RULES: the dimension, then the number of Ships of each
+       * length from 1 to MAX_DIMENSION.
+       */
+   public static final int RULES_BYTES = 1 + MAX_DIMENSION;
+
+   /**
+       * The standard game.
+       */
+   public static final GameRules STANDARD = new GameRules(GRID_DIMENSION, SHIP_LENGTHS);
+
+   private final int dimension;
+   private final int[] shipLengths;
+   private final PlacementTable[] tables;
+
+   /**
+       * Creates GameRules.
+       * @param dimension the number of rows and columns of each Grid
+       * @param lengths the length of each Ship, in any order
+       * @throws IllegalArgumentException if the Grid or the fleet is out of bounds
+       */
+   public GameRules(int dimension, int[] lengths)   {
+      if (dimension < 2 || dimension > MAX_DIMENSION)
+         throw new IllegalArgumentException("the dimension must be from 2 to " + MAX_DIMENSION);
+      if (lengths.length < 1 || lengths.length > MAX_SHIPS)
+         throw new IllegalArgumentException("the fleet must have from 1 to " + MAX_SHIPS + " Ships");
+      this.dimension = dimension;
+      shipLengths = lengths.clone();
+      Arrays.sort(shipLengths);
+      for (int i = 0; i < shipLengths.length / 2; i++)  {
+         int swap = shipLengths[i];
+         shipLengths[i] = shipLengths[shipLengths.length - 1 - i];
+         shipLengths[shipLengths.length - 1 - i] = swap;
+      }
+      int covered = 0;
+      for (int length : shipLengths)   {
+         if (length < 1 || length > dimension)
+            throw new IllegalArgumentException("every Ship must have a length from 1 to " + dimension);
+         covered += length;
+      }
+      if (2 * covered > dimension * dimension)
+         throw new IllegalArgumentException("the Ships may cover at most half of the spaces");
+      tables = new PlacementTable[dimension + 1];
+      for (int length = 1; length <= dimension; length++)
+         tables[length] = new PlacementTable(dimension, length);
+   }
+
+   /**
+       * Reads GameRules written as the dimension, optionally followed by a colon and the length of
+       * every Ship separated by commas.
+       * @param text the GameRules as text
+       * @return the GameRules
+       * @throws IllegalArgumentException if the text is not valid GameRules
+       */
+   public static GameRules parse(String text)  {
+      try   {
+         int colon = text.indexOf(':');
+         int dimension = Integer.parseInt((colon < 0 ? text : text.substring(0, colon)).trim());
+         if (colon < 0)
+            return new GameRules(dimension, SHIP_LENGTHS);
+         String[] fields = text.substring(colon + 1).split(",");
+         int[] lengths = new int[fields.length];
+         for (int i = 0; i < fields.length; i++)
+            lengths[i] = Integer.parseInt(fields[i].trim());
+         return new GameRules(dimension, lengths);
+      }
+      catch (NumberFormatException e)  {
+         throw new IllegalArgumentException("not a dimension and a list of Ship lengths: " + text);
+      }
+   }
+
+   /**
+       * Reads the arguments of a RULES command.
+       * @param bytes the RULES_BYTES bytes following RULES
+       * @return the GameRules
+       * @throws IllegalArgumentException if the arguments are not valid GameRules
+       */
+   public static GameRules fromBytes(byte[] bytes)  {
+      if (bytes.length != RULES_BYTES)
+         throw new IllegalArgumentException("the rules must be " + RULES_BYTES + " bytes, not " + bytes.length);
+      int ships = 0;
+      for (int i = 1; i < RULES_BYTES; i++)
+         ships += Math.max(0, bytes[i]);
+      int[] lengths = new int[Math.min(ships, MAX_SHIPS + 1)];
+      int next = 0;
+      for (int length = MAX_DIMENSION; length >= 1 && next < lengths.length; length--)   {
+         for (int k = 0; k < bytes[length] && next < lengths.length; k++)
+            lengths[next++] = length;
+      }
+      GameRules rules = new GameRules(bytes[0], lengths);
+      return rules.equals(STANDARD) ? STANDARD : rules;
+   }
+
+   /**
+       * @return the arguments of a RULES command carrying these GameRules.
+       */
+   public byte[] toBytes() {
+      byte[] bytes = new byte[RULES_BYTES];
+      bytes[0] = (byte)dimension;
+      for (int length : shipLengths)
+         bytes[length]++;
+      return bytes;
+   }
+
+   /**
+       * @return true if these are the GameRules of the standard game, false otherwise.
+       */
+   public boolean isStandard()   {
+      return equals(STANDARD);
+   }
+
+   /**
+       * @return the number of rows and columns of each Grid.
+       */
+   public int getDimension()  {
+      return dimension;
+   }
+
+   /**
+       * @return the number of spaces of each Grid.
+       */
+   public int getSpaces()  {
+      return dimension * dimension;
+   }
+
+   /**
+       * @return the number of bytes of a mask with one bit for each space, as sent in a SNAPSHOT.
+       */
+   public int getMaskBytes()  {
+      return (getSpaces() + 7) / 8;
+   }
+
+   /**
+       * @return the number of Ships each player has.
+       */
+   public int getNumShips()   {
+      return shipLengths.length;
+   }
+
+   /**
+       * @param ship the index of a Ship
+       * @return the length of the Ship
+       */
+   public int getShipLength(int ship)  {
+      return shipLengths[ship];
+   }
+
+   /**
+       * @param ship the index of a Ship
+       * @return the name of the Ship: its name in the standard fleet, or its number in any other fleet
+       */
+   public String getShipName(int ship) {
+      return Arrays.equals(shipLengths, SHIP_LENGTHS) ? getShipString(ship) : "Ship " + (ship + 1);
+   }
+
+   /**
+       * @param ship the index of a Ship
+       * @return the name of the Ship followed by its length, as listed for the player.
+       */
+   public String getShipLabel(int ship)   {
+      return getShipName(ship) + " - " + shipLengths[ship];
+   }
+
+   /**
+       * @param length the length of a Ship
+       * @return the table of every placement of a Ship of that length, or null if no Ship of that
+       * length fits on the Grid.
+       */
+   public PlacementTable getTable(int length)   {
+      return length >= 1 && length <= dimension ? tables[length] : null;
+   }
+
+   @Override
+   public boolean equals(Object other) {
+      return other instanceof GameRules && ((GameRules)other).dimension == dimension &&
+         Arrays.equals(((GameRules)other).shipLengths, shipLengths);
+   }
+
+   @Override
+   public int hashCode()   {
+      return 31 * dimension + Arrays.hashCode(shipLengths);
+   }
+
+   /**
+       * @return the GameRules as text, as read by parse.
+       */
+   @Override
+   public String toString()   {
+      StringBuilder text = new StringBuilder().append(dimension).append(':');
+      for (int i = 0; i < shipLengths.length; i++)
+         text.append(i == 0 ? "" : ",").append(shipLengths[i]);
+      return text.toString();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,1129 @@
+/**
+* A GameSession holds the state of one game between two players and applies the rules of the
+* BattleShippable protocol to each command received from either of them, replying through each
+* player's PlayerLink. It does no reading of its own, so it can be driven by any transport that
+* decodes commands, as long as only one thread at a time gives it commands.
+* <p>
+* When the server resolves shots, each client that uploads its fleet with CONFIRM_FLEET has it checked and
+* kept on a Board. A FIRE at such a player is resolved by the session, which sends FIRE to the defender and
+* MARK to the attacker together, and then TURN or GAME_OVER if the attacker also uploaded its fleet. Shots
+* at a client which only sent CONFIRM_SHIPS are relayed to it as before, so old clients can still play.
+* TURN and WIN are only taken from a player whose fleet the server does not hold, on their own turn, as
+* the server passes the turn and ends the game for the others. The player named by a command must be the
+* one who sent it, or for FIRE the other player; a command naming the wrong player ends the game.
+* </p>
+* <p>
+* A game is played by the standard GameRules unless it is given others, which are sent to both players
+* with RULES before NAME. Fleets, shots and SNAPSHOTs are then checked against, and sized by, those rules.
+* </p>
+* <p>
+* Every client is offered framed messages with FRAMING. A client which answers HELLO is sent HELLO back
+* with the version both sides will use, and is sent frames from then on; the transport decodes its frames
+* before they reach the session, so the session sees the same commands either way.
+* </p>
+* <p>
+* Given a Scheduler the session keeps three deadlines. Both players must confirm their ships within the
+* placement time, or the first who has not is treated as quitting. The player whose turn it is must move
+* within the turn time, or forfeits the game to the other. Players who answered FRAMING are sent PING
+* regularly, and one not heard from within the idle time is treated as gone, the other being sent DONE.
+* Deadlines fire on the Scheduler's thread, so the transport hands them back to the session's own thread.
+* </p>
+* <p>
+* Given a GameJournal the session records the pairing, each placement, every FIRE, SUCCESS, MARK and TURN,
+* and the result of the game, with the reason it ended.
+* </p>
+* <p>
+* Given resume tokens, each player who answered FRAMING is sent their token with TOKEN. When such a
+* player's connection is lost the game is held for the grace time rather than ended: what is sent to the
+* player meanwhile is dropped, and a player who comes back with RESUME on a new connection is sent a
+* SNAPSHOT of the game as they should see it, and any relayed FIRE they had not answered, before play
+* carries on. A player who does not come back in time is treated as gone, the other being sent DONE.
+* </p>
+* <p>
+* Given a rematch wait the session outlives its game. Once the game has ended each player still connected
+* may send REMATCH, which the other is told of with REMATCH, or LOBBY, which is answered with LOBBY and hands
+* the player's connection back to be paired again. When both players want a rematch the transport starts a
+* new session on the same connections; a player whose opponent leaves is sent DONE, and players who have not
+* decided within the wait are treated as gone. The session is settled once nothing more can happen to it.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+public class GameSession implements BattleShippable  {
+   //Stages of a game
+   private static final int PLACEMENT = 0;
+   private static final int PLAYING = 1;
+   private static final int FINISHED = 2;
+   //What each player does once the game has ended: not yet decided, play again, go back to the lobby,
+   //or nothing, as they can no longer be reached
+   private static final int UNDECIDED = 0;
+   private static final int AGAIN = 1;
+   private static final int LEFT = 2;
+   private static final int GONE = 3;
+
+   //Stands in for the link of a player whose connection was lost, until they resume
+   private static final PlayerLink DETACHED = new DetachedLink();
+
+   //Connections to each of the players
+   private PlayerLink[] links;
+   //The size of the Grids and the fleet
+   private GameRules rules;
+   //Place where the messages of the log are reported
+   private ServerLog serverLog;
+   //The server numbers each game: report this number when outputting
+   private int gameNumber;
+   //Current stage of the game and which players have confirmed their ships
+   private int stage;
+   private boolean[] confirmed;
+   //Whether the server resolves shots, the Board of each player who uploaded their fleet,
+   //whose turn it is and how many Ships of each player have been sunk
+   private boolean serverResolvesShots;
+   private Board[] boards;
+   private int turn;
+   private int[] sunkReported;
+   //The player who won, or -1 while no one has
+   private int winner;
+   //Deadlines, when a Scheduler has been given: the time allowed for each and the pending Timeouts
+   private Scheduler scheduler;
+   private long idleMillis;
+   private long placementMillis;
+   private long turnMillis;
+   private HashedWheelTimer.Timeout placementTimeout;
+   private HashedWheelTimer.Timeout turnTimeout;
+   private HashedWheelTimer.Timeout heartbeatTimeout;
+   //Number of turns given so far, so a turn deadline can tell if the turn has moved on
+   private int turnCount;
+   //Which players are sent PING, and the System.nanoTime each was last heard from
+   private boolean[] heartbeat;
+   private long[] lastHeard;
+   //When the game and the current turn started, and each player last fired, by System.nanoTime
+   private long startedAt;
+   private long turnStartedAt;
+   private long[] firedAt;
+   //Where the events of the game are recorded, if anywhere, and the address of each player
+   private GameJournal journal;
+   private String[] addresses;
+   //Resuming, when tokens have been given: each player's token, how long a game is held for a player
+   //whose connection was lost, which players were sent their token and the pending grace deadlines
+   private long[] resumeTokens;
+   private long graceMillis;
+   private boolean[] tokenSent;
+   private HashedWheelTimer.Timeout[] graceTimeouts;
+   //What each player's Grid has been through, for a SNAPSHOT: the spaces fired at, those which hit,
+   //and the space of a relayed FIRE the player has not answered with SUCCESS, or -1
+   private BitSet[] shotsAt;
+   private BitSet[] hitsOn;
+   private int[] pendingFire;
+   //How long the players have to decide what to do once the game has ended, what each has decided and
+   //the pending deadline
+   private long rematchMillis;
+   private int[] next;
+   private HashedWheelTimer.Timeout rematchTimeout;
+
+   /**
+       * A Scheduler runs a task on the session's thread after a delay.
+       */
+   public interface Scheduler {
+      /**
+          * Schedules a task to run on the session's thread.
+          * @param task the task to run
+          * @param delayMillis how long to wait, in milliseconds
+          * @return the Timeout, which can be cancelled
+          */
+      HashedWheelTimer.Timeout schedule(Runnable task, long delayMillis);
+   }
+
+   /**
+       * A DetachedLink drops every command sent to a player whose connection was lost.
+       */
+   private static class DetachedLink implements PlayerLink  {
+      @Override
+      public void sendName(int player) {}
+
+      @Override
+      public void sendFire(int space)  {}
+
+      @Override
+      public void sendMark(int index, boolean success, boolean sunk) {}
+
+      @Override
+      public void sendTurn(boolean isTurn)  {}
+
+      @Override
+      public void sendGameOver(int winner)  {}
+
+      @Override
+      public void sendDone()  {}
+
+      @Override
+      public void sendQuitShip(int player)  {}
+
+      @Override
+      public void sendAuthoritative()  {}
+
+      @Override
+      public void sendFraming()  {}
+
+      @Override
+      public void sendHello(int version)  {}
+
+      @Override
+      public void sendPing(int interval)  {}
+
+      @Override
+      public void sendToken(long token)  {}
+
+      @Override
+      public void sendRules(GameRules rules)  {}
+
+      @Override
+      public void sendSnapshot(GameRules rules, boolean playing, boolean confirmed, boolean isTurn, int yourSunk,
+         int theirSunk, BitSet shotsAtYou, BitSet hitsOnYou, BitSet yourShots, BitSet yourHits)  {}
+
+      @Override
+      public void sendLobby()  {}
+
+      @Override
+      public void sendRematch()  {}
+
+      @Override
+      public void flush()  {}
+
+      @Override
+      public void close()  {}
+   }
+
+   /**
+       * Creates a GameSession between the two given players.
+       * @param link0 the link to player 0
+       * @param link1 the link to player 1
+       * @param log the ServerLog that receives messages
+       * @param gN the game number (used for reporting purposes)
+       */
+   public GameSession(PlayerLink link0, PlayerLink link1, ServerLog log, int gN)   {
+      links = new PlayerLink[] { link0, link1 };
+      rules = GameRules.STANDARD;
+      serverLog = log;
+      gameNumber = gN;
+      stage = PLACEMENT;
+      confirmed = new boolean[2];
+      boards = new Board[2];
+      sunkReported = new int[2];
+      turn = -1;
+      winner = -1;
+      heartbeat = new boolean[2];
+      lastHeard = new long[2];
+      firedAt = new long[2];
+      tokenSent = new boolean[2];
+      graceTimeouts = new HashedWheelTimer.Timeout[2];
+      shotsAt = new BitSet[] { new BitSet(), new BitSet() };
+      hitsOn = new BitSet[] { new BitSet(), new BitSet() };
+      pendingFire = new int[] { -1, -1 };
+      next = new int[] { GONE, GONE };
+   }
+
+   /**
+       * Sets the size of the Grids and the fleet of the game. Must be called before the game is started.
+       * @param rules the GameRules of the game
+       */
+   public void setRules(GameRules rules)   {
+      this.rules = rules;
+   }
+
+   /**
+       * @return the GameRules of the game.
+       */
+   public GameRules getRules()   {
+      return rules;
+   }
+
+   /**
+       * Gives the number of argument bytes that follow a command sent by a player of this game,
+       * which depends on the game's GameRules. May be called from any thread once the game is started.
+       * @param cmd the protocol constant value sent by the player
+       * @return the number of bytes of arguments following cmd, or -1 if cmd is not supported
+       */
+   public int argumentBytes(int cmd)   {
+      return clientArgumentBytes(cmd, rules);
+   }
+
+   /**
+       * Sets whether the server resolves the shots of the clients who upload their fleet.
+       * Must be called before the game is started.
+       * @param resolves whether the server resolves shots
+       */
+   public void setServerResolvesShots(boolean resolves)   {
+      serverResolvesShots = resolves;
+   }
+
+   /**
+       * Sets the deadlines of the game. A time of 0 leaves that deadline out. Must be called before
+       * the game is started.
+       * @param scheduler runs each deadline on the session's thread
+       * @param idle how long a player answering PING may stay silent, in milliseconds
+       * @param placement how long both players have to confirm their ships, in milliseconds
+       * @param turn how long each player has to move, in milliseconds
+       */
+   public void setTimeouts(Scheduler scheduler, long idle, long placement, long turn)   {
+      this.scheduler = scheduler;
+      idleMillis = idle;
+      placementMillis = placement;
+      turnMillis = turn;
+   }
+
+   /**
+       * Sets the GameJournal which records the events of the game. Must be called before the game
+       * is started.
+       * @param journal where the events are recorded
+       * @param player0 the address of player 0
+       * @param player1 the address of player 1
+       */
+   public void setJournal(GameJournal journal, String player0, String player1)   {
+      this.journal = journal;
+      addresses = new String[] { player0, player1 };
+   }
+
+   /**
+       * Lets the players rejoin the game after losing their connection. The tokens are sent to players
+       * who answer FRAMING, and losing the connection of such a player holds the game for them, which
+       * needs the Scheduler of setTimeouts. Must be called before the game is started.
+       * @param token0 the token of player 0
+       * @param token1 the token of player 1
+       * @param grace how long the game is held for a player whose connection was lost, in milliseconds
+       */
+   public void setResumeTokens(long token0, long token1, long grace)   {
+      resumeTokens = new long[] { token0, token1 };
+      graceMillis = grace;
+   }
+
+   /**
+       * Lets the players ask for a rematch, or go back to the lobby, over the same connection once the
+       * game has ended, which needs the Scheduler of setTimeouts. A time of 0 ends the session with its
+       * game. Must be called before the game is started.
+       * @param millis how long the players have to decide, in milliseconds
+       */
+   public void setRematchWait(long millis)   {
+      rematchMillis = millis;
+   }
+
+   /**
+       * Makes the session of a rematch, between the same players on the same links and with the same
+       * settings. Only to be called once isRematch. The transport gives it new resume tokens, if any,
+       * and starts it.
+       * @param gN the game number of the rematch (used for reporting purposes)
+       * @return the new session
+       */
+   public GameSession rematch(int gN)   {
+      GameSession session = new GameSession(links[0], links[1], serverLog, gN);
+      session.rules = rules;
+      session.serverResolvesShots = serverResolvesShots;
+      session.setTimeouts(scheduler, idleMillis, placementMillis, turnMillis);
+      session.rematchMillis = rematchMillis;
+      if (journal != null)
+         session.setJournal(journal, addresses[0], addresses[1]);
+      for (PlayerLink link : links) {
+         if (link instanceof ComputerPlayer)
+            ((ComputerPlayer)link).setSession(session);
+      }
+      ServerMetrics.SHARED.rematch();
+      report("REMATCH STARTS AS GAME NUMBER " + gN);
+      return session;
+   }
+
+   /**
+       * @param player a player of the game
+       * @return the player's resume token, or 0 if the game was given none.
+       */
+   public long getResumeToken(int player)   {
+      return resumeTokens == null ? 0 : resumeTokens[player];
+   }
+
+   /**
+       * Helper function to report messages to the serverLog which is an instance variable.
+       */
+   private void report(String msg)   {
+      serverLog.report("GAME NUMBER: " + gameNumber + " " + msg);
+   }
+
+   /**
+       * @return the game number of this session.
+       */
+   public int getGameNumber()   {
+      return gameNumber;
+   }
+
+   /**
+       * @return true if the game has ended and both connections may be closed, false otherwise.
+       */
+   public boolean isFinished()   {
+      return stage == FINISHED;
+   }
+
+   /**
+       * @return true if the game has ended and every player has decided what to do next, or can no
+       * longer be reached, so the transport may start the rematch or close the connections; false otherwise.
+       */
+   public boolean isSettled()   {
+      return stage == FINISHED && (isRematch() || (next[0] >= LEFT && next[1] >= LEFT));
+   }
+
+   /**
+       * @return true if both players have asked for a rematch, false otherwise.
+       */
+   public boolean isRematch()   {
+      return next[0] == AGAIN && next[1] == AGAIN;
+   }
+
+   /**
+       * @param player a player of the game
+       * @return true if the player has been sent LOBBY, and their connection is to be paired again,
+       * false otherwise.
+       */
+   public boolean hasLeftForLobby(int player)   {
+      return next[player] == LEFT;
+   }
+
+   /**
+       * @return the player who won the game, or -1 if the game has not been won (it may have
+       * ended with a player quitting or being disconnected).
+       */
+   public int getWinner()  {
+      return winner;
+   }
+
+   /**
+       * Starts the game by sending a NAME command to each client, preceded by RULES unless the game
+       * is the standard one, followed by AUTHORITATIVE if the server resolves shots and FRAMING to offer
+       * framed messages. A link still framed from the game before a rematch is treated as having
+       * answered HELLO.
+       * @throws IOException if there is a communication error between server/client
+       */
+   public void start() throws IOException   {
+      startedAt = System.nanoTime();
+      ServerMetrics.SHARED.gameStarted();
+      if (journal != null)
+         journal.paired(gameNumber, addresses[0], addresses[1], rules);
+      if (!rules.isStandard())   {
+         report("SENDING RULES " + rules + " TO BOTH PLAYERS");
+         links[0].sendRules(rules);
+         links[1].sendRules(rules);
+      }
+      report("SENDING NAME COMMAND TO PLAYER 0");
+      report("SENDING NAME COMMAND TO PLAYER 1");
+      links[0].sendName(0);
+      links[1].sendName(1);
+      if (serverResolvesShots)   {
+         links[0].sendAuthoritative();
+         links[1].sendAuthoritative();
+      }
+      links[0].sendFraming();
+      links[1].sendFraming();
+      for (int player = 0; player < 2; player++)   {
+         if (links[player].isFramed())
+            framed(player);
+      }
+      flushLinks();
+      if (scheduler != null && placementMillis > 0)
+         placementTimeout = scheduler.schedule(this::placementExpired, placementMillis);
+      if (scheduler != null && idleMillis > 0)
+         heartbeatTimeout = scheduler.schedule(this::heartbeat, idleMillis / 3);
+   }
+
+   /**
+       * Ends the game, cancelling every deadline still pending. Given a rematch wait the players still
+       * connected are then left to decide what to do next, and one whose opponent can no longer be
+       * reached is sent DONE.
+       * @param reason why the game ended, one of the reasons of GameJournal
+       */
+   private void finish(int reason)   {
+      if (stage == FINISHED)
+         return;
+      stage = FINISHED;
+      if (journal != null)
+         journal.result(gameNumber, winner, reason);
+      if (startedAt != 0)
+         ServerMetrics.SHARED.gameFinished(System.nanoTime() - startedAt);
+      for (HashedWheelTimer.Timeout timeout : new HashedWheelTimer.Timeout[] { placementTimeout,
+         turnTimeout, heartbeatTimeout, graceTimeouts[0], graceTimeouts[1] })   {
+         if (timeout != null)
+            timeout.cancel();
+      }
+      boolean waits = scheduler != null && rematchMillis > 0;
+      Arrays.fill(next, waits ? UNDECIDED : GONE);
+      for (int player = 0; player < 2; player++)   {
+         if (waits && links[player] == DETACHED)
+            leave(player, GONE);
+      }
+      if (!isSettled())
+         rematchTimeout = scheduler.schedule(this::rematchExpired, rematchMillis);
+   }
+
+   /**
+       * Runs when the rematch wait passes: the players who have not decided are treated as gone.
+       */
+   private void rematchExpired()  {
+      if (isSettled())
+         return;
+      report("NO REMATCH AGREED WITHIN " + rematchMillis + " MS");
+      for (int player = 0; player < 2; player++)   {
+         if (next[player] < LEFT)   {
+            next[player] = GONE;
+            links[player] = DETACHED;
+         }
+      }
+   }
+
+   /**
+       * Applies a REMATCH or LOBBY received once the game has ended. LOBBY is answered with LOBBY. A
+       * REMATCH is passed on to an opponent who has not decided, and answered with DONE if the opponent
+       * has left.
+       * @param player the player who sent the command
+       * @param cmd REMATCH or LOBBY
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void decide(int player, int cmd) throws IOException   {
+      if (next[player] >= LEFT)
+         return;
+      int other = 1 - player;
+      if (cmd == LOBBY)
+         returnToLobby(player, true);
+      else if (next[other] < LEFT)  {
+         next[player] = AGAIN;
+         if (next[other] == UNDECIDED) {
+            links[other].sendRematch();
+            report("PLAYER " + player + " ASKS FOR A REMATCH, SENDING REMATCH COMMAND TO PLAYER " + other);
+         }
+         else
+            report("BOTH PLAYERS WANT A REMATCH");
+         flushLinks();
+      }
+      else  {
+         links[player].sendDone();
+         links[player].flush();
+      }
+      if (isSettled() && rematchTimeout != null)
+         rematchTimeout.cancel();
+   }
+
+   /**
+       * Answers a player's LOBBY with LOBBY and takes them out of the session, so their connection is
+       * paired again.
+       * @param player the player going back to the lobby
+       * @param tell whether an opponent still waiting is to be sent DONE, false if they have already been
+       * told the player quit
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void returnToLobby(int player, boolean tell) throws IOException   {
+      report("PLAYER " + player + " RETURNS TO THE LOBBY, SENDING LOBBY COMMAND");
+      links[player].sendLobby();
+      links[player].flush();
+      ServerMetrics.SHARED.lobbyReturn();
+      leave(player, LEFT, tell);
+   }
+
+   /**
+       * Takes a player out of the session once the game has ended. An opponent still waiting is sent
+       * DONE, as there can be no rematch, and is left to go back to the lobby.
+       * @param player the player leaving
+       * @param state LEFT if the player went back to the lobby, GONE if they can no longer be reached
+       */
+   private void leave(int player, int state) {
+      leave(player, state, true);
+   }
+
+   /**
+       * Takes a player out of the session once the game has ended, leaving an opponent still waiting to
+       * go back to the lobby.
+       * @param player the player leaving
+       * @param state LEFT if the player went back to the lobby, GONE if they can no longer be reached
+       * @param tell whether the opponent is to be sent DONE, as there can be no rematch
+       */
+   private void leave(int player, int state, boolean tell) {
+      if (next[player] >= LEFT)
+         return;
+      next[player] = state;
+      links[player] = DETACHED;
+      int other = 1 - player;
+      if (tell && next[other] < LEFT) {
+         next[other] = UNDECIDED;
+         try   {
+            links[other].sendDone();
+            links[other].flush();
+            report("SENDING DONE COMMAND TO PLAYER " + other);
+         }
+         catch (IOException e)   {
+            report("LOST CONNECTION TO PLAYER " + other + " WHILE SENDING DONE");
+            next[other] = GONE;
+            links[other] = DETACHED;
+         }
+      }
+      if (isSettled() && rematchTimeout != null)
+         rematchTimeout.cancel();
+   }
+
+   /**
+       * Runs when the placement deadline passes: the first player who has not confirmed their ships
+       * is sent DONE and treated as quitting.
+       */
+   private void placementExpired()  {
+      if (stage != PLACEMENT)
+         return;
+      int player = confirmed[0] ? 1 : 0;
+      report("PLACEMENT TIMED OUT FOR PLAYER " + player);
+      try   {
+         links[player].sendDone();
+         quitShips(player, GameJournal.TIMED_OUT);
+         flushLinks();
+      }
+      catch (IOException e)   {
+         disconnected(player);
+      }
+   }
+
+   /**
+       * Runs when a turn deadline passes: if the turn has not moved on since, the player whose turn
+       * it is forfeits the game.
+       * @param count the turnCount when the deadline was set
+       */
+   private void turnExpired(int count)   {
+      if (stage != PLAYING || count != turnCount)
+         return;
+      report("TURN TIMED OUT FOR PLAYER " + turn);
+      try   {
+         win(1 - turn, GameJournal.TIMED_OUT);
+         flushLinks();
+      }
+      catch (IOException e)   {
+         disconnected(turn);
+      }
+   }
+
+   /**
+       * Sends PING to the players who answer it and ends the game if one of them has not been heard
+       * from within the idle time, sending DONE to the other as though they had quit.
+       */
+   private void heartbeat()   {
+      if (stage == FINISHED)
+         return;
+      long now = System.nanoTime();
+      int interval = (int)(idleMillis / 3);
+      try   {
+         for (int player = 0; player < 2; player++)   {
+            if (heartbeat[player] && TimeUnit.NANOSECONDS.toMillis(now - lastHeard[player]) > idleMillis)   {
+               report("PLAYER " + player + " TIMED OUT, NOTHING RECEIVED FOR " + idleMillis + " MS");
+               if (suspend(player))
+                  continue;
+               sendDoneMessage(player);
+               flushLinks();
+               //A player who stopped answering is not waited for once the game has ended
+               links[player] = DETACHED;
+               finish(GameJournal.TIMED_OUT);
+               return;
+            }
+         }
+         for (int player = 0; player < 2; player++)   {
+            if (heartbeat[player])
+               links[player].sendPing(interval);
+         }
+         flushLinks();
+         heartbeatTimeout = scheduler.schedule(this::heartbeat, interval);
+      }
+      catch (IOException e)   {
+         finish(GameJournal.DISCONNECTED);
+         report("LOST CONNECTION WHILE SENDING PING");
+      }
+   }
+
+   /**
+       * Flushes both links, so that everything sent to a player in response to one event
+       * leaves in a single write.
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void flushLinks() throws IOException   {
+      links[0].flush();
+      links[1].flush();
+   }
+
+   /**
+       * Applies a single command received from a player and then flushes everything it sent.
+       * The arguments of the command must be the next argumentBytes(cmd) bytes of args.
+       * An unknown command ends the game. Once the game has ended only REMATCH and LOBBY are applied.
+       * @param playerNumber the player who sent the command
+       * @param cmd the protocol constant value sent by the player
+       * @param args the arguments of the command
+       * @throws IOException if there is a communication error between server/client
+       */
+   public void receive(int playerNumber, int cmd, ByteBuffer args) throws IOException   {
+      ServerMetrics.SHARED.received(cmd);
+      if (links[playerNumber] == DETACHED)
+         return;
+      if (stage == FINISHED)  {
+         if (cmd == REMATCH || cmd == LOBBY)
+            decide(playerNumber, cmd);
+         return;
+      }
+      lastHeard[playerNumber] = System.nanoTime();
+      if (cmd == PONG)
+         return;
+      apply(playerNumber, cmd, args);
+      flushLinks();
+   }
+
+   /**
+       * Applies a single command received from a player.
+       * @param playerNumber the player who sent the command
+       * @param cmd the protocol constant value sent by the player
+       * @param args the arguments of the command
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void apply(int playerNumber, int cmd, ByteBuffer args) throws IOException   {
+      report("RECEIVED " + cmdToString(cmd) + " COMMAND FROM " +
+         "PLAYER " + playerNumber);
+      switch (cmd)   {
+         case CONFIRM_SHIPS:
+            args.get();
+            if (journal != null && stage == PLACEMENT)
+               journal.placement(gameNumber, playerNumber, null);
+            confirmShips(playerNumber);
+            break;
+         case CONFIRM_FLEET:
+            confirmFleet(playerNumber, args);
+            break;
+         case QUIT_SHIP:
+            if (args.getInt() != playerNumber)
+               protocolError(playerNumber, cmd);
+            else
+               quitShips(playerNumber, GameJournal.QUIT);
+            break;
+         case FIRE:
+            firedAt[playerNumber] = System.nanoTime();
+            int player = args.getInt();
+            int space = args.getInt();
+            if (player != 1 - playerNumber)  {
+               protocolError(playerNumber, cmd);
+               break;
+            }
+            if (journal != null)
+               journal.shot(GameJournal.FIRE, gameNumber, playerNumber, space, false, false);
+            if (boards[player] != null)
+               resolveFire(playerNumber, space);
+            else
+               fire(player, space);
+            break;
+         case SUCCESS:
+            player = args.getInt();
+            int index = args.getInt();
+            boolean success = args.get() != 0;
+            boolean sunk = args.get() != 0;
+            if (player != playerNumber)
+               protocolError(playerNumber, cmd);
+            else
+               success(player, index, success, sunk);
+            break;
+         case TURN:
+            if (args.getInt() != playerNumber)
+               protocolError(playerNumber, cmd);
+            else if (boards[playerNumber] != null || stage != PLAYING || turn != playerNumber)
+               report("IGNORED TURN FROM PLAYER " + playerNumber);
+            else  {
+               updateTurn(1 - playerNumber);
+               report("SENDING TURN COMMAND TO BOTH PLAYERS");
+            }
+            break;
+         case WIN:
+            if (args.getInt() != playerNumber)
+               protocolError(playerNumber, cmd);
+            else if (boards[playerNumber] != null || stage != PLAYING || turn != playerNumber)
+               report("IGNORED WIN FROM PLAYER " + playerNumber);
+            else if (boards[1 - playerNumber] != null && !boards[1 - playerNumber].allSunk())
+               report("REJECTED WIN FROM PLAYER " + playerNumber + ", SHIPS REMAIN");
+            else
+               win(playerNumber, GameJournal.WON);
+            break;
+         case QUIT:
+            if (args.getInt() != playerNumber)
+               protocolError(playerNumber, cmd);
+            else  {
+               sendDoneMessage(playerNumber);
+               finish(GameJournal.QUIT);
+            }
+            break;
+         case HELLO:
+            int version = FrameCodec.negotiate(args.get());
+            if (version > 0)  {
+               links[playerNumber].sendHello(version);
+               report("SENDING HELLO COMMAND TO PLAYER " + playerNumber + ", FRAME VERSION " + version);
+               framed(playerNumber);
+            }
+            break;
+         case LOBBY:
+            //Going back to the lobby during the game quits it, which tells the opponent, and then
+            //only the player who quit is handed back
+            quitShips(playerNumber, GameJournal.QUIT);
+            if (next[playerNumber] < LEFT)
+               returnToLobby(playerNumber, false);
+            break;
+         case REMATCH:
+            report("IGNORED REMATCH FROM PLAYER " + playerNumber + " DURING THE GAME");
+            break;
+         default:
+            finish(GameJournal.PROTOCOL_ERROR);
+      }
+   }
+
+   /**
+       * Ends the game when a player sends a command on behalf of the other player, which no client
+       * does. The other player is sent DONE, as though the player had quit.
+       * @param player the player who sent the command
+       * @param cmd the protocol constant value sent by the player
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void protocolError(int player, int cmd) throws IOException   {
+      report("PROTOCOL ERROR, " + cmdToString(cmd) + " FROM PLAYER " + player + " NAMES THE OTHER PLAYER");
+      sendDoneMessage(player);
+      finish(GameJournal.PROTOCOL_ERROR);
+   }
+
+   /**
+       * Starts sending PING to a player whose commands are framed, and sends them their resume token.
+       * @param player the player who answered FRAMING
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void framed(int player) throws IOException  {
+      heartbeat[player] = true;
+      lastHeard[player] = System.nanoTime();
+      if (resumeTokens != null)  {
+         links[player].sendToken(resumeTokens[player]);
+         tokenSent[player] = true;
+      }
+   }
+
+   /**
+       * Called when the connection to a player is lost, ending the game for both players, or taking
+       * the player out of the session if the game has already ended.
+       * @param playerNumber the player whose connection was lost
+       */
+   public void disconnected(int playerNumber)   {
+      if (stage != FINISHED)  {
+         links[playerNumber] = DETACHED;
+         finish(GameJournal.DISCONNECTED);
+         report("LOST CONNECTION TO PLAYER " + playerNumber);
+      }
+      else
+         leave(playerNumber, GONE);
+   }
+
+   /**
+       * Called by the transport when the connection of a player is lost. If the player was sent a resume
+       * token the game is held for them for the grace time, otherwise it ends for both players. Once the
+       * game has ended the player is taken out of the session. A link which has since been replaced by
+       * resume, or has gone back to the lobby, is ignored.
+       * @param playerNumber the player whose connection was lost
+       * @param link the link of the connection which was lost
+       */
+   public void connectionLost(int playerNumber, PlayerLink link)   {
+      if (links[playerNumber] != link)
+         return;
+      if (stage == FINISHED || !suspend(playerNumber))
+         disconnected(playerNumber);
+   }
+
+   /**
+       * Holds the game for the grace time for a player who was sent a resume token and can no longer
+       * be reached, detaching their link. Anything the player's old connection still delivers is
+       * ignored from then on.
+       * @param player the player who can no longer be reached
+       * @return true if the game is held for the player, false if they cannot resume
+       */
+   private boolean suspend(int player) {
+      if (!tokenSent[player] || scheduler == null || graceMillis <= 0)
+         return false;
+      links[player] = DETACHED;
+      heartbeat[player] = false;
+      ServerMetrics.SHARED.suspended();
+      report("HOLDING THE GAME FOR PLAYER " + player + " TO RESUME FOR " + graceMillis + " MS");
+      if (graceTimeouts[player] != null)
+         graceTimeouts[player].cancel();
+      graceTimeouts[player] = scheduler.schedule(() -> graceExpired(player), graceMillis);
+      return true;
+   }
+
+   /**
+       * Runs when the grace time of a player whose connection was lost passes: if they have not
+       * resumed, the other player is sent DONE and the game ends.
+       * @param player the player whose connection was lost
+       */
+   private void graceExpired(int player)  {
+      if (stage == FINISHED || links[player] != DETACHED)
+         return;
+      report("PLAYER " + player + " DID NOT RESUME WITHIN " + graceMillis + " MS");
+      try   {
+         sendDoneMessage(player);
+         flushLinks();
+      }
+      catch (IOException e)   {
+         report("LOST CONNECTION WHILE SENDING DONE");
+      }
+      finish(GameJournal.DISCONNECTED);
+   }
+
+   /**
+       * Reattaches a player who sent RESUME on a new connection, sending them a SNAPSHOT of the game,
+       * the relayed FIRE they had not answered, if any, and FRAMING. The player's old connection, if it
+       * was not yet known to be lost, is replaced and should be closed by the transport. The token the
+       * player resumed with has been used up, and the new one is sent once they answer FRAMING.
+       * @param playerNumber the player who resumed
+       * @param link the link of the player's new connection
+       * @param token the player's new resume token
+       * @return true if the player rejoined, false if the game is over
+       */
+   public boolean resume(int playerNumber, PlayerLink link, long token)   {
+      if (stage == FINISHED)
+         return false;
+      if (resumeTokens != null)  {
+         resumeTokens[playerNumber] = token;
+         tokenSent[playerNumber] = false;
+      }
+      if (graceTimeouts[playerNumber] != null)
+         graceTimeouts[playerNumber].cancel();
+      links[playerNumber] = link;
+      heartbeat[playerNumber] = false;
+      lastHeard[playerNumber] = System.nanoTime();
+      ServerMetrics.SHARED.resumed();
+      report("PLAYER " + playerNumber + " RESUMED, SENDING SNAPSHOT COMMAND");
+      int other = 1 - playerNumber;
+      try   {
+         link.sendSnapshot(rules, stage == PLAYING, confirmed[playerNumber],
+            stage == PLAYING && turn == playerNumber, sunkReported[playerNumber], sunkReported[other],
+            shotsAt[playerNumber], hitsOn[playerNumber], shotsAt[other], hitsOn[other]);
+         if (pendingFire[playerNumber] >= 0)
+            link.sendFire(pendingFire[playerNumber]);
+         link.sendFraming();
+         link.flush();
+      }
+      catch (IOException e)   {
+         connectionLost(playerNumber, link);
+      }
+      return true;
+   }
+
+   /**
+       * Keeps a shot at a player's Grid for the SNAPSHOT sent if they resume.
+       * @param player the player who was fired at
+       * @param space the single digit index of the GridSpace that was fired at
+       * @param hit whether the shot was a hit or not
+       * @param sunk whether the Ship was sunk or not
+       */
+   private void shotAt(int player, int space, boolean hit, boolean sunk)   {
+      if (space < 0 || space >= rules.getSpaces() || shotsAt[player].get(space))
+         return;
+      shotsAt[player].set(space);
+      if (hit)
+         hitsOn[player].set(space);
+      if (sunk)
+         sunkReported[player]++;
+   }
+
+   /**
+       * Marks a player as having placed their ships, and starts the main phase of the game once
+       * both players are ready.
+       * @param playerNumber the player who confirmed their ships
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void confirmShips(int playerNumber) throws IOException   {
+      if (stage != PLACEMENT)
+         return;
+      confirmed[playerNumber] = true;
+      if (confirmed[0] && confirmed[1])   {
+         stage = PLAYING;
+         if (placementTimeout != null)
+            placementTimeout.cancel();
+         updateTurn(0);
+      }
+   }
+
+   /**
+       * Checks the fleet uploaded by a player and keeps it on a Board, confirming the player's ships
+       * if every Ship is a line of the right length and none overlap. An invalid fleet ends the game.
+       * @param playerNumber the player who uploaded their fleet
+       * @param args the two ends of each Ship
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void confirmFleet(int playerNumber, ByteBuffer args) throws IOException   {
+      int[] ends = new int[2 * rules.getNumShips()];
+      for (int i = 0; i < ends.length; i++)
+         ends[i] = args.getInt();
+      if (stage != PLACEMENT)
+         return;
+      Board board = new Board(rules);
+      if (!PlacementTable.placeFleet(board, ends))   {
+         report("INVALID FLEET FROM PLAYER " + playerNumber);
+         links[playerNumber].sendDone();
+         quitShips(playerNumber, GameJournal.PROTOCOL_ERROR);
+         return;
+      }
+      if (journal != null)
+         journal.placement(gameNumber, playerNumber, ends);
+      boards[playerNumber] = board;
+      confirmShips(playerNumber);
+   }
+
+   /**
+       * Resolves a shot at a player whose fleet the server holds. The defender is sent FIRE and the
+       * attacker MARK. If the attacker also uploaded their fleet it is not going to answer MARK, so
+       * the game is ended or the turn passed straight away. A shot out of turn, off the board or at a
+       * space already fired at is ignored, and the attacker is told again that it is their turn.
+       * @param attacker the player who fired
+       * @param space the single digit index of the GridSpace being fired at
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void resolveFire(int attacker, int space) throws IOException   {
+      int defender = 1 - attacker;
+      Board board = boards[defender];
+      if (stage != PLAYING || turn != attacker || space < 0 || space >= rules.getSpaces() ||
+         board.isShot(space))   {
+         report("REJECTED FIRE FROM PLAYER " + attacker + " AT " + space);
+         links[attacker].sendTurn(turn == attacker);
+         return;
+      }
+      int result = board.fire(space);
+      boolean hit = result != Board.MISS;
+      boolean sunk = result == Board.SUNK;
+      shotAt(defender, space, hit, sunk);
+      links[defender].sendFire(space);
+      links[attacker].sendMark(space, hit, sunk);
+      ServerMetrics.SHARED.fireToMark(System.nanoTime() - firedAt[attacker]);
+      if (journal != null)
+         journal.shot(GameJournal.MARK, gameNumber, attacker, space, hit, sunk);
+      report("RESOLVED FIRE, SENDING FIRE TO PLAYER " + defender + " AND MARK TO PLAYER " + attacker);
+      if (boards[attacker] != null)   {
+         if (board.allSunk())
+            win(attacker, GameJournal.WON);
+         else
+            updateTurn(defender);
+      }
+   }
+
+   /**
+       * Ends the game when a player quits during the ship placement stage. The other player is sent
+       * a QUIT_SHIP if they are still placing their ships, or a DONE if they are already waiting in the
+       * main game screen.
+       * @param player the player who is quitting
+       * @param reason why the player is quitting, one of the reasons of GameJournal
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void quitShips(int player, int reason) throws IOException   {
+      if (player != 0 && player != 1)
+         return;
+      report("EARLY QUIT FROM PLAYER " + player);
+      int other = 1 - player;
+      if (confirmed[other])
+         sendDoneMessage(player);
+      else  {
+         links[other].sendQuitShip(player);
+         report("SENDING QUIT_SHIP COMMAND TO PLAYER " + other);
+      }
+      finish(reason);
+   }
+
+   /**
+       * Relays a FIRE command to the player being fired at.
+       * @param player the player who is being fired at
+       * @param space the single digit index of the GridSpace being fired at
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void fire(int player, int space) throws IOException   {
+      if (player == 0 || player == 1)  {
+         pendingFire[player] = space;
+         links[player].sendFire(space);
+         report("SENDING FIRE COMMAND TO PLAYER " + player);
+      }
+   }
+
+   /**
+       * Relays the result of a shot back as a MARK command to the player who fired it.
+       * @param player the player who was fired at
+       * @param index the single digit index of the GridSpace that was fired at
+       * @param success whether the shot was a hit or not
+       * @param sunk whether the Ship was sunk or not
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void success(int player, int index, boolean success, boolean sunk) throws IOException   {
+      if (player == 0 || player == 1)  {
+         int attacker = 1 - player;
+         pendingFire[player] = -1;
+         shotAt(player, index, success, sunk);
+         links[attacker].sendMark(index, success, sunk);
+         if (firedAt[attacker] != 0)
+            ServerMetrics.SHARED.fireToMark(System.nanoTime() - firedAt[attacker]);
+         if (journal != null)   {
+            journal.shot(GameJournal.SUCCESS, gameNumber, attacker, index, success, sunk);
+            journal.shot(GameJournal.MARK, gameNumber, attacker, index, success, sunk);
+         }
+         report("SENDING MARK COMMAND TO PLAYER " + attacker);
+         //An attacker whose fleet the server holds does not answer MARK, so the server moves on
+         if (boards[attacker] != null)   {
+            if (sunkReported[player] == rules.getNumShips())
+               win(attacker, GameJournal.WON);
+            else
+               updateTurn(player);
+         }
+      }
+   }
+
+   /**
+       * Sends a GAME_OVER command to both players and ends the game.
+       * @param player the player who has won the game
+       * @param reason why the game ended, WON or TIMED_OUT when the other player ran out of time
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void win(int player, int reason) throws IOException   {
+      links[0].sendGameOver(player);
+      links[1].sendGameOver(player);
+      report("SENDING GAME_OVER COMMAND TO BOTH PLAYERS");
+      winner = player;
+      finish(reason);
+   }
+
+   /**
+       * Sends a DONE command to the player who did not send the QUIT command.
+       * @param player the player who sent the QUIT command
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void sendDoneMessage(int player) throws IOException   {
+      if (player == 0 || player == 1)  {
+         links[1 - player].sendDone();
+         report("SENDING DONE COMMAND TO PLAYER " + (1 - player));
+      }
+   }
+
+   /**
+       * Updates the turns of both players, setting the given player to have their turn,
+       * and the other to be waiting.
+       * @param player the player whose turn it now is
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void updateTurn(int player) throws IOException   {
+      long now = System.nanoTime();
+      if (turnStartedAt != 0)
+         ServerMetrics.SHARED.turn(now - turnStartedAt);
+      turnStartedAt = now;
+      if (journal != null)
+         journal.turn(gameNumber, player);
+      turn = player;
+      turnCount++;
+      if (scheduler != null && turnMillis > 0)  {
+         if (turnTimeout != null)
+            turnTimeout.cancel();
+         int count = turnCount;
+         turnTimeout = scheduler.schedule(() -> turnExpired(count), turnMillis);
+      }
+      links[0].sendTurn(player == 0);
+      links[1].sendTurn(player == 1);
+   }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+/**
+* GameThreads starts the threads that run each BattleShipGame, either as platform threads or as virtual
+* threads, so that the two can be compared on the same server. Virtual threads are only available from
+* Java 21, while the server is built for Java 11, so they are looked up when the server starts and platform
+* threads are used if they are missing. It also keeps count of the games in progress, and the heap in use
+* when it was created, so that the heap the games have added can be reported.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.lang.management.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+public class GameThreads  {
+   private static final int BYTES_PER_KB = 1024;
+
+   private ThreadFactory factory;
+   private boolean virtual;
+   private boolean fellBack;
+   private AtomicInteger activeGames;
+   //Heap in use before any game started, in bytes
+   private long heapBaseline;
+
+   /**
+       * Creates GameThreads which start platform threads, or virtual threads if asked for and
+       * supported by the running Java version.
+       * @param useVirtual whether virtual threads should be used
+       */
+   public GameThreads(boolean useVirtual)   {
+      activeGames = new AtomicInteger();
+      heapBaseline = heapUsed();
+      factory = useVirtual ? virtualThreadFactory() : null;
+      virtual = factory != null;
+      fellBack = useVirtual && !virtual;
+      if (factory == null)
+         factory = Executors.defaultThreadFactory();
+   }
+
+   /**
+       * Looks up the virtual thread factory of Java 21 and later.
+       * @return a factory of virtual threads, or null if the running Java version has none
+       */
+   private static ThreadFactory virtualThreadFactory()   {
+      try   {
+         Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+         Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+         return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+      }
+      catch (ReflectiveOperationException | UnsupportedOperationException e)   {
+         return null;
+      }
+   }
+
+   /**
+       * @return true if threads are started as virtual threads, false if they are platform threads.
+       */
+   public boolean isVirtual() {
+      return virtual;
+   }
+
+   /**
+       * @return true if virtual threads were asked for but the running Java version has none, so
+       * platform threads are started instead.
+       */
+   public boolean isFallback()   {
+      return fellBack;
+   }
+
+   /**
+       * @return the number of games currently running.
+       */
+   public int getActiveGames()   {
+      return activeGames.get();
+   }
+
+   /**
+       * Starts a thread which runs the given game, counting it as active until it finishes.
+       * @param game the game to run
+       * @return the started thread
+       */
+   public Thread startGame(Runnable game)   {
+      activeGames.incrementAndGet();
+      return start(() -> {
+         try   {
+            game.run();
+         }
+         finally  {
+            activeGames.decrementAndGet();
+         }
+      });
+   }
+
+   /**
+       * Starts a thread of the chosen kind which runs the given task.
+       * @param task the task to run
+       * @return the started thread
+       */
+   public Thread start(Runnable task)   {
+      Thread thread = factory.newThread(task);
+      thread.start();
+      return thread;
+   }
+
+   /**
+       * @return the heap in use, in bytes
+       */
+   private static long heapUsed()   {
+      return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+   }
+
+   /**
+       * Gives the kind of threads in use, the number of live platform threads in the JVM and the
+       * heap in use above what was in use when the GameThreads were created, in total and divided by
+       * the number of running games. Garbage not yet collected counts too, so the figures are rough.
+       * @return a line suitable for the server log
+       */
+   public String reportUsage()   {
+      int games = Math.max(1, activeGames.get());
+      long heapAdded = heapUsed() - heapBaseline;
+      return (virtual ? "virtual" : "platform") + " threads: " + activeGames.get() +
+         " games, " + ManagementFactory.getThreadMXBean().getThreadCount() + " platform threads, " +
+         (heapAdded / BYTES_PER_KB) + " KB heap above startup, " + (heapAdded / games / BYTES_PER_KB) +
+         " KB per game";
+   }
+}
\ No newline at end of file
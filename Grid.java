@@ -1,18 +1,58 @@
 /**
 * A Grid stores a list of GridSpaces, and whether the Ships in the Grid have been set or not.
+* The Grid is a view over a Board, which holds the occupied spaces, the shots and the spaces of each Ship.
+* It has as many rows and columns as the GameRules of its Board, and its GridSpaces shrink as it grows.
+* <p>
+* The Grid is one component which paints its spaces itself, rather than a button for each GridSpace. What
+* is shown on each space is kept in an array, a click is mapped from the mouse's coordinates to the space
+* under it, and a change to a space repaints only that space's rectangle. The font and the glyphs of the
+* marks are made once for each size of the spaces and reused by every paint. Between games the Grid is
+* reset rather than made again, so the same component is shown in every game played on a connection.
+* </p>
 * The Class has appropriate getter and setter functions.
 * 
 * @author Alex Perrino
 * @version November 29, 2017
 */
-import javax.swing.JPanel;
+import javax.swing.JComponent;
 import javax.swing.JLabel;
-import java.awt.GridLayout;
+import javax.swing.SwingUtilities;
 import java.awt.*;
-public class Grid extends JPanel implements BattleShippable  {
+import java.awt.event.*;
+import java.awt.font.*;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.function.Consumer;
+public class Grid extends JComponent implements BattleShippable  {
+   //Preferred size of the Grid's spaces, together, whatever its dimension
+   private static final int PREFERRED_WIDTH = 500;
+   private static final int PREFERRED_HEIGHT = 450;
+   //What is shown on a space
+   private static final byte BLANK = 0;
+   private static final byte SHIP = 1;
+   private static final byte MISS = 2;
+   private static final byte HIT = 3;
+   //Colors of the spaces, and of the marks on them
+   private static final Color SPACE_COLOR = new Color(238, 238, 238);
+   private static final Color PRESSED_COLOR = new Color(184, 207, 229);
+   private static final Color LINE_COLOR = Color.GRAY;
+   private static final Color[] MARK_COLORS = { null, Color.BLACK, Color.BLACK, Color.RED };
+
    //Instance Variables
+   private Board board;
+   private int dimension;
    private GridSpace[][] grid;
    private boolean shipsSet;
+   //What is shown on each space, the symbol of an occupied space, the space the mouse was pressed on,
+   //or -1, and who is told of a click once the Ships are set
+   private byte[] marks;
+   private char shipSymbol;
+   private int pressed;
+   private Consumer<GridSpace> clickListener;
+   //The glyph of each mark and its bounds, made for spaces of glyphHeight pixels
+   private GlyphVector[] glyphs;
+   private Rectangle2D[] glyphBounds;
+   private int glyphHeight;
    //Instance variables used for setting Ships
    private Ship currentShip;
    private int shipIndex;
@@ -24,22 +64,83 @@ public class Grid extends JPanel implements BattleShippable  {
        * Creates a Grid with the default values, that is of the specified dimensions.
        */   
    public Grid()   {
-      grid = new GridSpace[GRID_DIMENSION][GRID_DIMENSION];
+      this(GameRules.STANDARD);
+   }
+   
+   /**
+       * Creates a Grid of the dimensions of the given GameRules.
+       * @param rules the size of the Grid and the fleet placed on it
+       */   
+   public Grid(GameRules rules)   {
+      makeSpaces(rules);
       shipsSet = false;
-      setLayout(new GridLayout(GRID_DIMENSION, GRID_DIMENSION));
-      for (int i = 0; i < GRID_DIMENSION; i++)  {
-         for (int j = 0; j < GRID_DIMENSION; j++)  {
-            grid[i][j] = new GridSpace(i, j);
-            GridSpace tmp = getSpace(i, j);
-            tmp.setPreferredSize(new Dimension(50, 45));
-            grid[i][j].addActionListener(e -> onClick(tmp));
-            add(grid[i][j]);
+      shipSymbol = 'O';
+      pressed = -1;
+      glyphs = new GlyphVector[MARK_COLORS.length];
+      glyphBounds = new Rectangle2D[MARK_COLORS.length];
+      setOpaque(true);
+      addMouseListener(new MouseAdapter() {
+         @Override
+         public void mousePressed(MouseEvent e)   {
+            if (SwingUtilities.isLeftMouseButton(e))
+               setPressed(spaceAt(e.getX(), e.getY()));
+         }
+
+         @Override
+         public void mouseReleased(MouseEvent e)  {
+            int space = pressed;
+            setPressed(-1);
+            if (space >= 0 && space == spaceAt(e.getX(), e.getY()))
+               onClick(getSpace(space));
          }
+      });
+      currentShip = null;
+      shipIndex = 0;
+      currentSpace1 = null;
+      currentSpace2 = null;
+   }
+   
+   /**
+       * Makes the Board and the GridSpaces for the given GameRules, with nothing shown on any space.
+       * @param rules the size of the Grid and the fleet placed on it
+       */
+   private void makeSpaces(GameRules rules)  {
+      board = new Board(rules);
+      dimension = rules.getDimension();
+      grid = new GridSpace[dimension][dimension];
+      for (int i = 0; i < dimension; i++)  {
+         for (int j = 0; j < dimension; j++)
+            grid[i][j] = new GridSpace(i, j, board);
+      }
+      marks = new byte[rules.getSpaces()];
+      setPreferredSize(new Dimension(dimension * Math.max(10, PREFERRED_WIDTH / dimension),
+         dimension * Math.max(9, PREFERRED_HEIGHT / dimension)));
+   }
+
+   /**
+       * Readies the Grid for another game: every Ship and shot is removed and the Ships are no longer set.
+       * The Board and GridSpaces are kept if the GameRules are those of the last game, and made again
+       * for the new size otherwise. Whoever is told of a click is kept.
+       * @param rules the GameRules of the next game
+       */
+   public void reset(GameRules rules)   {
+      if (rules.equals(board.getRules()))   {
+         board.clear();
+         Arrays.fill(marks, BLANK);
+      }
+      else  {
+         makeSpaces(rules);
+         revalidate();
       }
+      shipsSet = false;
+      shipSymbol = 'O';
+      glyphHeight = 0;
+      pressed = -1;
       currentShip = null;
       shipIndex = 0;
       currentSpace1 = null;
       currentSpace2 = null;
+      repaint();
    }
    
    /**
@@ -52,6 +153,24 @@ public class Grid extends JPanel implements BattleShippable  {
       this.shipStatus = shipStatus;
    }
    
+   /**
+       * Creates a Grid of the dimensions of the given GameRules with a given JLabel from the client
+       * for error reporting.
+       * @param rules the size of the Grid and the fleet placed on it
+       * @param shipStatus a JLabel from the client for error reporting.
+       */
+   public Grid(GameRules rules, JLabel shipStatus)   {
+      this(rules);
+      this.shipStatus = shipStatus;
+   }
+   
+   /**
+       * @return the Board holding the state of this Grid.
+       */
+   public Board getBoard() {
+      return board;
+   }
+   
    /**
        * Returns the GridSpace with the given row and col values.
        * @param row the row of the GridSpace
@@ -68,8 +187,8 @@ public class Grid extends JPanel implements BattleShippable  {
        * @return the corresponding GridSpace
        */  
    public GridSpace getSpace(int space)  {
-      int row = space / GRID_DIMENSION;
-      int col = space % GRID_DIMENSION;
+      int row = space / dimension;
+      int col = space % dimension;
       return grid[row][col];
    }
    
@@ -80,6 +199,14 @@ public class Grid extends JPanel implements BattleShippable  {
       shipsSet = true;
    }
    
+   /**
+       * Sets who is told when a GridSpace is clicked once the Ships have been set.
+       * @param clickListener is given the GridSpace clicked
+       */
+   public void setClickListener(Consumer<GridSpace> clickListener)  {
+      this.clickListener = clickListener;
+   }
+   
    /**
        * Sets the Grid's currentShip to newShip.
        * @param newShip the new currentShip
@@ -109,105 +236,105 @@ public class Grid extends JPanel implements BattleShippable  {
       else
          currentSpace2 = space;
       if (currentSpace1 != null && currentSpace2 != null)   {
+         String name = board.getRules().getShipName(shipIndex);
          if (currentShip.isSet())
-            shipStatus.setText(getShipString(shipIndex) + 
-               " has already been set!");   
+            shipStatus.setText(name + " has already been set!");   
          else if (setShip())
-            shipStatus.setText(getShipString(shipIndex) + " successfully set!");
+            shipStatus.setText(name + " successfully set!");
          else
-            shipStatus.setText(getShipString(shipIndex) + 
-               " unsuccessfully set, try again!");
+            shipStatus.setText(name + " unsuccessfully set, try again!");
          currentSpace1 = null;
          currentSpace2 = null;
       }
    }
    
    /**
-       * Function call that is set to the GridSpaces' actionListener. If the shipsSet == false then
-       * it will call the setSpace function with the current space. If the ships have been set then
-       * the function will no longer do anything.
+       * Function call made when a GridSpace is clicked. If the shipsSet == false then it will call
+       * the setSpace function with the current space. If the ships have been set then the click is
+       * passed on to the click listener, if there is one.
        * @param space the given GridSpace
        */  
    public void onClick(GridSpace space)   {
       if (!shipsSet)
          setSpace(space);
+      else if (clickListener != null)
+         clickListener.accept(space);
    }
    
    /**
        * Attempts to set a Ship's location to the grid with currentShip, currentSpace1, and currentSpace2.
-       * It will first attempt to check if the two spaces are on the same row. If they are on the same row,
-       * it checks if the difference in their columns is equal to the length of the currentShip - 1. If that is true
-       * then it will set the appropriate GridSpaces to be occupied and each GridSpace to the list of GridSpaces 
-       * in the currentShip. If they are not on the same row it does the opposite with the place of row and column
-       * reversed.
+       * The two spaces must be the ends of a row or column as long as the currentShip, and none of the
+       * spaces between them may be occupied; the Board checks both with a mask of the spaces. If the
+       * Ship fits it is placed on the Board and each GridSpace is added to the list of GridSpaces in
+       * the currentShip.
        * @return true if the ship was successfully set, false otherwise
        */  
    public boolean setShip()   {
-      if (currentSpace1.getSingleIndex(GRID_DIMENSION) > currentSpace2.getSingleIndex(GRID_DIMENSION))
+      if (currentSpace1.getSingleIndex(dimension) > currentSpace2.getSingleIndex(dimension))
          swapCurrentSpaces();
-      if (currentSpace1.getRow() == currentSpace2.getRow()) {
-         if (Math.abs(currentSpace1.getColumn() - currentSpace2.getColumn()) == currentShip.getLength() - 1)   {
-            int col = currentSpace1.getColumn();
-            int row = currentSpace1.getRow();
-            int spaceIndex = 0;
-            for (int i = col; i <= currentSpace2.getColumn(); i++) {
-               GridSpace currentSpace = getSpace(row, i);
-               if (currentSpace.isOccupied())   {
-                  currentShip.clearSpaces();
-                  return false;
-               }
-               currentSpace.setOccupied(true);
-               currentShip.setSpace(currentSpace, spaceIndex++);
-            }
-            currentShip.setShip();
-            updateGridDisplay('O');
-            return true;
-         }
-         else
-            return false;
-      }
-      else if (currentSpace1.getColumn() == currentSpace2.getColumn()) {
-         if (Math.abs(currentSpace1.getRow() - currentSpace2.getRow()) == currentShip.getLength() - 1)   {
-            int row = currentSpace1.getRow();
-            int col = currentSpace1.getColumn();
-            int spaceIndex = 0;
-            GridSpace currentSpace;
-            for (int i = row; i <= currentSpace2.getRow(); i++) {
-               currentSpace = getSpace(i, col);
-               if (currentSpace.isOccupied())   {
-                  currentShip.clearSpaces();
-                  return false;
-               }
-               currentSpace.setOccupied(true);
-               currentShip.setSpace(currentSpace, spaceIndex++);
-            }
-            currentShip.setShip();
-            updateGridDisplay('O');
-            return true;
-         }
-         else
-            return false;
-      }
-      return false;
+      int start = currentSpace1.getSingleIndex(dimension);
+      int end = currentSpace2.getSingleIndex(dimension);
+      if (!placeShip(currentShip, shipIndex, start, end))
+         return false;
+      updateGridDisplay('O');
+      return true;
    }
    
    /**
-       * Updates the occupied GridSpaces of the Grid with the given symbol. Any occupied space
-       * will be set to contain the given symbol in the default font (Black, Times New Roman, 20pt).
+       * Places a Ship between two spaces if they are the ends of a legal placement of its length and
+       * none of its spaces are occupied, adding each GridSpace to the Ship. The display is not updated.
+       * @param ship the Ship to place
+       * @param index the index of the Ship
+       * @param start the single digit index of one end
+       * @param end the single digit index of the other end
+       * @return true if the ship was placed, false otherwise
+       */
+   public boolean placeShip(Ship ship, int index, int start, int end)   {
+      if (!board.placeShip(index, start, end, ship.getLength()))
+         return false;
+      int low = Math.min(start, end);
+      int high = Math.max(start, end);
+      int step = low / dimension == high / dimension ? 1 : dimension;
+      int spaceIndex = 0;
+      for (int i = low; i <= high; i += step)
+         ship.setSpace(getSpace(i), spaceIndex++);
+      ship.setShip();
+      return true;
+   }
+   
+   /**
+       * Removes the Ship with the given index from the Board, freeing its spaces.
+       * @param index the index of the Ship
+       */  
+   public void removeShip(int index)   {
+      board.removeShip(index);
+   }
+   
+   /**
+       * Checks whether the Ship at a given GridSpace, if there is one, has been sunk.
+       * @param space a GridSpace of this Grid
+       * @return true if a Ship at the space has been sunk, false otherwise
+       */
+   public boolean isShipSunk(GridSpace space)   {
+      int ship = board.shipAt(space.getSingleIndex(dimension));
+      return ship >= 0 && board.isSunk(ship);
+   }
+   
+   /**
+       * Updates the occupied GridSpaces of the Grid with the given symbol. Any occupied space which has
+       * not been fired at will show the given symbol in black, and any other space which has not been
+       * fired at will be cleared. Only the spaces which change are repainted.
        * @param symbol the symbol to update any occupied spaces with
        */  
    public void updateGridDisplay(char symbol)  {
-      for (int i = 0; i < GRID_DIMENSION; i++)  {
-         for (int j = 0; j < GRID_DIMENSION; j++)  {
-            GridSpace space = getSpace(i, j);
-            if (space.isOccupied())  {
-               space.setForeground(Color.BLACK);
-               space.setFont(new Font("Times New Roman", Font.PLAIN, 20));
-               space.setText("" + symbol);
-            }
-            else
-               space.setText("");
-         }
+      if (symbol != shipSymbol)  {
+         shipSymbol = symbol;
+         glyphHeight = 0;
+         repaint();
+      }
+      for (int i = 0; i < marks.length; i++)  {
+         if (marks[i] == BLANK || marks[i] == SHIP)
+            setMark(i, board.isOccupied(i) ? SHIP : BLANK);
       }
    }
    
@@ -226,11 +353,139 @@ public class Grid extends JPanel implements BattleShippable  {
        * @param success whether the shot was a hit or not
        */  
    public void updateSpace(GridSpace space, boolean success)  {
-      if (success)
-         space.setForeground(Color.RED);
-      else
-         space.setForeground(Color.BLACK);
-      space.setFont(new Font("Times New Roman", Font.PLAIN, 20));
-      space.setText("X");
+      setMark(space.getSingleIndex(dimension), success ? HIT : MISS);
+   }
+   
+   /**
+       * Changes what is shown on a space, repainting the space if it changed.
+       * @param index the single digit index of the space
+       * @param mark BLANK, SHIP, MISS or HIT
+       */
+   private void setMark(int index, byte mark)   {
+      if (marks[index] == mark)
+         return;
+      marks[index] = mark;
+      repaintSpace(index);
+   }
+   
+   /**
+       * Sets the space the mouse is pressed on, which is painted as a pressed button would be.
+       * @param index the single digit index of the space, or -1 for none
+       */
+   private void setPressed(int index)  {
+      if (index == pressed)
+         return;
+      if (pressed >= 0)
+         repaintSpace(pressed);
+      pressed = index;
+      if (pressed >= 0)
+         repaintSpace(pressed);
+   }
+   
+   /**
+       * Asks for the rectangle of one space to be repainted.
+       * @param index the single digit index of the space
+       */
+   private void repaintSpace(int index)   {
+      int row = index / dimension;
+      int col = index % dimension;
+      int x = left(col);
+      int y = top(row);
+      repaint(x, y, left(col + 1) - x, top(row + 1) - y);
+   }
+   
+   /**
+       * @param col a column of the Grid, or the dimension for its right edge
+       * @return the x coordinate of the left edge of the column
+       */
+   private int left(int col)  {
+      return col * getWidth() / dimension;
+   }
+   
+   /**
+       * @param row a row of the Grid, or the dimension for its bottom edge
+       * @return the y coordinate of the top edge of the row
+       */
+   private int top(int row)  {
+      return row * getHeight() / dimension;
+   }
+   
+   /**
+       * Finds the space under a point of the Grid.
+       * @param x the x coordinate of the point
+       * @param y the y coordinate of the point
+       * @return the single digit index of the space, or -1 if the point is outside the Grid
+       */
+   private int spaceAt(int x, int y)   {
+      if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight())
+         return -1;
+      return y * dimension / getHeight() * dimension + x * dimension / getWidth();
+   }
+   
+   /**
+       * Paints the spaces which cross the area being repainted.
+       * @param g the graphics to paint with
+       */
+   @Override
+   protected void paintComponent(Graphics g)  {
+      if (getWidth() <= 0 || getHeight() <= 0)
+         return;
+      Graphics2D g2 = (Graphics2D)g;
+      g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+      makeGlyphs(g2.getFontRenderContext());
+      Rectangle clip = g.getClipBounds();
+      if (clip == null)
+         clip = new Rectangle(0, 0, getWidth(), getHeight());
+      int firstRow = Math.max(0, clip.y * dimension / getHeight());
+      int lastRow = Math.min(dimension - 1, (clip.y + clip.height - 1) * dimension / getHeight());
+      int firstCol = Math.max(0, clip.x * dimension / getWidth());
+      int lastCol = Math.min(dimension - 1, (clip.x + clip.width - 1) * dimension / getWidth());
+      for (int row = firstRow; row <= lastRow; row++) {
+         for (int col = firstCol; col <= lastCol; col++)
+            paintSpace(g2, row, col);
+      }
+   }
+   
+   /**
+       * Paints one space: its background, its border and its mark.
+       * @param g2 the graphics to paint with
+       * @param row the row of the space
+       * @param col the column of the space
+       */
+   private void paintSpace(Graphics2D g2, int row, int col)   {
+      int x = left(col);
+      int y = top(row);
+      int width = left(col + 1) - x;
+      int height = top(row + 1) - y;
+      int index = row * dimension + col;
+      g2.setColor(index == pressed ? PRESSED_COLOR : SPACE_COLOR);
+      g2.fillRect(x, y, width, height);
+      g2.setColor(LINE_COLOR);
+      g2.drawRect(x, y, width - 1, height - 1);
+      byte mark = marks[index];
+      if (mark == BLANK)
+         return;
+      Rectangle2D bounds = glyphBounds[mark];
+      g2.setColor(MARK_COLORS[mark]);
+      g2.drawGlyphVector(glyphs[mark], (float)(x + (width - bounds.getWidth()) / 2 - bounds.getX()),
+         (float)(y + (height - bounds.getHeight()) / 2 - bounds.getY()));
+   }
+   
+   /**
+       * Makes the glyph of each mark for the current size of the spaces, unless they were already made
+       * for that size. The font is as tall, for a space, as Times New Roman 20pt is for the standard size.
+       * @param context how text is measured by the graphics being painted with
+       */
+   private void makeGlyphs(FontRenderContext context)   {
+      int height = Math.max(1, getHeight() / dimension);
+      if (height == glyphHeight)
+         return;
+      glyphHeight = height;
+      Font font = new Font("Times New Roman", Font.PLAIN, Math.max(6, height * 4 / 9));
+      String[] symbols = { "", "" + shipSymbol, "X", "X" };
+      for (int mark = SHIP; mark <= HIT; mark++)   {
+         glyphs[mark] = font.createGlyphVector(context, symbols[mark]);
+         glyphBounds[mark] = glyphs[mark].getVisualBounds();
+      }
    }
 }
\ No newline at end of file
@@ -1,45 +1,44 @@
 /**
-* A GridSpace knows whether it is being occupied and whether it is out of play or not. A GridSpace
-* also keeps track of its corresponding row and column, and features appropriate getter and setter
-* methods.
+* A GridSpace is one space of a Grid. It is not a component: the Grid paints every space itself and
+* finds the space under the mouse. Whether it is occupied and whether it is out of play are kept in the
+* Grid's Board, which the GridSpace reads and updates through its single digit index. A GridSpace also
+* keeps track of its corresponding row and column, and features appropriate getter and setter methods.
 *
 * @author Alex Perrino
 * @version November 29, 2017
 */
-import javax.swing.JButton;
-public class GridSpace extends JButton  {
+public class GridSpace  {
    //Instance Variables
-   private boolean isOccupied;
-   private boolean isOutOfPlay;
+   private Board board;
+   private int index;
    private int row;
    private int col;
    
    /**
-       * Creates a GridSpace with the default values for its boolean variables and the given
-       * row and col values.
+       * Creates a GridSpace for the given row and col values of the given Board.
        * @param row the row of the GridSpace
        * @param col the column of the GridSpace
+       * @param board the Board which holds the state of the GridSpace
        */   
-   public GridSpace(int row, int col)   {
-      super("");
-      isOccupied = false;
-      isOutOfPlay = false;
+   public GridSpace(int row, int col, Board board)   {
+      this.board = board;
       this.row = row;
       this.col = col;
+      index = getSingleIndex(board.getRules().getDimension());
    }
    
    /**
        * @return true if the GridSpace is occupied, false otherwise.
        */   
    public boolean isOccupied()   {
-      return isOccupied;
+      return board.isOccupied(index);
    }
    
    /**
        * @return true if the GridSpace is out of play, false otherwise.
        */  
    public boolean isOutOfPlay()   {
-      return isOutOfPlay;
+      return board.isShot(index);
    }
    
    /**
@@ -68,7 +67,7 @@ public class GridSpace extends JButton  {
        * Sets the GridSpace to be out of play.
        */
    public void setOutOfPlay() {
-      isOutOfPlay = true;
+      board.markShot(index);
    }
    
    /**
@@ -76,6 +75,6 @@ public class GridSpace extends JButton  {
        * @param taken whether the GridSpace is occupied or not
        */
    public void setOccupied(boolean taken)  {
-      isOccupied = taken;
+      board.setOccupied(index, taken);
    }
 }
\ No newline at end of file
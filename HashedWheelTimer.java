@@ -0,0 +1,238 @@
+/**
+* A HashedWheelTimer runs tasks after a delay, to the nearest tick, on a single thread of its own. Timeouts
+* are kept in a wheel of buckets, each holding the timeouts that fall due on its tick of every turn of the
+* wheel, so scheduling and cancelling a timeout take constant time and each tick only looks at one bucket,
+* however many timeouts are pending. This suits deadlines that are almost always cancelled before they
+* expire, such as the idle, placement and turn deadlines of every game on the server.
+* <p>
+* Any thread may schedule or cancel a timeout; both are handed to the timer thread through a queue and take
+* effect on its next tick. Tasks run on the timer thread and must be short, typically handing the real work
+* to the thread that owns the state it touches.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+public class HashedWheelTimer implements Runnable  {
+   /**
+       * The timer shared by every game on the server: a tick of 100 milliseconds and 512 buckets,
+       * so a turn of the wheel takes 51.2 seconds. Its thread is started the first time it is used.
+       */
+   public static final HashedWheelTimer SHARED = new HashedWheelTimer(100, TimeUnit.MILLISECONDS, 512);
+
+   private final long tickNanos;
+   private final Timeout[] wheel;
+   private final int mask;
+   private final long startTime;
+   private final Queue<Timeout> added;
+   private final Queue<Timeout> cancelled;
+   private final AtomicBoolean started;
+   private final AtomicInteger pending;
+   //The number of ticks since the timer started, only touched by the timer thread
+   private long tick;
+
+   /**
+       * A Timeout is a task scheduled on the timer. Those in the same bucket form a doubly linked
+       * list, headed by the bucket's entry in the wheel.
+       */
+   public static final class Timeout   {
+      private static final int WAITING = 0;
+      private static final int CANCELLED = 1;
+      private static final int EXPIRED = 2;
+
+      private final HashedWheelTimer timer;
+      private final Runnable task;
+      //Nanoseconds from the timer's start to when the task is due
+      private final long deadline;
+      private final AtomicInteger state;
+      private long remainingRounds;
+      private int bucket;
+      private Timeout previous;
+      private Timeout next;
+
+      /**
+          * Creates a Timeout.
+          * @param timer the timer it is scheduled on
+          * @param task the task to run
+          * @param deadline nanoseconds from the timer's start to when the task is due
+          */
+      private Timeout(HashedWheelTimer timer, Runnable task, long deadline)   {
+         this.timer = timer;
+         this.task = task;
+         this.deadline = deadline;
+         state = new AtomicInteger(WAITING);
+         bucket = -1;
+      }
+
+      /**
+          * Stops the task from running, unless it already has.
+          * @return true if the task will not run, false if it has already expired
+          */
+      public boolean cancel() {
+         if (!state.compareAndSet(WAITING, CANCELLED))
+            return state.get() == CANCELLED;
+         timer.cancelled.add(this);
+         return true;
+      }
+
+      /**
+          * @return true if the task has been cancelled.
+          */
+      public boolean isCancelled()  {
+         return state.get() == CANCELLED;
+      }
+
+      /**
+          * @return true if the task has been run.
+          */
+      public boolean isExpired() {
+         return state.get() == EXPIRED;
+      }
+   }
+
+   /**
+       * Creates a HashedWheelTimer. Its thread is started the first time a task is scheduled.
+       * @param tick how long each tick lasts
+       * @param unit the unit of tick
+       * @param buckets the number of buckets in the wheel, rounded up to a power of two
+       */
+   public HashedWheelTimer(long tick, TimeUnit unit, int buckets)   {
+      tickNanos = Math.max(1, unit.toNanos(tick));
+      int size = Integer.highestOneBit(Math.max(1, buckets - 1)) << 1;
+      wheel = new Timeout[size];
+      mask = size - 1;
+      startTime = System.nanoTime();
+      added = new ConcurrentLinkedQueue<Timeout>();
+      cancelled = new ConcurrentLinkedQueue<Timeout>();
+      started = new AtomicBoolean();
+      pending = new AtomicInteger();
+   }
+
+   /**
+       * Schedules a task to run once, after at least the given delay.
+       * @param task the task to run on the timer thread
+       * @param delay how long to wait
+       * @param unit the unit of delay
+       * @return the Timeout, which can be cancelled
+       */
+   public Timeout schedule(Runnable task, long delay, TimeUnit unit)   {
+      if (!started.get() && started.compareAndSet(false, true))   {
+         Thread thread = new Thread(this, "wheel-timer");
+         thread.setDaemon(true);
+         thread.start();
+      }
+      Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(delay));
+      pending.incrementAndGet();
+      added.add(timeout);
+      return timeout;
+   }
+
+   /**
+       * @return the number of timeouts which have neither run nor been cancelled.
+       */
+   public int getPending() {
+      return pending.get();
+   }
+
+   /**
+       * Advances the wheel a tick at a time, until the thread is stopped.
+       */
+   @Override
+   public void run() {
+      while (true)   {
+         long due = tickNanos * (tick + 1);
+         long sleep = due - (System.nanoTime() - startTime);
+         if (sleep > 0)  {
+            try   {
+               TimeUnit.NANOSECONDS.sleep(sleep);
+            }
+            catch (InterruptedException e)   {
+               return;
+            }
+            continue;
+         }
+         removeCancelled();
+         transferAdded();
+         expireBucket((int)(tick & mask), due);
+         tick++;
+      }
+   }
+
+   /**
+       * Unlinks the timeouts cancelled since the last tick from their buckets.
+       */
+   private void removeCancelled()   {
+      Timeout timeout;
+      while ((timeout = cancelled.poll()) != null)   {
+         if (timeout.bucket >= 0)
+            unlink(timeout);
+         pending.decrementAndGet();
+      }
+   }
+
+   /**
+       * Puts the timeouts scheduled since the last tick into the buckets of their deadlines.
+       * A timeout that is already due goes into the current bucket.
+       */
+   private void transferAdded()  {
+      Timeout timeout;
+      while ((timeout = added.poll()) != null)  {
+         if (timeout.state.get() != Timeout.WAITING)
+            continue;
+         long dueTick = Math.max(timeout.deadline / tickNanos, tick);
+         timeout.remainingRounds = (dueTick - tick) / wheel.length;
+         timeout.bucket = (int)(dueTick & mask);
+         timeout.next = wheel[timeout.bucket];
+         if (timeout.next != null)
+            timeout.next.previous = timeout;
+         wheel[timeout.bucket] = timeout;
+      }
+   }
+
+   /**
+       * Runs the timeouts of a bucket which are due by the end of the current tick, and counts
+       * down the rounds of the rest.
+       * @param bucket the index of the bucket
+       * @param due nanoseconds from the timer's start to the end of the current tick
+       */
+   private void expireBucket(int bucket, long due)  {
+      Timeout timeout = wheel[bucket];
+      while (timeout != null) {
+         Timeout next = timeout.next;
+         if (timeout.remainingRounds <= 0 && timeout.deadline <= due)   {
+            unlink(timeout);
+            if (timeout.state.compareAndSet(Timeout.WAITING, Timeout.EXPIRED))   {
+               pending.decrementAndGet();
+               try   {
+                  timeout.task.run();
+               }
+               catch (RuntimeException e)   {
+                  System.err.println("timer task failed: " + e);
+               }
+            }
+         }
+         else if (timeout.remainingRounds > 0)
+            timeout.remainingRounds--;
+         timeout = next;
+      }
+   }
+
+   /**
+       * Removes a timeout from its bucket.
+       * @param timeout the timeout to remove
+       */
+   private void unlink(Timeout timeout)   {
+      if (timeout.previous != null)
+         timeout.previous.next = timeout.next;
+      else
+         wheel[timeout.bucket] = timeout.next;
+      if (timeout.next != null)
+         timeout.next.previous = timeout.previous;
+      timeout.previous = null;
+      timeout.next = null;
+      timeout.bucket = -1;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,159 @@
+/**
+* A HostNameCache looks up the host names of clients' addresses on threads of its own, so the thread accepting
+* clients never waits on a reverse DNS lookup, which can take seconds. The name is handed on once it is found,
+* and kept for a while, so a client which connects again, or several connecting from one address, are looked up
+* once; an address asked for while it is being looked up waits on the same lookup. At most CAPACITY addresses
+* are kept, the least recently used forgotten first, and at most QUEUED_LOOKUPS lookups wait for a thread,
+* past which the address itself is given as the name.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+public class HostNameCache  {
+   //Addresses whose names are kept
+   public static final int CAPACITY = 4096;
+   //Threads looking up names at once, and lookups waiting for one
+   public static final int LOOKUP_THREADS = 2;
+   public static final int QUEUED_LOOKUPS = 1024;
+
+   /**
+       * A Lookup finds the host name of an address, such as by asking the DNS.
+       */
+   public interface Lookup {
+      /**
+          * Finds the host name of an address. Called on a thread of the HostNameCache, and may block.
+          * @param address the address of a client
+          * @return the address's host name, or null if it has none
+          * @throws IOException if the name cannot be found
+          */
+      String hostName(InetAddress address) throws IOException;
+   }
+
+   private final Lookup lookup;
+   private final long ttlNanos;
+   private final ThreadPoolExecutor lookups;
+   //The name, found or being looked up, of each address, in order of use; guarded by itself
+   private final LinkedHashMap<InetAddress, CachedName> names;
+
+   /**
+       * Creates a HostNameCache which asks the DNS.
+       * @param ttlMillis how long a name is kept, or 0 to give every address as its own name
+       */
+   public HostNameCache(long ttlMillis)   {
+      //A copy of the address is looked up, so the client's own InetAddress is never changed
+      this(address -> InetAddress.getByAddress(address.getAddress()).getHostName(), ttlMillis);
+   }
+
+   /**
+       * Creates a HostNameCache which finds names with the given Lookup.
+       * @param lookup finds the name of each address
+       * @param ttlMillis how long a name is kept, or 0 to give every address as its own name
+       */
+   public HostNameCache(Lookup lookup, long ttlMillis)   {
+      this.lookup = lookup;
+      ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+      lookups = new ThreadPoolExecutor(LOOKUP_THREADS, LOOKUP_THREADS, 60, TimeUnit.SECONDS,
+         new LinkedBlockingQueue<Runnable>(QUEUED_LOOKUPS), runnable -> {
+            Thread thread = new Thread(runnable, "host-names");
+            thread.setDaemon(true);
+            return thread;
+         });
+      lookups.allowCoreThreadTimeOut(true);
+      names = new LinkedHashMap<InetAddress, CachedName>(16, 0.75f, true)  {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<InetAddress, CachedName> eldest)   {
+            return size() > CAPACITY;
+         }
+      };
+   }
+
+   /**
+       * Finds the host name of an address without waiting for it. May be called from any thread.
+       * @param address the address of a client
+       * @param then given the name, or the address itself if it has none: at once on the calling thread
+       * if the name is kept, otherwise on the thread which looked it up
+       */
+   public void resolve(InetAddress address, Consumer<String> then)   {
+      if (ttlNanos <= 0)   {
+         then.accept(address.getHostAddress());
+         return;
+      }
+      long now = System.nanoTime();
+      CachedName entry;
+      boolean lookUp = false;
+      synchronized (names) {
+         entry = names.get(address);
+         if (entry == null || (entry.name.isDone() && now - entry.expires >= 0))  {
+            entry = new CachedName(now + ttlNanos);
+            names.put(address, entry);
+            lookUp = true;
+         }
+      }
+      if (lookUp)
+         start(address, entry);
+      entry.name.thenAccept(then);
+   }
+
+   /**
+       * Starts looking up an address on a thread of the HostNameCache. If every thread is busy and the
+       * queue is full the address is given as its name, and not kept.
+       * @param address the address of a client
+       * @param entry completed with the name
+       */
+   private void start(InetAddress address, CachedName entry)   {
+      try   {
+         lookups.execute(() -> entry.name.complete(lookUp(address)));
+      }
+      catch (RejectedExecutionException e)   {
+         synchronized (names) {
+            names.remove(address, entry);
+         }
+         entry.name.complete(address.getHostAddress());
+      }
+   }
+
+   /**
+       * Asks the Lookup for the name of an address.
+       * @param address the address of a client
+       * @return the name found, or the address itself if there is none
+       */
+   private String lookUp(InetAddress address)  {
+      try   {
+         String name = lookup.hostName(address);
+         return name == null ? address.getHostAddress() : name;
+      }
+      catch (IOException | RuntimeException e)  {
+         return address.getHostAddress();
+      }
+   }
+
+   /**
+       * @return the number of addresses whose names are kept or being looked up.
+       */
+   public int size() {
+      synchronized (names) {
+         return names.size();
+      }
+   }
+
+   /**
+       * The name of an address and when it is no longer to be used.
+       */
+   private static class CachedName {
+      private final CompletableFuture<String> name;
+      private final long expires;
+
+      /**
+          * @param expires the System.nanoTime after which the name is looked up again
+          */
+      CachedName(long expires)  {
+         name = new CompletableFuture<String>();
+         this.expires = expires;
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,304 @@
+/**
+* A HuntTargetStrategy chooses shots for a computer player from its view of the opponent's Grid, a byte for
+* each space: not yet fired at, a hit on a Ship not yet sunk, or blocked, a miss or a sunk Ship, which
+* cannot hold a Ship still afloat. The hits are also kept in a bitset so they are found without looking at
+* every space. How well it plays depends on its level:
+* <p>
+*    EASY &mdash; fires at random <br>
+*    NORMAL &mdash; hunts at random on every other space until it hits, then fires beside its hits until
+*    the Ship is sunk <br>
+*    HARD &mdash; counts, for each space, the placements of the Ships still afloat which could cover it,
+*    weighting those through its hits, and fires at the space covered most <br>
+* </p>
+* <p>
+* The placements are counted a row or column at a time: the blocked spaces and hits before each position of
+* the line are summed once, so every placement of every length along it is checked in constant time, and a
+* shot takes time in proportion to the spaces of the Grid times the lengths still afloat. Nothing is
+* allocated from one shot to the next; the scratch space is only made again when the GameRules change.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.*;
+public class HuntTargetStrategy implements ShotStrategy, BattleShippable  {
+   /**
+       * Fires at random.
+       */
+   public static final int EASY = 0;
+   /**
+       * Hunts on every other space and targets the spaces beside its hits.
+       */
+   public static final int NORMAL = 1;
+   /**
+       * Fires where the Ships still afloat are most likely to be.
+       */
+   public static final int HARD = 2;
+
+   //How much more a placement through a hit counts, at the HARD level, than one through none
+   private static final int HIT_WEIGHT = 50;
+   //What is known of each space of the opponent's Grid, chosen so that a hit is the low bit and a
+   //blocked space the high bit
+   private static final byte UNKNOWN = 0;
+   private static final byte HIT = 1;
+   private static final byte BLOCKED = 2;
+
+   private final int level;
+   private final Random random;
+   private GameRules rules;
+   private int dimension;
+   //What is known of each space of the opponent's Grid, and the hits on Ships not yet sunk
+   private byte[] view;
+   private final BitSet hit;
+   //How many of the opponent's Ships of each length are still afloat
+   private int[] afloat;
+   //Scratch space for the HARD level: the weight of the placements covering each space, the blocked
+   //spaces and hits before each position of one row or column, and the changes in weight along it
+   private int[] density;
+   private int[] blockedBefore;
+   private int[] hitsBefore;
+   private int[] change;
+
+   /**
+       * Creates a HuntTargetStrategy.
+       * @param level EASY, NORMAL or HARD
+       * @param random the source of randomness
+       */
+   public HuntTargetStrategy(int level, Random random)   {
+      this.level = level;
+      this.random = random;
+      hit = new BitSet();
+      newGame(GameRules.STANDARD);
+   }
+
+   /**
+       * @param name "easy", "normal" or "hard", in any case
+       * @return the level with that name, or -1 if there is none
+       */
+   public static int levelNamed(String name) {
+      if (name.equalsIgnoreCase("easy"))
+         return EASY;
+      if (name.equalsIgnoreCase("normal"))
+         return NORMAL;
+      if (name.equalsIgnoreCase("hard"))
+         return HARD;
+      return -1;
+   }
+
+   /**
+       * @param level EASY, NORMAL or HARD
+       * @return the name of the level
+       */
+   public static String levelToString(int level)  {
+      return level == EASY ? "easy" : level == HARD ? "hard" : "normal";
+   }
+
+   @Override
+   public void newGame(GameRules rules)   {
+      if (!rules.equals(this.rules))   {
+         this.rules = rules;
+         dimension = rules.getDimension();
+         view = new byte[rules.getSpaces()];
+         afloat = new int[dimension + 1];
+         density = new int[rules.getSpaces()];
+         blockedBefore = new int[dimension + 1];
+         hitsBefore = new int[dimension + 1];
+         change = new int[dimension + 1];
+      }
+      hit.clear();
+      Arrays.fill(view, UNKNOWN);
+      Arrays.fill(afloat, 0);
+      for (int i = 0; i < rules.getNumShips(); i++)
+         afloat[rules.getShipLength(i)]++;
+   }
+
+   @Override
+   public int nextShot()   {
+      int space = -1;
+      if (level == HARD)
+         space = densest();
+      else if (level == NORMAL)  {
+         space = beside();
+         if (space < 0)
+            space = randomUnshot(true);
+      }
+      return space >= 0 ? space : randomUnshot(false);
+   }
+
+   @Override
+   public void shotResult(int space, boolean isHit, boolean sunk)   {
+      if (!isHit) {
+         view[space] = BLOCKED;
+         return;
+      }
+      hit.set(space);
+      view[space] = HIT;
+      if (sunk)
+         sink(space);
+   }
+
+
+   /**
+       * Takes the Ship sunk by a shot off the hits still afloat. The Ship is taken to be the longest
+       * Ship still afloat with a placement through the space covered only by hits; if there is none,
+       * the shortest Ship afloat is counted as sunk and only the space is taken off.
+       * @param index the single digit index of the space which sank the Ship
+       */
+   private void sink(int index)  {
+      for (int length = dimension; length >= 1; length--)  {
+         if (afloat[length] == 0)
+            continue;
+         for (int d = 0; d < (length == 1 ? 1 : 2); d++) {
+            int step = d == 0 ? 1 : dimension;
+            int position = d == 0 ? index % dimension : index / dimension;
+            int lineStart = index - position * step;
+            for (int first = Math.max(0, position - length + 1); first <= position &&
+               first + length <= dimension; first++)  {
+               int start = lineStart + first * step;
+               boolean allHits = true;
+               for (int k = 0, space = start; k < length && allHits; k++, space += step)
+                  allHits = view[space] == HIT;
+               if (allHits)   {
+                  afloat[length]--;
+                  for (int k = 0, space = start; k < length; k++, space += step) {
+                     hit.clear(space);
+                     view[space] = BLOCKED;
+                  }
+                  return;
+               }
+            }
+         }
+      }
+      for (int length = 1; length <= dimension; length++)  {
+         if (afloat[length] > 0) {
+            afloat[length]--;
+            break;
+         }
+      }
+      hit.clear(index);
+      view[index] = BLOCKED;
+   }
+
+   /**
+       * Picks a space not yet fired at, each with the same chance.
+       * @param parity whether to only pick from every other space, as every Ship covers one of them
+       * @return the single digit index of the space, or -1 if there is none
+       */
+   private int randomUnshot(boolean parity)  {
+      int count = 0;
+      for (int i = 0; i < view.length; i++)  {
+         if (view[i] == UNKNOWN && (!parity || (i / dimension + i % dimension) % 2 == 0))
+            count++;
+      }
+      if (count == 0)
+         return -1;
+      int chosen = random.nextInt(count);
+      for (int i = 0; i < view.length; i++)  {
+         if (view[i] == UNKNOWN && (!parity || (i / dimension + i % dimension) % 2 == 0) && chosen-- == 0)
+            return i;
+      }
+      return -1;
+   }
+
+   /**
+       * Picks a space not yet fired at beside a hit on a Ship not yet sunk, preferring one which carries
+       * on a line of two hits. Ties are broken at random.
+       * @return the single digit index of the space, or -1 if there is none
+       */
+   private int beside()  {
+      int best = -1;
+      int bestScore = 0;
+      int ties = 0;
+      for (int i = hit.nextSetBit(0); i >= 0; i = hit.nextSetBit(i + 1))  {
+         int row = i / dimension;
+         int col = i % dimension;
+         for (int d = 0; d < 4; d++)   {
+            int dRow = d == 0 ? -1 : d == 1 ? 1 : 0;
+            int dCol = d == 2 ? -1 : d == 3 ? 1 : 0;
+            int r = row + dRow;
+            int c = col + dCol;
+            if (r < 0 || r >= dimension || c < 0 || c >= dimension)
+               continue;
+            int next = r * dimension + c;
+            if (view[next] != UNKNOWN)
+               continue;
+            int backRow = row - dRow;
+            int backCol = col - dCol;
+            boolean inLine = backRow >= 0 && backRow < dimension && backCol >= 0 && backCol < dimension &&
+               view[backRow * dimension + backCol] == HIT;
+            int score = inLine ? 2 : 1;
+            if (score > bestScore)  {
+               best = next;
+               bestScore = score;
+               ties = 1;
+            }
+            else if (score == bestScore && random.nextInt(++ties) == 0)
+               best = next;
+         }
+      }
+      return best;
+   }
+
+   /**
+       * Counts, for each space not yet fired at, the placements of the Ships still afloat which cover it
+       * and none of the blocked spaces, a placement through hits counting HIT_WEIGHT more for each hit.
+       * For every row and column the blocked spaces and hits before each position are summed, so the
+       * placements of every length along it are found by a difference of sums, and the weight of each
+       * is added to its spaces as a change at either end.
+       * @return the single digit index of the space covered most, ties broken at random, or -1 if no
+       * placement is left
+       */
+   private int densest()   {
+      Arrays.fill(density, 0);
+      int shortest = 1;
+      int longest = dimension;
+      while (shortest < longest && afloat[shortest] == 0)
+         shortest++;
+      while (longest > shortest && afloat[longest] == 0)
+         longest--;
+      for (int d = 0; d < 2; d++)   {
+         int step = d == 0 ? 1 : dimension;
+         for (int line = 0; line < dimension; line++) {
+            int lineStart = d == 0 ? line * dimension : line;
+            for (int position = 0, space = lineStart; position < dimension; position++, space += step) {
+               blockedBefore[position + 1] = blockedBefore[position] + (view[space] >> 1);
+               hitsBefore[position + 1] = hitsBefore[position] + (view[space] & HIT);
+            }
+            if (blockedBefore[dimension] == dimension)
+               continue;
+            Arrays.fill(change, 0);
+            //A Ship of length 1 is the same placement along a row as down a column
+            for (int length = Math.max(shortest, d + 1); length <= longest; length++)   {
+               int ships = afloat[length];
+               if (ships == 0)
+                  continue;
+               for (int first = 0, end = length; end <= dimension; first++, end++)  {
+                  if (blockedBefore[end] != blockedBefore[first])
+                     continue;
+                  int weight = ships * (1 + HIT_WEIGHT * (hitsBefore[end] - hitsBefore[first]));
+                  change[first] += weight;
+                  change[end] -= weight;
+               }
+            }
+            int weight = 0;
+            for (int position = 0, space = lineStart; position < dimension; position++, space += step) {
+               weight += change[position];
+               density[space] += weight;
+            }
+         }
+      }
+      int best = -1;
+      int ties = 0;
+      for (int i = 0; i < density.length; i++)  {
+         if (density[i] == 0 || view[i] != UNKNOWN)
+            continue;
+         if (best < 0 || density[i] > density[best]) {
+            best = i;
+            ties = 1;
+         }
+         else if (density[i] == density[best] && random.nextInt(++ties) == 0)
+            best = i;
+      }
+      return best;
+   }
+}
\ No newline at end of file
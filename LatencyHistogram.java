@@ -0,0 +1,118 @@
+/**
+* A LatencyHistogram counts recorded values, such as latencies in microseconds, in log-linear buckets so that
+* any percentile can be read back to within about three percent while using a fixed, small amount of memory.
+* Values below 64 have a bucket each; above that every power of two is split into 32 buckets. Any number of
+* threads may record at once without locking.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.concurrent.atomic.*;
+public class LatencyHistogram  {
+   //Buckets per power of two, as a number of bits
+   private static final int SUB_BUCKET_BITS = 5;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+   private final AtomicLongArray counts;
+   private final LongAdder count;
+   private final LongAdder sum;
+   private final AtomicLong max;
+
+   /**
+       * Creates an empty LatencyHistogram.
+       */
+   public LatencyHistogram()  {
+      counts = new AtomicLongArray(BUCKETS);
+      count = new LongAdder();
+      sum = new LongAdder();
+      max = new AtomicLong();
+   }
+
+   /**
+       * @param value a value of at least 0
+       * @return the index of the bucket holding value
+       */
+   private static int bucketOf(long value)  {
+      if (value < 2 * SUB_BUCKETS)
+         return (int)value;
+      int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      return (exponent + 1) * SUB_BUCKETS + (int)(value >>> exponent) - SUB_BUCKETS;
+   }
+
+   /**
+       * @param bucket the index of a bucket
+       * @return the lowest value held by the bucket
+       */
+   private static long lowestValueOf(int bucket)   {
+      if (bucket < 2 * SUB_BUCKETS)
+         return bucket;
+      int exponent = bucket / SUB_BUCKETS - 1;
+      return (long)(bucket % SUB_BUCKETS + SUB_BUCKETS) << exponent;
+   }
+
+   /**
+       * Records a value. Negative values are recorded as 0.
+       * @param value the value to record
+       */
+   public void record(long value)   {
+      value = Math.max(0, value);
+      counts.incrementAndGet(bucketOf(value));
+      count.increment();
+      sum.add(value);
+      long highest;
+      while (value > (highest = max.get()) && !max.compareAndSet(highest, value))
+         ;
+   }
+
+   /**
+       * @return the number of values recorded.
+       */
+   public long getCount()  {
+      return count.sum();
+   }
+
+   /**
+       * @return the sum of the values recorded.
+       */
+   public long getSum() {
+      return sum.sum();
+   }
+
+   /**
+       * @return the mean of the values recorded, or 0 if there are none.
+       */
+   public double getMean() {
+      long n = count.sum();
+      return n == 0 ? 0 : (double)sum.sum() / n;
+   }
+
+   /**
+       * @return the highest value recorded.
+       */
+   public long getMax() {
+      return max.get();
+   }
+
+   /**
+       * Gives the value below which the given percentage of the recorded values fall.
+       * @param percentile a percentage from 0 to 100
+       * @return the lowest value of the bucket holding the percentile, or 0 if nothing was recorded
+       */
+   public long getValueAtPercentile(double percentile)   {
+      long total = 0;
+      long[] snapshot = new long[BUCKETS];
+      for (int i = 0; i < BUCKETS; i++)   {
+         snapshot[i] = counts.get(i);
+         total += snapshot[i];
+      }
+      long wanted = Math.max(1, (long)Math.ceil(total * percentile / 100));
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++)   {
+         seen += snapshot[i];
+         if (seen >= wanted)
+            return lowestValueOf(i);
+      }
+      return 0;
+   }
+}
\ No newline at end of file
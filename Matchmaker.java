@@ -0,0 +1,646 @@
+/**
+* A Matchmaker pairs the clients the server accepts into games on a thread of its own, so that the accept
+* loop only has to hand each new connection over. While a client waits for an opponent its channel is
+* registered with the Matchmaker's Selector: as a client sends nothing before it is named, anything that
+* becomes readable while it waits is a closed connection, and the client is dropped from the queue rather
+* than being paired with the next arrival. Each pair is checked once more just before their game starts.
+* A client which goes back to the lobby once its game has ended is queued again in the same way, on the
+* connection it played on.
+* <p>
+* The one exception is a client rejoining a game it lost the connection to, which sends RESUME as soon as
+* it connects. A complete RESUME takes the client out of the queue and hands it, with its token, to the
+* ResumeHandler. A client which has sent only part of a RESUME is held out of the queue until the rest
+* arrives, and dropped if it does not arrive in time; no other client waits for a RESUME which may never
+* come.
+* </p>
+* <p>
+* Which waiting clients are paired is decided by a MatchPolicy: in order of arrival, or by rating bucket,
+* widening the range of ratings accepted the longer a client waits. The Matchmaker keeps the queue depth,
+* the number of clients matched and dropped, and a histogram of the time each client waited to be matched.
+* </p>
+* <p>
+* Given a time to wait for a computer opponent, a client which has waited that long without being paired
+* starts a game of its own, against a ComputerPlayer.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+public class Matchmaker implements Runnable  {
+   //How often the queue is looked at again when nothing happens, so a rating range can widen
+   private static final long IDLE_MILLIS = 1000;
+   //How long a client which has sent part of a RESUME has to send the rest of it
+   private static final long RESUME_MILLIS = 5000;
+   //Length of a bare RESUME command and its token
+   private static final int RESUME_BYTES = 12;
+
+   //Place where the messages of the log are reported
+   private ServerLog serverLog;
+   private MatchPolicy policy;
+   private PlayerRatings ratings;
+   private PairHandler handler;
+   private ResumeHandler resumeHandler;
+   //How long a client waits before it is given a computer opponent, or 0 for never
+   private long computerMillis;
+   private Selector selector;
+   //Clients accepted but not yet registered with the Selector, and those part way through sending RESUME,
+   //in the order their time to send the rest of it runs out
+   private Queue<Waiting> incoming;
+   private Deque<Waiting> resuming;
+   private AtomicInteger gameNumber;
+   //What has been measured
+   private AtomicInteger queueDepth;
+   private LongAdder matched;
+   private LongAdder dropped;
+   private LatencyHistogram timeToMatch;
+
+   /**
+       * A PairHandler starts the game of each pair of clients, on the Matchmaker's thread.
+       */
+   public interface PairHandler  {
+      /**
+          * Starts a game between two clients. Their channels are no longer registered with any
+          * Selector but are still non-blocking.
+          * @param channel0 the channel of player 0
+          * @param channel1 the channel of player 1, or null if player 1 is a ComputerPlayer
+          * @param gameNumber the game number (used for reporting purposes)
+          * @throws IOException if the game cannot be started
+          */
+      void startGame(SocketChannel channel0, SocketChannel channel1, int gameNumber) throws IOException;
+   }
+
+   /**
+       * A ResumeHandler takes a client which sent RESUME back to its game, on the Matchmaker's thread.
+       */
+   public interface ResumeHandler   {
+      /**
+          * Rejoins a client to the game of the given token. The client's channel is no longer registered
+          * with any Selector but is still non-blocking.
+          * @param channel the client's new channel
+          * @param token the token the client sent with RESUME
+          * @throws IOException if there is a communication error with the client
+          */
+      void resume(SocketChannel channel, long token) throws IOException;
+   }
+
+   /**
+       * A MatchPolicy holds the clients waiting for a game and decides which of them to pair.
+       * It is only used on the Matchmaker's thread.
+       */
+   public interface MatchPolicy  {
+      /**
+          * Adds a client to the queue.
+          * @param client the client waiting
+          */
+      void add(Waiting client);
+
+      /**
+          * Puts a client taken out of the queue by nextPair back at its head, ahead of every client
+          * which arrived after it, as its partner could not be paired.
+          * @param client the client still waiting
+          */
+      void putBack(Waiting client);
+
+      /**
+          * Removes a client from the queue.
+          * @param client the client no longer waiting
+          */
+      void remove(Waiting client);
+
+      /**
+          * Takes the next two clients to pair out of the queue.
+          * @param now the current System.nanoTime
+          * @return the two clients, or null if no two clients may be paired yet
+          */
+      Waiting[] nextPair(long now);
+
+      /**
+          * Takes the client which has waited longest out of the queue, if it has waited long enough.
+          * @param now the current System.nanoTime
+          * @param waitedMillis how long the client must have waited, in milliseconds
+          * @return the client, or null if no client has waited that long
+          */
+      Waiting nextAlone(long now, long waitedMillis);
+   }
+
+   /**
+       * A Waiting is a client in the queue.
+       */
+   public static class Waiting  {
+      private final SocketChannel channel;
+      private final int rating;
+      private final long queuedAt;
+      //Whatever the client has sent, which can only be a RESUME, and the System.nanoTime by which the
+      //rest of it must arrive once part of it has
+      private final ByteBuffer request;
+      private boolean resuming;
+      private long resumeBy;
+      private SelectionKey key;
+
+      /**
+          * Creates a Waiting client.
+          * @param channel the client's channel
+          * @param rating the client's rating
+          * @param queuedAt the System.nanoTime at which it joined the queue
+          * @param received what the client sent which has already been read from the channel, or null
+          */
+      Waiting(SocketChannel channel, int rating, long queuedAt, ByteBuffer received)   {
+         this.channel = channel;
+         this.rating = rating;
+         this.queuedAt = queuedAt;
+         //More than a RESUME cannot be a RESUME, and is kept whole so the client is dropped
+         request = ByteBuffer.allocate(Math.max(RESUME_BYTES, received == null ? 0 : received.remaining() + 1));
+         if (received != null)
+            request.put(received);
+      }
+
+      /**
+          * @return the client's rating.
+          */
+      public int getRating()  {
+         return rating;
+      }
+
+      /**
+          * @param now the current System.nanoTime
+          * @return how long the client has waited, in milliseconds.
+          */
+      public long waitedMillis(long now)   {
+         return TimeUnit.NANOSECONDS.toMillis(now - queuedAt);
+      }
+   }
+
+   /**
+       * Pairs clients in the order they arrived.
+       */
+   public static class FifoPolicy implements MatchPolicy {
+      private final Deque<Waiting> queue = new ArrayDeque<Waiting>();
+
+      @Override
+      public void add(Waiting client)   {
+         queue.addLast(client);
+      }
+
+      @Override
+      public void putBack(Waiting client)   {
+         queue.addFirst(client);
+      }
+
+      @Override
+      public void remove(Waiting client)   {
+         queue.remove(client);
+      }
+
+      @Override
+      public Waiting[] nextPair(long now)   {
+         if (queue.size() < 2)
+            return null;
+         return new Waiting[] { queue.pollFirst(), queue.pollFirst() };
+      }
+
+      @Override
+      public Waiting nextAlone(long now, long waitedMillis)   {
+         if (queue.isEmpty())
+            return null;
+         if (queue.peekFirst().waitedMillis(now) < waitedMillis)
+            return null;
+         return queue.pollFirst();
+      }
+   }
+
+   /**
+       * Pairs clients whose ratings fall in the same bucket, oldest first. A client who has waited
+       * longer than a given time may also be paired with the next bucket either side, and so on for
+       * every further period waited.
+       */
+   public static class RatingBucketPolicy implements MatchPolicy {
+      private final int bucketSize;
+      private final long widenMillis;
+      private final TreeMap<Integer, Deque<Waiting>> buckets = new TreeMap<Integer, Deque<Waiting>>();
+
+      /**
+          * Creates a RatingBucketPolicy.
+          * @param bucketSize the range of ratings in each bucket
+          * @param widenMillis how long a client waits before each widening of its range
+          */
+      public RatingBucketPolicy(int bucketSize, long widenMillis)   {
+         this.bucketSize = bucketSize;
+         this.widenMillis = widenMillis;
+      }
+
+      /**
+          * @param client a client
+          * @return the bucket of the client's rating
+          */
+      private int bucketOf(Waiting client)   {
+         return Math.floorDiv(client.getRating(), bucketSize);
+      }
+
+      @Override
+      public void add(Waiting client)   {
+         buckets.computeIfAbsent(bucketOf(client), b -> new ArrayDeque<Waiting>()).add(client);
+      }
+
+      @Override
+      public void putBack(Waiting client)   {
+         buckets.computeIfAbsent(bucketOf(client), b -> new ArrayDeque<Waiting>()).addFirst(client);
+      }
+
+      @Override
+      public void remove(Waiting client)   {
+         Deque<Waiting> bucket = buckets.get(bucketOf(client));
+         if (bucket != null && bucket.remove(client) && bucket.isEmpty())
+            buckets.remove(bucketOf(client));
+      }
+
+      @Override
+      public Waiting[] nextPair(long now)   {
+         for (Deque<Waiting> bucket : buckets.values())  {
+            if (bucket.size() >= 2)
+               return take(bucket.peekFirst(), bucket.stream().skip(1).findFirst().get());
+         }
+         //Every bucket now holds a single client
+         for (Map.Entry<Integer, Deque<Waiting>> entry : buckets.entrySet())  {
+            Waiting client = entry.getValue().peekFirst();
+            long reach = client.waitedMillis(now) / widenMillis;
+            Map.Entry<Integer, Deque<Waiting>> higher = buckets.higherEntry(entry.getKey());
+            if (higher != null && higher.getKey() - entry.getKey() <= reach)
+               return take(client, higher.getValue().peekFirst());
+         }
+         return null;
+      }
+
+      @Override
+      public Waiting nextAlone(long now, long waitedMillis)   {
+         Waiting oldest = null;
+         for (Deque<Waiting> bucket : buckets.values())  {
+            Waiting client = bucket.peekFirst();
+            if (oldest == null || client.queuedAt < oldest.queuedAt)
+               oldest = client;
+         }
+         if (oldest == null || oldest.waitedMillis(now) < waitedMillis)
+            return null;
+         remove(oldest);
+         return oldest;
+      }
+
+      /**
+          * Removes two clients from their buckets.
+          * @param first one client
+          * @param second the other client
+          * @return the two clients
+          */
+      private Waiting[] take(Waiting first, Waiting second) {
+         remove(first);
+         remove(second);
+         return new Waiting[] { first, second };
+      }
+   }
+
+   /**
+       * Creates a MatchPolicy by name.
+       * @param name "rating" for a RatingBucketPolicy, anything else for a FifoPolicy
+       * @return the MatchPolicy
+       */
+   public static MatchPolicy policyNamed(String name) {
+      if (name.equals("rating"))
+         return new RatingBucketPolicy(100, 5000);
+      return new FifoPolicy();
+   }
+
+   /**
+       * Creates a Matchmaker.
+       * @param log the ServerLog that receives messages
+       * @param policy decides which waiting clients are paired
+       * @param ratings the rating of each client
+       * @param handler starts the game of each pair
+       * @throws IOException if the Selector cannot be opened
+       */
+   public Matchmaker(ServerLog log, MatchPolicy policy, PlayerRatings ratings, PairHandler handler)
+      throws IOException   {
+      serverLog = log;
+      this.policy = policy;
+      this.ratings = ratings;
+      this.handler = handler;
+      selector = Selector.open();
+      incoming = new ConcurrentLinkedQueue<Waiting>();
+      resuming = new ArrayDeque<Waiting>();
+      gameNumber = new AtomicInteger();
+      queueDepth = new AtomicInteger();
+      matched = new LongAdder();
+      dropped = new LongAdder();
+      timeToMatch = new LatencyHistogram();
+   }
+
+   /**
+       * Sets what takes clients which send RESUME back to their games. Clients which send RESUME are
+       * dropped while none is set. Must be called before the Matchmaker is started.
+       * @param resumeHandler rejoins clients to their games
+       */
+   public void setResumeHandler(ResumeHandler resumeHandler)   {
+      this.resumeHandler = resumeHandler;
+   }
+
+   /**
+       * Sets how long a client may wait for an opponent before it is given a ComputerPlayer to play
+       * instead. Must be called before the Matchmaker is started.
+       * @param millis how long a client waits, in milliseconds, or 0 for never
+       */
+   public void setComputerWait(long millis)  {
+      computerMillis = millis;
+   }
+
+   /**
+       * Starts the Matchmaker's thread.
+       * @return this Matchmaker
+       */
+   public Matchmaker start()  {
+      Thread thread = new Thread(this, "matchmaker");
+      thread.setDaemon(true);
+      thread.start();
+      return this;
+   }
+
+   /**
+       * Publishes a given message to the serverLog.
+       * @param msg the message to display.
+       */
+   private void report(String msg)   {
+      serverLog.report(msg);
+   }
+
+   /**
+       * Queues a newly accepted client, or one back from a game which has ended. May be called from
+       * any thread.
+       * @param channel the client's channel
+       */
+   public void offer(SocketChannel channel)  {
+      offer(channel, null);
+   }
+
+   /**
+       * Queues a client back from a game which has ended together with what it sent after LOBBY, which
+       * the game had already read from its channel, so it is looked at as though the Matchmaker had read
+       * it. May be called from any thread.
+       * @param channel the client's channel
+       * @param received the bytes read from the channel and not used by the game, or null for none; they
+       * are copied before offer returns
+       */
+   public void offer(SocketChannel channel, ByteBuffer received)  {
+      queueDepth.incrementAndGet();
+      incoming.add(new Waiting(channel, ratings.getRating(addressOf(channel)), System.nanoTime(), received));
+      selector.wakeup();
+   }
+
+   /**
+       * Numbers a game which was not paired by the Matchmaker, such as a rematch. May be called from
+       * any thread.
+       * @return the next game number
+       */
+   public int nextGameNumber()   {
+      return gameNumber.incrementAndGet();
+   }
+
+   /**
+       * @return the number of clients waiting for a game.
+       */
+   public int getQueueDepth() {
+      return queueDepth.get();
+   }
+
+   /**
+       * @return the number of clients paired into games.
+       */
+   public long getMatched()   {
+      return matched.sum();
+   }
+
+   /**
+       * @return the number of clients dropped because their connection closed while they waited.
+       */
+   public long getDropped()   {
+      return dropped.sum();
+   }
+
+   /**
+       * @return the time each client waited to be matched, in milliseconds.
+       */
+   public LatencyHistogram getTimeToMatch()  {
+      return timeToMatch;
+   }
+
+   /**
+       * Registers new clients, reads what any of them send, dropping those whose connection has
+       * closed or whose RESUME never ends, and pairs the rest, until the thread is stopped.
+       */
+   @Override
+   public void run() {
+      while (true)   {
+         try   {
+            Waiting first = resuming.peekFirst();
+            selector.select(first == null ? IDLE_MILLIS : Math.max(1, Math.min(IDLE_MILLIS,
+               TimeUnit.NANOSECONDS.toMillis(first.resumeBy - System.nanoTime()))));
+            Waiting client;
+            while ((client = incoming.poll()) != null)
+               enqueue(client);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext())   {
+               SelectionKey key = keys.next();
+               keys.remove();
+               poll((Waiting)key.attachment());
+            }
+            expireResumes(System.nanoTime());
+            pairWaiting();
+         }
+         catch (IOException e)   {
+            report("problems in matchmaker " + e.toString());
+         }
+      }
+   }
+
+   /**
+       * Registers a client with the Selector and adds it to the queue. A client which has already sent
+       * something is looked at straight away.
+       * @param client the client
+       * @throws IOException if the Selector fails
+       */
+   private void enqueue(Waiting client) throws IOException   {
+      try   {
+         client.channel.configureBlocking(false);
+         client.key = client.channel.register(selector, SelectionKey.OP_READ, client);
+      }
+      catch (IOException e)   {
+         drop(client);
+         return;
+      }
+      policy.add(client);
+      if (client.request.position() > 0)
+         poll(client);
+   }
+
+   /**
+       * Drops the clients which began to send RESUME and have not sent the rest of it in time. Those
+       * which have since resumed, or been dropped, are passed over.
+       * @param now the current System.nanoTime
+       */
+   private void expireResumes(long now) {
+      while (!resuming.isEmpty() && resuming.peekFirst().resumeBy - now <= 0)  {
+         Waiting client = resuming.pollFirst();
+         if (client.key.isValid())  {
+            report("client " + addressOf(client.channel) + " did not finish sending RESUME");
+            drop(client);
+         }
+      }
+   }
+
+   /**
+       * Pairs the waiting clients the policy allows, checking both are still connected, and starts
+       * their games. A client whose connection has closed is dropped and its partner put back at the
+       * head of the queue, where it keeps its place and the time it has waited.
+       * Then any client which has waited too long for an opponent is given a computer opponent.
+       * @throws IOException if the Selector fails
+       */
+   private void pairWaiting() throws IOException  {
+      long now = System.nanoTime();
+      Waiting[] pair;
+      while ((pair = policy.nextPair(now)) != null)  {
+         boolean alive0 = poll(pair[0]);
+         boolean alive1 = poll(pair[1]);
+         if (!alive0 || !alive1)   {
+            if (alive0)
+               policy.putBack(pair[0]);
+            if (alive1)
+               policy.putBack(pair[1]);
+            continue;
+         }
+         startGame(pair[0], pair[1], now);
+      }
+      Waiting alone;
+      while (computerMillis > 0 && (alone = policy.nextAlone(now, computerMillis)) != null)  {
+         if (poll(alone))
+            startGame(alone, null, now);
+      }
+   }
+
+   /**
+       * Takes clients out of the Selector and hands them to the PairHandler to start their game.
+       * @param first the client who is player 0
+       * @param second the client who is player 1, or null for a ComputerPlayer
+       * @param now the current System.nanoTime
+       * @throws IOException if the Selector fails
+       */
+   private void startGame(Waiting first, Waiting second, long now) throws IOException  {
+      int players = second == null ? 1 : 2;
+      first.key.cancel();
+      if (second != null)
+         second.key.cancel();
+      selector.selectNow();
+      queueDepth.addAndGet(-players);
+      matched.add(players);
+      timeToMatch.record(first.waitedMillis(now));
+      if (second != null)
+         timeToMatch.record(second.waitedMillis(now));
+      int number = gameNumber.incrementAndGet();
+      report("matched game " + number + (second == null ? " with a computer opponent" : "") + " after " +
+         first.waitedMillis(now) + " ms, " + getQueueDepth() + " clients waiting");
+      try   {
+         handler.startGame(first.channel, second == null ? null : second.channel, number);
+      }
+      catch (IOException e)   {
+         report("problems starting game " + number + " " + e.toString());
+         first.channel.close();
+         if (second != null)
+            second.channel.close();
+      }
+   }
+
+   /**
+       * Reads what a waiting client has sent without blocking. As a client sends nothing before it is
+       * named, apart from RESUME, a closed connection or any other command drops the client, while a
+       * complete RESUME hands it to the ResumeHandler. Either way the client leaves the queue, as does
+       * a client part way through sending RESUME, which is given RESUME_MILLIS to send the rest.
+       * @param client the client to check
+       * @return true if the connection is still open and nothing has been received
+       */
+   private boolean poll(Waiting client)  {
+      ByteBuffer request = client.request;
+      try   {
+         int read = client.channel.read(request);
+         if (read == 0 && request.position() == 0)
+            return true;
+         policy.remove(client);
+         if (read < 0 || resumeHandler == null || request.position() > RESUME_BYTES ||
+            (request.position() >= 4 && request.getInt(0) != BattleShippable.RESUME))
+            drop(client);
+         else if (!request.hasRemaining())
+            resume(client);
+         else if (!client.resuming) {
+            client.resuming = true;
+            client.resumeBy = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RESUME_MILLIS);
+            resuming.add(client);
+         }
+      }
+      catch (IOException e)   {
+         policy.remove(client);
+         drop(client);
+      }
+      return false;
+   }
+
+   /**
+       * Hands a client which sent RESUME to the ResumeHandler, closing its connection if that fails.
+       * @param client the client resuming
+       * @throws IOException if the Selector fails
+       */
+   private void resume(Waiting client) throws IOException   {
+      client.key.cancel();
+      selector.selectNow();
+      queueDepth.decrementAndGet();
+      report("client " + addressOf(client.channel) + " is resuming a game");
+      try   {
+         resumeHandler.resume(client.channel, client.request.getLong(4));
+      }
+      catch (IOException e)   {
+         report("problems resuming a game " + e.toString());
+         client.channel.close();
+      }
+   }
+
+   /**
+       * Closes the connection of a client who left the queue without being matched.
+       * @param client the client to drop
+       */
+   private void drop(Waiting client)   {
+      queueDepth.decrementAndGet();
+      dropped.increment();
+      report("dropped a waiting client whose connection closed, " + getQueueDepth() + " clients waiting");
+      try   {
+         if (client.key != null)
+            client.key.cancel();
+         client.channel.close();
+      }
+      catch (IOException e)   {
+         report("problems closing connection " + e.toString());
+      }
+   }
+
+   /**
+       * @param channel a client's channel
+       * @return the address the client connected from, which identifies it in PlayerRatings
+       */
+   public static String addressOf(SocketChannel channel)  {
+      try   {
+         return ((InetSocketAddress)channel.getRemoteAddress()).getAddress().getHostAddress();
+      }
+      catch (IOException | NullPointerException e)   {
+         return "unknown";
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,268 @@
+/**
+* A MetricsRegistry names the counters, gauges and LatencyHistograms of a program so that they can be
+* read from outside it: as the Prometheus text format, and as the attributes of a JMX MBean. Counters and
+* gauges are LongAdders, or any other source of a long, so recording a value costs a single striped add;
+* the registry only does any work when it is read.
+* <p>
+* Several metrics may share a name if they have different labels, such as a count for each command. A
+* LatencyHistogram is exposed as a summary with the 50th, 90th, 99th and 99.9th percentiles, its values
+* divided by a scale so that, for example, microseconds are exposed as seconds.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import javax.management.*;
+public class MetricsRegistry  {
+   //The percentiles exposed for each summary
+   private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+   private static final String[] QUANTILE_NAMES = { "p50", "p90", "p99", "p999" };
+
+   //Every metric, grouped by name in the order the names were first registered
+   private final Map<String, List<Metric>> families;
+
+   /**
+       * A Metric is one registered value: a counter or gauge read from a LongSupplier, or a summary
+       * read from a LatencyHistogram.
+       */
+   private static final class Metric   {
+      private final String name;
+      private final String help;
+      private final String type;
+      private final String labels;
+      private final LongSupplier value;
+      private final LatencyHistogram histogram;
+      private final double scale;
+
+      /**
+          * Creates a Metric.
+          * @param name the name of the metric
+          * @param help what the metric measures
+          * @param type "counter", "gauge" or "summary"
+          * @param labels the labels of the metric, such as cmd="FIRE", or an empty string
+          * @param value the source of a counter or gauge, or null for a summary
+          * @param histogram the source of a summary, or null for a counter or gauge
+          * @param scale what each value of the histogram is divided by when exposed
+          */
+      private Metric(String name, String help, String type, String labels, LongSupplier value,
+         LatencyHistogram histogram, double scale)   {
+         this.name = name;
+         this.help = help;
+         this.type = type;
+         this.labels = labels;
+         this.value = value;
+         this.histogram = histogram;
+         this.scale = scale;
+      }
+   }
+
+   /**
+       * Creates an empty MetricsRegistry.
+       */
+   public MetricsRegistry()   {
+      families = new LinkedHashMap<String, List<Metric>>();
+   }
+
+   /**
+       * Adds a metric to its family.
+       * @param metric the metric to add
+       */
+   private synchronized void add(Metric metric) {
+      families.computeIfAbsent(metric.name, n -> new CopyOnWriteArrayList<Metric>()).add(metric);
+   }
+
+   /**
+       * Registers a new counter.
+       * @param name the name of the counter, ending in _total
+       * @param help what the counter counts
+       * @param labels the labels of the counter, such as cmd="FIRE", or an empty string
+       * @return the LongAdder to increment
+       */
+   public LongAdder counter(String name, String help, String labels)   {
+      LongAdder counter = new LongAdder();
+      counter(name, help, labels, counter::sum);
+      return counter;
+   }
+
+   /**
+       * Registers a counter kept elsewhere.
+       * @param name the name of the counter, ending in _total
+       * @param help what the counter counts
+       * @param labels the labels of the counter, or an empty string
+       * @param value reads the count
+       */
+   public void counter(String name, String help, String labels, LongSupplier value)   {
+      add(new Metric(name, help, "counter", labels, value, null, 1));
+   }
+
+   /**
+       * Registers a new gauge, a value that goes up and down.
+       * @param name the name of the gauge
+       * @param help what the gauge measures
+       * @return the LongAdder to increment and decrement
+       */
+   public LongAdder gauge(String name, String help)   {
+      LongAdder gauge = new LongAdder();
+      gauge(name, help, gauge::sum);
+      return gauge;
+   }
+
+   /**
+       * Registers a gauge kept elsewhere.
+       * @param name the name of the gauge
+       * @param help what the gauge measures
+       * @param value reads the gauge
+       */
+   public void gauge(String name, String help, LongSupplier value)   {
+      add(new Metric(name, help, "gauge", "", value, null, 1));
+   }
+
+   /**
+       * Registers a LatencyHistogram as a summary.
+       * @param name the name of the summary, ending in its unit, such as _seconds
+       * @param help what the summary measures
+       * @param histogram the histogram values are recorded into
+       * @param scale what each recorded value is divided by to give the unit of the name
+       * @return histogram
+       */
+   public LatencyHistogram summary(String name, String help, LatencyHistogram histogram, double scale)   {
+      add(new Metric(name, help, "summary", "", null, histogram, scale));
+      return histogram;
+   }
+
+   /**
+       * @return every metric, in the order the names were registered.
+       */
+   private synchronized List<Metric> metrics()  {
+      List<Metric> metrics = new ArrayList<Metric>();
+      for (List<Metric> family : families.values())
+         metrics.addAll(family);
+      return metrics;
+   }
+
+   /**
+       * Writes every metric in the Prometheus text exposition format.
+       * @return the current value of every metric
+       */
+   public String toPrometheus()  {
+      StringBuilder text = new StringBuilder();
+      String family = null;
+      for (Metric metric : metrics())   {
+         if (!metric.name.equals(family))  {
+            family = metric.name;
+            text.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            text.append("# TYPE ").append(metric.name).append(' ').append(metric.type).append('\n');
+         }
+         if (metric.histogram == null) {
+            text.append(metric.name).append(braces(metric.labels)).append(' ')
+               .append(metric.value.getAsLong()).append('\n');
+            continue;
+         }
+         LatencyHistogram histogram = metric.histogram;
+         for (double quantile : QUANTILES)   {
+            String labels = (metric.labels.isEmpty() ? "" : metric.labels + ",") + "quantile=\"" + quantile + "\"";
+            text.append(metric.name).append(braces(labels)).append(' ')
+               .append(histogram.getValueAtPercentile(quantile * 100) / metric.scale).append('\n');
+         }
+         text.append(metric.name).append("_sum").append(braces(metric.labels)).append(' ')
+            .append(histogram.getSum() / metric.scale).append('\n');
+         text.append(metric.name).append("_count").append(braces(metric.labels)).append(' ')
+            .append(histogram.getCount()).append('\n');
+      }
+      return text.toString();
+   }
+
+   /**
+       * @param labels the labels of a metric, or an empty string
+       * @return the labels in braces, or an empty string if there are none
+       */
+   private static String braces(String labels)  {
+      return labels.isEmpty() ? "" : "{" + labels + "}";
+   }
+
+   /**
+       * @return a read-only MBean with an attribute for each counter and gauge, and for the count,
+       * mean, percentiles and maximum of each summary.
+       */
+   public DynamicMBean asMBean() {
+      return new RegistryMBean();
+   }
+
+   /**
+       * A RegistryMBean exposes the metrics of the registry as JMX attributes, read when asked for.
+       * The attributes are named after the metrics and their labels, such as
+       * battleship_messages_total_cmd_FIRE_direction_in.
+       */
+   private class RegistryMBean implements DynamicMBean   {
+      /**
+          * @return the value of every attribute, by name.
+          */
+      private Map<String, Object> values()   {
+         Map<String, Object> values = new LinkedHashMap<String, Object>();
+         for (Metric metric : metrics())   {
+            String name = metric.name + (metric.labels.isEmpty() ? "" :
+               "_" + metric.labels.replaceAll("[\"]", "").replaceAll("[=,]", "_"));
+            if (metric.histogram == null) {
+               values.put(name, metric.value.getAsLong());
+               continue;
+            }
+            LatencyHistogram histogram = metric.histogram;
+            values.put(name + "_count", histogram.getCount());
+            values.put(name + "_mean", histogram.getMean() / metric.scale);
+            for (int i = 0; i < QUANTILES.length; i++)
+               values.put(name + "_" + QUANTILE_NAMES[i],
+                  histogram.getValueAtPercentile(QUANTILES[i] * 100) / metric.scale);
+            values.put(name + "_max", histogram.getMax() / metric.scale);
+         }
+         return values;
+      }
+
+      @Override
+      public Object getAttribute(String attribute) throws AttributeNotFoundException  {
+         Object value = values().get(attribute);
+         if (value == null)
+            throw new AttributeNotFoundException(attribute);
+         return value;
+      }
+
+      @Override
+      public AttributeList getAttributes(String[] attributes)   {
+         Map<String, Object> values = values();
+         AttributeList list = new AttributeList();
+         for (String attribute : attributes) {
+            if (values.containsKey(attribute))
+               list.add(new Attribute(attribute, values.get(attribute)));
+         }
+         return list;
+      }
+
+      @Override
+      public void setAttribute(Attribute attribute) throws AttributeNotFoundException   {
+         throw new AttributeNotFoundException("metrics are read-only");
+      }
+
+      @Override
+      public AttributeList setAttributes(AttributeList attributes)   {
+         return new AttributeList();
+      }
+
+      @Override
+      public Object invoke(String action, Object[] params, String[] signature) throws ReflectionException   {
+         throw new ReflectionException(new NoSuchMethodException(action));
+      }
+
+      @Override
+      public MBeanInfo getMBeanInfo()  {
+         List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+         for (Map.Entry<String, Object> value : values().entrySet())
+            attributes.add(new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(),
+               value.getKey(), true, false, false));
+         return new MBeanInfo(MetricsRegistry.class.getName(), "Metrics of the server",
+            attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,205 @@
+/**
+* A PlacementTable numbers every legal placement of a Ship of one length on a Grid of one dimension, so a
+* placement can be looked up from its ends, drawn at random or walked through without building any list.
+* Each placement is its first space, the one with the lower single digit index, and the step to the next
+* space: 1 along a row or the dimension down a column. Placements along the rows come first, row by row,
+* then those down the columns; the number of a placement and its spaces are worked out from each other
+* with a few divisions. On a Grid of up to MASKED_SPACES spaces, such as the standard one, the table also
+* keeps the mask of the spaces of every placement, so checking a placement is a single AND against the
+* occupied spaces of a Board; on a larger Grid the masks would take more room than they save, and the
+* spaces are checked one line at a time instead. The tables of a game are built once, with its GameRules.
+* <p>
+* Random fleets are drawn from the tables: each Ship takes one of the placements which are still free,
+* chosen uniformly. A few placements are drawn at random first, as on a large Grid most of them are free,
+* and only if none of those is free are the free placements counted and one of them chosen.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.*;
+public class PlacementTable implements BattleShippable  {
+   //Placements drawn at random before the free ones are counted
+   private static final int RANDOM_DRAWS = 8;
+   //Most spaces of a Grid whose tables keep the mask of each placement
+   public static final int MASKED_SPACES = 256;
+
+   private final int dimension;
+   private final int length;
+   //Positions along a row or column at which the Ship fits, and the number of placements along the rows
+   private final int fits;
+   private final int across;
+   private final int size;
+   //The spaces of each placement, or null if the Grid is too large to keep them
+   private final BitSet[] masks;
+
+   /**
+       * Creates the table of every placement of a Ship of the given length.
+       * @param dimension the number of rows and columns of the Grid
+       * @param length the length of the Ship, from 1 to dimension
+       */
+   public PlacementTable(int dimension, int length)  {
+      this.dimension = dimension;
+      this.length = length;
+      fits = dimension - length + 1;
+      across = dimension * fits;
+      size = length == 1 ? across : 2 * across;
+      if (dimension * dimension > MASKED_SPACES)   {
+         masks = null;
+         return;
+      }
+      masks = new BitSet[size];
+      for (int placement = 0; placement < size; placement++)   {
+         masks[placement] = new BitSet(dimension * dimension);
+         for (int k = 0, i = getStart(placement); k < length; k++, i += getStep(placement))
+            masks[placement].set(i);
+      }
+   }
+
+   /**
+       * @return the length of the Ships placed by this table.
+       */
+   public int getLength()  {
+      return length;
+   }
+
+   /**
+       * @return the number of placements in the table.
+       */
+   public int size() {
+      return size;
+   }
+
+   /**
+       * @param placement the number of a placement
+       * @return the single digit index of its first space
+       */
+   public int getStart(int placement)  {
+      if (placement < across)
+         return placement / fits * dimension + placement % fits;
+      return placement - across;
+   }
+
+   /**
+       * @param placement the number of a placement
+       * @return the difference between the single digit indexes of its consecutive spaces
+       */
+   public int getStep(int placement)   {
+      return placement < across ? 1 : dimension;
+   }
+
+   /**
+       * @param placement the number of a placement
+       * @return the spaces of the placement, which must not be changed, or null if the table keeps no
+       * masks as the Grid has more than MASKED_SPACES spaces
+       */
+   public BitSet getMask(int placement)   {
+      return masks == null ? null : masks[placement];
+   }
+
+   /**
+       * @param placement the number of a placement
+       * @return the single digit index of its last space
+       */
+   public int getEnd(int placement) {
+      return getStart(placement) + (length - 1) * getStep(placement);
+   }
+
+   /**
+       * Finds the placement with the given ends, which may be given in either order.
+       * @param start the single digit index of one end
+       * @param end the single digit index of the other end
+       * @return the number of the placement, or -1 if the ends are not those of a legal placement
+       */
+   public int indexOf(int start, int end) {
+      int spaces = dimension * dimension;
+      if (start < 0 || end < 0 || start >= spaces || end >= spaces)
+         return -1;
+      int low = Math.min(start, end);
+      int high = Math.max(start, end);
+      int row = low / dimension;
+      int col = low % dimension;
+      if (high - low == length - 1 && high / dimension == row)
+         return row * fits + col;
+      if (length > 1 && high - low == (length - 1) * dimension)
+         return across + low;
+      return -1;
+   }
+
+   /**
+       * @param board the Board the Ship is going on
+       * @param placement the number of a placement
+       * @return true if none of the spaces of the placement are occupied, false otherwise.
+       */
+   public boolean isFree(Board board, int placement)  {
+      return board.isFree(this, placement);
+   }
+
+   /**
+       * Chooses one of the placements which are free on a Board, each with the same chance.
+       * @param board the Board the Ship is going on
+       * @param random the source of randomness
+       * @return the number of the placement, or -1 if none of them are free
+       */
+   public int randomFree(Board board, Random random)  {
+      for (int i = 0; i < RANDOM_DRAWS; i++) {
+         int placement = random.nextInt(size);
+         if (isFree(board, placement))
+            return placement;
+      }
+      int free = 0;
+      for (int i = 0; i < size; i++)   {
+         if (isFree(board, i))
+            free++;
+      }
+      if (free == 0)
+         return -1;
+      int chosen = random.nextInt(free);
+      for (int i = 0; i < size; i++)   {
+         if (isFree(board, i) && chosen-- == 0)
+            return i;
+      }
+      return -1;
+   }
+
+   /**
+       * Places every Ship of the fleet of the Board's GameRules on the Board, which must be empty, in
+       * order, each on one of the placements left free by those before it, chosen uniformly. The standard
+       * fleet always fits, as there is room for the Destroyer however the larger Ships are placed.
+       * @param board an empty Board
+       * @param fleetEnds receives the two ends of each Ship, first space then last, if not null
+       * @param random the source of randomness
+       * @return true if every Ship was placed, false if one had no free placement left
+       */
+   public static boolean placeRandomFleet(Board board, int[] fleetEnds, Random random)   {
+      GameRules rules = board.getRules();
+      for (int i = 0; i < rules.getNumShips(); i++)  {
+         PlacementTable table = rules.getTable(rules.getShipLength(i));
+         int placement = table.randomFree(board, random);
+         if (placement < 0)
+            return false;
+         board.placeShip(i, table, placement);
+         if (fleetEnds != null)  {
+            fleetEnds[2 * i] = table.getStart(placement);
+            fleetEnds[2 * i + 1] = table.getEnd(placement);
+         }
+      }
+      return true;
+   }
+
+   /**
+       * Places a fleet given by the ends of its Ships on a Board, which must be empty: every Ship must
+       * be a legal placement of its length and none may overlap.
+       * @param board an empty Board
+       * @param fleetEnds the two ends of each Ship, in the order of the Board's GameRules
+       * @return true if the fleet is valid, false otherwise
+       */
+   public static boolean placeFleet(Board board, int[] fleetEnds)  {
+      GameRules rules = board.getRules();
+      for (int i = 0; i < rules.getNumShips(); i++)  {
+         if (!board.placeShip(i, fleetEnds[2 * i], fleetEnds[2 * i + 1], rules.getShipLength(i)))
+            return false;
+      }
+      return true;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,150 @@
+/**
+* A PlayerLink is the server's connection to a single client. It sends each of the server to client
+* commands of the BattleShippable protocol, hiding whether the client is reached through a blocking
+* socket stream or a non-blocking channel. Commands may be held back until flush is called, so that
+* every command sent to the client in response to one event leaves in a single write.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.util.*;
+public interface PlayerLink  {
+   /**
+       * Sends a NAME command.
+       * @param player the name (number) of the client
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendName(int player) throws IOException;
+
+   /**
+       * Sends a FIRE command.
+       * @param space the single digit index of the GridSpace being fired at
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendFire(int space) throws IOException;
+
+   /**
+       * Sends a MARK command.
+       * @param index the single digit index of the GridSpace that was fired at
+       * @param success whether the shot was a hit or not
+       * @param sunk whether the Ship was sunk or not
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendMark(int index, boolean success, boolean sunk) throws IOException;
+
+   /**
+       * Sends a TURN command.
+       * @param isTurn whether it is now the client's turn or not
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendTurn(boolean isTurn) throws IOException;
+
+   /**
+       * Sends a GAME_OVER command.
+       * @param winner the player who has won the game
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendGameOver(int winner) throws IOException;
+
+   /**
+       * Sends a DONE command.
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendDone() throws IOException;
+
+   /**
+       * Sends a QUIT_SHIP command.
+       * @param player the player who quit during the ship placement stage
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendQuitShip(int player) throws IOException;
+
+   /**
+       * Sends an AUTHORITATIVE command.
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendAuthoritative() throws IOException;
+
+   /**
+       * Sends a FRAMING command, offering the client framed messages.
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendFraming() throws IOException;
+
+   /**
+       * Sends a HELLO command, after which every command sent to the client is a frame.
+       * @param version the frame version agreed with the client
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendHello(int version) throws IOException;
+
+   /**
+       * Sends a PING command, which the client answers with PONG.
+       * @param interval the number of milliseconds until the next PING
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendPing(int interval) throws IOException;
+
+   /**
+       * Sends a TOKEN command.
+       * @param token the secret which lets the client rejoin its game
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendToken(long token) throws IOException;
+
+   /**
+       * Sends a RULES command.
+       * @param rules the size of the Grids and the fleet of the game
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendRules(GameRules rules) throws IOException;
+
+   /**
+       * Sends a SNAPSHOT command with the state of the game as the client sees it.
+       * @param rules the GameRules of the game, which give the size of each mask
+       * @param playing whether the ships of both players have been placed
+       * @param confirmed whether the client's ships have been placed
+       * @param isTurn whether it is the client's turn
+       * @param yourSunk how many of the client's Ships have been sunk
+       * @param theirSunk how many of the opponent's Ships have been sunk
+       * @param shotsAtYou the spaces fired at on the client's Grid
+       * @param hitsOnYou the spaces of shotsAtYou which hit a Ship
+       * @param yourShots the spaces the client has fired at
+       * @param yourHits the spaces of yourShots which hit a Ship
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendSnapshot(GameRules rules, boolean playing, boolean confirmed, boolean isTurn, int yourSunk,
+      int theirSunk, BitSet shotsAtYou, BitSet hitsOnYou, BitSet yourShots, BitSet yourHits) throws IOException;
+
+   /**
+       * Sends a LOBBY command, after which the client is paired again on the same connection.
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendLobby() throws IOException;
+
+   /**
+       * Sends a REMATCH command, telling the client its opponent wants to play again.
+       * @throws IOException if there is a communication error between server/client
+       */
+   void sendRematch() throws IOException;
+
+   /**
+       * @return true if commands are sent to the client as frames, false otherwise.
+       */
+   default boolean isFramed() {
+      return false;
+   }
+
+   /**
+       * Sends every command held back since the last flush.
+       * @throws IOException if there is a communication error between server/client
+       */
+   void flush() throws IOException;
+
+   /**
+       * Closes the connection to the client once anything already sent has been delivered.
+       * @throws IOException if there is an error closing the connection
+       */
+   void close() throws IOException;
+}
\ No newline at end of file
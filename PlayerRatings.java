@@ -0,0 +1,53 @@
+/**
+* PlayerRatings keeps an Elo rating for each player, so that the Matchmaker can pair players of a similar
+* strength. As the protocol has no accounts, a player is known by the address they connect from. Every
+* player starts at INITIAL_RATING, and the ratings are updated from the result of each game that is won.
+* Any thread may read or update the ratings.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.concurrent.*;
+public class PlayerRatings  {
+   /**
+       * The rating of a player who has not finished a game yet.
+       */
+   public static final int INITIAL_RATING = 1000;
+   //Most a rating changes after a single game
+   private static final int K_FACTOR = 32;
+
+   private final ConcurrentMap<String, Integer> ratings;
+
+   /**
+       * Creates PlayerRatings in which every player has the initial rating.
+       */
+   public PlayerRatings()  {
+      ratings = new ConcurrentHashMap<String, Integer>();
+   }
+
+   /**
+       * @param player the address of a player
+       * @return the player's rating.
+       */
+   public int getRating(String player) {
+      return ratings.getOrDefault(player, INITIAL_RATING);
+   }
+
+   /**
+       * Updates both players' ratings after a game. Two players from the same address are not rated.
+       * @param winner the address of the player who won
+       * @param loser the address of the player who lost
+       */
+   public void recordWin(String winner, String loser)   {
+      if (winner.equals(loser))
+         return;
+      synchronized (ratings)  {
+         int winnerRating = getRating(winner);
+         int loserRating = getRating(loser);
+         double expected = 1 / (1 + Math.pow(10, (loserRating - winnerRating) / 400.0));
+         int change = (int)Math.round(K_FACTOR * (1 - expected));
+         ratings.put(winner, winnerRating + change);
+         ratings.put(loser, loserRating - change);
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,123 @@
+/**
+* A ResumeRegistry hands out the resume tokens of the games being played and takes the clients which come
+* back with RESUME to their games. Each token is a random long which the server only ever sends to the
+* player it belongs to, so a client can only rejoin its own game. A token can be used once: a player who
+* resumes is handed a new token for their seat, to be sent to them once they are back, and the tokens of a
+* game are revoked once it is over. A RESUME with an unknown or used token, or for a game which has just
+* ended, is answered with DONE and the connection closed.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+public class ResumeRegistry implements Matchmaker.ResumeHandler, BattleShippable  {
+   //Place where the messages of the log are reported
+   private ServerLog serverLog;
+   private SecureRandom random;
+   //The seat of every token handed out and not yet revoked
+   private Map<Long, Resumable> seats;
+
+   /**
+       * A Resumable is a player's seat in a game, which takes the player back on a new connection.
+       */
+   public interface Resumable {
+      /**
+          * Hands a client's new channel to its game. Called on the Matchmaker's thread, so the game
+          * should do the work on its own thread. A game which turns the client away once it gets there
+          * should revoke the new token.
+          * @param channel the client's new channel, not registered with any Selector and non-blocking
+          * @param token the token which replaces the one the client resumed with
+          * @return true if the game has taken the channel, false if it is over
+          * @throws IOException if there is a communication error with the client
+          */
+      boolean resume(SocketChannel channel, long token) throws IOException;
+   }
+
+   /**
+       * Creates an empty ResumeRegistry.
+       * @param log the ServerLog that receives messages
+       */
+   public ResumeRegistry(ServerLog log)   {
+      serverLog = log;
+      random = new SecureRandom();
+      seats = new ConcurrentHashMap<Long, Resumable>();
+   }
+
+   /**
+       * Hands out a new token for a player's seat. May be called from any thread.
+       * @param seat takes the player back to their game
+       * @return the token, which is never 0
+       */
+   public long issue(Resumable seat)   {
+      while (true)   {
+         long token = random.nextLong();
+         if (token != 0 && seats.putIfAbsent(token, seat) == null)
+            return token;
+      }
+   }
+
+   /**
+       * Forgets a token once its game is over. May be called from any thread.
+       * @param token the token to forget, or 0 for none
+       */
+   public void revoke(long token)   {
+      seats.remove(token);
+   }
+
+   /**
+       * @return the number of tokens handed out and not yet revoked.
+       */
+   public int size() {
+      return seats.size();
+   }
+
+   /**
+       * Takes a client back to the seat of its token, using the token up and handing the seat a new
+       * one, or turns the client away.
+       * @param channel the client's new channel
+       * @param token the token the client sent with RESUME
+       * @throws IOException if there is a communication error with the client
+       */
+   @Override
+   public void resume(SocketChannel channel, long token) throws IOException   {
+      Resumable seat = seats.remove(token);
+      if (seat == null) {
+         serverLog.report("client " + Matchmaker.addressOf(channel) + " sent an unknown or used resume token");
+         reject(channel);
+         return;
+      }
+      long next = issue(seat);
+      boolean taken = false;
+      try   {
+         taken = seat.resume(channel, next);
+      }
+      finally  {
+         if (!taken)
+            revoke(next);
+      }
+      if (!taken)
+         reject(channel);
+   }
+
+   /**
+       * Tells a client which cannot rejoin its game that the game is over, with a bare DONE, and
+       * closes its connection.
+       * @param channel the client's channel
+       * @throws IOException if there is an error closing the connection
+       */
+   public static void reject(SocketChannel channel) throws IOException   {
+      try   {
+         ByteBuffer done = ByteBuffer.allocate(4).putInt(DONE);
+         done.flip();
+         channel.write(done);
+      }
+      finally  {
+         channel.close();
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,232 @@
+/**
+* A ServerConnector opens a connection to one of several addresses of a BattleShipServer. Each attempt looks
+* up and connects to every address at once, each on its own thread, and takes whichever answers first; the
+* others are closed. Looking up the address counts towards the attempt's timeout, so no address can hold an
+* attempt longer than that. Failed attempts are retried after a delay which doubles each time. connect
+* blocks, so it is called off the Swing event thread, and cancel, which may be called from any thread,
+* closes every connection still being made and makes connect give up.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+public class ServerConnector  {
+   private final String[] hosts;
+   private final int port;
+   private final int timeoutMillis;
+   private volatile boolean cancelled;
+   //The thread waiting in connect, and the sockets still connecting, for cancel to wake and close
+   private volatile Thread waiting;
+   private final Set<Socket> connecting;
+
+   /**
+       * Creates a ServerConnector.
+       * @param hosts the names or IP addresses of the server, tried at once
+       * @param port the port the server listens on
+       * @param timeoutMillis how long an attempt may take, looking up the addresses included
+       */
+   public ServerConnector(String[] hosts, int port, int timeoutMillis)   {
+      if (hosts.length == 0)
+         throw new IllegalArgumentException("no server address was given");
+      this.hosts = hosts.clone();
+      this.port = port;
+      this.timeoutMillis = timeoutMillis;
+      connecting = ConcurrentHashMap.newKeySet();
+   }
+
+   /**
+       * Splits text into the addresses it holds, separated by commas or spaces.
+       * @param text the addresses as typed
+       * @return the addresses, which may be none
+       */
+   public static String[] parseHosts(String text)   {
+      String trimmed = text.trim();
+      return trimmed.isEmpty() ? new String[0] : trimmed.split("[,\\s]+");
+   }
+
+   /**
+       * Connects to the first address to answer, trying again if none does.
+       * @param attempts how many attempts to make, at least one
+       * @param delayMillis the wait before the second attempt, doubled before each one after it
+       * @param attemptStarted told the number of each attempt as it starts, from the calling thread
+       * @return the connected socket
+       * @throws IOException if every attempt failed, or the ServerConnector was cancelled
+       */
+   public Socket connect(int attempts, long delayMillis, IntConsumer attemptStarted) throws IOException  {
+      IOException failure = null;
+      long delay = delayMillis;
+      for (int attempt = 1; attempt <= Math.max(1, attempts); attempt++)   {
+         if (attempt > 1)  {
+            try   {
+               waiting = Thread.currentThread();
+               if (!cancelled)
+                  Thread.sleep(delay);
+            }
+            catch (InterruptedException e)   {
+               if (!cancelled)
+                  Thread.currentThread().interrupt();
+            }
+            finally  {
+               waiting = null;
+            }
+            delay *= 2;
+         }
+         if (cancelled || Thread.currentThread().isInterrupted())
+            throw new InterruptedIOException("the connection was cancelled");
+         attemptStarted.accept(attempt);
+         try   {
+            return connect();
+         }
+         catch (InterruptedIOException e) {
+            throw e;
+         }
+         catch (IOException e)   {
+            failure = e;
+         }
+      }
+      throw failure;
+   }
+
+   /**
+       * Makes one attempt, connecting to every address at once.
+       * @return the socket of the first address to answer
+       * @throws IOException if none answered in time, or the ServerConnector was cancelled
+       */
+   public Socket connect() throws IOException   {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      Race race = new Race();
+      AtomicReference<IOException> failure = new AtomicReference<IOException>();
+      CountDownLatch finished = new CountDownLatch(1);
+      AtomicInteger left = new AtomicInteger(hosts.length);
+      for (String host : hosts)  {
+         Thread thread = new Thread(() -> {
+            Socket socket = new Socket();
+            connecting.add(socket);
+            try   {
+               InetSocketAddress address = new InetSocketAddress(host, port);
+               if (address.isUnresolved())
+                  throw new UnknownHostException("the address of \"" + host + "\" could not be found");
+               int remaining = (int)TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+               if (remaining <= 0)
+                  throw new SocketTimeoutException("\"" + host + "\" was not found in time");
+               socket.connect(address, remaining);
+               if (race.offer(socket))
+                  finished.countDown();
+               else
+                  close(socket);
+            }
+            catch (IOException e)   {
+               failure.compareAndSet(null, e);
+               close(socket);
+            }
+            finally  {
+               connecting.remove(socket);
+               if (left.decrementAndGet() == 0)
+                  finished.countDown();
+            }
+         }, "Connect to " + host);
+         thread.setDaemon(true);
+         thread.start();
+      }
+      boolean answered;
+      try   {
+         waiting = Thread.currentThread();
+         answered = !cancelled && finished.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      }
+      catch (InterruptedException e)   {
+         if (!cancelled)
+            Thread.currentThread().interrupt();
+         answered = false;
+      }
+      finally  {
+         waiting = null;
+      }
+      Socket socket = race.decide();
+      for (Socket other : connecting)   {
+         if (other != socket)
+            close(other);
+      }
+      if (cancelled || Thread.currentThread().isInterrupted())   {
+         close(socket);
+         throw new InterruptedIOException("the connection was cancelled");
+      }
+      if (answered && socket != null)  {
+         socket.setTcpNoDelay(true);
+         return socket;
+      }
+      close(socket);
+      IOException cause = failure.get();
+      if (cause == null)
+         throw new SocketTimeoutException("no server answered within " + timeoutMillis + " ms");
+      throw cause;
+   }
+
+   /**
+       * Gives up connecting: the sockets still connecting are closed and connect throws.
+       */
+   public void cancel() {
+      cancelled = true;
+      Thread thread = waiting;
+      if (thread != null)
+         thread.interrupt();
+      for (Socket socket : connecting)
+         close(socket);
+   }
+
+   /**
+       * @return true if cancel has been called, false otherwise.
+       */
+   public boolean isCancelled()  {
+      return cancelled;
+   }
+
+   /**
+       * The addresses of one attempt racing to connect. The first socket offered wins; once the race is
+       * decided, by a win or by the attempt ending, every socket offered is refused and closed by its
+       * own thread.
+       */
+   private static class Race  {
+      private Socket winner;
+      private boolean decided;
+
+      /**
+          * @param socket a connected socket
+          * @return true if the socket won the race, false if it was already decided
+          */
+      synchronized boolean offer(Socket socket)   {
+         if (decided)
+            return false;
+         decided = true;
+         winner = socket;
+         return true;
+      }
+
+      /**
+          * Ends the race.
+          * @return the socket which won, or null if none did
+          */
+      synchronized Socket decide()  {
+         decided = true;
+         return winner;
+      }
+   }
+
+   /**
+       * Closes a socket, ignoring any error.
+       * @param socket the socket, or null
+       */
+   private static void close(Socket socket) {
+      if (socket == null)
+         return;
+      try   {
+         socket.close();
+      }
+      catch (IOException e)   {
+      }
+   }
+}
\ No newline at end of file
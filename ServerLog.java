@@ -0,0 +1,331 @@
+/**
+* A ServerLog takes the log messages of the server and of every game without ever blocking the thread
+* that reports them. Messages are published into a fixed size ring buffer by claiming a slot with a
+* compare-and-set; if the buffer is full the message is counted as dropped rather than waiting. A single
+* consumer thread drains the buffer in batches and hands each batch to every LogSink, such as the console,
+* a rolling file or the server's JTextArea. When the buffer is empty the consumer parks, and the message
+* published into the empty buffer wakes it.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import javax.swing.*;
+import javax.swing.text.*;
+public class ServerLog implements Runnable  {
+   //Default number of messages the ring buffer holds, a power of two
+   public static final int DEFAULT_CAPACITY = 1 << 16;
+   //Most messages handed to the sinks at once
+   private static final int MAX_BATCH = 1024;
+   //Longest the consumer parks when there is nothing to drain, if no message wakes it first
+   private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+   private final String[] entries;
+   //Sequence number published in each slot, so the consumer knows when a slot is filled
+   private final AtomicLongArray published;
+   private final int mask;
+   //Next sequence number to claim, and the next one the consumer will take
+   private final AtomicLong claimed;
+   private volatile long consumed;
+   //The consumer thread, and whether it is parked or about to park
+   private volatile Thread consumer;
+   private volatile boolean idle;
+   private final LongAdder dropped;
+   private long droppedReported;
+   private final List<LogSink> sinks;
+   private final String[] batch;
+
+   /**
+       * A LogSink receives the drained messages in batches, always from the consumer thread.
+       */
+   public interface LogSink   {
+      /**
+          * Writes the first count messages of batch.
+          * @param batch the messages, oldest first
+          * @param count the number of messages in batch
+          * @throws IOException if the messages could not be written
+          */
+      void write(String[] batch, int count) throws IOException;
+   }
+
+   /**
+       * Creates a ServerLog with the default capacity.
+       */
+   public ServerLog()   {
+      this(DEFAULT_CAPACITY);
+   }
+
+   /**
+       * Creates a ServerLog whose ring buffer holds the given number of messages.
+       * @param capacity the number of messages, rounded up to a power of two
+       */
+   public ServerLog(int capacity)   {
+      int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+      entries = new String[size];
+      published = new AtomicLongArray(size);
+      for (int i = 0; i < size; i++)
+         published.set(i, -1);
+      mask = size - 1;
+      claimed = new AtomicLong();
+      dropped = new LongAdder();
+      sinks = new CopyOnWriteArrayList<LogSink>();
+      batch = new String[MAX_BATCH];
+   }
+
+   /**
+       * Adds a sink which receives every message drained from now on.
+       * @param sink the sink to add
+       * @return this ServerLog
+       */
+   public ServerLog addSink(LogSink sink)   {
+      sinks.add(sink);
+      return this;
+   }
+
+   /**
+       * Starts the consumer thread, which also drains the buffer once more when the JVM exits.
+       * @return this ServerLog
+       */
+   public ServerLog start()   {
+      Thread consumer = new Thread(this, "server-log");
+      consumer.setDaemon(true);
+      this.consumer = consumer;
+      consumer.start();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+         synchronized (batch)  {
+            drain();
+         }
+      }));
+      return this;
+   }
+
+   /**
+       * Publishes a message without blocking. If the ring buffer is full the message is dropped
+       * and counted instead. A message published into an empty buffer unparks the consumer.
+       * @param msg the message to log
+       */
+   public void report(String msg)   {
+      long sequence;
+      do {
+         sequence = claimed.get();
+         if (sequence - consumed >= entries.length)   {
+            dropped.increment();
+            return;
+         }
+      } while (!claimed.compareAndSet(sequence, sequence + 1));
+      int slot = (int)sequence & mask;
+      entries[slot] = msg;
+      if (sequence != consumed)  {
+         published.lazySet(slot, sequence);
+         return;
+      }
+      //The consumer may be parked, and sees either this message or that it must be woken
+      published.set(slot, sequence);
+      if (idle)
+         LockSupport.unpark(consumer);
+   }
+
+   /**
+       * @return the number of messages dropped because the ring buffer was full.
+       */
+   public long getDropped()   {
+      return dropped.sum();
+   }
+
+   /**
+       * Drains the buffer in batches for as long as the server runs, parking whenever it is
+       * empty until the next message is published.
+       */
+   @Override
+   public void run() {
+      while (true)   {
+         int count;
+         synchronized (batch)  {
+            count = drain();
+         }
+         if (count == 0)   {
+            idle = true;
+            long next = consumed;
+            if (published.get((int)next & mask) != next)
+               LockSupport.parkNanos(IDLE_NANOS);
+            idle = false;
+         }
+      }
+   }
+
+   /**
+       * Hands every published message to the sinks, a batch at a time.
+       * @return the number of messages drained
+       */
+   private int drain()  {
+      int total = 0;
+      while (true)   {
+         int count = 0;
+         long next = consumed;
+         while (count < MAX_BATCH)  {
+            int slot = (int)next & mask;
+            if (published.get(slot) != next)
+               break;
+            batch[count++] = entries[slot];
+            entries[slot] = null;
+            next++;
+         }
+         if (count == 0)
+            return total;
+         consumed = next;
+         long nowDropped = dropped.sum();
+         if (nowDropped != droppedReported && count < MAX_BATCH)  {
+            batch[count++] = "(" + nowDropped + " log messages dropped so far)";
+            droppedReported = nowDropped;
+         }
+         for (LogSink sink : sinks)  {
+            try   {
+               sink.write(batch, count);
+            }
+            catch (IOException e)   {
+               e.printStackTrace(System.err);
+            }
+         }
+         total += count;
+      }
+   }
+
+   /**
+       * A sink which prints each batch to standard output with a single write.
+       */
+   public static class ConsoleSink implements LogSink  {
+      private final StringBuilder text = new StringBuilder();
+
+      @Override
+      public void write(String[] batch, int count)   {
+         text.setLength(0);
+         for (int i = 0; i < count; i++)
+            text.append(batch[i]).append(System.lineSeparator());
+         System.out.print(text);
+         System.out.flush();
+      }
+   }
+
+   /**
+       * A sink which appends to a file, rolling it over to file.1, file.2 and so on once it
+       * reaches a given size, keeping a given number of old files.
+       */
+   public static class RollingFileSink implements LogSink  {
+      private final Path file;
+      private final long maxBytes;
+      private final int maxFiles;
+      private final StringBuilder text = new StringBuilder();
+      private OutputStream out;
+      //Bytes in the file, as encoded in UTF-8
+      private long size;
+
+      /**
+          * Creates a RollingFileSink.
+          * @param file the file being written to
+          * @param maxBytes the size at which the file is rolled over
+          * @param maxFiles the number of rolled over files kept
+          * @throws IOException if the file cannot be opened
+          */
+      public RollingFileSink(Path file, long maxBytes, int maxFiles) throws IOException   {
+         this.file = file;
+         this.maxBytes = maxBytes;
+         this.maxFiles = maxFiles;
+         open();
+      }
+
+      /**
+          * Opens the file for appending.
+          * @throws IOException if the file cannot be opened
+          */
+      private void open() throws IOException {
+         out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+         size = Files.size(file);
+      }
+
+      /**
+          * Closes the file and moves each file along by one, dropping the oldest.
+          * @throws IOException if the files cannot be moved
+          */
+      private void roll() throws IOException {
+         out.close();
+         for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = file.resolveSibling(file.getFileName() + "." + i);
+            if (Files.exists(older))
+               Files.move(older, file.resolveSibling(file.getFileName() + "." + (i + 1)),
+                  StandardCopyOption.REPLACE_EXISTING);
+         }
+         if (maxFiles > 0)
+            Files.move(file, file.resolveSibling(file.getFileName() + ".1"),
+               StandardCopyOption.REPLACE_EXISTING);
+         else
+            Files.delete(file);
+         open();
+      }
+
+      @Override
+      public void write(String[] batch, int count) throws IOException   {
+         text.setLength(0);
+         for (int i = 0; i < count; i++)
+            text.append(batch[i]).append(System.lineSeparator());
+         byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+         out.write(bytes);
+         out.flush();
+         size += bytes.length;
+         if (size >= maxBytes)
+            roll();
+      }
+   }
+
+   /**
+       * A sink which appends each batch to a JTextArea on the event dispatch thread with a
+       * single call, removing the oldest lines once the area holds more than a given number.
+       */
+   public static class TextAreaSink implements LogSink   {
+      private final JTextArea textAreaLog;
+      private final int maxLines;
+
+      /**
+          * Creates a TextAreaSink.
+          * @param textAreaLog the JTextArea which shows the log
+          * @param maxLines the most lines kept in the JTextArea
+          */
+      public TextAreaSink(JTextArea textAreaLog, int maxLines)   {
+         this.textAreaLog = textAreaLog;
+         this.maxLines = maxLines;
+      }
+
+      @Override
+      public void write(String[] batch, int count)   {
+         StringBuilder text = new StringBuilder();
+         for (int i = 0; i < count; i++)
+            text.append(batch[i]).append('\n');
+         String lines = text.toString();
+         SwingUtilities.invokeLater(() -> append(lines));
+      }
+
+      /**
+          * Appends the lines, trims the oldest ones and keeps the last line showing.
+          * Must be called on the event dispatch thread.
+          * @param lines the lines to append
+          */
+      private void append(String lines) {
+         textAreaLog.append(lines);
+         int excess = textAreaLog.getLineCount() - maxLines;
+         if (excess > 0)   {
+            try   {
+               textAreaLog.replaceRange("", 0, textAreaLog.getLineEndOffset(excess - 1));
+            }
+            catch (BadLocationException e)   {
+               textAreaLog.setText("");
+            }
+         }
+         textAreaLog.setCaretPosition(textAreaLog.getDocument().getLength());
+      }
+   }
+}
\ No newline at end of file
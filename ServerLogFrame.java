@@ -0,0 +1,49 @@
+/**
+* A ServerLogFrame is the optional graphical front-end of a BattleShipServer. It shows every message
+* published to the server's ServerLog in a scrolling text area, keeping only the most recent lines.
+* The server itself runs the same whether or not the frame is attached.
+*
+* @author G. Monagan modified by Alex Perrino
+* @version November 29, 2017
+*/
+import java.awt.*;
+import javax.swing.*;
+import javax.swing.text.DefaultCaret;
+public class ServerLogFrame extends JFrame  {
+   //Dimensions of frame
+   public static final int FRAME_WIDTH = 1380;
+   public static final int FRAME_HEIGHT = 720;
+
+   //Font used for the server log messages
+   public static final Font LOG_FONT = new Font("SansSerif", Font.BOLD, 16);
+
+   //Most lines kept in the log window
+   public static final int LOG_WINDOW_LINES = 5000;
+
+   private JTextArea textAreaLog;
+
+   /**
+       * Builds the log window and attaches it to the given ServerLog.
+       * @param serverLog the log whose messages are shown
+       */
+   public ServerLogFrame(ServerLog serverLog)   {
+      buildLogFrame();
+      serverLog.addSink(new ServerLog.TextAreaSink(textAreaLog, LOG_WINDOW_LINES));
+   }
+
+   /**
+       * Builds an extended frame that has a text area to display the server log messages 
+       */
+   public void buildLogFrame()   { 
+      textAreaLog = new JTextArea();
+      textAreaLog.setFont(LOG_FONT);
+      //Always show last line
+      DefaultCaret caret = (DefaultCaret)textAreaLog.getCaret();
+      caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
+      setSize(FRAME_WIDTH, FRAME_HEIGHT);
+      setTitle("Server Activity Log");
+      add(new JScrollPane(textAreaLog), BorderLayout.CENTER);
+      setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+      setVisible(true);
+   }
+}
\ No newline at end of file
@@ -0,0 +1,253 @@
+/**
+* ServerMetrics are the measurements taken on the server's hot paths: the games and connections active,
+* the clients accepted, the messages of each command received and sent, the bytes read and written, and
+* histograms of the FIRE to MARK round trip, of each turn and of each game. Recording any of them is a
+* striped add or a lock-free histogram update, cheap enough to do for every message.
+* <p>
+* The metrics are kept in a MetricsRegistry, which export serves in the Prometheus text format over HTTP
+* on the loopback address, at /metrics, and registers with the platform MBeanServer as
+* battleship:type=ServerMetrics.
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.lang.management.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+public class ServerMetrics implements BattleShippable  {
+   /**
+       * The metrics of the server.
+       */
+   public static final ServerMetrics SHARED = new ServerMetrics();
+
+   //Nanoseconds in each unit the histograms are recorded in
+   private static final long NANOS_PER_MICRO = 1000;
+   private static final long NANOS_PER_MILLI = 1000 * 1000;
+
+   private final MetricsRegistry registry;
+   private final LongAdder activeGames;
+   private final LongAdder gamesStarted;
+   private final LongAdder accepted;
+   private final LongAdder suspended;
+   private final LongAdder resumed;
+   private final LongAdder rematches;
+   private final LongAdder lobbyReturns;
+   private final LongAdder bytesIn;
+   private final LongAdder bytesOut;
+   //Messages of each command, by cmd - NAME, and those of unknown commands
+   private final LongAdder[] received;
+   private final LongAdder[] sent;
+   private final LongAdder receivedUnknown;
+   private final LatencyHistogram fireToMark;
+   private final LatencyHistogram turnDuration;
+   private final LatencyHistogram gameDuration;
+
+   /**
+       * Creates ServerMetrics with every metric at 0.
+       */
+   public ServerMetrics()  {
+      registry = new MetricsRegistry();
+      activeGames = registry.gauge("battleship_active_games", "Games being played.");
+      gamesStarted = registry.counter("battleship_games_started_total", "Games started.", "");
+      accepted = registry.counter("battleship_accepted_total", "Clients accepted.", "");
+      suspended = registry.counter("battleship_suspended_total",
+         "Games held for a player whose connection was lost.", "");
+      resumed = registry.counter("battleship_resumed_total",
+         "Players who rejoined their game on a new connection.", "");
+      rematches = registry.counter("battleship_rematches_total",
+         "Games started between the players of a finished game on the same connections.", "");
+      lobbyReturns = registry.counter("battleship_lobby_returns_total",
+         "Players queued for another game on the same connection.", "");
+      bytesIn = registry.counter("battleship_bytes_total", "Bytes read from and written to clients.",
+         "direction=\"in\"");
+      bytesOut = registry.counter("battleship_bytes_total", "Bytes read from and written to clients.",
+         "direction=\"out\"");
+      received = new LongAdder[REMATCH - NAME + 1];
+      sent = new LongAdder[REMATCH - NAME + 1];
+      for (int cmd = NAME; cmd <= REMATCH; cmd++)  {
+         if (clientArgumentBytes(cmd) >= 0)
+            received[cmd - NAME] = registry.counter("battleship_messages_total", "Messages by command.",
+               "cmd=\"" + cmdToString(cmd) + "\",direction=\"in\"");
+         if (serverArgumentBytes(cmd) >= 0)
+            sent[cmd - NAME] = registry.counter("battleship_messages_total", "Messages by command.",
+               "cmd=\"" + cmdToString(cmd) + "\",direction=\"out\"");
+      }
+      receivedUnknown = registry.counter("battleship_messages_total", "Messages by command.",
+         "cmd=\"UNKNOWN\",direction=\"in\"");
+      fireToMark = registry.summary("battleship_fire_to_mark_seconds",
+         "Time from receiving a FIRE to sending its MARK.", new LatencyHistogram(), 1e6);
+      turnDuration = registry.summary("battleship_turn_seconds", "Time each turn lasted.",
+         new LatencyHistogram(), 1e3);
+      gameDuration = registry.summary("battleship_game_seconds", "Time each game lasted.",
+         new LatencyHistogram(), 1e3);
+   }
+
+   /**
+       * @return the registry holding every metric, to which more may be added.
+       */
+   public MetricsRegistry getRegistry()   {
+      return registry;
+   }
+
+   /**
+       * Counts a game starting.
+       */
+   public void gameStarted()  {
+      activeGames.increment();
+      gamesStarted.increment();
+   }
+
+   /**
+       * Counts a game finishing.
+       * @param nanos how long the game lasted, in nanoseconds
+       */
+   public void gameFinished(long nanos)   {
+      activeGames.decrement();
+      gameDuration.record(nanos / NANOS_PER_MILLI);
+   }
+
+   /**
+       * Counts a client being accepted.
+       */
+   public void accepted()  {
+      accepted.increment();
+   }
+
+   /**
+       * Counts a game being held for a player whose connection was lost.
+       */
+   public void suspended() {
+      suspended.increment();
+   }
+
+   /**
+       * Counts a player rejoining their game on a new connection.
+       */
+   public void resumed()   {
+      resumed.increment();
+   }
+
+   /**
+       * Counts a rematch starting on the connections of a finished game.
+       */
+   public void rematch()   {
+      rematches.increment();
+   }
+
+   /**
+       * Counts a player going back to the lobby on the same connection.
+       */
+   public void lobbyReturn()   {
+      lobbyReturns.increment();
+   }
+
+   /**
+       * Counts a command received from a client.
+       * @param cmd the protocol constant value received
+       */
+   public void received(int cmd) {
+      LongAdder counter = cmd >= NAME && cmd <= REMATCH ? received[cmd - NAME] : null;
+      if (counter != null)
+         counter.increment();
+      else
+         receivedUnknown.increment();
+   }
+
+   /**
+       * Counts a command sent to a client.
+       * @param cmd the protocol constant value sent
+       */
+   public void sent(int cmd)  {
+      if (cmd >= NAME && cmd <= REMATCH && sent[cmd - NAME] != null)
+         sent[cmd - NAME].increment();
+   }
+
+   /**
+       * Counts bytes read from clients.
+       * @param bytes the number of bytes
+       */
+   public void bytesIn(long bytes)  {
+      bytesIn.add(bytes);
+   }
+
+   /**
+       * Counts bytes written to clients.
+       * @param bytes the number of bytes
+       */
+   public void bytesOut(long bytes) {
+      bytesOut.add(bytes);
+   }
+
+   /**
+       * Records the time from receiving a FIRE to sending the MARK that answers it.
+       * @param nanos the time taken, in nanoseconds
+       */
+   public void fireToMark(long nanos)  {
+      fireToMark.record(nanos / NANOS_PER_MICRO);
+   }
+
+   /**
+       * Records how long a turn lasted.
+       * @param nanos the length of the turn, in nanoseconds
+       */
+   public void turn(long nanos)  {
+      turnDuration.record(nanos / NANOS_PER_MILLI);
+   }
+
+   /**
+       * Adds the measurements of a Matchmaker: the clients waiting, matched and dropped, and the
+       * time each waited.
+       * @param matchmaker the Matchmaker of the server
+       */
+   public void watch(Matchmaker matchmaker)  {
+      registry.gauge("battleship_waiting_clients", "Clients waiting for an opponent.", matchmaker::getQueueDepth);
+      registry.gauge("battleship_connections", "Clients connected, waiting or playing.",
+         () -> matchmaker.getQueueDepth() + 2 * activeGames.sum());
+      registry.counter("battleship_matched_total", "Clients paired into games.", "", matchmaker::getMatched);
+      registry.counter("battleship_dropped_total", "Clients whose connection closed while waiting.", "",
+         matchmaker::getDropped);
+      registry.summary("battleship_time_to_match_seconds", "Time each client waited for an opponent.",
+         matchmaker.getTimeToMatch(), 1e3);
+      registry.gauge("battleship_pending_timeouts", "Deadlines pending on the timer wheel.",
+         HashedWheelTimer.SHARED::getPending);
+   }
+
+   /**
+       * Serves the metrics over HTTP on the loopback address, unless port is 0, and registers them
+       * with the platform MBeanServer. Problems are reported rather than stopping the server.
+       * @param log the ServerLog that receives messages
+       * @param port the port of the HTTP endpoint, or 0 for none
+       */
+   public void export(ServerLog log, int port)  {
+      if (port > 0)  {
+         try   {
+            HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            http.createContext("/metrics", exchange -> {
+               byte[] body = registry.toPrometheus().getBytes(StandardCharsets.UTF_8);
+               exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+               exchange.sendResponseHeaders(200, body.length);
+               try (OutputStream out = exchange.getResponseBody())   {
+                  out.write(body);
+               }
+            });
+            http.start();
+            log.report("metrics are served at http://localhost:" + port + "/metrics");
+         }
+         catch (IOException e)   {
+            log.report("problems serving metrics " + e.toString());
+         }
+      }
+      try   {
+         ManagementFactory.getPlatformMBeanServer().registerMBean(registry.asMBean(),
+            new ObjectName("battleship:type=ServerMetrics"));
+      }
+      catch (JMException e)   {
+         log.report("problems registering metrics with JMX " + e.toString());
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,261 @@
+/**
+* ServerOptions are the settings a BattleShipServer is started with, read from its line arguments.
+* <p>
+*    headless &mdash; do not build the log window <br>
+*    nio [<em>n</em>] &mdash; multiplex every game over <em>n</em> event loops (by default one per processor) <br>
+*    virtual &mdash; run each game on a virtual thread, which needs Java 21 or later to run the server (it falls
+*    back to platform threads, with a warning, on older versions) <br>
+*    platform &mdash; run each game on a platform thread (the default) <br>
+*    authoritative &mdash; the server resolves every shot itself <br>
+*    match fifo|rating &mdash; pair waiting clients in order of arrival (the default) or by rating <br>
+*    idle <em>s</em> &mdash; end the game of a client answering PING that is silent this long (by default 30) <br>
+*    placement <em>s</em> &mdash; how long both players have to place their ships (by default 600) <br>
+*    turn <em>s</em> &mdash; how long each player has to move before forfeiting (by default 120) <br>
+*    grace <em>s</em> &mdash; how long a game is held for a player whose connection is lost to resume (by default 60) <br>
+*    rematch <em>s</em> &mdash; how long players may ask for a rematch or go back to the lobby on the same
+*    connection once their game has ended, before it is closed (by default 60) <br>
+*    A time of 0 turns that deadline off. <br>
+*    computer <em>s</em> &mdash; give a client waiting this long for an opponent a computer opponent (by default 0, never) <br>
+*    level easy|normal|hard &mdash; how well the computer opponent plays (by default normal) <br>
+*    board <em>rules</em> &mdash; the size of the Grid and the fleet of every game, as read by GameRules.parse,
+*    such as 32:6,5,5,4,4,3,3,3,2,2 (by default the standard game) <br>
+*    journal <em>directory</em>|off &mdash; keep a journal of every game's events in the directory (by default none) <br>
+*    metrics <em>port</em> &mdash; serve the metrics at http://localhost:<em>port</em>/metrics (by default 0, none) <br>
+*    names <em>s</em> &mdash; how long the host name looked up for a client's address is kept (by default 600, 0 to log
+*    only addresses) <br>
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+public class ServerOptions  {
+   private boolean headless;
+   private boolean nio;
+   private int eventLoops;
+   private boolean virtualThreads;
+   private boolean serverResolvesShots;
+   private String matchPolicy;
+   private int idleSeconds;
+   private int placementSeconds;
+   private int turnSeconds;
+   private int graceSeconds;
+   private int rematchSeconds;
+   private int computerSeconds;
+   private int computerLevel;
+   private GameRules rules;
+   private int metricsPort;
+   private String journalDirectory;
+   private int hostNameSeconds;
+
+   /**
+       * Creates ServerOptions with the default settings.
+       */
+   public ServerOptions()   {
+      headless = Boolean.getBoolean("java.awt.headless");
+      nio = false;
+      eventLoops = Runtime.getRuntime().availableProcessors();
+      virtualThreads = false;
+      serverResolvesShots = false;
+      matchPolicy = "fifo";
+      idleSeconds = 30;
+      placementSeconds = 600;
+      turnSeconds = 120;
+      graceSeconds = 60;
+      rematchSeconds = 60;
+      computerSeconds = 0;
+      computerLevel = HuntTargetStrategy.NORMAL;
+      rules = GameRules.STANDARD;
+      metricsPort = 0;
+      journalDirectory = null;
+      hostNameSeconds = 600;
+   }
+
+   /**
+       * Reads ServerOptions from the server's line arguments. Unknown arguments are ignored, and
+       * invalid GameRules are reported and ignored.
+       * @param args line arguments
+       * @return the options given by args
+       */
+   public static ServerOptions parse(String[] args)   {
+      ServerOptions options = new ServerOptions();
+      for (int i = 0; i < args.length; i++)   {
+         String arg = args[i].toLowerCase();
+         boolean hasNumber = i + 1 < args.length && args[i + 1].matches("\\d+");
+         if (arg.equals("headless"))
+            options.headless = true;
+         else if (arg.equals("virtual"))
+            options.virtualThreads = true;
+         else if (arg.equals("platform"))
+            options.virtualThreads = false;
+         else if (arg.equals("authoritative"))
+            options.serverResolvesShots = true;
+         else if (arg.equals("match") && i + 1 < args.length)
+            options.matchPolicy = args[++i].toLowerCase();
+         else if (arg.equals("idle") && hasNumber)
+            options.idleSeconds = Integer.parseInt(args[++i]);
+         else if (arg.equals("placement") && hasNumber)
+            options.placementSeconds = Integer.parseInt(args[++i]);
+         else if (arg.equals("turn") && hasNumber)
+            options.turnSeconds = Integer.parseInt(args[++i]);
+         else if (arg.equals("grace") && hasNumber)
+            options.graceSeconds = Integer.parseInt(args[++i]);
+         else if (arg.equals("rematch") && hasNumber)
+            options.rematchSeconds = Integer.parseInt(args[++i]);
+         else if (arg.equals("computer") && hasNumber)
+            options.computerSeconds = Integer.parseInt(args[++i]);
+         else if (arg.equals("level") && i + 1 < args.length && HuntTargetStrategy.levelNamed(args[i + 1]) >= 0)
+            options.computerLevel = HuntTargetStrategy.levelNamed(args[++i]);
+         else if (arg.equals("board") && i + 1 < args.length)  {
+            try   {
+               options.rules = GameRules.parse(args[++i]);
+            }
+            catch (IllegalArgumentException e)  {
+               System.err.println("Ignoring the board " + args[i] + ": " + e.getMessage());
+            }
+         }
+         else if (arg.equals("metrics") && hasNumber)
+            options.metricsPort = Integer.parseInt(args[++i]);
+         else if (arg.equals("names") && hasNumber)
+            options.hostNameSeconds = Integer.parseInt(args[++i]);
+         else if (arg.equals("journal") && i + 1 < args.length)
+            options.journalDirectory = args[++i].equalsIgnoreCase("off") ? null : args[i];
+         else if (arg.equals("nio"))   {
+            options.nio = true;
+            if (i + 1 < args.length && args[i + 1].matches("\\d+"))
+               options.eventLoops = Integer.parseInt(args[++i]);
+         }
+      }
+      return options;
+   }
+
+   /**
+       * @return true if the server runs without the log window.
+       */
+   public boolean isHeadless()   {
+      return headless;
+   }
+
+   /**
+       * @return true if the games are multiplexed over event loops.
+       */
+   public boolean isNio()  {
+      return nio;
+   }
+
+   /**
+       * @return the number of event loops in nio mode.
+       */
+   public int getEventLoops() {
+      return eventLoops;
+   }
+
+   /**
+       * @return true if each game runs on a virtual thread.
+       */
+   public boolean isVirtualThreads()   {
+      return virtualThreads;
+   }
+
+   /**
+       * @return true if the server resolves every shot rather than relaying them between the clients.
+       */
+   public boolean isServerResolvesShots() {
+      return serverResolvesShots;
+   }
+
+   /**
+       * @return the name of the policy pairing waiting clients, "fifo" or "rating".
+       */
+   public String getMatchPolicy()   {
+      return matchPolicy;
+   }
+
+   /**
+       * @return how long a client answering PING may stay silent, in milliseconds, or 0 for no limit.
+       */
+   public long getIdleMillis()   {
+      return idleSeconds * 1000L;
+   }
+
+   /**
+       * @return how long both players have to place their ships, in milliseconds, or 0 for no limit.
+       */
+   public long getPlacementMillis()   {
+      return placementSeconds * 1000L;
+   }
+
+   /**
+       * @return how long each player has to move, in milliseconds, or 0 for no limit.
+       */
+   public long getTurnMillis()   {
+      return turnSeconds * 1000L;
+   }
+
+   /**
+       * @return how long a game is held for a player whose connection was lost, in milliseconds, or 0
+       * if games are not held.
+       */
+   public long getGraceMillis()   {
+      return graceSeconds * 1000L;
+   }
+
+   /**
+       * @return how long the players of a game which has ended may take to ask for a rematch or go
+       * back to the lobby, in milliseconds, or 0 if the connections are closed with the game.
+       */
+   public long getRematchMillis()   {
+      return rematchSeconds * 1000L;
+   }
+
+   /**
+       * @return how long the host name looked up for a client's address is kept, in milliseconds, or 0
+       * if names are not looked up.
+       */
+   public long getHostNameMillis()  {
+      return hostNameSeconds * 1000L;
+   }
+
+   /**
+       * @return how long a client waits for an opponent before it is given a computer opponent, in
+       * milliseconds, or 0 if it never is.
+       */
+   public long getComputerWaitMillis() {
+      return computerSeconds * 1000L;
+   }
+
+   /**
+       * @return how well the computer opponent plays, one of the levels of HuntTargetStrategy.
+       */
+   public int getComputerLevel() {
+      return computerLevel;
+   }
+
+   /**
+       * @return the size of the Grid and the fleet of every game.
+       */
+   public GameRules getRules()   {
+      return rules;
+   }
+
+   /**
+       * @return the port the metrics are served on, or 0 if they are not.
+       */
+   public int getMetricsPort()   {
+      return metricsPort;
+   }
+
+   /**
+       * @return the directory of the game journal, or null if no journal is kept.
+       */
+   public String getJournalDirectory() {
+      return journalDirectory;
+   }
+
+   /**
+       * Sets whether the server resolves every shot itself.
+       * @param serverResolvesShots whether the server resolves shots
+       */
+   public void setServerResolvesShots(boolean serverResolvesShots)  {
+      this.serverResolvesShots = serverResolvesShots;
+   }
+}
\ No newline at end of file
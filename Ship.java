@@ -72,6 +72,20 @@ public class Ship  {
       spaces[index] = space;
    }
    
+   /**
+       * @return the GridSpace at one end of the Ship.
+       */   
+   public GridSpace getFirstSpace()  {
+      return spaces[0];
+   }
+   
+   /**
+       * @return the GridSpace at the other end of the Ship.
+       */   
+   public GridSpace getLastSpace()  {
+      return spaces[length - 1];
+   }
+   
    /**
        * @return true if the Ship is currently in play, false otherwise.
        */   
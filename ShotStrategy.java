@@ -0,0 +1,29 @@
+/**
+* A ShotStrategy chooses where a computer player fires, one shot at a time, from the results of the shots
+* it has already fired. The same strategy plays for a ComputerPlayer on the server and in a
+* BattleShipSimulation. A strategy is used by one thread at a time and is reused from game to game.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+public interface ShotStrategy  {
+   /**
+       * Forgets every shot, ready for a new game against a full fleet.
+       * @param rules the size of the Grid and the fleet of the game
+       */
+   void newGame(GameRules rules);
+
+   /**
+       * Chooses the next shot.
+       * @return the single digit index of the space to fire at
+       */
+   int nextShot();
+
+   /**
+       * Tells the strategy the result of its last shot.
+       * @param space the single digit index of the space fired at
+       * @param hit whether the shot hit a Ship
+       * @param sunk whether the shot sank the Ship
+       */
+   void shotResult(int space, boolean hit, boolean sunk);
+}
\ No newline at end of file
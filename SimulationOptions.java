@@ -0,0 +1,100 @@
+/**
+* SimulationOptions are the settings BattleShipSimulation is started with, read from its line arguments.
+* <p>
+*    games <em>n</em> &mdash; the number of games to play (by default 1000000) <br>
+*    a <em>strategy</em> &mdash; the strategy of the first player (by default hard) <br>
+*    b <em>strategy</em> &mdash; the strategy of the second player (by default normal) <br>
+*    threads <em>n</em> &mdash; the number of threads the games are spread across (by default one per processor) <br>
+*    board <em>rules</em> &mdash; the size of the Grid and the fleet of every game, as read by GameRules.parse
+*    (by default the standard game) <br>
+*    A strategy is easy, normal or hard, the levels of HuntTargetStrategy, or the name of a class
+*    implementing ShotStrategy with a public constructor taking a java.util.Random. <br>
+* </p>
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+public class SimulationOptions  {
+   private long games;
+   private String strategyA;
+   private String strategyB;
+   private int threads;
+   private GameRules rules;
+
+   /**
+       * Creates SimulationOptions with the default settings.
+       */
+   public SimulationOptions() {
+      games = 1000000;
+      strategyA = "hard";
+      strategyB = "normal";
+      threads = Runtime.getRuntime().availableProcessors();
+      rules = GameRules.STANDARD;
+   }
+
+   /**
+       * Reads SimulationOptions from the line arguments. Unknown arguments, and settings missing their
+       * value, are ignored.
+       * @param args line arguments
+       * @return the options given by args
+       */
+   public static SimulationOptions parse(String[] args)  {
+      SimulationOptions options = new SimulationOptions();
+      for (int i = 0; i < args.length; i++)   {
+         String arg = args[i].toLowerCase();
+         boolean hasNumber = i + 1 < args.length && args[i + 1].matches("\\d+");
+         if (arg.equals("games") && hasNumber)
+            options.games = Long.parseLong(args[++i]);
+         else if (arg.equals("a") && i + 1 < args.length)
+            options.strategyA = args[++i];
+         else if (arg.equals("b") && i + 1 < args.length)
+            options.strategyB = args[++i];
+         else if (arg.equals("threads") && hasNumber)
+            options.threads = Math.max(1, Integer.parseInt(args[++i]));
+         else if (arg.equals("board") && i + 1 < args.length)  {
+            try   {
+               options.rules = GameRules.parse(args[++i]);
+            }
+            catch (IllegalArgumentException e)  {
+               System.err.println("Ignoring the board " + args[i] + ": " + e.getMessage());
+            }
+         }
+      }
+      return options;
+   }
+
+   /**
+       * @return the number of games to play.
+       */
+   public long getGames()  {
+      return games;
+   }
+
+   /**
+       * @return the name of the first player's strategy.
+       */
+   public String getStrategyA()  {
+      return strategyA;
+   }
+
+   /**
+       * @return the name of the second player's strategy.
+       */
+   public String getStrategyB()  {
+      return strategyB;
+   }
+
+   /**
+       * @return the number of threads the games are spread across.
+       */
+   public int getThreads() {
+      return threads;
+   }
+
+   /**
+       * @return the size of the Grid and the fleet of every game.
+       */
+   public GameRules getRules()   {
+      return rules;
+   }
+}
\ No newline at end of file
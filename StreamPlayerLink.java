@@ -0,0 +1,55 @@
+/**
+* A StreamPlayerLink sends the server's commands to a client over the OutputStream of an already
+* opened socket. Commands are encoded into a pooled buffer until flush is called, so each batch of
+* commands leaves in a single write, and Nagle's algorithm is turned off so that the write is sent at once.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+public class StreamPlayerLink extends BufferedPlayerLink  {
+   private Socket socket;
+   private OutputStream toClient;
+
+   /**
+       * Creates a StreamPlayerLink which writes to the given socket.
+       * @param socket a socket that is opened already
+       * @throws IOException if the socket's output stream cannot be opened
+       */
+   public StreamPlayerLink(Socket socket) throws IOException   {
+      this.socket = socket;
+      socket.setTcpNoDelay(true);
+      toClient = socket.getOutputStream();
+   }
+
+   @Override
+   public void flush() throws IOException   {
+      ByteBuffer out = getOutput();
+      if (out.position() > 0) {
+         toClient.write(out.array(), out.arrayOffset(), out.position());
+         ServerMetrics.SHARED.bytesOut(out.position());
+         out.clear();
+      }
+   }
+
+   /**
+       * Gives the buffer back to the pool without closing the socket, once the connection has been
+       * handed on to be paired again.
+       */
+   public void detach() {
+      releaseOutput();
+   }
+
+   @Override
+   public void close() throws IOException   {
+      try   {
+         flush();
+      }
+      finally  {
+         releaseOutput();
+         socket.close();
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,243 @@
+/**
+* A CodecWorkload encodes or decodes a single command of the BattleShippable protocol, bare or framed, the
+* way each side does it. Commands sent by the server are encoded by a BufferedPlayerLink and decoded with a
+* DataInputStream as BattleShipClient reads them; commands sent by a client are encoded with a
+* DataOutputStream as BattleShipClient writes them and decoded from a ByteBuffer as the selector based
+* server reads them. Its parameters are the side sending the command ("server" or "client"), the name of
+* the command, "bare" or "framed", and "encode" or "decode".
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import battleship.bench.Workload;
+import java.io.*;
+import java.nio.*;
+public class CodecWorkload implements Workload, BattleShippable  {
+   private boolean fromServer;
+   private int cmd;
+   private boolean framed;
+   private boolean encode;
+   //Encoding the commands of each side
+   private BenchLink link;
+   private ByteArrayOutputStream wire;
+   private DataOutputStream toServer;
+   private ByteArrayOutputStream frameOut;
+   private DataOutputStream frameBody;
+   //Decoding an encoded command on each side
+   private ByteArrayInputStream source;
+   private DataInputStream fromSource;
+   private FrameCodec.FrameInput frameIn;
+   private ByteBuffer in;
+
+   /**
+       * A BufferedPlayerLink whose flush throws the encoded commands away.
+       */
+   private static class BenchLink extends BufferedPlayerLink  {
+      @Override
+      public void flush()  {
+         getOutput().clear();
+      }
+
+      @Override
+      public void close()  {
+         releaseOutput();
+      }
+   }
+
+   @Override
+   public void setUp(String... params) throws Exception  {
+      fromServer = params[0].equals("server");
+      cmd = BattleShippable.class.getField(params[1]).getInt(null);
+      framed = params[2].equals("framed");
+      encode = params[3].equals("encode");
+      link = new BenchLink();
+      wire = new ByteArrayOutputStream();
+      toServer = new DataOutputStream(wire);
+      frameOut = new ByteArrayOutputStream();
+      frameBody = new DataOutputStream(frameOut);
+      if (framed)
+         link.sendHello(FrameCodec.VERSION);
+      link.flush();
+      byte[] encoded = encodeOnce();
+      source = new ByteArrayInputStream(encoded);
+      fromSource = new DataInputStream(source);
+      frameIn = new FrameCodec.FrameInput();
+      in = ByteBuffer.wrap(encoded);
+   }
+
+   @Override
+   public int run() throws IOException {
+      if (encode)
+         return fromServer ? encodeServerCommand() : encodeClientCommand();
+      return fromServer ? decodeServerCommand() : decodeClientCommand();
+   }
+
+   /**
+       * @return the bytes of the command as sent.
+       * @throws IOException if the command cannot be encoded
+       */
+   private byte[] encodeOnce() throws IOException  {
+      if (!fromServer)  {
+         encodeClientCommand();
+         return wire.toByteArray();
+      }
+      sendServerCommand();
+      ByteBuffer out = link.getOutput();
+      byte[] encoded = new byte[out.position()];
+      out.flip();
+      out.get(encoded);
+      out.clear();
+      return encoded;
+   }
+
+   /**
+       * Encodes the command through the BufferedPlayerLink.
+       * @return the number of bytes encoded
+       * @throws IOException if the command cannot be encoded
+       */
+   private int encodeServerCommand() throws IOException  {
+      sendServerCommand();
+      int bytes = link.getOutput().position();
+      link.flush();
+      return bytes;
+   }
+
+   /**
+       * Sends the command with typical arguments through the BufferedPlayerLink.
+       * @throws IOException if the command cannot be encoded
+       */
+   private void sendServerCommand() throws IOException   {
+      switch (cmd)   {
+         case NAME:
+            link.sendName(1);
+            break;
+         case FIRE:
+            link.sendFire(42);
+            break;
+         case MARK:
+            link.sendMark(42, true, false);
+            break;
+         case TURN:
+            link.sendTurn(true);
+            break;
+         case GAME_OVER:
+            link.sendGameOver(1);
+            break;
+         case DONE:
+            link.sendDone();
+            break;
+         case QUIT_SHIP:
+            link.sendQuitShip(1);
+            break;
+         case AUTHORITATIVE:
+            link.sendAuthoritative();
+            break;
+         default:
+            throw new IllegalArgumentException(cmdToString(cmd) + " is not sent by the server");
+      }
+   }
+
+   /**
+       * Encodes the command with typical arguments as BattleShipClient does, as a frame if framed.
+       * @return the number of bytes encoded
+       * @throws IOException if the command cannot be encoded
+       */
+   private int encodeClientCommand() throws IOException  {
+      wire.reset();
+      DataOutputStream msg = toServer;
+      if (framed) {
+         frameOut.reset();
+         frameBody.writeByte(FrameCodec.VERSION);
+         frameBody.writeInt(cmd);
+         msg = frameBody;
+      }
+      else
+         toServer.writeInt(cmd);
+      switch (cmd)   {
+         case CONFIRM_SHIPS:
+            msg.writeBoolean(true);
+            break;
+         case CONFIRM_FLEET:
+            for (int i = 0; i < NUM_SHIPS; i++) {
+               msg.writeInt(PlacementWorkload.FLEET[i][0]);
+               msg.writeInt(PlacementWorkload.FLEET[i][1]);
+            }
+            break;
+         case FIRE:
+            msg.writeInt(1);
+            msg.writeInt(42);
+            break;
+         case SUCCESS:
+            msg.writeInt(1);
+            msg.writeInt(42);
+            msg.writeBoolean(true);
+            msg.writeBoolean(false);
+            break;
+         case TURN:
+         case WIN:
+         case QUIT_SHIP:
+         case QUIT:
+            msg.writeInt(0);
+            break;
+         default:
+            throw new IllegalArgumentException(cmdToString(cmd) + " is not sent by a client");
+      }
+      if (framed) {
+         toServer.writeInt(frameOut.size());
+         frameOut.writeTo(toServer);
+      }
+      toServer.flush();
+      return wire.size();
+   }
+
+   /**
+       * Decodes the command as BattleShipClient does.
+       * @return a sum of the command and its arguments
+       * @throws IOException if the command cannot be decoded
+       */
+   private int decodeServerCommand() throws IOException  {
+      source.reset();
+      int received;
+      DataInputStream args;
+      if (framed) {
+         received = frameIn.load(fromSource, FrameCodec.VERSION);
+         args = frameIn.getData();
+      }
+      else  {
+         received = fromSource.readInt();
+         args = fromSource;
+      }
+      int sum = received;
+      int length = serverArgumentBytes(received);
+      for (int i = 0; i < length / 4; i++)
+         sum += args.readInt();
+      for (int i = 0; i < length % 4; i++)
+         sum += args.readByte();
+      return sum;
+   }
+
+   /**
+       * Decodes the command as the selector based server does.
+       * @return a sum of the command and its arguments
+       * @throws IOException if the command cannot be decoded
+       */
+   private int decodeClientCommand() throws IOException  {
+      in.rewind();
+      int received;
+      if (framed) {
+         if (FrameCodec.completeFrame(in) < 0)
+            return -1;
+         in.position(in.position() + 5);
+         received = in.getInt();
+      }
+      else
+         received = in.getInt();
+      int sum = received;
+      int length = clientArgumentBytes(received);
+      for (int i = 0; i < length / 4; i++)
+         sum += in.getInt();
+      for (int i = 0; i < length % 4; i++)
+         sum += in.get();
+      return sum;
+   }
+}
\ No newline at end of file
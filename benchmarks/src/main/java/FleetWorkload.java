@@ -0,0 +1,48 @@
+/**
+* A FleetWorkload exercises the PlacementTables. With "random" it draws a whole random fleet onto a Board,
+* as BattleShipBots and the client's auto-place do; with "validate" it checks one of a set of uploaded
+* fleets, half of them with an overlapping Ship, by placing it on an empty Board as the server does with
+* CONFIRM_FLEET.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import battleship.bench.Workload;
+import java.util.*;
+public class FleetWorkload implements Workload, BattleShippable  {
+   //Number of fleets validated in turn, a power of two
+   private static final int FLEETS = 1024;
+
+   private boolean validate;
+   private Board board;
+   private Random random;
+   private int[][] fleets;
+   private int next;
+
+   @Override
+   public void setUp(String... params)   {
+      validate = params.length > 0 && params[0].equals("validate");
+      board = new Board();
+      random = new Random(42);
+      fleets = new int[FLEETS][2 * NUM_SHIPS];
+      for (int i = 0; i < FLEETS; i++)   {
+         board.clear();
+         PlacementTable.placeRandomFleet(board, fleets[i], random);
+         if (i % 2 == 1)   {
+            fleets[i][2 * NUM_SHIPS - 2] = fleets[i][0];
+            fleets[i][2 * NUM_SHIPS - 1] = fleets[i][0] + (fleets[i][1] - fleets[i][0]) / (SHIP_LENGTHS[0] - 1);
+         }
+      }
+   }
+
+   @Override
+   public int run()   {
+      if (validate)  {
+         next = (next + 1) & (FLEETS - 1);
+         board.clear();
+         return PlacementTable.placeFleet(board, fleets[next]) ? 1 : 0;
+      }
+      board.clear();
+      return PlacementTable.placeRandomFleet(board, null, random) ? 1 : 0;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,87 @@
+/**
+* A PipedSocket is one end of an in-memory connection made of two pairs of piped streams, so that a
+* BattleShipGame can be run without the network. Every write is flushed through the pipe at once, as a
+* socket with Nagle's algorithm turned off would send it, and the writes are counted.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.atomic.*;
+public class PipedSocket extends Socket  {
+   //Bytes each pipe holds before a write blocks
+   private static final int PIPE_SIZE = 4096;
+
+   private final PipedInputStream in;
+   private final PipedOutputStream pipeOut;
+   private final OutputStream out;
+   private final AtomicLong writes;
+
+   /**
+       * Creates an end which is not yet connected.
+       */
+   private PipedSocket()   {
+      in = new PipedInputStream(PIPE_SIZE);
+      pipeOut = new PipedOutputStream();
+      writes = new AtomicLong();
+      out = new FilterOutputStream(pipeOut)  {
+         @Override
+         public void write(byte[] b, int off, int len) throws IOException  {
+            writes.incrementAndGet();
+            pipeOut.write(b, off, len);
+            pipeOut.flush();
+         }
+
+         @Override
+         public void write(int b) throws IOException   {
+            write(new byte[] { (byte)b }, 0, 1);
+         }
+      };
+   }
+
+   /**
+       * Creates both ends of a connection.
+       * @return the two ends, each reading what the other writes
+       * @throws IOException if the pipes cannot be connected
+       */
+   public static PipedSocket[] pair() throws IOException  {
+      PipedSocket a = new PipedSocket();
+      PipedSocket b = new PipedSocket();
+      a.pipeOut.connect(b.in);
+      b.pipeOut.connect(a.in);
+      return new PipedSocket[] { a, b };
+   }
+
+   /**
+       * @return the number of writes made to this end so far.
+       */
+   public long getWrites() {
+      return writes.get();
+   }
+
+   @Override
+   public InputStream getInputStream() {
+      return in;
+   }
+
+   @Override
+   public OutputStream getOutputStream()  {
+      return out;
+   }
+
+   @Override
+   public void setTcpNoDelay(boolean on)  {
+   }
+
+   @Override
+   public synchronized void close() throws IOException  {
+      try   {
+         pipeOut.close();
+         in.close();
+      }
+      finally  {
+         super.close();
+      }
+   }
+}
\ No newline at end of file
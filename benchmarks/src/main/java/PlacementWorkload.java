@@ -0,0 +1,73 @@
+/**
+* A PlacementWorkload places Ships on a Grid through Grid.setSpace, as clicking two spaces does. With
+* "valid" every Ship of the fleet is removed and placed again each run; with "overlapping" a Ship is tried
+* on spaces which are already occupied, so only the validation is measured.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import battleship.bench.Workload;
+import javax.swing.JLabel;
+public class PlacementWorkload implements Workload, BattleShippable  {
+   /**
+       * The two ends of each Ship of the fleet placed by the workloads.
+       */
+   public static final int[][] FLEET = { {0, 4}, {10, 13}, {20, 22}, {30, 32}, {40, 41} };
+
+   //A column crossing every Ship of FLEET
+   private static final int OVERLAP_START = 2;
+   private static final int OVERLAP_END = 42;
+
+   private Grid grid;
+   private boolean overlapping;
+
+   @Override
+   public void setUp(String... params)   {
+      overlapping = params.length > 0 && params[0].equals("overlapping");
+      grid = new Grid(new JLabel());
+      if (overlapping)
+         placeFleet(grid);
+   }
+
+   @Override
+   public int run()   {
+      if (overlapping)
+         return place(grid, 0, OVERLAP_START, OVERLAP_END).isSet() ? 1 : 0;
+      int placed = 0;
+      for (int i = 0; i < NUM_SHIPS; i++)  {
+         grid.removeShip(i);
+         if (place(grid, i, FLEET[i][0], FLEET[i][1]).isSet())
+            placed++;
+      }
+      return placed;
+   }
+
+   /**
+       * Places every Ship of FLEET on a Grid.
+       * @param grid an empty Grid
+       * @return the Ships placed
+       */
+   public static Ship[] placeFleet(Grid grid)   {
+      Ship[] ships = new Ship[NUM_SHIPS];
+      for (int i = 0; i < NUM_SHIPS; i++)
+         ships[i] = place(grid, i, FLEET[i][0], FLEET[i][1]);
+      return ships;
+   }
+
+   /**
+       * Tries to place a new Ship between two spaces by selecting both of them.
+       * @param grid the Grid to place the Ship on
+       * @param index the index of the Ship
+       * @param start the single digit index of one end
+       * @param end the single digit index of the other end
+       * @return the Ship, which is set if it was placed
+       */
+   private static Ship place(Grid grid, int index, int start, int end)   {
+      Ship ship = new Ship(SHIP_LENGTHS[index]);
+      grid.setCurrentShip(ship);
+      grid.setShipIndex(index);
+      grid.setSpace(grid.getSpace(start));
+      grid.setSpace(grid.getSpace(end));
+      return ship;
+   }
+}
\ No newline at end of file
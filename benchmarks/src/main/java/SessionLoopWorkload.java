@@ -0,0 +1,180 @@
+/**
+* A SessionLoopWorkload plays a whole game through a BattleShipGame over PipedSockets, from NAME to
+* GAME_OVER. Both clients are played by the calling thread: player 0 fires at every space of player 1's
+* fleet while player 1 misses, each client keeping its own Board to answer with. With "relay" the clients
+* resolve the shots, as older clients do; with "authoritative" they upload their fleets and the server
+* resolves them. The writes made by the server are counted, to give the writes per turn.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import battleship.bench.Workload;
+import java.io.*;
+public class SessionLoopWorkload implements Workload, BattleShippable  {
+   private ServerLog serverLog;
+   private GameThreads gameThreads;
+   private ServerOptions options;
+   private boolean authoritative;
+   private int gameNumber;
+   private long writes;
+   private long turns;
+   //Each client's streams and copy of its own fleet
+   private DataInputStream[] fromServer;
+   private DataOutputStream[] toServer;
+   private Board[] boards;
+   private byte[] skipped;
+
+   @Override
+   public void setUp(String... params)   {
+      authoritative = params.length > 0 && params[0].equals("authoritative");
+      serverLog = new ServerLog();
+      gameThreads = new GameThreads(false);
+      options = new ServerOptions();
+      options.setServerResolvesShots(authoritative);
+      fromServer = new DataInputStream[2];
+      toServer = new DataOutputStream[2];
+      boards = new Board[2];
+      skipped = new byte[FrameCodec.MAX_FRAME_BYTES];
+   }
+
+   @Override
+   public long getWrites() {
+      return writes;
+   }
+
+   @Override
+   public long getTurns()  {
+      return turns;
+   }
+
+   @Override
+   public int run() throws Exception   {
+      PipedSocket[] player0 = PipedSocket.pair();
+      PipedSocket[] player1 = PipedSocket.pair();
+      BattleShipGame game = new BattleShipGame(player0[0], player1[0], serverLog, ++gameNumber,
+         gameThreads, options);
+      Thread gameThread = new Thread(game);
+      gameThread.start();
+      PipedSocket[] clients = { player0[1], player1[1] };
+      for (int p = 0; p < 2; p++)   {
+         fromServer[p] = new DataInputStream(new BufferedInputStream(clients[p].getInputStream()));
+         toServer[p] = new DataOutputStream(new BufferedOutputStream(clients[p].getOutputStream()));
+         boards[p] = new Board();
+         for (int i = 0; i < NUM_SHIPS; i++)
+            boards[p].placeShip(i, PlacementWorkload.FLEET[i][0], PlacementWorkload.FLEET[i][1],
+               SHIP_LENGTHS[i]);
+      }
+      try   {
+         for (int p = 0; p < 2; p++)
+            confirm(p);
+         for (int p = 0; p < 2; p++)
+            next(p, TURN);
+         int shots = 0;
+         int miss = Board.SPACES - 1;
+         while (true)   {
+            int hit = nextOccupied(1);
+            turns++;
+            if (fire(0, hit))
+               break;
+            turns++;
+            fire(1, miss--);
+            shots++;
+         }
+         return shots;
+      }
+      finally  {
+         clients[0].close();
+         clients[1].close();
+         gameThread.join();
+         writes += player0[0].getWrites() + player1[0].getWrites();
+      }
+   }
+
+   /**
+       * Confirms a client's ships, uploading its fleet if the server resolves shots.
+       * @param p the player confirming
+       * @throws IOException if there is a communication error between server/client
+       */
+   private void confirm(int p) throws IOException  {
+      if (authoritative)   {
+         toServer[p].writeInt(CONFIRM_FLEET);
+         for (int i = 0; i < NUM_SHIPS; i++) {
+            toServer[p].writeInt(PlacementWorkload.FLEET[i][0]);
+            toServer[p].writeInt(PlacementWorkload.FLEET[i][1]);
+         }
+      }
+      else  {
+         toServer[p].writeInt(CONFIRM_SHIPS);
+         toServer[p].writeBoolean(true);
+      }
+      toServer[p].flush();
+   }
+
+   /**
+       * @param p a player
+       * @return the lowest occupied space of the player's fleet which has not been fired at
+       */
+   private int nextOccupied(int p)  {
+      for (int i = 0; i < Board.SPACES; i++)  {
+         if (boards[p].isOccupied(i) && !boards[p].isShot(i))
+            return i;
+      }
+      return -1;
+   }
+
+   /**
+       * Plays one turn: the attacker fires, the defender answers if the clients resolve shots, and
+       * the attacker answers the MARK with TURN or WIN. Both clients then read the next TURN, or the
+       * GAME_OVER that ends the game.
+       * @param attacker the player whose turn it is
+       * @param space the single digit index of the space fired at
+       * @return true if the game is over
+       * @throws IOException if there is a communication error between server/client
+       */
+   private boolean fire(int attacker, int space) throws IOException   {
+      int defender = 1 - attacker;
+      toServer[attacker].writeInt(FIRE);
+      toServer[attacker].writeInt(defender);
+      toServer[attacker].writeInt(space);
+      toServer[attacker].flush();
+      next(defender, FIRE);
+      int result = boards[defender].fire(space);
+      if (!authoritative)  {
+         toServer[defender].writeInt(SUCCESS);
+         toServer[defender].writeInt(defender);
+         toServer[defender].writeInt(space);
+         toServer[defender].writeBoolean(result != Board.MISS);
+         toServer[defender].writeBoolean(result == Board.SUNK);
+         toServer[defender].flush();
+      }
+      next(attacker, MARK);
+      if (!authoritative)  {
+         toServer[attacker].writeInt(boards[defender].allSunk() ? WIN : TURN);
+         toServer[attacker].writeInt(attacker);
+         toServer[attacker].flush();
+      }
+      boolean over = next(attacker, TURN) == GAME_OVER;
+      next(defender, TURN);
+      return over;
+   }
+
+   /**
+       * Reads a client's commands until the one wanted, or GAME_OVER, skipping any others such as
+       * AUTHORITATIVE and FRAMING.
+       * @param p the player reading
+       * @param wanted the protocol constant value waited for
+       * @return wanted or GAME_OVER
+       * @throws IOException if there is a communication error or an unknown command is read
+       */
+   private int next(int p, int wanted) throws IOException   {
+      while (true)   {
+         int cmd = fromServer[p].readInt();
+         int length = serverArgumentBytes(cmd);
+         if (length < 0)
+            throw new IOException("unexpected command " + cmd);
+         fromServer[p].readFully(skipped, 0, length);
+         if (cmd == wanted || cmd == GAME_OVER)
+            return cmd;
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,32 @@
+/**
+* A ShipLookupWorkload asks the Aircraft Carrier of a placed fleet, which has been hit on every space but
+* one, whether it is sunk ("isSunk") or whether it is at each space of the Grid in turn ("atSpace").
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import battleship.bench.Workload;
+import javax.swing.JLabel;
+public class ShipLookupWorkload implements Workload, BattleShippable  {
+   private Grid grid;
+   private Ship ship;
+   private boolean atSpace;
+   private int next;
+
+   @Override
+   public void setUp(String... params)   {
+      atSpace = params.length > 0 && params[0].equals("atSpace");
+      grid = new Grid(new JLabel());
+      ship = PlacementWorkload.placeFleet(grid)[0];
+      for (int i = 0; i < SHIP_LENGTHS[0] - 1; i++)
+         grid.getSpace(i).setOutOfPlay();
+   }
+
+   @Override
+   public int run()   {
+      if (!atSpace)
+         return ship.isSunk() ? 1 : 0;
+      next = (next + 1) % Board.SPACES;
+      return ship.atSpace(grid.getSpace(next)) ? 1 : 0;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+/**
+* A ShipStatusWorkload makes the check BattleShipClient.checkShipStatus makes when it is fired at, on each
+* space of a Grid in turn. The fleet is placed and the Destroyer is sunk, so spaces with no Ship, with a
+* Ship afloat and with a sunk Ship are all checked.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import battleship.bench.Workload;
+import javax.swing.JLabel;
+public class ShipStatusWorkload implements Workload, BattleShippable  {
+   private Grid grid;
+   private int next;
+
+   @Override
+   public void setUp(String... params)   {
+      grid = new Grid(new JLabel());
+      PlacementWorkload.placeFleet(grid);
+      int[] destroyer = PlacementWorkload.FLEET[NUM_SHIPS - 1];
+      for (int i = destroyer[0]; i <= destroyer[1]; i++)
+         grid.getSpace(i).setOutOfPlay();
+   }
+
+   @Override
+   public int run()   {
+      next = (next + 1) % Board.SPACES;
+      return grid.isShipSunk(grid.getSpace(next)) ? 1 : 0;
+   }
+}
\ No newline at end of file
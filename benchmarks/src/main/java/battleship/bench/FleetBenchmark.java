@@ -0,0 +1,37 @@
+/**
+* Measures the PlacementTables: drawing a random fleet onto a Board, and validating an uploaded fleet.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+package battleship.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FleetBenchmark  {
+   private Workload random;
+   private Workload validate;
+
+   @Setup
+   public void setUp() throws Exception   {
+      random = Workload.load("FleetWorkload", "random");
+      validate = Workload.load("FleetWorkload", "validate");
+   }
+
+   @Benchmark
+   public int randomFleet() throws Exception {
+      return random.run();
+   }
+
+   @Benchmark
+   public int validateFleet() throws Exception  {
+      return validate.run();
+   }
+}
\ No newline at end of file
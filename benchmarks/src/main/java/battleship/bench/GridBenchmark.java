@@ -0,0 +1,34 @@
+/**
+* Measures placing the fleet on a Grid with Grid.setShip, which validates each placement against the Board
+* and redraws the Grid, and rejecting a placement which overlaps Ships already placed.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+package battleship.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmark  {
+   @Param({ "valid", "overlapping" })
+   public String placement;
+
+   private Workload workload;
+
+   @Setup
+   public void setUp() throws Exception   {
+      workload = Workload.load("PlacementWorkload", placement);
+   }
+
+   @Benchmark
+   public int setShip() throws Exception  {
+      return workload.run();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,44 @@
+/**
+* Measures encoding each command the server sends, as a BufferedPlayerLink does, and decoding it, as
+* BattleShipClient does, both bare and framed.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+package battleship.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerCodecBenchmark  {
+   @Param({ "NAME", "FIRE", "MARK", "TURN", "GAME_OVER", "DONE", "QUIT_SHIP", "AUTHORITATIVE" })
+   public String cmd;
+
+   @Param({ "bare", "framed" })
+   public String encoding;
+
+   private Workload encoder;
+   private Workload decoder;
+
+   @Setup
+   public void setUp() throws Exception   {
+      encoder = Workload.load("CodecWorkload", "server", cmd, encoding, "encode");
+      decoder = Workload.load("CodecWorkload", "server", cmd, encoding, "decode");
+   }
+
+   @Benchmark
+   public int encode() throws Exception   {
+      return encoder.run();
+   }
+
+   @Benchmark
+   public int decode() throws Exception   {
+      return decoder.run();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+/**
+* Measures a whole game played through a BattleShipGame over in-memory piped streams, with the clients
+* resolving shots or the server resolving them. The writes the server makes and the turns played are
+* reported with the results, their ratio being the writes per turn.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+package battleship.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionLoopBenchmark  {
+   @Param({ "relay", "authoritative" })
+   public String mode;
+
+   private Workload workload;
+
+   /**
+       * Counts the writes made by the server and the turns played in each iteration.
+       */
+   @State(Scope.Thread)
+   @AuxCounters(AuxCounters.Type.EVENTS)
+   public static class Counters  {
+      public long writes;
+      public long turns;
+
+      @Setup(Level.Iteration)
+      public void clear()  {
+         writes = 0;
+         turns = 0;
+      }
+   }
+
+   @Setup
+   public void setUp() throws Exception   {
+      workload = Workload.load("SessionLoopWorkload", mode);
+   }
+
+   @Benchmark
+   public int game(Counters counters) throws Exception  {
+      long writes = workload.getWrites();
+      long turns = workload.getTurns();
+      int shots = workload.run();
+      counters.writes += workload.getWrites() - writes;
+      counters.turns += workload.getTurns() - turns;
+      return shots;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,38 @@
+/**
+* Measures the lookups made on a Ship: Ship.isSunk on a Ship which is still afloat, and Ship.atSpace for
+* each space of the Grid.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+package battleship.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShipBenchmark {
+   private Workload isSunk;
+   private Workload atSpace;
+
+   @Setup
+   public void setUp() throws Exception   {
+      isSunk = Workload.load("ShipLookupWorkload", "isSunk");
+      atSpace = Workload.load("ShipLookupWorkload", "atSpace");
+   }
+
+   @Benchmark
+   public int isSunk() throws Exception   {
+      return isSunk.run();
+   }
+
+   @Benchmark
+   public int atSpace() throws Exception  {
+      return atSpace.run();
+   }
+}
\ No newline at end of file
@@ -0,0 +1,31 @@
+/**
+* Measures the check BattleShipClient.checkShipStatus makes on every FIRE it receives. The client is a
+* JFrame, which cannot be created without a display, so the Grid.isShipSunk it delegates to is measured.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+package battleship.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShipStatusBenchmark   {
+   private Workload workload;
+
+   @Setup
+   public void setUp() throws Exception   {
+      workload = Workload.load("ShipStatusWorkload");
+   }
+
+   @Benchmark
+   public int checkShipStatus() throws Exception  {
+      return workload.run();
+   }
+}
\ No newline at end of file
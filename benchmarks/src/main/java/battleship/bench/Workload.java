@@ -0,0 +1,53 @@
+/**
+* A Workload is one operation being measured. The game's classes are in the unnamed package, which a JMH
+* benchmark can neither be in nor refer to, so each benchmark loads the workload it measures by name and
+* calls it through this interface. A forked benchmark only ever loads one implementation, so the call is
+* monomorphic and is inlined like a direct call.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+package battleship.bench;
+
+public interface Workload  {
+   /**
+       * Prepares the workload before it is measured.
+       * @param params the settings of the workload, which depend on the workload
+       * @throws Exception if the workload cannot be prepared
+       */
+   void setUp(String... params) throws Exception;
+
+   /**
+       * Runs the operation being measured once.
+       * @return a value depending on the work done, so that it cannot be optimized away
+       * @throws Exception if the operation fails
+       */
+   int run() throws Exception;
+
+   /**
+       * @return the number of writes made to the network since the workload was set up.
+       */
+   default long getWrites()   {
+      return 0;
+   }
+
+   /**
+       * @return the number of turns played since the workload was set up.
+       */
+   default long getTurns() {
+      return 0;
+   }
+
+   /**
+       * Creates and prepares the workload with the given class name.
+       * @param name the name of a class in the unnamed package which implements Workload
+       * @param params the settings of the workload
+       * @return the prepared workload
+       * @throws Exception if the workload cannot be created or prepared
+       */
+   static Workload load(String name, String... params) throws Exception  {
+      Workload workload = (Workload)Class.forName(name).getDeclaredConstructor().newInstance();
+      workload.setUp(params);
+      return workload;
+   }
+}
\ No newline at end of file
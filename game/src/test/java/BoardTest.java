@@ -0,0 +1,88 @@
+/**
+* Tests Board: placing and removing Ships, and the result of firing at a space.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+public class BoardTest implements BattleShippable  {
+   private static final int[] FLEET = { 0, 4, 10, 13, 20, 22, 30, 32, 40, 41 };
+
+   @Test
+   public void placesShipsOnlyOnFreeSpaces() {
+      Board board = new Board();
+      assertTrue(board.placeShip(0, 4, 0, 5));
+      assertTrue(board.isPlaced(0));
+      assertEquals(0, board.shipAt(2));
+      assertFalse(board.placeShip(1, 2, 32, 4));
+      assertFalse(board.isPlaced(1));
+      assertFalse(board.placeShip(1, 7, 11, 4));
+      assertFalse(board.placeShip(1, 2, 32, 3));
+      assertTrue(board.placeShip(1, 12, 32, 3));
+      assertEquals(-1, board.shipAt(5));
+   }
+
+   @Test
+   public void freesTheSpacesOfARemovedShip()  {
+      Board board = new Board();
+      assertTrue(PlacementTable.placeFleet(board, FLEET));
+      board.removeShip(0);
+      assertFalse(board.isPlaced(0));
+      for (int s = 0; s < 5; s++)   {
+         assertFalse(board.isOccupied(s));
+         assertEquals(-1, board.shipAt(s));
+      }
+      assertTrue(board.placeShip(0, 50, 90, 5));
+      board.clear();
+      for (int s = 0; s < Board.SPACES; s++)
+         assertFalse(board.isOccupied(s));
+   }
+
+   @Test
+   public void firesHitSinkAndMiss()   {
+      Board board = new Board();
+      assertTrue(PlacementTable.placeFleet(board, FLEET));
+      assertEquals(NUM_SHIPS, board.shipsRemaining());
+      assertEquals(Board.MISS, board.fire(99));
+      assertEquals(Board.REPEAT, board.fire(99));
+      assertEquals(Board.HIT, board.fire(40));
+      assertEquals(Board.REPEAT, board.fire(40));
+      assertFalse(board.isSunk(4));
+      assertEquals(Board.SUNK, board.fire(41));
+      assertTrue(board.isSunk(4));
+      assertEquals(NUM_SHIPS - 1, board.shipsRemaining());
+      assertFalse(board.allSunk());
+   }
+
+   @Test
+   public void sinksTheWholeFleet()   {
+      Board board = new Board();
+      assertTrue(PlacementTable.placeFleet(board, FLEET));
+      int sunk = 0;
+      for (int s = 0; s < Board.SPACES; s++) {
+         int result = board.fire(s);
+         assertNotEquals(Board.REPEAT, result);
+         assertEquals(board.isOccupied(s), result != Board.MISS);
+         if (result == Board.SUNK)
+            sunk++;
+      }
+      assertEquals(NUM_SHIPS, sunk);
+      assertTrue(board.allSunk());
+      assertEquals(0, board.shipsRemaining());
+   }
+
+   @Test
+   public void firesOnLargerGrids()   {
+      GameRules rules = GameRules.parse("40:30,1");
+      Board board = new Board(rules);
+      assertTrue(board.placeShip(0, 39, 39 + 29 * 40, 30));
+      assertTrue(board.placeShip(1, 1599, 1599, 1));
+      assertEquals(Board.SUNK, board.fire(1599));
+      for (int k = 0; k < 29; k++)
+         assertEquals(Board.HIT, board.fire(39 + k * 40));
+      assertEquals(Board.SUNK, board.fire(39 + 29 * 40));
+      assertTrue(board.allSunk());
+   }
+}
\ No newline at end of file
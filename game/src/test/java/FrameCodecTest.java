@@ -0,0 +1,121 @@
+/**
+* Tests FrameCodec: the frame version agreed in HELLO, and frames encoded into a ByteBuffer being found
+* whole, cut short or invalid, and read back from a stream.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.*;
+import org.junit.jupiter.api.Test;
+public class FrameCodecTest implements BattleShippable  {
+   /**
+       * Encodes a FIRE frame with its player and space into a new buffer.
+       * @return the buffer, flipped to be decoded
+       */
+   private static ByteBuffer fireFrame()  {
+      return fireFrame(FrameCodec.VERSION);
+   }
+
+   /**
+       * Encodes a FIRE frame of the given version with its player and space into a new buffer.
+       * @param version the version of the frame
+       * @return the buffer, flipped to be decoded
+       */
+   private static ByteBuffer fireFrame(int version)  {
+      ByteBuffer out = ByteBuffer.allocate(FrameCodec.MAX_FRAME_BYTES);
+      int start = FrameCodec.beginFrame(out, FIRE, version);
+      out.putInt(1).putInt(42);
+      FrameCodec.endFrame(out, start);
+      out.flip();
+      return out;
+   }
+
+   @Test
+   public void negotiatesTheLowerVersion()   {
+      assertEquals(0, FrameCodec.negotiate(0));
+      assertEquals(0, FrameCodec.negotiate(-3));
+      assertEquals(1, FrameCodec.negotiate(1));
+      assertEquals(FrameCodec.VERSION, FrameCodec.negotiate(FrameCodec.VERSION + 5));
+   }
+
+   @Test
+   public void encodesTheLengthOfWhatFollowsIt()   {
+      ByteBuffer frame = fireFrame();
+      assertEquals(FrameCodec.HEADER_BYTES + 8, frame.remaining());
+      assertEquals(FrameCodec.HEADER_BYTES + 8 - 4, frame.getInt(0));
+      assertEquals(FrameCodec.VERSION, frame.get(4));
+      assertEquals(FIRE, frame.getInt(5));
+   }
+
+   @Test
+   public void findsAWholeFrameOnlyOnceAllOfItHasArrived() throws IOException   {
+      ByteBuffer frame = fireFrame();
+      int whole = frame.remaining();
+      for (int arrived = 0; arrived < whole; arrived++)   {
+         frame.limit(arrived);
+         assertEquals(-1, FrameCodec.completeFrame(frame), arrived + " bytes");
+      }
+      frame.limit(whole);
+      assertEquals(whole - 4, FrameCodec.completeFrame(frame));
+      assertEquals(0, frame.position());
+   }
+
+   @Test
+   public void rejectsFramesTooShortOrTooLong()   {
+      ByteBuffer tooShort = ByteBuffer.allocate(16).putInt(FrameCodec.HEADER_BYTES - 5);
+      tooShort.flip();
+      assertThrows(IOException.class, () -> FrameCodec.completeFrame(tooShort));
+      ByteBuffer tooLong = ByteBuffer.allocate(16).putInt(FrameCodec.MAX_FRAME_BYTES);
+      tooLong.flip();
+      assertThrows(IOException.class, () -> FrameCodec.completeFrame(tooLong));
+   }
+
+   @Test
+   public void readsAFrameFromAStream() throws IOException   {
+      ByteBuffer frame = fireFrame();
+      byte[] bytes = new byte[frame.remaining() + 1];
+      frame.get(bytes, 0, bytes.length - 1);
+      bytes[bytes.length - 1] = 7;
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+      ByteBuffer read = ByteBuffer.allocate(FrameCodec.MAX_FRAME_BYTES);
+      assertEquals(FIRE, FrameCodec.readFrame(in, read, FrameCodec.VERSION));
+      assertEquals(1, read.getInt());
+      assertEquals(42, read.getInt());
+      assertFalse(read.hasRemaining());
+      assertEquals(7, in.read());
+   }
+
+   @Test
+   public void loadsFramesOneAfterAnotherIntoOneFrameInput() throws IOException   {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      for (int i = 0; i < 2; i++)   {
+         ByteBuffer frame = fireFrame();
+         bytes.write(frame.array(), 0, frame.limit());
+      }
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+      FrameCodec.FrameInput input = new FrameCodec.FrameInput();
+      for (int i = 0; i < 2; i++)   {
+         assertEquals(FIRE, input.load(in, FrameCodec.VERSION));
+         assertEquals(1, input.getData().readInt());
+         assertEquals(42, input.getData().readInt());
+      }
+      assertEquals(-1, in.read());
+   }
+
+   @Test
+   public void rejectsAFrameOfAVersionNotAgreed() throws IOException   {
+      ByteBuffer frame = fireFrame(FrameCodec.VERSION + 1);
+      byte[] bytes = new byte[frame.remaining()];
+      frame.get(bytes);
+      ByteBuffer read = ByteBuffer.allocate(FrameCodec.MAX_FRAME_BYTES);
+      assertThrows(IOException.class, () -> FrameCodec.readFrame(
+         new DataInputStream(new ByteArrayInputStream(bytes)), read, FrameCodec.VERSION));
+      assertThrows(IOException.class, () -> new FrameCodec.FrameInput().load(
+         new DataInputStream(new ByteArrayInputStream(bytes)), FrameCodec.VERSION));
+      assertThrows(IOException.class, () -> FrameCodec.checkVersion(0, FrameCodec.VERSION));
+      FrameCodec.checkVersion(FrameCodec.VERSION, FrameCodec.VERSION);
+   }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+/**
+* Tests GameJournal: records written to the segments being read back in order by the dump tool, across
+* segments that fill up and across journals reopened in the same directory.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+public class GameJournalTest  {
+   @TempDir
+   Path directory;
+
+   /**
+       * Reads the journal back with GameJournal.main.
+       * @return every line printed, segment headers included
+       * @throws IOException if the journal cannot be read
+       */
+   private List<String> dump() throws IOException  {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      PrintStream out = System.out;
+      System.setOut(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+      try   {
+         GameJournal.main(new String[] { directory.toString() });
+      }
+      finally  {
+         System.setOut(out);
+      }
+      return Arrays.asList(bytes.toString(StandardCharsets.UTF_8).split("\\R"));
+   }
+
+   /**
+       * @param lines the lines of a dump
+       * @return the lines which are records, with their time cut off
+       */
+   private static List<String> records(List<String> lines)  {
+      return lines.stream().filter(line -> !line.startsWith("#") && !line.isEmpty())
+         .map(line -> line.substring(line.indexOf(" game ") + 1)).collect(Collectors.toList());
+   }
+
+   @Test
+   public void readsBackAWholeGame() throws IOException  {
+      GameJournal journal = new GameJournal(directory);
+      journal.paired(3, "/10.0.0.1:4000", "/10.0.0.2:4001", GameRules.parse("12:4,2"));
+      journal.placement(3, 0, new int[] { 0, 3, 140, 141 });
+      journal.placement(3, 1, null);
+      journal.turn(3, 0);
+      journal.shot(GameJournal.FIRE, 3, 0, 141, false, false);
+      journal.shot(GameJournal.SUCCESS, 3, 0, 141, true, false);
+      journal.shot(GameJournal.MARK, 3, 0, 141, true, true);
+      journal.turn(3, 1);
+      journal.result(3, 0, GameJournal.WON);
+      journal.result(4, -1, GameJournal.PROTOCOL_ERROR);
+      journal.close();
+
+      assertEquals(Arrays.asList(
+         "game 3 PAIRED /10.0.0.1:4000 and /10.0.0.2:4001 rules 12:4,2",
+         "game 3 PLACEMENT player 0 fleet 0-3, 140-141",
+         "game 3 PLACEMENT player 1",
+         "game 3 TURN player 0",
+         "game 3 FIRE player 0 space 141",
+         "game 3 SUCCESS player 0 space 141 hit",
+         "game 3 MARK player 0 space 141 hit sunk",
+         "game 3 TURN player 1",
+         "game 3 RESULT won by player 0",
+         "game 4 RESULT protocol error"), records(dump()));
+   }
+
+   @Test
+   public void writesNothingOnceClosed() throws IOException   {
+      GameJournal journal = new GameJournal(directory);
+      journal.turn(1, 0);
+      journal.close();
+      journal.turn(1, 1);
+      assertEquals(Collections.singletonList("game 1 TURN player 0"), records(dump()));
+   }
+
+   @Test
+   public void startsANewSegmentWhenReopened() throws IOException {
+      GameJournal first = new GameJournal(directory);
+      first.turn(1, 0);
+      first.close();
+      GameJournal second = new GameJournal(directory);
+      second.turn(2, 1);
+      second.close();
+
+      assertTrue(Files.exists(directory.resolve("journal-00000000.dat")));
+      assertTrue(Files.exists(directory.resolve("journal-00000001.dat")));
+      List<String> lines = dump();
+      assertEquals(2, lines.stream().filter(line -> line.startsWith("# journal-")).count());
+      assertEquals(Arrays.asList("game 1 TURN player 0", "game 2 TURN player 1"), records(lines));
+   }
+
+   @Test
+   public void rollsOverToANewSegmentWhenOneIsFull() throws IOException   {
+      GameJournal journal = new GameJournal(directory, 128);
+      List<String> expected = new ArrayList<>();
+      for (int game = 0; game < 20; game++)  {
+         journal.turn(game, game % 2);
+         expected.add("game " + game + " TURN player " + game % 2);
+      }
+      journal.close();
+
+      List<String> lines = dump();
+      assertTrue(lines.stream().filter(line -> line.startsWith("# journal-")).count() > 1);
+      assertEquals(expected, records(lines));
+   }
+}
\ No newline at end of file
@@ -0,0 +1,89 @@
+/**
+* Tests GameRules: the bounds on the Grid and the fleet, the text form, and the arguments of RULES,
+* which come from the network and so must be rejected whole if they are out of bounds.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+public class GameRulesTest implements BattleShippable  {
+   @Test
+   public void theStandardRulesAreTheClassicGame() {
+      assertEquals(GRID_DIMENSION, GameRules.STANDARD.getDimension());
+      assertEquals(NUM_SHIPS, GameRules.STANDARD.getNumShips());
+      assertTrue(GameRules.STANDARD.isStandard());
+      assertEquals(13, GameRules.STANDARD.getMaskBytes());
+   }
+
+   @Test
+   public void keepsTheFleetLongestShipFirst()  {
+      GameRules rules = new GameRules(16, new int[] { 2, 6, 3 });
+      assertEquals(6, rules.getShipLength(0));
+      assertEquals(3, rules.getShipLength(1));
+      assertEquals(2, rules.getShipLength(2));
+      assertEquals(rules, GameRules.parse("16:3,2,6"));
+      assertEquals(new GameRules(12, SHIP_LENGTHS), GameRules.parse("12"));
+   }
+
+   @Test
+   public void rejectsGridsAndFleetsOutOfBounds()  {
+      assertThrows(IllegalArgumentException.class, () -> new GameRules(1, new int[] { 1 }));
+      assertThrows(IllegalArgumentException.class, () -> new GameRules(GameRules.MAX_DIMENSION + 1, SHIP_LENGTHS));
+      assertThrows(IllegalArgumentException.class, () -> new GameRules(10, new int[0]));
+      assertThrows(IllegalArgumentException.class, () -> new GameRules(10, new int[] { 11 }));
+      assertThrows(IllegalArgumentException.class, () -> new GameRules(10, new int[] { 0 }));
+      assertThrows(IllegalArgumentException.class, () -> new GameRules(4, new int[] { 4, 4, 1 }));
+      assertThrows(IllegalArgumentException.class, () -> GameRules.parse("ten"));
+      assertThrows(IllegalArgumentException.class, () -> GameRules.parse("10:5,x"));
+   }
+
+   @Test
+   public void readsBackTheArgumentsOfRules()   {
+      assertSame(GameRules.STANDARD, GameRules.fromBytes(GameRules.STANDARD.toBytes()));
+      GameRules large = new GameRules(GameRules.MAX_DIMENSION, new int[] { 64, 30, 30, 5, 1 });
+      byte[] bytes = large.toBytes();
+      assertEquals(GameRules.RULES_BYTES, bytes.length);
+      assertEquals(large, GameRules.fromBytes(bytes));
+   }
+
+   @Test
+   public void rejectsArgumentsOfRulesOfTheWrongLength() {
+      byte[] standard = GameRules.STANDARD.toBytes();
+      assertThrows(IllegalArgumentException.class, () -> GameRules.fromBytes(new byte[0]));
+      assertThrows(IllegalArgumentException.class,
+         () -> GameRules.fromBytes(java.util.Arrays.copyOf(standard, GameRules.RULES_BYTES - 1)));
+      assertThrows(IllegalArgumentException.class,
+         () -> GameRules.fromBytes(java.util.Arrays.copyOf(standard, GameRules.RULES_BYTES + 1)));
+   }
+
+   @Test
+   public void rejectsArgumentsOfRulesOutOfBounds()   {
+      byte[] badDimension = GameRules.STANDARD.toBytes();
+      badDimension[0] = (byte)(GameRules.MAX_DIMENSION + 1);
+      assertThrows(IllegalArgumentException.class, () -> GameRules.fromBytes(badDimension));
+      badDimension[0] = -10;
+      assertThrows(IllegalArgumentException.class, () -> GameRules.fromBytes(badDimension));
+
+      byte[] tooLong = GameRules.STANDARD.toBytes();
+      tooLong[GRID_DIMENSION + 1] = 1;
+      assertThrows(IllegalArgumentException.class, () -> GameRules.fromBytes(tooLong));
+
+      byte[] tooMany = new byte[GameRules.RULES_BYTES];
+      tooMany[0] = (byte)GameRules.MAX_DIMENSION;
+      tooMany[1] = Byte.MAX_VALUE;
+      tooMany[2] = Byte.MAX_VALUE;
+      assertThrows(IllegalArgumentException.class, () -> GameRules.fromBytes(tooMany));
+
+      byte[] noShips = new byte[GameRules.RULES_BYTES];
+      noShips[0] = GRID_DIMENSION;
+      noShips[3] = -5;
+      assertThrows(IllegalArgumentException.class, () -> GameRules.fromBytes(noShips));
+
+      byte[] crowded = new byte[GameRules.RULES_BYTES];
+      crowded[0] = 4;
+      crowded[4] = 3;
+      assertThrows(IllegalArgumentException.class, () -> GameRules.fromBytes(crowded));
+   }
+}
\ No newline at end of file
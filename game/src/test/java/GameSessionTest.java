@@ -0,0 +1,171 @@
+/**
+* Tests the rules GameSession enforces when it holds both fleets and resolves every shot itself: whose
+* turn it is, who has won, and the commands a player may not send on behalf of the other player.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.*;
+import java.util.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+public class GameSessionTest implements BattleShippable  {
+   private static final int[] FLEET = { 0, 4, 10, 13, 20, 22, 30, 32, 40, 41 };
+
+   private RecordingLink link0;
+   private RecordingLink link1;
+   private GameSession session;
+
+   /**
+       * @param values the ints of a command's arguments
+       * @return the arguments, ready to be read
+       */
+   private static ByteBuffer ints(int... values)   {
+      ByteBuffer args = ByteBuffer.allocate(4 * values.length);
+      for (int value : values)
+         args.putInt(value);
+      args.flip();
+      return args;
+   }
+
+   /**
+       * @return the argument of CONFIRM_SHIPS
+       */
+   private static ByteBuffer confirmed() {
+      return ByteBuffer.wrap(new byte[] { 1 });
+   }
+
+   @BeforeEach
+   public void startGame() throws Exception  {
+      link0 = new RecordingLink();
+      link1 = new RecordingLink();
+      session = new GameSession(link0, link1, new ServerLog(), 1);
+      session.setServerResolvesShots(true);
+      session.start();
+      assertEquals(Arrays.asList("NAME 0", "AUTHORITATIVE"), link0.take());
+      assertEquals(Arrays.asList("NAME 1", "AUTHORITATIVE"), link1.take());
+   }
+
+   /**
+       * Both players upload the standard fleet, after which it is player 0's turn.
+       * @throws Exception if the session fails
+       */
+   private void uploadFleets() throws Exception {
+      session.receive(0, CONFIRM_FLEET, ints(FLEET));
+      session.receive(1, CONFIRM_FLEET, ints(FLEET));
+      assertEquals(Collections.singletonList("TURN true"), link0.take());
+      assertEquals(Collections.singletonList("TURN false"), link1.take());
+   }
+
+   @Test
+   public void aMissPassesTheTurn() throws Exception  {
+      uploadFleets();
+      session.receive(0, FIRE, ints(1, 99));
+      assertEquals(Arrays.asList("MARK 99 miss", "TURN false"), link0.take());
+      assertEquals(Arrays.asList("FIRE 99", "TURN true"), link1.take());
+      assertFalse(session.isFinished());
+   }
+
+   @Test
+   public void aHitAlsoPassesTheTurn() throws Exception  {
+      uploadFleets();
+      session.receive(0, FIRE, ints(1, 40));
+      assertEquals(Arrays.asList("MARK 40 hit", "TURN false"), link0.take());
+      assertEquals(Arrays.asList("FIRE 40", "TURN true"), link1.take());
+   }
+
+   @Test
+   public void rejectsFireOutOfTurnOrAtASpaceAlreadyShot() throws Exception   {
+      uploadFleets();
+      session.receive(1, FIRE, ints(0, 5));
+      assertEquals(Collections.singletonList("TURN false"), link1.take());
+      assertTrue(link0.take().isEmpty());
+
+      session.receive(0, FIRE, ints(1, 99));
+      link0.take();
+      link1.take();
+      session.receive(1, FIRE, ints(0, 98));
+      link0.take();
+      link1.take();
+      session.receive(0, FIRE, ints(1, 99));
+      assertEquals(Collections.singletonList("TURN true"), link0.take());
+      assertTrue(link1.take().isEmpty());
+
+      session.receive(0, FIRE, ints(1, Board.SPACES));
+      assertEquals(Collections.singletonList("TURN true"), link0.take());
+      assertFalse(session.isFinished());
+   }
+
+   @Test
+   public void sinkingEveryShipWins() throws Exception   {
+      uploadFleets();
+      int[] occupied = { 0, 1, 2, 3, 4, 10, 11, 12, 13, 20, 21, 22, 30, 31, 32, 40, 41 };
+      for (int i = 0; i < occupied.length; i++)   {
+         assertFalse(session.isFinished());
+         session.receive(0, FIRE, ints(1, occupied[i]));
+         if (i < occupied.length - 1)
+            session.receive(1, FIRE, ints(0, 50 + i));
+      }
+      assertTrue(session.isFinished());
+      assertEquals(0, session.getWinner());
+      List<String> sent0 = link0.take();
+      List<String> sent1 = link1.take();
+      assertEquals("GAME_OVER 0", sent0.get(sent0.size() - 1));
+      assertEquals("GAME_OVER 0", sent1.get(sent1.size() - 1));
+      assertEquals("MARK 41 hit sunk", sent0.get(sent0.size() - 2));
+   }
+
+   @Test
+   public void rejectsWinWhileShipsRemain() throws Exception   {
+      uploadFleets();
+      session.receive(0, WIN, ints(0));
+      assertFalse(session.isFinished());
+      assertEquals(-1, session.getWinner());
+      assertTrue(link1.take().isEmpty());
+   }
+
+   @Test
+   public void turnNamingTheOtherPlayerIsAProtocolError() throws Exception  {
+      uploadFleets();
+      session.receive(1, TURN, ints(0));
+      assertTrue(session.isFinished());
+      assertEquals(-1, session.getWinner());
+      assertEquals(Collections.singletonList("DONE"), link0.take());
+   }
+
+   @Test
+   public void fireAtOneselfIsAProtocolError() throws Exception  {
+      uploadFleets();
+      session.receive(0, FIRE, ints(0, 5));
+      assertTrue(session.isFinished());
+      assertEquals(-1, session.getWinner());
+      assertEquals(Collections.singletonList("DONE"), link1.take());
+      assertTrue(link0.take().isEmpty());
+   }
+
+   @Test
+   public void rejectsAnInvalidFleet() throws Exception  {
+      int[] overlapping = FLEET.clone();
+      overlapping[2] = 2;
+      overlapping[3] = 32;
+      session.receive(0, CONFIRM_FLEET, ints(overlapping));
+      assertTrue(session.isFinished());
+      assertEquals(Collections.singletonList("DONE"), link0.take());
+      assertEquals(Collections.singletonList("QUIT_SHIP 0"), link1.take());
+   }
+
+   @Test
+   public void ignoresWinOutOfTurnWhenTheClientsResolveShots() throws Exception  {
+      session.receive(0, CONFIRM_SHIPS, confirmed());
+      session.receive(1, CONFIRM_SHIPS, confirmed());
+      assertEquals(Collections.singletonList("TURN true"), link0.take());
+      assertEquals(Collections.singletonList("TURN false"), link1.take());
+      session.receive(1, WIN, ints(1));
+      assertFalse(session.isFinished());
+      session.receive(0, WIN, ints(0));
+      assertTrue(session.isFinished());
+      assertEquals(0, session.getWinner());
+   }
+}
\ No newline at end of file
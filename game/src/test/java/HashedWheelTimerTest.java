@@ -0,0 +1,114 @@
+/**
+* Tests HashedWheelTimer: tasks running once their delay has passed and not before, cancelled tasks never
+* running, and deadlines further off than one turn of the wheel waiting out their rounds.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.junit.jupiter.api.Test;
+public class HashedWheelTimerTest  {
+   //Slack allowed for the timer thread to be scheduled on a busy machine
+   private static final long SLACK_MILLIS = 500;
+
+   /**
+       * @param since a System.nanoTime
+       * @return the milliseconds since then
+       */
+   private static long millisSince(long since)   {
+      return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - since);
+   }
+
+   @Test
+   public void runsATaskOnceItsDelayHasPassed() throws Exception   {
+      HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 64);
+      CompletableFuture<Long> ran = new CompletableFuture<>();
+      AtomicReference<String> thread = new AtomicReference<>();
+      long start = System.nanoTime();
+      HashedWheelTimer.Timeout timeout = timer.schedule(() -> {
+         thread.set(Thread.currentThread().getName());
+         ran.complete(millisSince(start));
+      }, 100, TimeUnit.MILLISECONDS);
+      long elapsed = ran.get(5, TimeUnit.SECONDS);
+      assertTrue(elapsed >= 100, "ran after " + elapsed + " ms");
+      assertTrue(elapsed < 100 + SLACK_MILLIS, "ran after " + elapsed + " ms");
+      assertEquals("wheel-timer", thread.get());
+      assertTrue(timeout.isExpired());
+      assertFalse(timeout.cancel());
+      assertEquals(0, timer.getPending());
+   }
+
+   @Test
+   public void runsTasksInTheOrderOfTheirDeadlines() throws Exception  {
+      HashedWheelTimer timer = new HashedWheelTimer(5, TimeUnit.MILLISECONDS, 16);
+      List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch done = new CountDownLatch(4);
+      for (int delay : new int[] { 120, 30, 90, 60 })   {
+         timer.schedule(() -> {
+            order.add(delay);
+            done.countDown();
+         }, delay, TimeUnit.MILLISECONDS);
+      }
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+      assertEquals(Arrays.asList(30, 60, 90, 120), order);
+   }
+
+   @Test
+   public void neverRunsACancelledTask() throws Exception  {
+      HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8);
+      AtomicBoolean ran = new AtomicBoolean();
+      CountDownLatch later = new CountDownLatch(1);
+      HashedWheelTimer.Timeout timeout = timer.schedule(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+      timer.schedule(later::countDown, 200, TimeUnit.MILLISECONDS);
+      assertTrue(timeout.cancel());
+      assertTrue(timeout.isCancelled());
+      assertTrue(timeout.cancel());
+      assertTrue(later.await(5, TimeUnit.SECONDS));
+      assertFalse(ran.get());
+      assertFalse(timeout.isExpired());
+      assertEquals(0, timer.getPending());
+   }
+
+   @Test
+   public void cancelsATaskAlreadyInItsBucket() throws Exception   {
+      HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8);
+      AtomicBoolean ran = new AtomicBoolean();
+      HashedWheelTimer.Timeout timeout = timer.schedule(() -> ran.set(true), 300, TimeUnit.MILLISECONDS);
+      Thread.sleep(100);
+      assertTrue(timeout.cancel());
+      Thread.sleep(400);
+      assertFalse(ran.get());
+      assertEquals(0, timer.getPending());
+   }
+
+   @Test
+   public void waitsOutDeadlinesLongerThanATurnOfTheWheel() throws Exception   {
+      //512 buckets as on the server, with ticks short enough that the wheel turns every 512 ms
+      HashedWheelTimer timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 512);
+      CompletableFuture<Long> soon = new CompletableFuture<>();
+      CompletableFuture<Long> late = new CompletableFuture<>();
+      long start = System.nanoTime();
+      timer.schedule(() -> late.complete(millisSince(start)), 1300, TimeUnit.MILLISECONDS);
+      timer.schedule(() -> soon.complete(millisSince(start)), 100, TimeUnit.MILLISECONDS);
+      assertTrue(soon.get(5, TimeUnit.SECONDS) >= 100);
+      Thread.sleep(1000 - millisSince(start));
+      assertFalse(late.isDone(), "a deadline 2.5 turns away ran within two turns");
+      long elapsed = late.get(5, TimeUnit.SECONDS);
+      assertTrue(elapsed >= 1300, "ran after " + elapsed + " ms");
+      assertTrue(elapsed < 1300 + SLACK_MILLIS, "ran after " + elapsed + " ms");
+   }
+
+   @Test
+   public void keepsRunningAfterATaskFails() throws Exception  {
+      HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 8);
+      CountDownLatch ran = new CountDownLatch(1);
+      timer.schedule(() -> { throw new IllegalStateException("expected by the test"); }, 20,
+         TimeUnit.MILLISECONDS);
+      timer.schedule(ran::countDown, 60, TimeUnit.MILLISECONDS);
+      assertTrue(ran.await(5, TimeUnit.SECONDS));
+   }
+}
\ No newline at end of file
@@ -0,0 +1,143 @@
+/**
+* Tests HostNameCache with a stub Lookup in place of the DNS: names kept for their time to live and then
+* looked up again, one lookup shared by an address asked for twice, the number of addresses kept, and
+* resolve never waiting on a lookup.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import org.junit.jupiter.api.Test;
+public class HostNameCacheTest  {
+   /**
+       * A Lookup which names every address after the number of lookups made so far, and which waits
+       * until it is let go if it is given a latch.
+       */
+   private static class StubLookup implements HostNameCache.Lookup   {
+      private final AtomicInteger count = new AtomicInteger();
+      private final CountDownLatch release;
+
+      StubLookup(CountDownLatch release)  {
+         this.release = release;
+      }
+
+      public String hostName(InetAddress address) throws IOException   {
+         int n = count.incrementAndGet();
+         try   {
+            if (release != null)
+               release.await();
+         }
+         catch (InterruptedException e)   {
+            Thread.currentThread().interrupt();
+         }
+         return "host-" + n;
+      }
+   }
+
+   /**
+       * @param n a number below 65536
+       * @return a private address made from the number
+       */
+   private static InetAddress address(int n) throws UnknownHostException  {
+      return InetAddress.getByAddress(new byte[] { 10, 0, (byte)(n >> 8), (byte)n });
+   }
+
+   /**
+       * Resolves an address and waits for its name.
+       * @param cache the HostNameCache
+       * @param address the address
+       * @return the name given
+       */
+   private static String name(HostNameCache cache, InetAddress address) throws Exception  {
+      CompletableFuture<String> name = new CompletableFuture<>();
+      cache.resolve(address, name::complete);
+      return name.get(5, TimeUnit.SECONDS);
+   }
+
+   @Test
+   public void keepsANameForItsTimeToLive() throws Exception   {
+      StubLookup lookup = new StubLookup(null);
+      HostNameCache cache = new HostNameCache(lookup, 60_000);
+      assertEquals("host-1", name(cache, address(1)));
+      assertEquals("host-1", name(cache, address(1)));
+      assertEquals("host-2", name(cache, address(2)));
+      assertEquals(2, lookup.count.get());
+   }
+
+   @Test
+   public void looksANameUpAgainOnceItExpires() throws Exception   {
+      StubLookup lookup = new StubLookup(null);
+      HostNameCache cache = new HostNameCache(lookup, 50);
+      assertEquals("host-1", name(cache, address(1)));
+      Thread.sleep(100);
+      assertEquals("host-2", name(cache, address(1)));
+      assertEquals(2, lookup.count.get());
+   }
+
+   @Test
+   public void sharesALookupInProgress() throws Exception  {
+      CountDownLatch release = new CountDownLatch(1);
+      StubLookup lookup = new StubLookup(release);
+      HostNameCache cache = new HostNameCache(lookup, 60_000);
+      CompletableFuture<String> first = new CompletableFuture<>();
+      CompletableFuture<String> second = new CompletableFuture<>();
+      cache.resolve(address(1), first::complete);
+      cache.resolve(address(1), second::complete);
+      release.countDown();
+      assertEquals("host-1", first.get(5, TimeUnit.SECONDS));
+      assertEquals("host-1", second.get(5, TimeUnit.SECONDS));
+      assertEquals(1, lookup.count.get());
+   }
+
+   @Test
+   public void resolvesWithoutWaitingForTheLookup() throws Exception  {
+      CountDownLatch release = new CountDownLatch(1);
+      HostNameCache cache = new HostNameCache(new StubLookup(release), 60_000);
+      CompletableFuture<String> name = new CompletableFuture<>();
+      assertTimeoutPreemptively(Duration.ofSeconds(1), () -> cache.resolve(address(1), name::complete));
+      assertFalse(name.isDone());
+      release.countDown();
+      assertEquals("host-1", name.get(5, TimeUnit.SECONDS));
+   }
+
+   @Test
+   public void givesTheAddressWhenThereIsNoTimeToLive() throws Exception  {
+      StubLookup lookup = new StubLookup(null);
+      HostNameCache cache = new HostNameCache(lookup, 0);
+      assertEquals("10.0.0.1", name(cache, address(1)));
+      assertEquals(0, lookup.count.get());
+      assertEquals(0, cache.size());
+   }
+
+   @Test
+   public void keepsAtMostCapacityAddresses() throws Exception  {
+      StubLookup lookup = new StubLookup(null);
+      HostNameCache cache = new HostNameCache(lookup, 60_000);
+      int total = HostNameCache.CAPACITY + 100;
+      //In batches smaller than the lookup queue, so that no lookup is turned away
+      for (int start = 0; start < total; start += HostNameCache.QUEUED_LOOKUPS / 2)   {
+         List<CompletableFuture<String>> batch = new ArrayList<>();
+         for (int n = start; n < Math.min(total, start + HostNameCache.QUEUED_LOOKUPS / 2); n++)   {
+            CompletableFuture<String> name = new CompletableFuture<>();
+            cache.resolve(address(n), name::complete);
+            batch.add(name);
+         }
+         CompletableFuture.allOf(batch.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+         assertTrue(cache.size() <= HostNameCache.CAPACITY);
+      }
+      assertEquals(HostNameCache.CAPACITY, cache.size());
+      assertEquals(total, lookup.count.get());
+      //The address used least recently was forgotten, the one used last was kept
+      name(cache, address(0));
+      assertEquals(total + 1, lookup.count.get());
+      name(cache, address(total - 1));
+      assertEquals(total + 1, lookup.count.get());
+   }
+}
\ No newline at end of file
@@ -0,0 +1,151 @@
+/**
+* Tests pairing waiting clients: the FifoPolicy pairing them in the order they arrived and keeping the
+* place of one put back, the RatingBucketPolicy pairing within a bucket before widening the range of
+* ratings with the time waited, and the Matchmaker pairing clients connected over loopback.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.Test;
+public class MatchmakerTest  {
+   /**
+       * @param millis a time in milliseconds
+       * @return the time as a System.nanoTime, counted from 0
+       */
+   private static long at(long millis)   {
+      return TimeUnit.MILLISECONDS.toNanos(millis);
+   }
+
+   /**
+       * @param rating the client's rating
+       * @param queuedAt when the client joined the queue, in milliseconds
+       * @return a client without a channel
+       */
+   private static Matchmaker.Waiting client(int rating, long queuedAt)  {
+      return new Matchmaker.Waiting(null, rating, at(queuedAt), null);
+   }
+
+   @Test
+   public void fifoPairsClientsInTheOrderTheyArrived()  {
+      Matchmaker.FifoPolicy policy = new Matchmaker.FifoPolicy();
+      Matchmaker.Waiting[] clients = new Matchmaker.Waiting[5];
+      for (int i = 0; i < clients.length; i++)   {
+         clients[i] = client(1000 + 500 * i, i);
+         policy.add(clients[i]);
+      }
+      assertArrayEquals(new Matchmaker.Waiting[] { clients[0], clients[1] }, policy.nextPair(at(10)));
+      assertArrayEquals(new Matchmaker.Waiting[] { clients[2], clients[3] }, policy.nextPair(at(10)));
+      assertNull(policy.nextPair(at(10)));
+      assertNull(policy.nextAlone(at(10), 100));
+      assertSame(clients[4], policy.nextAlone(at(200), 100));
+      assertNull(policy.nextAlone(at(200), 100));
+   }
+
+   @Test
+   public void fifoKeepsThePlaceOfAClientPutBack()  {
+      Matchmaker.FifoPolicy policy = new Matchmaker.FifoPolicy();
+      Matchmaker.Waiting first = client(1000, 0);
+      Matchmaker.Waiting gone = client(1000, 1);
+      Matchmaker.Waiting later = client(1000, 2);
+      Matchmaker.Waiting last = client(1000, 3);
+      policy.add(first);
+      policy.add(gone);
+      policy.add(later);
+      policy.add(last);
+      Matchmaker.Waiting[] pair = policy.nextPair(at(10));
+      assertSame(gone, pair[1]);
+      policy.putBack(pair[0]);
+      assertArrayEquals(new Matchmaker.Waiting[] { first, later }, policy.nextPair(at(10)));
+      policy.remove(last);
+      assertNull(policy.nextPair(at(10)));
+      assertNull(policy.nextAlone(at(1000), 0));
+   }
+
+   @Test
+   public void ratingBucketsPairWithinABucketFirst()  {
+      Matchmaker.RatingBucketPolicy policy = new Matchmaker.RatingBucketPolicy(100, 1000);
+      Matchmaker.Waiting low = client(1000, 0);
+      Matchmaker.Waiting high = client(1250, 1);
+      Matchmaker.Waiting nearLow = client(1090, 2);
+      policy.add(low);
+      policy.add(high);
+      policy.add(nearLow);
+      assertArrayEquals(new Matchmaker.Waiting[] { low, nearLow }, policy.nextPair(at(10)));
+      assertNull(policy.nextPair(at(10)));
+      assertSame(high, policy.nextAlone(at(10), 0));
+   }
+
+   @Test
+   public void ratingBucketsWidenWithTheTimeWaited()  {
+      Matchmaker.RatingBucketPolicy policy = new Matchmaker.RatingBucketPolicy(100, 1000);
+      Matchmaker.Waiting low = client(1000, 0);
+      Matchmaker.Waiting far = client(1250, 0);
+      policy.add(low);
+      policy.add(far);
+      assertNull(policy.nextPair(at(999)));
+      //One widening reaches the next bucket, which is empty, the second reaches the client two away
+      assertNull(policy.nextPair(at(1000)));
+      Matchmaker.Waiting next = client(1100, 1500);
+      policy.add(next);
+      assertArrayEquals(new Matchmaker.Waiting[] { low, next }, policy.nextPair(at(1500)));
+      policy.putBack(low);
+      policy.remove(next);
+      assertNull(policy.nextPair(at(1999)));
+      assertArrayEquals(new Matchmaker.Waiting[] { low, far }, policy.nextPair(at(2000)));
+   }
+
+   /**
+       * A PairHandler which keeps the channels of each pair it is given.
+       */
+   private static class RecordingHandler implements Matchmaker.PairHandler  {
+      private final BlockingQueue<SocketChannel[]> pairs = new LinkedBlockingQueue<>();
+
+      public void startGame(SocketChannel channel0, SocketChannel channel1, int gameNumber)  {
+         pairs.add(new SocketChannel[] { channel0, channel1 });
+      }
+
+      /**
+          * @return the next pair started
+          */
+      SocketChannel[] next() throws InterruptedException  {
+         SocketChannel[] pair = pairs.poll(5, TimeUnit.SECONDS);
+         assertNotNull(pair, "no pair was started");
+         return pair;
+      }
+   }
+
+   @Test
+   public void pairsConnectedClientsInOrderDroppingThoseWhichLeave() throws Exception   {
+      try (ServerSocketChannel listener = ServerSocketChannel.open())   {
+         listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+         RecordingHandler handler = new RecordingHandler();
+         Matchmaker matchmaker = new Matchmaker(new ServerLog(), new Matchmaker.FifoPolicy(), new PlayerRatings(),
+            handler);
+         List<SocketChannel> clients = new ArrayList<>();
+         List<SocketChannel> accepted = new ArrayList<>();
+         for (int i = 0; i < 5; i++)   {
+            clients.add(SocketChannel.open(listener.getLocalAddress()));
+            accepted.add(listener.accept());
+         }
+         //The second client leaves before it is paired, so the first keeps its place for the third
+         clients.get(1).close();
+         for (SocketChannel channel : accepted)
+            matchmaker.offer(channel);
+         matchmaker.start();
+         assertArrayEquals(new SocketChannel[] { accepted.get(0), accepted.get(2) }, handler.next());
+         assertArrayEquals(new SocketChannel[] { accepted.get(3), accepted.get(4) }, handler.next());
+         assertEquals(4, matchmaker.getMatched());
+         assertEquals(1, matchmaker.getDropped());
+         assertEquals(0, matchmaker.getQueueDepth());
+         for (SocketChannel channel : clients)
+            channel.close();
+      }
+   }
+}
\ No newline at end of file
@@ -0,0 +1,125 @@
+/**
+* Tests PlacementTable: every legal placement of a Ship having exactly one index, the masks kept for small
+* Grids agreeing with walking the line of spaces, and whole fleets placed at random.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+public class PlacementTableTest implements BattleShippable  {
+   @Test
+   public void countsEveryPlacementOnce()   {
+      assertEquals(2 * 10 * 6, new PlacementTable(10, 5).size());
+      assertEquals(2 * 10 * 9, new PlacementTable(10, 2).size());
+      assertEquals(10 * 10, new PlacementTable(10, 1).size());
+      assertEquals(2 * 64, new PlacementTable(64, 64).size());
+   }
+
+   @Test
+   public void findsEachPlacementFromEitherEnd()   {
+      for (int dimension : new int[] { 2, 7, 10, 17 })   {
+         for (int length = 1; length <= dimension; length++)   {
+            PlacementTable table = new PlacementTable(dimension, length);
+            for (int p = 0; p < table.size(); p++)  {
+               int start = table.getStart(p);
+               int end = table.getEnd(p);
+               assertEquals(end, start + (length - 1) * table.getStep(p));
+               assertEquals(p, table.indexOf(start, end));
+               assertEquals(p, table.indexOf(end, start));
+            }
+         }
+      }
+   }
+
+   @Test
+   public void rejectsIllegalPlacements() {
+      PlacementTable table = new PlacementTable(10, 3);
+      assertEquals(-1, table.indexOf(8, 10));
+      assertEquals(-1, table.indexOf(0, 22));
+      assertEquals(-1, table.indexOf(0, 3));
+      assertEquals(-1, table.indexOf(0, 30));
+      assertEquals(-1, table.indexOf(-1, 1));
+      assertEquals(-1, table.indexOf(98, 100));
+      assertTrue(table.indexOf(7, 9) >= 0);
+      assertTrue(table.indexOf(70, 90) >= 0);
+      PlacementTable single = new PlacementTable(10, 1);
+      assertEquals(-1, single.indexOf(0, 1));
+      assertTrue(single.indexOf(5, 5) >= 0);
+      assertTrue(single.indexOf(99, 99) >= 0);
+   }
+
+   @Test
+   public void keepsMasksOnlyOnSmallGrids()  {
+      PlacementTable table = new PlacementTable(10, 4);
+      for (int p = 0; p < table.size(); p++) {
+         BitSet mask = table.getMask(p);
+         assertEquals(4, mask.cardinality());
+         for (int k = 0; k < 4; k++)
+            assertTrue(mask.get(table.getStart(p) + k * table.getStep(p)));
+      }
+      assertNotNull(new PlacementTable(16, 4).getMask(0));
+      assertNull(new PlacementTable(17, 4).getMask(0));
+   }
+
+   @Test
+   public void masksAgreeWithWalkingTheLine()   {
+      Random random = new Random(7);
+      for (int dimension : new int[] { 10, 16, 17 })  {
+         GameRules rules = new GameRules(dimension, SHIP_LENGTHS);
+         Board board = new Board(rules);
+         for (int round = 0; round < 50; round++)  {
+            board.clear();
+            for (int i = 0; i < dimension * dimension / 4; i++)
+               board.setOccupied(random.nextInt(dimension * dimension), true);
+            for (int length = 1; length <= 5; length++)   {
+               PlacementTable table = rules.getTable(length);
+               for (int p = 0; p < table.size(); p++)  {
+                  boolean walked = board.isFree(table.getStart(p), table.getStep(p), length);
+                  assertEquals(walked, board.isFree(table, p));
+                  assertEquals(walked, table.isFree(board, p));
+               }
+            }
+         }
+      }
+   }
+
+   @Test
+   public void placesWholeFleetsAtRandom()   {
+      Random random = new Random(11);
+      for (GameRules rules : new GameRules[] { GameRules.STANDARD, GameRules.parse("20:9,7,7,5,3,3,1") })   {
+         for (int round = 0; round < 200; round++)  {
+            Board board = new Board(rules);
+            int[] ends = new int[2 * rules.getNumShips()];
+            assertTrue(PlacementTable.placeRandomFleet(board, ends, random));
+            int covered = 0;
+            for (int i = 0; i < rules.getNumShips(); i++)   {
+               assertTrue(board.isPlaced(i));
+               covered += rules.getShipLength(i);
+            }
+            int occupied = 0;
+            for (int s = 0; s < rules.getSpaces(); s++)   {
+               if (board.isOccupied(s))
+                  occupied++;
+            }
+            assertEquals(covered, occupied);
+            Board copy = new Board(rules);
+            assertTrue(PlacementTable.placeFleet(copy, ends));
+            for (int s = 0; s < rules.getSpaces(); s++)
+               assertEquals(board.shipAt(s), copy.shipAt(s));
+         }
+      }
+   }
+
+   @Test
+   public void rejectsFleetsThatOverlap()   {
+      Board board = new Board();
+      int[] ends = { 0, 4, 10, 13, 20, 22, 30, 32, 40, 41 };
+      assertTrue(PlacementTable.placeFleet(board, ends));
+      Board crossed = new Board();
+      int[] overlap = { 0, 4, 2, 32, 50, 52, 60, 62, 70, 71 };
+      assertFalse(PlacementTable.placeFleet(crossed, overlap));
+   }
+}
\ No newline at end of file
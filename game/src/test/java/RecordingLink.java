@@ -0,0 +1,52 @@
+/**
+* A PlayerLink for tests which keeps the commands sent to a player, as text, in place of a connection.
+* Commands may be sent from any thread, such as a timer's.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import java.util.*;
+class RecordingLink implements PlayerLink {
+   private final List<String> sent = new ArrayList<>();
+
+   /**
+       * Keeps a command.
+       * @param command the command as text
+       */
+   private synchronized void record(String command)   {
+      sent.add(command);
+   }
+
+   public void sendName(int player) { record("NAME " + player); }
+   public void sendFire(int space)  { record("FIRE " + space); }
+   public void sendMark(int index, boolean success, boolean sunk) {
+      record("MARK " + index + (success ? " hit" : " miss") + (sunk ? " sunk" : ""));
+   }
+   public void sendTurn(boolean isTurn)  { record("TURN " + isTurn); }
+   public void sendGameOver(int winner)  { record("GAME_OVER " + winner); }
+   public void sendDone()  { record("DONE"); }
+   public void sendQuitShip(int player)  { record("QUIT_SHIP " + player); }
+   public void sendAuthoritative()  { record("AUTHORITATIVE"); }
+   public void sendFraming()  {}
+   public void sendHello(int version)  {}
+   public void sendPing(int interval)  {}
+   public void sendToken(long token)  { record("TOKEN " + token); }
+   public void sendRules(GameRules rules)  { record("RULES " + rules); }
+   public void sendSnapshot(GameRules rules, boolean playing, boolean confirmed, boolean isTurn, int yourSunk,
+      int theirSunk, BitSet shotsAtYou, BitSet hitsOnYou, BitSet yourShots, BitSet yourHits) {
+      record("SNAPSHOT");
+   }
+   public void sendLobby()  { record("LOBBY"); }
+   public void sendRematch()  { record("REMATCH"); }
+   public void flush()  {}
+   public void close()  {}
+
+   /**
+       * @return the commands sent since the last call
+       */
+   synchronized List<String> take()  {
+      List<String> taken = new ArrayList<>(sent);
+      sent.clear();
+      return taken;
+   }
+}
\ No newline at end of file
@@ -0,0 +1,189 @@
+/**
+* Tests resuming a game: a token taking its player back to their seat once and only once, the seat being
+* handed a new token, and the GameSession holding the game for the grace time and no longer.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+public class ResumeRegistryTest implements BattleShippable  {
+   private static final long GRACE_MILLIS = 300;
+
+   private ServerSocketChannel listener;
+   private HashedWheelTimer timer;
+
+   /**
+       * A seat which keeps the tokens it is handed and the channels it takes.
+       */
+   private static class RecordingSeat implements ResumeRegistry.Resumable  {
+      private final List<Long> tokens = new ArrayList<>();
+      private final boolean takes;
+
+      RecordingSeat(boolean takes)  {
+         this.takes = takes;
+      }
+
+      public boolean resume(SocketChannel channel, long token) throws IOException   {
+         tokens.add(token);
+         if (takes)
+            channel.close();
+         return takes;
+      }
+   }
+
+   @BeforeEach
+   public void listen() throws Exception   {
+      listener = ServerSocketChannel.open();
+      listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+      timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 64);
+   }
+
+   @AfterEach
+   public void close() throws Exception   {
+      listener.close();
+   }
+
+   /**
+       * Connects a client to the listener, as a client sending RESUME would.
+       * @param clients where the client's end is kept
+       * @return the server's end of the connection
+       */
+   private SocketChannel connect(List<SocketChannel> clients) throws IOException  {
+      clients.add(SocketChannel.open(listener.getLocalAddress()));
+      return listener.accept();
+   }
+
+   /**
+       * Reads what the server sent a client until it closed the connection.
+       * @param client the client's end
+       * @return the ints sent
+       */
+   private static List<Integer> readToEnd(SocketChannel client) throws IOException  {
+      DataInputStream in = new DataInputStream(Channels.newInputStream(client));
+      client.socket().setSoTimeout(5000);
+      List<Integer> ints = new ArrayList<>();
+      try   {
+         while (true)
+            ints.add(in.readInt());
+      }
+      catch (EOFException e)   {
+         return ints;
+      }
+   }
+
+   @Test
+   public void usesATokenOnceAndHandsTheSeatANewOne() throws Exception  {
+      ResumeRegistry registry = new ResumeRegistry(new ServerLog());
+      RecordingSeat seat = new RecordingSeat(true);
+      long token = registry.issue(seat);
+      List<SocketChannel> clients = new ArrayList<>();
+      registry.resume(connect(clients), token);
+      assertEquals(1, seat.tokens.size());
+      long next = seat.tokens.get(0);
+      assertNotEquals(token, next);
+      assertNotEquals(0, next);
+      assertEquals(1, registry.size());
+
+      //The token used up is turned away, the new one takes the client back
+      registry.resume(connect(clients), token);
+      assertEquals(Collections.singletonList(DONE), readToEnd(clients.get(1)));
+      assertEquals(1, seat.tokens.size());
+      registry.resume(connect(clients), next);
+      assertEquals(2, seat.tokens.size());
+      assertEquals(1, registry.size());
+   }
+
+   @Test
+   public void turnsAwayAnUnknownToken() throws Exception   {
+      ResumeRegistry registry = new ResumeRegistry(new ServerLog());
+      registry.issue(new RecordingSeat(true));
+      List<SocketChannel> clients = new ArrayList<>();
+      registry.resume(connect(clients), 42);
+      assertEquals(Collections.singletonList(DONE), readToEnd(clients.get(0)));
+      assertEquals(1, registry.size());
+   }
+
+   @Test
+   public void revokesTheNewTokenWhenTheGameIsOver() throws Exception   {
+      ResumeRegistry registry = new ResumeRegistry(new ServerLog());
+      RecordingSeat seat = new RecordingSeat(false);
+      long token = registry.issue(seat);
+      List<SocketChannel> clients = new ArrayList<>();
+      registry.resume(connect(clients), token);
+      assertEquals(Collections.singletonList(DONE), readToEnd(clients.get(0)));
+      assertEquals(1, seat.tokens.size());
+      assertEquals(0, registry.size());
+   }
+
+   /**
+       * Starts a game which holds itself for a player who loses their connection, and has player 0 answer
+       * FRAMING so that they are sent their token.
+       * @param link0 the link of player 0
+       * @param link1 the link of player 1
+       * @return the session
+       */
+   private GameSession startGame(RecordingLink link0, RecordingLink link1) throws IOException  {
+      GameSession session = new GameSession(link0, link1, new ServerLog(), 1);
+      session.setTimeouts((task, delay) -> timer.schedule(task, delay, TimeUnit.MILLISECONDS), 0, 0, 0);
+      session.setResumeTokens(11, 22, GRACE_MILLIS);
+      session.start();
+      session.receive(0, HELLO, ByteBuffer.wrap(new byte[] { (byte)FrameCodec.VERSION }));
+      assertEquals(Arrays.asList("NAME 0", "TOKEN 11"), link0.take());
+      link1.take();
+      return session;
+   }
+
+   @Test
+   public void resumesWithinTheGraceTime() throws Exception   {
+      RecordingLink link0 = new RecordingLink();
+      RecordingLink link1 = new RecordingLink();
+      GameSession session = startGame(link0, link1);
+      session.connectionLost(0, link0);
+      assertFalse(session.isFinished());
+
+      RecordingLink resumed = new RecordingLink();
+      assertTrue(session.resume(0, resumed, 33));
+      assertEquals(Collections.singletonList("SNAPSHOT"), resumed.take());
+      session.receive(0, HELLO, ByteBuffer.wrap(new byte[] { (byte)FrameCodec.VERSION }));
+      assertEquals(Collections.singletonList("TOKEN 33"), resumed.take());
+      assertEquals(33, session.getResumeToken(0));
+
+      //The grace time passing once the player is back changes nothing
+      Thread.sleep(2 * GRACE_MILLIS);
+      assertFalse(session.isFinished());
+      assertTrue(link1.take().isEmpty());
+   }
+
+   @Test
+   public void refusesAPlayerOnceTheGraceTimeHasPassed() throws Exception   {
+      RecordingLink link0 = new RecordingLink();
+      RecordingLink link1 = new RecordingLink();
+      GameSession session = startGame(link0, link1);
+      session.connectionLost(0, link0);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (!session.isFinished() && System.nanoTime() < deadline)
+         Thread.sleep(10);
+      assertTrue(session.isFinished());
+      assertEquals(Collections.singletonList("DONE"), link1.take());
+      assertFalse(session.resume(0, new RecordingLink(), 33));
+   }
+
+   @Test
+   public void endsTheGameForAPlayerNeverSentAToken() throws Exception   {
+      RecordingLink link0 = new RecordingLink();
+      RecordingLink link1 = new RecordingLink();
+      GameSession session = startGame(link0, link1);
+      session.connectionLost(1, link1);
+      assertTrue(session.isFinished());
+   }
+}
\ No newline at end of file
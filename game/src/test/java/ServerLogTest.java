@@ -0,0 +1,155 @@
+/**
+* Tests ServerLog: every message reaching the sinks in the order it was published, messages published into
+* a full ring buffer being dropped and counted, and the RollingFileSink rolling its file over by the bytes
+* written rather than the characters.
+*
+* @author Alex Perrino
+* @version November 29, 2017
+*/
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+public class ServerLogTest  {
+   @TempDir
+   Path directory;
+
+   /**
+       * A LogSink which keeps every message it is given.
+       */
+   private static class RecordingSink implements ServerLog.LogSink   {
+      private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+      @Override
+      public void write(String[] batch, int count)   {
+         for (int i = 0; i < count; i++)
+            messages.add(batch[i]);
+      }
+
+      /**
+          * Waits until the sink has been given the given number of messages.
+          * @param count the number of messages
+          * @return the messages
+          */
+      List<String> await(int count) throws InterruptedException  {
+         long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+         while (messages.size() < count && System.nanoTime() < deadline)
+            Thread.sleep(5);
+         synchronized (messages) {
+            return new ArrayList<>(messages);
+         }
+      }
+   }
+
+   @Test
+   public void deliversMessagesInTheOrderPublished() throws Exception   {
+      RecordingSink sink = new RecordingSink();
+      ServerLog log = new ServerLog(1 << 16).addSink(sink).start();
+      for (int i = 0; i < 5000; i++)   {
+         log.report("message " + i);
+         if (i % 1000 == 0)
+            Thread.sleep(20);
+      }
+      List<String> messages = sink.await(5000);
+      assertEquals(5000, messages.size());
+      for (int i = 0; i < 5000; i++)
+         assertEquals("message " + i, messages.get(i));
+      assertEquals(0, log.getDropped());
+   }
+
+   @Test
+   public void keepsEachPublishersOrderWhenSeveralPublishAtOnce() throws Exception   {
+      RecordingSink sink = new RecordingSink();
+      ServerLog log = new ServerLog(1 << 16).addSink(sink).start();
+      int threads = 4;
+      int each = 5000;
+      CyclicBarrier go = new CyclicBarrier(threads);
+      List<Thread> publishers = new ArrayList<>();
+      for (int t = 0; t < threads; t++)   {
+         int publisher = t;
+         Thread thread = new Thread(() -> {
+            try   {
+               go.await();
+            }
+            catch (InterruptedException | BrokenBarrierException e)  {
+               return;
+            }
+            for (int i = 0; i < each; i++)
+               log.report(publisher + " " + i);
+         });
+         publishers.add(thread);
+         thread.start();
+      }
+      for (Thread thread : publishers)
+         thread.join();
+      List<String> messages = sink.await(threads * each);
+      assertEquals(threads * each, messages.size());
+      int[] next = new int[threads];
+      for (String message : messages)  {
+         String[] fields = message.split(" ");
+         int publisher = Integer.parseInt(fields[0]);
+         assertEquals(next[publisher]++, Integer.parseInt(fields[1]));
+      }
+   }
+
+   @Test
+   public void dropsAndCountsMessagesWhenFull() throws Exception   {
+      RecordingSink sink = new RecordingSink();
+      ServerLog log = new ServerLog(8).addSink(sink);
+      for (int i = 0; i < 20; i++)
+         log.report("message " + i);
+      assertEquals(12, log.getDropped());
+      log.start();
+      List<String> messages = sink.await(9);
+      assertEquals(9, messages.size());
+      for (int i = 0; i < 8; i++)
+         assertEquals("message " + i, messages.get(i));
+      assertEquals("(12 log messages dropped so far)", messages.get(8));
+
+      //Once drained the buffer takes messages again
+      log.report("after");
+      assertEquals("after", sink.await(10).get(9));
+      assertEquals(12, log.getDropped());
+   }
+
+   @Test
+   public void rollsTheFileOverByTheBytesWritten() throws Exception   {
+      Path file = directory.resolve("server.log");
+      ServerLog.RollingFileSink sink = new ServerLog.RollingFileSink(file, BattleShipServer.LOG_FILE_BYTES, 2);
+      //Two or three bytes for most characters, so counting characters would roll the file far too late
+      String line = "ünïcødé ✓ 船 ".repeat(40);
+      String[] batch = new String[64];
+      Arrays.fill(batch, line);
+      long batchBytes = (long)batch.length * (line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8).length;
+      assertTrue(line.getBytes(StandardCharsets.UTF_8).length > 3 * line.length() / 2);
+      long batches = (BattleShipServer.LOG_FILE_BYTES + batchBytes - 1) / batchBytes;
+      for (long i = 0; i < batches - 1; i++)
+         sink.write(batch, batch.length);
+      assertFalse(Files.exists(directory.resolve("server.log.1")));
+      sink.write(batch, batch.length);
+      assertEquals(batches * batchBytes, Files.size(directory.resolve("server.log.1")));
+      assertEquals(0, Files.size(file));
+
+      sink.write(batch, 1);
+      String kept = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      assertEquals(line + System.lineSeparator(), kept);
+   }
+
+   @Test
+   public void keepsOnlyTheGivenNumberOfOldFiles() throws Exception   {
+      Path file = directory.resolve("server.log");
+      Files.write(file, "12345".getBytes(StandardCharsets.UTF_8));
+      ServerLog.RollingFileSink sink = new ServerLog.RollingFileSink(file, 20, 2);
+      //The size of the file already there counts towards the first roll
+      sink.write(new String[] { "é".repeat(7) }, 1);
+      assertTrue(Files.exists(directory.resolve("server.log.1")));
+      for (int i = 0; i < 4; i++)
+         sink.write(new String[] { "é".repeat(10) }, 1);
+      assertTrue(Files.exists(directory.resolve("server.log.2")));
+      assertFalse(Files.exists(directory.resolve("server.log.3")));
+   }
+}
\ No newline at end of file
@@ -0,0 +1 @@
+java BattleShipBots %*
\ No newline at end of file
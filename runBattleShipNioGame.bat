@@ -0,0 +1,3 @@
+start /MIN java BattleShipServer nio
+start /MIN java BattleShipClient
+start /MIN java BattleShipClient
\ No newline at end of file
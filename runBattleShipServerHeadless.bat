@@ -0,0 +1 @@
+java -Djava.awt.headless=true BattleShipServer headless %*
\ No newline at end of file